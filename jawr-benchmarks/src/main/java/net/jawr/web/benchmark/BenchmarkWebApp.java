@@ -0,0 +1,242 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+
+import net.jawr.web.JawrConstant;
+import net.jawr.web.resource.bundle.JoinableResourceBundle;
+import net.jawr.web.resource.bundle.handler.ResourceBundlesHandler;
+import net.jawr.web.servlet.JawrRequestHandler;
+
+/**
+ * This class defines the web application used by the benchmarks. It writes a
+ * synthetic corpus in a temporary directory and initializes the Jawr request
+ * handlers of the scripts and the stylesheets on top of it. The application
+ * declares the following bundles :
+ * <ul>
+ * <li>/bundles/lib.js, mapped to /js/lib/**</li>
+ * <li>/bundles/app.js, mapped to /js/app/**</li>
+ * <li>/bundles/all.css, mapped to /css/**</li>
+ * </ul>
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class BenchmarkWebApp {
+
+	/** The ID of the library script bundle */
+	public static final String JS_LIB_BUNDLE = "/bundles/lib.js";
+
+	/** The ID of the application script bundle */
+	public static final String JS_APP_BUNDLE = "/bundles/app.js";
+
+	/** The ID of the stylesheet bundle */
+	public static final String CSS_BUNDLE = "/bundles/all.css";
+
+	/** The number of files per directory */
+	private static final int FILES_PER_DIRECTORY = 10;
+
+	/** The root directory */
+	private final File rootDir;
+
+	/** The servlet context */
+	private final ServletContext context;
+
+	/** The request handler of the scripts */
+	private final JawrRequestHandler jsRequestHandler;
+
+	/** The request handler of the stylesheets */
+	private final JawrRequestHandler cssRequestHandler;
+
+	/**
+	 * Constructor
+	 *
+	 * @param fileSize
+	 *            the approximate size of each resource file in characters
+	 * @throws IOException
+	 *             if an IOException occurs
+	 * @throws ServletException
+	 *             if a ServletException occurs
+	 */
+	public BenchmarkWebApp(int fileSize) throws IOException, ServletException {
+
+		rootDir = File.createTempFile("jawr-benchmark", "");
+		if (!rootDir.delete() || !rootDir.mkdirs()) {
+			throw new IOException("Unable to create the directory " + rootDir);
+		}
+		File webAppDir = new File(rootDir, "webapp");
+		File tempDir = new File(rootDir, "tmp");
+		tempDir.mkdirs();
+
+		for (int i = 0; i < FILES_PER_DIRECTORY; i++) {
+			writeFile(new File(webAppDir, "js/lib/lib" + i + ".js"),
+					SyntheticCorpus.generateJavascript(fileSize, SyntheticCorpus.SEED + i));
+			writeFile(new File(webAppDir, "js/app/app" + i + ".js"),
+					SyntheticCorpus.generateJavascript(fileSize, SyntheticCorpus.SEED + 100 + i));
+			writeFile(new File(webAppDir, "css/style" + i + ".css"),
+					SyntheticCorpus.generateCss(fileSize, SyntheticCorpus.SEED + 200 + i));
+		}
+
+		context = ServletStubs.createServletContext(webAppDir, tempDir);
+
+		Properties props = new Properties();
+		props.put("jawr.debug.on", "false");
+		props.put("jawr.gzip.on", "true");
+		props.put("jawr.working.directory", new File(rootDir, "work").getAbsolutePath());
+		props.put("jawr.js.bundle.lib.id", JS_LIB_BUNDLE);
+		props.put("jawr.js.bundle.lib.mappings", "/js/lib/**");
+		props.put("jawr.js.bundle.app.id", JS_APP_BUNDLE);
+		props.put("jawr.js.bundle.app.mappings", "/js/app/**");
+		props.put("jawr.css.bundle.all.id", CSS_BUNDLE);
+		props.put("jawr.css.bundle.all.mappings", "/css/**");
+
+		jsRequestHandler = createRequestHandler(JawrConstant.JS_TYPE, props);
+		cssRequestHandler = createRequestHandler(JawrConstant.CSS_TYPE, props);
+	}
+
+	/**
+	 * Creates a request handler
+	 *
+	 * @param type
+	 *            the resource type
+	 * @param props
+	 *            the configuration properties
+	 * @return the request handler
+	 * @throws ServletException
+	 *             if a ServletException occurs
+	 */
+	private JawrRequestHandler createRequestHandler(String type, Properties props) throws ServletException {
+
+		Map<String, Object> initParams = new HashMap<String, Object>();
+		initParams.put(JawrConstant.TYPE_INIT_PARAMETER, type);
+		return new JawrRequestHandler(context, initParams, props);
+	}
+
+	/**
+	 * Writes a file
+	 *
+	 * @param file
+	 *            the file
+	 * @param content
+	 *            the content
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	private static void writeFile(File file, String content) throws IOException {
+
+		file.getParentFile().mkdirs();
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Returns the servlet context
+	 *
+	 * @return the servlet context
+	 */
+	public ServletContext getServletContext() {
+		return context;
+	}
+
+	/**
+	 * Returns the request handler of the scripts
+	 *
+	 * @return the request handler of the scripts
+	 */
+	public JawrRequestHandler getJsRequestHandler() {
+		return jsRequestHandler;
+	}
+
+	/**
+	 * Returns the request handler of the stylesheets
+	 *
+	 * @return the request handler of the stylesheets
+	 */
+	public JawrRequestHandler getCssRequestHandler() {
+		return cssRequestHandler;
+	}
+
+	/**
+	 * Returns the bundles handler of the scripts
+	 *
+	 * @return the bundles handler of the scripts
+	 */
+	public ResourceBundlesHandler getJsBundlesHandler() {
+		return (ResourceBundlesHandler) context.getAttribute(JawrConstant.JS_CONTEXT_ATTRIBUTE);
+	}
+
+	/**
+	 * Returns the bundles handler of the stylesheets
+	 *
+	 * @return the bundles handler of the stylesheets
+	 */
+	public ResourceBundlesHandler getCssBundlesHandler() {
+		return (ResourceBundlesHandler) context.getAttribute(JawrConstant.CSS_CONTEXT_ATTRIBUTE);
+	}
+
+	/**
+	 * Returns the path requested by a browser for a bundle
+	 *
+	 * @param bundlesHandler
+	 *            the bundles handler
+	 * @param bundleId
+	 *            the bundle ID
+	 * @return the requested path
+	 */
+	public static String getRequestedPath(ResourceBundlesHandler bundlesHandler, String bundleId) {
+
+		JoinableResourceBundle bundle = bundlesHandler.resolveBundleForPath(bundleId);
+		return "/" + bundle.getURLPrefix(null) + bundleId.substring(1);
+	}
+
+	/**
+	 * Destroys the application and deletes its files
+	 */
+	public void destroy() {
+
+		jsRequestHandler.destroy();
+		cssRequestHandler.destroy();
+		delete(rootDir);
+	}
+
+	/**
+	 * Deletes a file or a directory with its content
+	 *
+	 * @param file
+	 *            the file to delete
+	 */
+	private static void delete(File file) {
+
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.jawr.web.resource.bundle.JoinableResourceBundle;
+import net.jawr.web.resource.bundle.handler.ResourceBundlesHandler;
+import net.jawr.web.resource.bundle.renderer.BundleRenderer;
+
+/**
+ * This class defines the benchmarks of the serving of a bundle, once the
+ * bundles have been processed at startup. The end-to-end benchmarks go
+ * through the request handler, as a servlet would do.
+ *
+ * @author Ibrahim Chaehoi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BundleServingBenchmark {
+
+	/** The size of each resource file in characters */
+	@Param({ "5000", "50000" })
+	public int fileSize;
+
+	/** The web application */
+	private BenchmarkWebApp webApp;
+
+	/** The bundles handler of the scripts */
+	private ResourceBundlesHandler bundlesHandler;
+
+	/** The requested path of the script bundle */
+	private String requestedPath;
+
+	/** The requested path of the gzipped script bundle */
+	private String gzipRequestedPath;
+
+	/** The request */
+	private HttpServletRequest request;
+
+	/** The request of the gzipped bundle */
+	private HttpServletRequest gzipRequest;
+
+	/** The response */
+	private HttpServletResponse response;
+
+	/**
+	 * Initializes the web application
+	 *
+	 * @throws Exception
+	 *             if an exception occurs
+	 */
+	@Setup
+	public void setUp() throws Exception {
+
+		webApp = new BenchmarkWebApp(fileSize);
+		bundlesHandler = webApp.getJsBundlesHandler();
+		requestedPath = BenchmarkWebApp.getRequestedPath(bundlesHandler, BenchmarkWebApp.JS_APP_BUNDLE);
+		gzipRequestedPath = BundleRenderer.GZIP_PATH_PREFIX + requestedPath.substring(1);
+
+		Map<String, String> headers = new HashMap<String, String>();
+		headers.put("User-Agent", "Mozilla/5.0 (X11; Linux x86_64; rv:45.0) Gecko/20100101 Firefox/45.0");
+		request = ServletStubs.createRequest(requestedPath, headers);
+		Map<String, String> gzipHeaders = new HashMap<String, String>(headers);
+		gzipHeaders.put("Accept-Encoding", "gzip, deflate");
+		gzipRequest = ServletStubs.createRequest(gzipRequestedPath, gzipHeaders);
+		response = ServletStubs.createResponse();
+	}
+
+	/**
+	 * Destroys the web application
+	 */
+	@TearDown
+	public void tearDown() {
+		webApp.destroy();
+	}
+
+	/**
+	 * Resolves the bundle of a path
+	 *
+	 * @return the bundle
+	 */
+	@Benchmark
+	public JoinableResourceBundle resolveBundleForPath() {
+		return bundlesHandler.resolveBundleForPath(BenchmarkWebApp.JS_APP_BUNDLE);
+	}
+
+	/**
+	 * Streams the gzipped bundle
+	 *
+	 * @param blackhole
+	 *            the blackhole consuming the content
+	 * @throws Exception
+	 *             if an exception occurs
+	 */
+	@Benchmark
+	public void streamBundleTo(final Blackhole blackhole) throws Exception {
+
+		bundlesHandler.streamBundleTo(requestedPath, new OutputStream() {
+
+			@Override
+			public void write(int b) throws IOException {
+				blackhole.consume(b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				blackhole.consume(b);
+			}
+		});
+	}
+
+	/**
+	 * Handles the request of the bundle
+	 *
+	 * @throws Exception
+	 *             if an exception occurs
+	 */
+	@Benchmark
+	public void processRequest() throws Exception {
+		webApp.getJsRequestHandler().processRequest(requestedPath, request, response);
+	}
+
+	/**
+	 * Handles the request of the gzipped bundle
+	 *
+	 * @throws Exception
+	 *             if an exception occurs
+	 */
+	@Benchmark
+	public void processGzipRequest() throws Exception {
+		webApp.getJsRequestHandler().processRequest(gzipRequestedPath, gzipRequest, response);
+	}
+}
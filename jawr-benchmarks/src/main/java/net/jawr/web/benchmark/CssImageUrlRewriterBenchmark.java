@@ -0,0 +1,105 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.jawr.web.resource.bundle.handler.ResourceBundlesHandler;
+import net.jawr.web.resource.bundle.postprocess.BundleProcessingStatus;
+import net.jawr.web.resource.bundle.postprocess.impl.PostProcessorCssImageUrlRewriter;
+
+/**
+ * This class defines the benchmark of the rewriting of the image URLs of the
+ * stylesheets, which is done for each CSS file of a bundle.
+ *
+ * @author Ibrahim Chaehoi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CssImageUrlRewriterBenchmark {
+
+	/** The path of the original stylesheet */
+	private static final String ORIGINAL_CSS_PATH = "/css/folder/style0.css";
+
+	/** The size of the stylesheet in characters */
+	@Param({ "10000", "100000" })
+	public int size;
+
+	/** The web application */
+	private BenchmarkWebApp webApp;
+
+	/** The processing status */
+	private BundleProcessingStatus status;
+
+	/** The stylesheet */
+	private String stylesheet;
+
+	/** The path of the stylesheet bundle */
+	private String bundlePath;
+
+	/**
+	 * Initializes the web application and the stylesheet
+	 *
+	 * @throws Exception
+	 *             if an exception occurs
+	 */
+	@Setup
+	public void setUp() throws Exception {
+
+		webApp = new BenchmarkWebApp(1000);
+		ResourceBundlesHandler bundlesHandler = webApp.getCssBundlesHandler();
+		status = new BundleProcessingStatus(BundleProcessingStatus.BUNDLE_PROCESSING_TYPE,
+				bundlesHandler.resolveBundleForPath(BenchmarkWebApp.CSS_BUNDLE), null, bundlesHandler.getConfig());
+		status.setLastPathAdded(ORIGINAL_CSS_PATH);
+		bundlePath = BenchmarkWebApp.getRequestedPath(bundlesHandler, BenchmarkWebApp.CSS_BUNDLE);
+		stylesheet = SyntheticCorpus.generateCss(size);
+	}
+
+	/**
+	 * Destroys the web application
+	 */
+	@TearDown
+	public void tearDown() {
+		webApp.destroy();
+	}
+
+	/**
+	 * Rewrites the image URLs of the stylesheet
+	 *
+	 * @return the rewritten stylesheet
+	 * @throws Exception
+	 *             if an exception occurs
+	 */
+	@Benchmark
+	public StringBuffer rewriteUrl() throws Exception {
+		return new PostProcessorCssImageUrlRewriter(status).rewriteUrl(ORIGINAL_CSS_PATH, bundlePath, stylesheet);
+	}
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.jawr.web.minification.CSSMinifier;
+import net.jawr.web.minification.JSMin;
+
+/**
+ * This class defines the benchmarks of the script and stylesheet minifiers.
+ *
+ * @author Ibrahim Chaehoi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MinifierBenchmark {
+
+	/** The size of the content to minify in characters */
+	@Param({ "10000", "100000", "1000000" })
+	public int size;
+
+	/** The script bytes */
+	private byte[] script;
+
+	/** The stylesheet */
+	private String stylesheet;
+
+	/**
+	 * Generates the contents to minify
+	 *
+	 * @throws Exception
+	 *             if an exception occurs
+	 */
+	@Setup
+	public void setUp() throws Exception {
+		script = SyntheticCorpus.generateJavascript(size).getBytes("UTF-8");
+		stylesheet = SyntheticCorpus.generateCss(size);
+	}
+
+	/**
+	 * Minifies the script with JSMin
+	 *
+	 * @return the minified script
+	 * @throws Exception
+	 *             if an exception occurs
+	 */
+	@Benchmark
+	public ByteArrayOutputStream jsMin() throws Exception {
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(script.length);
+		new JSMin(new ByteArrayInputStream(script), out).jsmin();
+		return out;
+	}
+
+	/**
+	 * Minifies the stylesheet with the CSS minifier
+	 *
+	 * @return the minified stylesheet
+	 */
+	@Benchmark
+	public StringBuffer cssMinifier() {
+		return new CSSMinifier().minifyCSS(new StringBuffer(stylesheet));
+	}
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.jawr.web.resource.bundle.factory.util.PathNormalizer;
+
+/**
+ * This class defines the benchmarks of the path methods called for each
+ * request and for each resource of a bundle.
+ *
+ * @author Ibrahim Chaehoi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathBenchmark {
+
+	/** The path to normalize */
+	public String pathToNormalize = "//js/./lib//jquery/../jquery/jquery.min.js";
+
+	/** The prefix to join */
+	public String prefix = "/js/lib/";
+
+	/** The path to join */
+	public String path = "/jquery/jquery.min.js";
+
+	/** The requested path of a bundle variant */
+	public String variantBundlePath = "/N672961416.fr_FR@ie6/bundles/app.js";
+
+	/** The requested path of a gzipped bundle */
+	public String gzipBundlePath = "/gzip_N672961416/bundles/app.js";
+
+	/** The path of a stylesheet */
+	public String cssPath = "/css/folder/subfolder/style.css";
+
+	/** The relative path of an image */
+	public String imagePath = "../../img/icons/icon1.png";
+
+	/**
+	 * Normalizes a path
+	 *
+	 * @return the normalized path
+	 */
+	@Benchmark
+	public String normalizePath() {
+		return PathNormalizer.normalizePath(pathToNormalize);
+	}
+
+	/**
+	 * Joins two paths
+	 *
+	 * @return the joined path
+	 */
+	@Benchmark
+	public String joinPaths() {
+		return PathNormalizer.joinPaths(prefix, path);
+	}
+
+	/**
+	 * Removes the variant prefix from a bundle path
+	 *
+	 * @return the path without the prefix
+	 */
+	@Benchmark
+	public String removeVariantPrefixFromPath() {
+		return PathNormalizer.removeVariantPrefixFromPath(variantBundlePath);
+	}
+
+	/**
+	 * Extracts the bundle information from a bundle path
+	 *
+	 * @return the bundle information
+	 */
+	@Benchmark
+	public String[] extractBundleInfoFromPath() {
+		return PathNormalizer.extractBundleInfoFromPath(gzipBundlePath);
+	}
+
+	/**
+	 * Resolves the path of an image relatively to a stylesheet
+	 *
+	 * @return the path of the image
+	 */
+	@Benchmark
+	public String concatWebPath() {
+		return PathNormalizer.concatWebPath(cssPath, imagePath);
+	}
+}
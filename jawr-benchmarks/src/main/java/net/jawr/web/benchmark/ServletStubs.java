@@ -0,0 +1,266 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * This class creates the minimal servlet objects needed to run Jawr outside
+ * of a servlet container. The objects are dynamic proxies : the methods which
+ * are not used by Jawr return the default value of their type.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public final class ServletStubs {
+
+	/**
+	 * Constructor
+	 */
+	private ServletStubs() {
+	}
+
+	/**
+	 * Creates a servlet context serving the files of a directory
+	 *
+	 * @param baseDir
+	 *            the web application directory
+	 * @param tempDir
+	 *            the temporary directory
+	 * @return the servlet context
+	 */
+	public static ServletContext createServletContext(final File baseDir, File tempDir) {
+
+		final Map<String, Object> attributes = new ConcurrentHashMap<String, Object>();
+		attributes.put("javax.servlet.context.tempdir", tempDir);
+		return proxy(ServletContext.class, new InvocationHandler() {
+
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+				String name = method.getName();
+				if (name.equals("getAttribute")) {
+					return attributes.get(args[0]);
+				} else if (name.equals("setAttribute")) {
+					if (args[1] == null) {
+						attributes.remove(args[0]);
+					} else {
+						attributes.put((String) args[0], args[1]);
+					}
+					return null;
+				} else if (name.equals("removeAttribute")) {
+					attributes.remove(args[0]);
+					return null;
+				} else if (name.equals("getAttributeNames")) {
+					return Collections.enumeration(attributes.keySet());
+				} else if (name.equals("getInitParameterNames")) {
+					return Collections.enumeration(Collections.emptySet());
+				} else if (name.equals("getResourceAsStream")) {
+					try {
+						return new FileInputStream(new File(baseDir, (String) args[0]));
+					} catch (FileNotFoundException e) {
+						return null;
+					}
+				} else if (name.equals("getResource")) {
+					File file = new File(baseDir, (String) args[0]);
+					return file.exists() ? file.toURI().toURL() : null;
+				} else if (name.equals("getRealPath")) {
+					return new File(baseDir, (String) args[0]).getAbsolutePath();
+				} else if (name.equals("getResourcePaths")) {
+					return getResourcePaths(baseDir, (String) args[0]);
+				} else if (name.equals("getContextPath")) {
+					return "";
+				} else if (name.equals("getMajorVersion")) {
+					return 2;
+				} else if (name.equals("getMinorVersion")) {
+					return 5;
+				}
+				return defaultValue(proxy, method, args);
+			}
+		});
+	}
+
+	/**
+	 * Returns the resource paths of a directory
+	 *
+	 * @param baseDir
+	 *            the web application directory
+	 * @param path
+	 *            the directory path
+	 * @return the resource paths, or null if the directory doesn't exist
+	 */
+	private static Set<String> getResourcePaths(File baseDir, String path) {
+
+		File dir = new File(baseDir, path);
+		String[] names = dir.list();
+		if (names == null) {
+			return null;
+		}
+		String dirPath = path.endsWith("/") ? path : path + "/";
+		Set<String> paths = new HashSet<String>();
+		for (String name : names) {
+			paths.add(dirPath + name + (new File(dir, name).isDirectory() ? "/" : ""));
+		}
+		return paths;
+	}
+
+	/**
+	 * Creates a GET request
+	 *
+	 * @param servletPath
+	 *            the servlet path
+	 * @param headers
+	 *            the request headers
+	 * @return the request
+	 */
+	public static HttpServletRequest createRequest(final String servletPath, final Map<String, String> headers) {
+
+		final Map<String, Object> attributes = new HashMap<String, Object>();
+		return proxy(HttpServletRequest.class, new InvocationHandler() {
+
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+				String name = method.getName();
+				if (name.equals("getServletPath") || name.equals("getRequestURI")) {
+					return servletPath;
+				} else if (name.equals("getRequestURL")) {
+					return new StringBuffer("http://localhost").append(servletPath);
+				} else if (name.equals("getHeader")) {
+					return headers.get(args[0]);
+				} else if (name.equals("getMethod")) {
+					return "GET";
+				} else if (name.equals("getScheme")) {
+					return "http";
+				} else if (name.equals("getContextPath")) {
+					return "";
+				} else if (name.equals("getAttribute")) {
+					return attributes.get(args[0]);
+				} else if (name.equals("setAttribute")) {
+					attributes.put((String) args[0], args[1]);
+					return null;
+				} else if (name.equals("getDateHeader")) {
+					return -1L;
+				}
+				return defaultValue(proxy, method, args);
+			}
+		});
+	}
+
+	/**
+	 * Creates a response, which discards its content
+	 *
+	 * @return the response
+	 */
+	public static HttpServletResponse createResponse() {
+
+		final ServletOutputStream out = new ServletOutputStream() {
+
+			@Override
+			public void write(int b) throws IOException {
+				// Discard the content
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				// Discard the content
+			}
+		};
+		return proxy(HttpServletResponse.class, new InvocationHandler() {
+
+			private PrintWriter writer;
+
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+				String name = method.getName();
+				if (name.equals("getOutputStream")) {
+					return out;
+				} else if (name.equals("getWriter")) {
+					if (writer == null) {
+						writer = new PrintWriter(new OutputStreamWriter(out, "UTF-8"));
+					}
+					return writer;
+				} else if (name.equals("getCharacterEncoding")) {
+					return "UTF-8";
+				}
+				return defaultValue(proxy, method, args);
+			}
+		});
+	}
+
+	/**
+	 * Creates a dynamic proxy
+	 *
+	 * @param type
+	 *            the interface to implement
+	 * @param handler
+	 *            the invocation handler
+	 * @return the proxy
+	 */
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(ServletStubs.class.getClassLoader(), new Class<?>[] { type },
+				handler));
+	}
+
+	/**
+	 * Returns the default value of a method, which is not stubbed
+	 *
+	 * @param proxy
+	 *            the proxy
+	 * @param method
+	 *            the method
+	 * @param args
+	 *            the arguments
+	 * @return the default value
+	 */
+	private static Object defaultValue(Object proxy, Method method, Object[] args) {
+
+		String name = method.getName();
+		if (name.equals("equals")) {
+			return proxy == args[0];
+		} else if (name.equals("hashCode")) {
+			return System.identityHashCode(proxy);
+		} else if (name.equals("toString")) {
+			return method.getDeclaringClass().getSimpleName() + " stub";
+		}
+
+		Class<?> returnType = method.getReturnType();
+		if (returnType == boolean.class) {
+			return Boolean.FALSE;
+		} else if (returnType == int.class) {
+			return 0;
+		} else if (returnType == long.class) {
+			return 0L;
+		} else if (returnType.isPrimitive() && returnType != void.class) {
+			throw new UnsupportedOperationException(method.toString());
+		}
+		return null;
+	}
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.benchmark;
+
+import java.util.Random;
+
+/**
+ * This class generates the synthetic corpora used by the benchmarks. The
+ * generators are seeded, so a given size always produces the same content,
+ * whatever the machine or the JVM is, and the results of two runs can be
+ * compared.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public final class SyntheticCorpus {
+
+	/** The seed of the generators */
+	public static final long SEED = 20160101L;
+
+	/** The identifiers used in the generated scripts */
+	private static final String[] JS_IDENTIFIERS = { "element", "options", "callback", "index", "value", "result",
+			"container", "handler", "settings", "data" };
+
+	/** The CSS properties used in the generated stylesheets */
+	private static final String[] CSS_PROPERTIES = { "color: #336699", "margin: 0 auto", "padding: 4px 8px",
+			"font-family: Arial, Helvetica, sans-serif", "border: 1px solid #cccccc", "display: block",
+			"line-height: 1.5em", "text-align: left" };
+
+	/**
+	 * Constructor
+	 */
+	private SyntheticCorpus() {
+	}
+
+	/**
+	 * Generates a script of about the given size
+	 *
+	 * @param size
+	 *            the approximate size in characters
+	 * @return the script
+	 */
+	public static String generateJavascript(int size) {
+		return generateJavascript(size, SEED);
+	}
+
+	/**
+	 * Generates a script of about the given size
+	 *
+	 * @param size
+	 *            the approximate size in characters
+	 * @param seed
+	 *            the seed of the generator
+	 * @return the script
+	 */
+	public static String generateJavascript(int size, long seed) {
+
+		Random random = new Random(seed);
+		StringBuilder js = new StringBuilder(size + 512);
+		js.append("/*!\n * Synthetic library - license header kept by the minifiers\n */\n");
+		int functionIdx = 0;
+		while (js.length() < size) {
+			String name = "module" + functionIdx++;
+			js.append("\n/**\n * Function ").append(name).append(" of the synthetic corpus\n */\n");
+			js.append("function ").append(name).append("(").append(pick(random, JS_IDENTIFIERS)).append(", ")
+					.append(pick(random, JS_IDENTIFIERS)).append(") {\n");
+			int statements = 3 + random.nextInt(8);
+			for (int i = 0; i < statements; i++) {
+				String id = pick(random, JS_IDENTIFIERS);
+				switch (random.nextInt(4)) {
+				case 0:
+					js.append("    var ").append(id).append(i).append(" = \"").append(name).append(" string ")
+							.append(random.nextInt(1000)).append("\";\n");
+					break;
+				case 1:
+					js.append("    if (").append(id).append(" !== null && ").append(id).append(".length > ")
+							.append(random.nextInt(10)).append(") {\n        ").append(id).append(" = ").append(id)
+							.append(".slice(0, ").append(random.nextInt(5)).append(");\n    }\n");
+					break;
+				case 2:
+					js.append("    // Loop over the ").append(id).append(" items\n");
+					js.append("    for (var i = 0; i < ").append(random.nextInt(100))
+							.append("; i++) {\n        result += /ab+c/.test(").append(id)
+							.append(") ? i : -i;\n    }\n");
+					break;
+				default:
+					js.append("    ").append(id).append(" = { key : '").append(id).append("', count : ")
+							.append(random.nextInt(100)).append(" };\n");
+				}
+			}
+			js.append("    return ").append(pick(random, JS_IDENTIFIERS)).append(";\n}\n");
+		}
+		return js.toString();
+	}
+
+	/**
+	 * Generates a stylesheet of about the given size, which references images
+	 * with relative URLs
+	 *
+	 * @param size
+	 *            the approximate size in characters
+	 * @return the stylesheet
+	 */
+	public static String generateCss(int size) {
+		return generateCss(size, SEED);
+	}
+
+	/**
+	 * Generates a stylesheet of about the given size, which references images
+	 * with relative URLs
+	 *
+	 * @param size
+	 *            the approximate size in characters
+	 * @param seed
+	 *            the seed of the generator
+	 * @return the stylesheet
+	 */
+	public static String generateCss(int size, long seed) {
+
+		Random random = new Random(seed);
+		StringBuilder css = new StringBuilder(size + 512);
+		css.append("/* Synthetic stylesheet */\n");
+		int ruleIdx = 0;
+		while (css.length() < size) {
+			css.append("\n/* Rule ").append(ruleIdx).append(" */\n");
+			css.append(".block").append(ruleIdx).append(" .item").append(random.nextInt(50)).append(", #id")
+					.append(ruleIdx).append(" > a:hover {\n");
+			int declarations = 2 + random.nextInt(5);
+			for (int i = 0; i < declarations; i++) {
+				css.append("    ").append(pick(random, CSS_PROPERTIES)).append(";\n");
+			}
+			if (random.nextInt(3) == 0) {
+				css.append("    background: url('../img/icons/icon").append(random.nextInt(20))
+						.append(".png') no-repeat;\n");
+			}
+			css.append("}\n");
+			ruleIdx++;
+		}
+		return css.toString();
+	}
+
+	/**
+	 * Returns a random element of an array
+	 *
+	 * @param random
+	 *            the random generator
+	 * @param values
+	 *            the array
+	 * @return the element
+	 */
+	private static String pick(Random random, String[] values) {
+		return values[random.nextInt(values.length)];
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.benchmark;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.jawr.web.JawrConstant;
+import net.jawr.web.resource.bundle.variant.VariantSet;
+import net.jawr.web.resource.bundle.variant.VariantUtils;
+
+/**
+ * This class defines the benchmarks of the variant computations, which are
+ * done for each bundle at startup and for each link rendered.
+ *
+ * @author Ibrahim Chaehoi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VariantUtilsBenchmark {
+
+	/** The variant sets */
+	private Map<String, VariantSet> variantSets;
+
+	/** The current variants */
+	private Map<String, String> variants;
+
+	/**
+	 * Initializes the variants
+	 */
+	@Setup
+	public void setUp() {
+
+		variantSets = new HashMap<String, VariantSet>();
+		variantSets.put(JawrConstant.LOCALE_VARIANT_TYPE, new VariantSet(JawrConstant.LOCALE_VARIANT_TYPE, "",
+				new String[] { "", "en", "en_US", "fr", "fr_FR", "de", "es", "it", "ja", "zh_CN" }));
+		variantSets.put(JawrConstant.BROWSER_VARIANT_TYPE, new VariantSet(JawrConstant.BROWSER_VARIANT_TYPE, "",
+				new String[] { "", "ie6", "ie7", "ie8", "firefox", "webkit" }));
+		variantSets.put(JawrConstant.CONNECTION_TYPE_VARIANT_TYPE,
+				new VariantSet(JawrConstant.CONNECTION_TYPE_VARIANT_TYPE, "", new String[] { "", "ssl" }));
+
+		variants = new HashMap<String, String>();
+		variants.put(JawrConstant.LOCALE_VARIANT_TYPE, "fr_FR");
+		variants.put(JawrConstant.BROWSER_VARIANT_TYPE, "ie6");
+		variants.put(JawrConstant.CONNECTION_TYPE_VARIANT_TYPE, "ssl");
+	}
+
+	/**
+	 * Returns all the variant combinations
+	 *
+	 * @return the variant combinations
+	 */
+	@Benchmark
+	public List<Map<String, String>> getAllVariants() {
+		return VariantUtils.getAllVariants(variantSets);
+	}
+
+	/**
+	 * Returns all the variant keys
+	 *
+	 * @return the variant keys
+	 */
+	@Benchmark
+	public List<String> getAllVariantKeys() {
+		return VariantUtils.getAllVariantKeys(variantSets);
+	}
+
+	/**
+	 * Returns the key of the current variants
+	 *
+	 * @return the variant key
+	 */
+	@Benchmark
+	public String getVariantKey() {
+		return VariantUtils.getVariantKey(variants);
+	}
+}
@@ -72,6 +72,16 @@ public class JawrConstant {
 	/** The binary servlet context attribute name */
 	public static final String BINARY_CONTEXT_ATTRIBUTE = "net.jawr.web.resource.bundle.BINARY_CONTEXT_ATTRIBUTE";
 
+	/** The javascript client side handler script request handler servlet context attribute name */
+	public static final String JS_CLIENTSIDE_HANDLER_CONTEXT_ATTRIBUTE = "net.jawr.web.resource.bundle.JS_CLIENTSIDE_HANDLER_CONTEXT_ATTRIBUTE";
+
+	/**
+	 * The prefix of the servlet context attribute of the bundle fingerprints,
+	 * used for the incremental bundle processing. The resource type is
+	 * appended to the prefix.
+	 */
+	public static final String BUNDLE_FINGERPRINT_STORE_ATTRIBUTE_PREFIX = "net.jawr.web.resource.bundle.BUNDLE_FINGERPRINT_STORE_ATTRIBUTE.";
+
 	/** The http scheme */
 	public static final String HTTP = "http";
 	
@@ -302,6 +312,15 @@ public class JawrConstant {
 	/** The default Javascript engine */
 	public static final String DEFAULT_JS_ENGINE = "mozilla.rhino";
 
+	/** The property name of the number of Javascript engines per pool */
+	public static final String JS_ENGINE_POOL_SIZE_PROPERTY = "jawr.js.engine.pool.size";
+
+	/** The default number of Javascript engines per pool */
+	public static final int DEFAULT_JS_ENGINE_POOL_SIZE = 1;
+
+	/** The property name of the flag indicating if all the engines of a pool must be created at startup */
+	public static final String JS_ENGINE_POOL_WARMUP_PROPERTY = "jawr.js.engine.pool.warmup";
+
 	/** The performance processing logger */
 	public static final String PERF_PROCESSING_LOGGER = "net.jawr.perf.processing";
 	
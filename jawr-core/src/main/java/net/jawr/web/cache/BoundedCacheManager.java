@@ -0,0 +1,447 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.jawr.web.config.JawrConfig;
+import net.jawr.web.exception.BundlingProcessException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class defines an in-memory cache manager, bounded by a maximum number
+ * of bytes. When the limit is reached, the least recently used entries are
+ * evicted.
+ *
+ * The size of an entry is estimated from its value, and multiplied by the
+ * weight of its key prefix (the part of the key before the first dot). The
+ * weights are defined with the properties
+ * <code>jawr.cache.manager.weight.&lt;prefix&gt;</code>, so for example
+ * <code>jawr.cache.manager.weight.text=2</code> makes the text bundles twice
+ * as expensive as the gzipped ones, which are kept longer.
+ *
+ * The lookups don't lock the cache. Each entry records the time of its last
+ * access, from a logical clock, and the updates, which are synchronized, evict
+ * the entries with the oldest access times.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class BoundedCacheManager extends JawrCacheManager implements BoundedCacheManagerMBean {
+
+	/** The logger */
+	private static final Logger LOGGER = LoggerFactory.getLogger(BoundedCacheManager.class);
+
+	/** The property name of the maximum weighted size of the cache in bytes */
+	public static final String JAWR_CACHE_MANAGER_MAX_BYTES = "jawr.cache.manager.max.bytes";
+
+	/** The property name prefix of the weights of the key prefixes */
+	public static final String JAWR_CACHE_MANAGER_WEIGHT_PREFIX = "jawr.cache.manager.weight.";
+
+	/** The default maximum weighted size of the cache : 64 MB */
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+	/** The estimated memory overhead of an entry */
+	private static final int ENTRY_OVERHEAD = 64;
+
+	/** The estimated size of a value whose size is unknown */
+	private static final int DEFAULT_VALUE_SIZE = 1024;
+
+	/** The maximum weighted size of the cache in bytes */
+	private final long maxBytes;
+
+	/** The weights, indexed by key prefix in lower case */
+	private final Map<String, Double> weights = new HashMap<String, Double>();
+
+	/** The comparator which sorts the entries from the least recently used */
+	private static final Comparator<CacheEntry> ACCESS_ORDER = new Comparator<CacheEntry>() {
+		public int compare(CacheEntry entry1, CacheEntry entry2) {
+			long access1 = entry1.lastAccess;
+			long access2 = entry2.lastAccess;
+			return access1 < access2 ? -1 : (access1 == access2 ? 0 : 1);
+		}
+	};
+
+	/** The cache entries */
+	private final ConcurrentHashMap<String, CacheEntry> cache = new ConcurrentHashMap<String, CacheEntry>();
+
+	/** The logical clock which orders the accesses to the entries */
+	private final AtomicLong accessClock = new AtomicLong();
+
+	/** The current weighted size of the cache in bytes */
+	private volatile long currentBytes;
+
+	/** The number of cache hits */
+	private final AtomicLong hitCount = new AtomicLong();
+
+	/** The number of cache misses */
+	private final AtomicLong missCount = new AtomicLong();
+
+	/** The number of evicted entries */
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	/** The number of rejected entries */
+	private final AtomicLong rejectionCount = new AtomicLong();
+
+	/**
+	 * Constructor
+	 *
+	 * @param config
+	 *            the config
+	 */
+	public BoundedCacheManager(JawrConfig config) {
+		super(config);
+
+		String maxBytesValue = config.getProperty(JAWR_CACHE_MANAGER_MAX_BYTES);
+		this.maxBytes = maxBytesValue == null ? DEFAULT_MAX_BYTES : parseLong(JAWR_CACHE_MANAGER_MAX_BYTES,
+				maxBytesValue);
+
+		Properties props = config.getConfigProperties();
+		for (String propName : props.stringPropertyNames()) {
+			if (propName.startsWith(JAWR_CACHE_MANAGER_WEIGHT_PREFIX)) {
+				String prefix = propName.substring(JAWR_CACHE_MANAGER_WEIGHT_PREFIX.length()).toLowerCase();
+				weights.put(prefix, parseWeight(propName, props.getProperty(propName)));
+			}
+		}
+
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Bounded cache manager initialized with a maximum size of " + maxBytes
+					+ " bytes and the weights " + weights);
+		}
+	}
+
+	/**
+	 * Parses a long property value
+	 *
+	 * @param propName
+	 *            the property name
+	 * @param value
+	 *            the property value
+	 * @return the long value
+	 */
+	private static long parseLong(String propName, String value) {
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			throw new BundlingProcessException("The value of the property '" + propName + "' is not a valid number : "
+					+ value, e);
+		}
+	}
+
+	/**
+	 * Parses a weight property value
+	 *
+	 * @param propName
+	 *            the property name
+	 * @param value
+	 *            the property value
+	 * @return the weight
+	 */
+	private static double parseWeight(String propName, String value) {
+
+		double weight;
+		try {
+			weight = Double.parseDouble(value.trim());
+		} catch (NumberFormatException e) {
+			throw new BundlingProcessException("The value of the property '" + propName + "' is not a valid weight : "
+					+ value, e);
+		}
+		if (weight <= 0) {
+			throw new BundlingProcessException("The value of the property '" + propName + "' must be positive : "
+					+ value);
+		}
+		return weight;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see net.jawr.web.cache.JawrCacheManager#put(java.lang.String,
+	 * java.lang.Object)
+	 */
+	@Override
+	public synchronized void put(String key, Object value) {
+
+		removeEntry(key);
+
+		long weightedSize = getWeightedSize(key, value);
+		if (weightedSize > maxBytes) {
+			rejectionCount.incrementAndGet();
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("The entry '" + key + "' is too big to be cached : " + weightedSize + " bytes");
+			}
+			return;
+		}
+
+		CacheEntry newEntry = new CacheEntry(key, value, weightedSize);
+		newEntry.lastAccess = accessClock.incrementAndGet();
+		cache.put(key, newEntry);
+		currentBytes += weightedSize;
+
+		if (currentBytes > maxBytes) {
+			evictLeastRecentlyUsedEntries(newEntry);
+		}
+	}
+
+	/**
+	 * Evicts the least recently used entries until the cache size is below
+	 * its maximum
+	 *
+	 * @param newEntry
+	 *            the entry which has just been added, which is not evicted
+	 */
+	private void evictLeastRecentlyUsedEntries(CacheEntry newEntry) {
+
+		List<CacheEntry> entries = new ArrayList<CacheEntry>(cache.values());
+		Collections.sort(entries, ACCESS_ORDER);
+		for (CacheEntry entry : entries) {
+			if (currentBytes <= maxBytes) {
+				break;
+			}
+			if (entry != newEntry && cache.remove(entry.key, entry)) {
+				currentBytes -= entry.weightedSize;
+				evictionCount.incrementAndGet();
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see net.jawr.web.cache.JawrCacheManager#get(java.lang.String)
+	 */
+	@Override
+	public Object get(String key) {
+
+		CacheEntry entry = cache.get(key);
+		if (entry == null) {
+			missCount.incrementAndGet();
+			return null;
+		}
+		entry.lastAccess = accessClock.incrementAndGet();
+		hitCount.incrementAndGet();
+		return entry.value;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see net.jawr.web.cache.JawrCacheManager#remove(java.lang.String)
+	 */
+	@Override
+	public synchronized Object remove(String key) {
+
+		CacheEntry entry = removeEntry(key);
+		return entry == null ? null : entry.value;
+	}
+
+	/**
+	 * Removes an entry and updates the current size
+	 *
+	 * @param key
+	 *            the key
+	 * @return the removed entry
+	 */
+	private CacheEntry removeEntry(String key) {
+
+		CacheEntry entry = cache.remove(key);
+		if (entry != null) {
+			currentBytes -= entry.weightedSize;
+		}
+		return entry;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see net.jawr.web.cache.JawrCacheManager#clear()
+	 */
+	@Override
+	public synchronized void clear() {
+
+		cache.clear();
+		currentBytes = 0;
+	}
+
+	/**
+	 * Returns the weighted size of an entry
+	 *
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value
+	 * @return the weighted size
+	 */
+	private long getWeightedSize(String key, Object value) {
+
+		long size = ENTRY_OVERHEAD + 2L * key.length() + getValueSize(value);
+		int idx = key.indexOf('.');
+		if (idx != -1) {
+			Double weight = weights.get(key.substring(0, idx).toLowerCase());
+			if (weight != null) {
+				size = (long) (size * weight.doubleValue());
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the estimated size in memory of a value
+	 *
+	 * @param value
+	 *            the value
+	 * @return the estimated size
+	 */
+	private long getValueSize(Object value) {
+
+		long size;
+		if (value instanceof byte[]) {
+			size = ((byte[]) value).length;
+		} else if (value instanceof CharSequence) {
+			size = 2L * ((CharSequence) value).length();
+		} else {
+			size = DEFAULT_VALUE_SIZE;
+		}
+		return size;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see net.jawr.web.cache.BoundedCacheManagerMBean#getMaxBytes()
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see net.jawr.web.cache.BoundedCacheManagerMBean#getCurrentBytes()
+	 */
+	public long getCurrentBytes() {
+		return currentBytes;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see net.jawr.web.cache.BoundedCacheManagerMBean#getEntryCount()
+	 */
+	public int getEntryCount() {
+		return cache.size();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see net.jawr.web.cache.BoundedCacheManagerMBean#getHitCount()
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see net.jawr.web.cache.BoundedCacheManagerMBean#getMissCount()
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see net.jawr.web.cache.BoundedCacheManagerMBean#getHitRatio()
+	 */
+	public double getHitRatio() {
+		long hits = hitCount.get();
+		long requestCount = hits + missCount.get();
+		return requestCount == 0 ? 0 : (double) hits / requestCount;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see net.jawr.web.cache.BoundedCacheManagerMBean#getEvictionCount()
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see net.jawr.web.cache.BoundedCacheManagerMBean#getRejectionCount()
+	 */
+	public long getRejectionCount() {
+		return rejectionCount.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see net.jawr.web.cache.BoundedCacheManagerMBean#resetStatistics()
+	 */
+	public void resetStatistics() {
+		hitCount.set(0);
+		missCount.set(0);
+		evictionCount.set(0);
+		rejectionCount.set(0);
+	}
+
+	/**
+	 * This class defines a cache entry
+	 */
+	private static class CacheEntry {
+
+		/** The key */
+		private final String key;
+
+		/** The value */
+		private final Object value;
+
+		/** The weighted size */
+		private final long weightedSize;
+
+		/** The logical time of the last access */
+		private volatile long lastAccess;
+
+		/**
+		 * Constructor
+		 *
+		 * @param key
+		 *            the key
+		 * @param value
+		 *            the value
+		 * @param weightedSize
+		 *            the weighted size
+		 */
+		public CacheEntry(String key, Object value, long weightedSize) {
+			this.key = key;
+			this.value = value;
+			this.weightedSize = weightedSize;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.cache;
+
+/**
+ * The MBean interface of the bounded cache manager, which exposes the cache
+ * statistics.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public interface BoundedCacheManagerMBean {
+
+	/**
+	 * Returns the maximum weighted size of the cache in bytes
+	 *
+	 * @return the maximum weighted size of the cache
+	 */
+	long getMaxBytes();
+
+	/**
+	 * Returns the current weighted size of the cache in bytes
+	 *
+	 * @return the current weighted size of the cache
+	 */
+	long getCurrentBytes();
+
+	/**
+	 * Returns the number of entries in the cache
+	 *
+	 * @return the number of entries in the cache
+	 */
+	int getEntryCount();
+
+	/**
+	 * Returns the number of cache hits
+	 *
+	 * @return the number of cache hits
+	 */
+	long getHitCount();
+
+	/**
+	 * Returns the number of cache misses
+	 *
+	 * @return the number of cache misses
+	 */
+	long getMissCount();
+
+	/**
+	 * Returns the ratio of cache hits, between 0 and 1
+	 *
+	 * @return the ratio of cache hits
+	 */
+	double getHitRatio();
+
+	/**
+	 * Returns the number of entries evicted to respect the maximum size
+	 *
+	 * @return the number of evicted entries
+	 */
+	long getEvictionCount();
+
+	/**
+	 * Returns the number of entries which have not been cached because they
+	 * are bigger than the maximum size
+	 *
+	 * @return the number of rejected entries
+	 */
+	long getRejectionCount();
+
+	/**
+	 * Resets the statistics
+	 */
+	void resetStatistics();
+
+	/**
+	 * Clears the cache content
+	 */
+	void clear();
+}
@@ -23,6 +23,24 @@ import net.jawr.web.resource.bundle.factory.util.ClassLoaderResourceUtils;
  */
 public class CacheManagerFactory {
 
+	/** The property name of the cache manager */
+	public static final String JAWR_CACHE_MANAGER = "jawr.cache.manager";
+
+	/** The alias of the basic cache manager */
+	public static final String BASIC_CACHE_MANAGER_ALIAS = "basic";
+
+	/** The alias of the bounded cache manager */
+	public static final String BOUNDED_CACHE_MANAGER_ALIAS = "bounded";
+
+	/** The alias of the EhCache cache manager */
+	public static final String EHCACHE_CACHE_MANAGER_ALIAS = "ehcache";
+
+	/**
+	 * The class name of the EhCache cache manager, which is not referenced
+	 * directly because EhCache is an optional dependency
+	 */
+	private static final String EHCACHE_CACHE_MANAGER_CLASS = "net.jawr.web.cache.EhCacheManager";
+
 	/**
 	 * Retrieves the cache manager for a resource type
 	 * @param config the jawr config
@@ -34,7 +52,7 @@ public class CacheManagerFactory {
 		String cacheMgrAttributeName = "JAWR."+resourceType.toUpperCase()+".CACHE.MANAGER";
 		JawrCacheManager cacheManager = (JawrCacheManager) config.getContext().getAttribute(cacheMgrAttributeName);
 		if(cacheManager == null){
-			String cacheManagerClass = config.getProperty("jawr.cache.manager", BasicCacheManager.class.getName());
+			String cacheManagerClass = getCacheManagerClass(config.getProperty(JAWR_CACHE_MANAGER, BasicCacheManager.class.getName()));
 			cacheManager = (JawrCacheManager) ClassLoaderResourceUtils.buildObjectInstance(cacheManagerClass, new Object[]{config});
 			config.getContext().setAttribute(cacheMgrAttributeName, cacheManager);
 		}
@@ -58,5 +76,23 @@ public class CacheManagerFactory {
 		
 		return getCacheManager(config, resourceType);
 	}
-	
+
+	/**
+	 * Returns the cache manager class name from the configured value, which
+	 * is either an alias or a class name
+	 * @param cacheManager the configured cache manager
+	 * @return the cache manager class name
+	 */
+	private static String getCacheManagerClass(String cacheManager){
+		
+		String cacheManagerClass = cacheManager.trim();
+		if(BASIC_CACHE_MANAGER_ALIAS.equalsIgnoreCase(cacheManagerClass)){
+			cacheManagerClass = BasicCacheManager.class.getName();
+		}else if(BOUNDED_CACHE_MANAGER_ALIAS.equalsIgnoreCase(cacheManagerClass)){
+			cacheManagerClass = BoundedCacheManager.class.getName();
+		}else if(EHCACHE_CACHE_MANAGER_ALIAS.equalsIgnoreCase(cacheManagerClass)){
+			cacheManagerClass = EHCACHE_CACHE_MANAGER_CLASS;
+		}
+		return cacheManagerClass;
+	}
 }
@@ -17,17 +17,26 @@ import java.io.Serializable;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.Deflater;
 
 import javax.servlet.ServletContext;
 
 import net.jawr.web.JawrConstant;
 import net.jawr.web.context.ThreadLocalJawrContext;
 import net.jawr.web.exception.BundlingProcessException;
+import net.jawr.web.resource.bundle.encoding.BrotliBundleContentEncoder;
+import net.jawr.web.resource.bundle.encoding.BundleContentEncoder;
+import net.jawr.web.resource.bundle.encoding.ContentEncodingUtils;
+import net.jawr.web.resource.bundle.encoding.ExhaustiveGzipBundleContentEncoder;
+import net.jawr.web.resource.bundle.encoding.ZstdBundleContentEncoder;
 import net.jawr.web.resource.bundle.factory.util.ClassLoaderResourceUtils;
 import net.jawr.web.resource.bundle.factory.util.PathNormalizer;
 import net.jawr.web.resource.bundle.factory.util.RegexUtil;
@@ -146,6 +155,18 @@ public class JawrConfig implements Serializable {
 	 */
 	public static final String JAWR_GZIP_ON = "jawr.gzip.on";
 
+	/**
+	 * The property name for the deflate level of the gzipped bundles
+	 */
+	public static final String JAWR_GZIP_COMPRESSION_LEVEL = "jawr.gzip.compression.level";
+
+	/**
+	 * The property name for the optimizer of the gzipped bundles. The value
+	 * is 'none', 'exhaustive' for the built-in optimizer, or the class name
+	 * of a gzip bundle content encoder.
+	 */
+	public static final String JAWR_GZIP_OPTIMIZER = "jawr.gzip.optimizer";
+
 	/**
 	 * The property name for the debug override key
 	 */
@@ -225,6 +246,12 @@ public class JawrConfig implements Serializable {
 	 */
 	public static final String JAWR_BINARY_RESOURCES = "jawr.binary.resources";
 
+	/**
+	 * The property name for the number of threads used to compute the
+	 * checksums of the binary resources in background at startup
+	 */
+	public static final String JAWR_BINARY_RESOURCES_HASHING_THREAD_COUNT = "jawr.binary.resources.hashing.thread.count";
+
 	/**
 	 * The property name for the Jawr strict mode.
 	 */
@@ -235,6 +262,98 @@ public class JawrConfig implements Serializable {
 	 */
 	public static final String JAWR_SERVLET_CTX_READER_CLASS = "jawr.servlet.context.reader.class";
 
+	/**
+	 * The property name for the maximum number of request URLs for which the
+	 * gzipped content of a live processed bundle is cached. A value lower than
+	 * 1 disables the cache.
+	 */
+	public static final String JAWR_LIVE_PROCESSED_BUNDLE_CACHE_SIZE = "jawr.live.processed.bundle.cache.size";
+
+	/**
+	 * The property name for the number of threads used to process the bundles
+	 * at startup
+	 */
+	public static final String JAWR_BUNDLE_PROCESSING_THREAD_COUNT = "jawr.bundle.processing.thread.count";
+
+	/**
+	 * The property name for the flag indicating if only the bundles whose
+	 * definition or resources have changed are processed when the
+	 * configuration is reloaded
+	 */
+	public static final String JAWR_INCREMENTAL_BUNDLE_PROCESSING = "jawr.incremental.bundle.processing";
+
+	/**
+	 * The property name for the flag indicating if the file system
+	 * notifications are used to detect the changes of the configuration and
+	 * of the bundle resources, when the configuration auto reloading is on
+	 */
+	public static final String JAWR_CONFIG_RELOAD_WATCH = "jawr.config.reload.watch";
+
+	/**
+	 * The property name for the flag indicating if the stored bundles are
+	 * served from memory mapped files
+	 */
+	public static final String JAWR_USE_MEMORY_MAPPED_BUNDLES = "jawr.use.memory.mapped.bundles";
+
+	/**
+	 * The property name for the encoders used to pre-compress the bundles in
+	 * addition to gzip. The value is a comma separated list of built-in
+	 * encoders ('br' or 'zstd') or of encoder class names.
+	 */
+	public static final String JAWR_BUNDLE_CONTENT_ENCODERS = "jawr.bundle.content.encoders";
+
+	/**
+	 * The property name for the quality of the brotli bundle encoder
+	 */
+	public static final String JAWR_BUNDLE_CONTENT_ENCODER_BROTLI_QUALITY = "jawr.bundle.content.encoder.br.quality";
+
+	/**
+	 * The property name for the compression level of the zstd bundle encoder
+	 */
+	public static final String JAWR_BUNDLE_CONTENT_ENCODER_ZSTD_LEVEL = "jawr.bundle.content.encoder.zstd.level";
+
+	/**
+	 * The property name for the maximum number of rendered link fragments
+	 * cached for the bundle tags
+	 */
+	public static final String JAWR_LINK_FRAGMENT_CACHE_MAX_ENTRIES = "jawr.link.fragment.cache.max.entries";
+
+	/**
+	 * The property name for the flag indicating if the processed bundle
+	 * contents are kept in a persistent cache
+	 */
+	public static final String JAWR_PROCESSING_CACHE = "jawr.processing.cache";
+
+	/**
+	 * The property name for the directory of the persistent processing cache
+	 */
+	public static final String JAWR_PROCESSING_CACHE_DIRECTORY = "jawr.processing.cache.directory";
+
+	/**
+	 * The property name for the maximum size in megabytes of the persistent
+	 * processing cache
+	 */
+	public static final String JAWR_PROCESSING_CACHE_MAX_SIZE = "jawr.processing.cache.max.size";
+
+	/**
+	 * The property name for the flag indicating if the bundle variants are
+	 * processed on their first request instead of at startup
+	 */
+	public static final String JAWR_LAZY_VARIANT_PROCESSING = "jawr.lazy.variant.processing";
+
+	/**
+	 * The property name for the comma separated list of the variant keys,
+	 * which are processed at startup when the lazy variant processing is
+	 * enabled
+	 */
+	public static final String JAWR_LAZY_VARIANT_PROCESSING_WARMUP_VARIANTS = "jawr.lazy.variant.processing.warmup.variants";
+
+	/**
+	 * The property name for the maximum number of client side handler scripts
+	 * (jawr_loader.js) cached by the request handler
+	 */
+	public static final String JAWR_CLIENTSIDE_HANDLER_CACHE_SIZE = "jawr.clientside.handler.cache.size";
+
 	/**
 	 * The generator registry
 	 */
@@ -278,6 +397,94 @@ public class JawrConfig implements Serializable {
 	 */
 	private boolean strictMode = false;
 
+	/**
+	 * The maximum number of request URLs for which the gzipped content of a
+	 * live processed bundle is cached. defaults to 100.
+	 */
+	private int liveProcessedBundleCacheSize = 100;
+
+	/**
+	 * The number of threads used to process the bundles at startup. The
+	 * bundles are processed sequentially if the value is 1, which is the
+	 * default. A value lower than 1 means one thread per available processor.
+	 */
+	private int bundleProcessingThreadCount = 1;
+
+	/**
+	 * The flag indicating if only the bundles whose definition or resources
+	 * have changed are processed when the configuration is reloaded. defaults
+	 * to false.
+	 */
+	private boolean incrementalBundleProcessing = false;
+
+	/**
+	 * The flag indicating if the file system notifications are used to
+	 * detect the changes of the configuration and of the bundle resources.
+	 * defaults to false.
+	 */
+	private boolean resourceWatchEnabled = false;
+
+	/**
+	 * The flag indicating if the stored bundles are served from memory mapped
+	 * files. defaults to false.
+	 */
+	private boolean useMemoryMappedBundles = false;
+
+	/**
+	 * The encoders used to pre-compress the bundles in addition to gzip, in
+	 * order of preference.
+	 */
+	private List<BundleContentEncoder> bundleContentEncoders = new ArrayList<BundleContentEncoder>();
+
+	/**
+	 * The content codings of the bundle content encoders
+	 */
+	private Set<String> contentEncodings = new LinkedHashSet<String>();
+
+	/**
+	 * The maximum number of rendered link fragments cached for the bundle
+	 * tags. The cache is disabled if the value is 0. defaults to 1000.
+	 */
+	private int linkFragmentCacheMaxEntries = 1000;
+
+	/**
+	 * The flag indicating if the processed bundle contents are kept in a
+	 * persistent cache. defaults to false.
+	 */
+	private boolean useProcessingCache = false;
+
+	/**
+	 * The directory of the persistent processing cache. defaults to the
+	 * processingCache directory of the Jawr working directory.
+	 */
+	private String processingCacheDirectory;
+
+	/**
+	 * The maximum size in megabytes of the persistent processing cache.
+	 * defaults to 100.
+	 */
+	private int processingCacheMaxSize = 100;
+
+	/**
+	 * The flag indicating if the bundle variants are processed on their first
+	 * request instead of at startup. Only the default variant and the warmup
+	 * variants of the bundles are processed at startup. defaults to false.
+	 */
+	private boolean lazyVariantProcessing = false;
+
+	/**
+	 * The keys of the variants processed at startup when the lazy variant
+	 * processing is enabled. defaults to an empty set.
+	 */
+	private Set<String> lazyVariantProcessingWarmupVariants = new HashSet<String>();
+
+	/**
+	 * The maximum number of client side handler scripts cached by the request
+	 * handler. There is one script per variant, gzip and secure connection
+	 * combination. defaults to 100.
+	 */
+	private int clientSideHandlerCacheSize = 100;
+
 	/**
 	 * Flag to switch on the debug mode. defaults to false.
 	 */
@@ -303,6 +510,18 @@ public class JawrConfig implements Serializable {
 	 */
 	private boolean gzipResourcesModeOn = true;
 
+	/**
+	 * The deflate level of the gzipped bundles. defaults to -1, which is the
+	 * default level of the deflater.
+	 */
+	private int gzipCompressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+	/**
+	 * The encoder which optimizes the gzipped bundles in background. defaults
+	 * to null, which means that the gzipped bundles are not optimized.
+	 */
+	private BundleContentEncoder gzipOptimizer;
+
 	/**
 	 * Flag to switch on the gzipped resources mode for internet explorer 6.
 	 * defaults to true.
@@ -374,6 +593,13 @@ public class JawrConfig implements Serializable {
 	 */
 	private String binaryResourcesDefinition;
 
+	/**
+	 * The number of threads used to compute the checksums of the binary
+	 * resources in background at startup. The checksums are computed during
+	 * the initialization if the value is 0, which is the default.
+	 */
+	private int binaryResourcesHashingThreadCount = 0;
+
 	/**
 	 * Defines the image hash algorithm. By default the value is CRC32. There
 	 * are only 2 algorithm available CRC32 and MD5.
@@ -478,6 +704,69 @@ public class JawrConfig implements Serializable {
 
 		this.strictMode = getBooleanProperty(JAWR_STRICT_MODE, false);
 
+		this.liveProcessedBundleCacheSize = getIntProperty(
+				JAWR_LIVE_PROCESSED_BUNDLE_CACHE_SIZE, 100);
+
+		this.bundleProcessingThreadCount = getIntProperty(
+				JAWR_BUNDLE_PROCESSING_THREAD_COUNT, 1);
+
+		this.incrementalBundleProcessing = getBooleanProperty(
+				JAWR_INCREMENTAL_BUNDLE_PROCESSING, false);
+
+		this.resourceWatchEnabled = getBooleanProperty(
+				JAWR_CONFIG_RELOAD_WATCH, false);
+
+		this.useMemoryMappedBundles = getBooleanProperty(
+				JAWR_USE_MEMORY_MAPPED_BUNDLES, false);
+
+		String contentEncoders = getProperty(JAWR_BUNDLE_CONTENT_ENCODERS);
+		if (StringUtils.isNotEmpty(contentEncoders)) {
+			for (String contentEncoder : contentEncoders.split(",")) {
+				contentEncoder = contentEncoder.trim();
+				BundleContentEncoder encoder = null;
+				if (contentEncoder.length() == 0) {
+					continue;
+				} else if (ContentEncodingUtils.BROTLI
+						.equalsIgnoreCase(contentEncoder)) {
+					encoder = new BrotliBundleContentEncoder();
+				} else if (ContentEncodingUtils.ZSTD
+						.equalsIgnoreCase(contentEncoder)) {
+					encoder = new ZstdBundleContentEncoder();
+				} else {
+					encoder = (BundleContentEncoder) ClassLoaderResourceUtils
+							.buildObjectInstance(contentEncoder);
+				}
+				bundleContentEncoders.add(encoder);
+				contentEncodings.add(encoder.getContentEncoding());
+			}
+		}
+
+		this.linkFragmentCacheMaxEntries = getIntProperty(
+				JAWR_LINK_FRAGMENT_CACHE_MAX_ENTRIES, 1000);
+
+		this.useProcessingCache = getBooleanProperty(JAWR_PROCESSING_CACHE,
+				false);
+
+		this.processingCacheDirectory = getProperty(JAWR_PROCESSING_CACHE_DIRECTORY);
+
+		this.processingCacheMaxSize = getIntProperty(
+				JAWR_PROCESSING_CACHE_MAX_SIZE, 100);
+
+		this.lazyVariantProcessing = getBooleanProperty(
+				JAWR_LAZY_VARIANT_PROCESSING, false);
+
+		this.clientSideHandlerCacheSize = getIntProperty(
+				JAWR_CLIENTSIDE_HANDLER_CACHE_SIZE, 100);
+
+		String warmupVariants = getProperty(JAWR_LAZY_VARIANT_PROCESSING_WARMUP_VARIANTS);
+		if (StringUtils.isNotEmpty(warmupVariants)) {
+			for (String variantKey : warmupVariants.split(",")) {
+				if (StringUtils.isNotEmpty(variantKey.trim())) {
+					this.lazyVariantProcessingWarmupVariants.add(variantKey.trim());
+				}
+			}
+		}
+
 		if (null != props.getProperty("jawr." + resourceType
 				+ ".allowed.extensions")) {
 			String[] strExtensions = props.getProperty(
@@ -515,6 +804,26 @@ public class JawrConfig implements Serializable {
 
 		this.gzipResourcesModeOn = getBooleanProperty(JAWR_GZIP_ON, true);
 
+		this.gzipCompressionLevel = getIntProperty(JAWR_GZIP_COMPRESSION_LEVEL,
+				Deflater.DEFAULT_COMPRESSION);
+		if (gzipCompressionLevel < Deflater.DEFAULT_COMPRESSION
+				|| gzipCompressionLevel > Deflater.BEST_COMPRESSION) {
+			throw new BundlingProcessException("The value of the property '"
+					+ JAWR_GZIP_COMPRESSION_LEVEL
+					+ "' must be between -1 and 9");
+		}
+
+		String gzipOptimizerName = getProperty(JAWR_GZIP_OPTIMIZER, "");
+		if (gzipOptimizerName.length() == 0
+				|| "none".equalsIgnoreCase(gzipOptimizerName)) {
+			gzipOptimizer = null;
+		} else if ("exhaustive".equalsIgnoreCase(gzipOptimizerName)) {
+			gzipOptimizer = new ExhaustiveGzipBundleContentEncoder();
+		} else {
+			gzipOptimizer = (BundleContentEncoder) ClassLoaderResourceUtils
+					.buildObjectInstance(gzipOptimizerName);
+		}
+
 		setCharsetName(getProperty(JAWR_CHARSET_NAME, "UTF-8"));
 
 		this.gzipResourcesForIESixOn = getBooleanProperty(JAWR_GZIP_IE6_ON,
@@ -588,6 +897,9 @@ public class JawrConfig implements Serializable {
 
 		this.binaryResourcesDefinition = getProperty(JAWR_BINARY_RESOURCES);
 
+		this.binaryResourcesHashingThreadCount = getIntProperty(
+				JAWR_BINARY_RESOURCES_HASHING_THREAD_COUNT, 0);
+
 		// TODO : remove the below section in the next major release
 		if (StringUtils
 				.isNotEmpty(getProperty("jawr.css.image.classpath.use.servlet"))) {
@@ -663,6 +975,300 @@ public class JawrConfig implements Serializable {
 		this.strictMode = strictMode;
 	}
 
+	/**
+	 * Returns the maximum number of request URLs for which the gzipped content
+	 * of a live processed bundle is cached. A value lower than 1 means that
+	 * the gzipped content is not cached.
+	 * 
+	 * @return the maximum number of cached request URLs per bundle
+	 */
+	public int getLiveProcessedBundleCacheSize() {
+		return liveProcessedBundleCacheSize;
+	}
+
+	/**
+	 * Sets the maximum number of request URLs for which the gzipped content of
+	 * a live processed bundle is cached
+	 * 
+	 * @param liveProcessedBundleCacheSize
+	 *            the maximum number of cached request URLs per bundle
+	 */
+	public void setLiveProcessedBundleCacheSize(int liveProcessedBundleCacheSize) {
+		this.liveProcessedBundleCacheSize = liveProcessedBundleCacheSize;
+	}
+
+	/**
+	 * Returns the number of threads used to process the bundles at startup. A
+	 * value lower than 1 is replaced by the number of available processors.
+	 * 
+	 * @return the number of threads used to process the bundles
+	 */
+	public int getBundleProcessingThreadCount() {
+		int threadCount = bundleProcessingThreadCount;
+		if (threadCount < 1) {
+			threadCount = Runtime.getRuntime().availableProcessors();
+		}
+		return threadCount;
+	}
+
+	/**
+	 * Sets the number of threads used to process the bundles at startup
+	 * 
+	 * @param bundleProcessingThreadCount
+	 *            the number of threads to set
+	 */
+	public void setBundleProcessingThreadCount(int bundleProcessingThreadCount) {
+		this.bundleProcessingThreadCount = bundleProcessingThreadCount;
+	}
+
+	/**
+	 * Returns the flag indicating if only the bundles whose definition or
+	 * resources have changed are processed when the configuration is reloaded
+	 * 
+	 * @return the flag indicating if the incremental bundle processing is
+	 *         enabled
+	 */
+	public boolean isIncrementalBundleProcessing() {
+		return incrementalBundleProcessing;
+	}
+
+	/**
+	 * Sets the flag indicating if only the bundles whose definition or
+	 * resources have changed are processed when the configuration is reloaded
+	 * 
+	 * @param incrementalBundleProcessing
+	 *            the flag to set
+	 */
+	public void setIncrementalBundleProcessing(boolean incrementalBundleProcessing) {
+		this.incrementalBundleProcessing = incrementalBundleProcessing;
+	}
+
+	/**
+	 * Returns the flag indicating if the file system notifications are used
+	 * to detect the changes of the configuration and of the bundle resources
+	 * 
+	 * @return the flag indicating if the resource watch is enabled
+	 */
+	public boolean isResourceWatchEnabled() {
+		return resourceWatchEnabled;
+	}
+
+	/**
+	 * Sets the flag indicating if the file system notifications are used to
+	 * detect the changes of the configuration and of the bundle resources
+	 * 
+	 * @param resourceWatchEnabled
+	 *            the flag to set
+	 */
+	public void setResourceWatchEnabled(boolean resourceWatchEnabled) {
+		this.resourceWatchEnabled = resourceWatchEnabled;
+	}
+
+	/**
+	 * Returns the flag indicating if the stored bundles are served from memory
+	 * mapped files
+	 * 
+	 * @return the flag indicating if the stored bundles are served from memory
+	 *         mapped files
+	 */
+	public boolean isUseMemoryMappedBundles() {
+		return useMemoryMappedBundles;
+	}
+
+	/**
+	 * Sets the flag indicating if the stored bundles are served from memory
+	 * mapped files
+	 * 
+	 * @param useMemoryMappedBundles
+	 *            the flag to set
+	 */
+	public void setUseMemoryMappedBundles(boolean useMemoryMappedBundles) {
+		this.useMemoryMappedBundles = useMemoryMappedBundles;
+	}
+
+	/**
+	 * Returns the encoders used to pre-compress the bundles in addition to
+	 * gzip, in order of preference
+	 * 
+	 * @return the bundle content encoders
+	 */
+	public List<BundleContentEncoder> getBundleContentEncoders() {
+		return bundleContentEncoders;
+	}
+
+	/**
+	 * Sets the encoders used to pre-compress the bundles in addition to gzip
+	 * 
+	 * @param bundleContentEncoders
+	 *            the bundle content encoders to set
+	 */
+	public void setBundleContentEncoders(
+			List<BundleContentEncoder> bundleContentEncoders) {
+		this.bundleContentEncoders = bundleContentEncoders;
+		Set<String> encodings = new LinkedHashSet<String>();
+		for (BundleContentEncoder encoder : bundleContentEncoders) {
+			encodings.add(encoder.getContentEncoding());
+		}
+		this.contentEncodings = encodings;
+	}
+
+	/**
+	 * Returns the content codings of the encoders used to pre-compress the
+	 * bundles in addition to gzip. Only the URL prefixes of these content
+	 * codings are recognized in the bundle paths.
+	 * 
+	 * @return the content codings of the bundle content encoders
+	 */
+	public Set<String> getContentEncodings() {
+		return contentEncodings;
+	}
+
+	/**
+	 * Returns the maximum number of rendered link fragments cached for the
+	 * bundle tags
+	 * 
+	 * @return the maximum number of cached link fragments
+	 */
+	public int getLinkFragmentCacheMaxEntries() {
+		return linkFragmentCacheMaxEntries;
+	}
+
+	/**
+	 * Sets the maximum number of rendered link fragments cached for the bundle
+	 * tags
+	 * 
+	 * @param linkFragmentCacheMaxEntries
+	 *            the maximum number of cached link fragments
+	 */
+	public void setLinkFragmentCacheMaxEntries(int linkFragmentCacheMaxEntries) {
+		this.linkFragmentCacheMaxEntries = linkFragmentCacheMaxEntries;
+	}
+
+	/**
+	 * Returns the flag indicating if the processed bundle contents are kept in
+	 * a persistent cache
+	 * 
+	 * @return the flag indicating if the persistent processing cache is used
+	 */
+	public boolean isUseProcessingCache() {
+		return useProcessingCache;
+	}
+
+	/**
+	 * Sets the flag indicating if the processed bundle contents are kept in a
+	 * persistent cache
+	 * 
+	 * @param useProcessingCache
+	 *            the flag to set
+	 */
+	public void setUseProcessingCache(boolean useProcessingCache) {
+		this.useProcessingCache = useProcessingCache;
+	}
+
+	/**
+	 * Returns the directory of the persistent processing cache
+	 * 
+	 * @return the directory of the persistent processing cache, or null if
+	 *         the default directory is used
+	 */
+	public String getProcessingCacheDirectory() {
+		return processingCacheDirectory;
+	}
+
+	/**
+	 * Sets the directory of the persistent processing cache
+	 * 
+	 * @param processingCacheDirectory
+	 *            the directory to set
+	 */
+	public void setProcessingCacheDirectory(String processingCacheDirectory) {
+		this.processingCacheDirectory = processingCacheDirectory;
+	}
+
+	/**
+	 * Returns the maximum size in megabytes of the persistent processing cache
+	 * 
+	 * @return the maximum size in megabytes of the persistent processing cache
+	 */
+	public int getProcessingCacheMaxSize() {
+		return processingCacheMaxSize;
+	}
+
+	/**
+	 * Sets the maximum size in megabytes of the persistent processing cache
+	 * 
+	 * @param processingCacheMaxSize
+	 *            the maximum size to set
+	 */
+	public void setProcessingCacheMaxSize(int processingCacheMaxSize) {
+		this.processingCacheMaxSize = processingCacheMaxSize;
+	}
+
+	/**
+	 * Returns the flag indicating if the bundle variants are processed on
+	 * their first request instead of at startup
+	 * 
+	 * @return the flag indicating if the bundle variants are processed on
+	 *         their first request
+	 */
+	public boolean isLazyVariantProcessing() {
+		return lazyVariantProcessing;
+	}
+
+	/**
+	 * Sets the flag indicating if the bundle variants are processed on their
+	 * first request instead of at startup
+	 * 
+	 * @param lazyVariantProcessing
+	 *            the flag to set
+	 */
+	public void setLazyVariantProcessing(boolean lazyVariantProcessing) {
+		this.lazyVariantProcessing = lazyVariantProcessing;
+	}
+
+	/**
+	 * Returns the keys of the variants processed at startup when the lazy
+	 * variant processing is enabled
+	 * 
+	 * @return the keys of the warmup variants
+	 */
+	public Set<String> getLazyVariantProcessingWarmupVariants() {
+		return lazyVariantProcessingWarmupVariants;
+	}
+
+	/**
+	 * Sets the keys of the variants processed at startup when the lazy
+	 * variant processing is enabled
+	 * 
+	 * @param lazyVariantProcessingWarmupVariants
+	 *            the keys of the warmup variants to set
+	 */
+	public void setLazyVariantProcessingWarmupVariants(
+			Set<String> lazyVariantProcessingWarmupVariants) {
+		this.lazyVariantProcessingWarmupVariants = lazyVariantProcessingWarmupVariants;
+	}
+
+	/**
+	 * Returns the maximum number of client side handler scripts cached by the
+	 * request handler
+	 * 
+	 * @return the maximum number of cached client side handler scripts
+	 */
+	public int getClientSideHandlerCacheSize() {
+		return clientSideHandlerCacheSize;
+	}
+
+	/**
+	 * Sets the maximum number of client side handler scripts cached by the
+	 * request handler
+	 * 
+	 * @param clientSideHandlerCacheSize
+	 *            the maximum number of cached client side handler scripts
+	 */
+	public void setClientSideHandlerCacheSize(int clientSideHandlerCacheSize) {
+		this.clientSideHandlerCacheSize = clientSideHandlerCacheSize;
+	}
+
 	/**
 	 * Get the debugOverrideKey
 	 * 
@@ -853,6 +1459,45 @@ public class JawrConfig implements Serializable {
 		this.gzipResourcesModeOn = gzipResourcesModeOn;
 	}
 
+	/**
+	 * Returns the deflate level of the gzipped bundles
+	 * 
+	 * @return the deflate level, from 0 to 9, or -1 for the default level
+	 */
+	public int getGzipCompressionLevel() {
+		return gzipCompressionLevel;
+	}
+
+	/**
+	 * Sets the deflate level of the gzipped bundles
+	 * 
+	 * @param gzipCompressionLevel
+	 *            the deflate level to set
+	 */
+	public void setGzipCompressionLevel(int gzipCompressionLevel) {
+		this.gzipCompressionLevel = gzipCompressionLevel;
+	}
+
+	/**
+	 * Returns the encoder which optimizes the gzipped bundles in background
+	 * 
+	 * @return the gzip optimizer, or null if the gzipped bundles are not
+	 *         optimized
+	 */
+	public BundleContentEncoder getGzipOptimizer() {
+		return gzipOptimizer;
+	}
+
+	/**
+	 * Sets the encoder which optimizes the gzipped bundles in background
+	 * 
+	 * @param gzipOptimizer
+	 *            the gzip optimizer to set
+	 */
+	public void setGzipOptimizer(BundleContentEncoder gzipOptimizer) {
+		this.gzipOptimizer = gzipOptimizer;
+	}
+
 	/**
 	 * Get the flag indicating if the resource must be gzipped for IE6 or less
 	 * 
@@ -1107,6 +1752,29 @@ public class JawrConfig implements Serializable {
 		this.binaryResourcesDefinition = binaryResourcesDefinition;
 	}
 
+	/**
+	 * Returns the number of threads used to compute the checksums of the
+	 * binary resources in background at startup. The value 0 means that the
+	 * checksums are computed during the initialization.
+	 * 
+	 * @return the number of threads used to compute the checksums
+	 */
+	public int getBinaryResourcesHashingThreadCount() {
+		return binaryResourcesHashingThreadCount;
+	}
+
+	/**
+	 * Sets the number of threads used to compute the checksums of the binary
+	 * resources in background at startup
+	 * 
+	 * @param binaryResourcesHashingThreadCount
+	 *            the number of threads to set
+	 */
+	public void setBinaryResourcesHashingThreadCount(
+			int binaryResourcesHashingThreadCount) {
+		this.binaryResourcesHashingThreadCount = binaryResourcesHashingThreadCount;
+	}
+
 	/**
 	 * Invalidate this configuration. Used to signal objects that have a hold on
 	 * this instance but cannot be explicitly notified when the configuration is
@@ -1280,6 +1948,31 @@ public class JawrConfig implements Serializable {
 				Boolean.toString(defaultValue)));
 	}
 
+	/**
+	 * Returns the integer property value
+	 * 
+	 * @param propertyName
+	 *            the property name
+	 * @param defaultValue
+	 *            the default value
+	 * @return the integer property value
+	 */
+	public int getIntProperty(String propertyName, int defaultValue) {
+
+		int value = defaultValue;
+		String property = getProperty(propertyName);
+		if (StringUtils.isNotEmpty(property)) {
+			try {
+				value = Integer.parseInt(property);
+			} catch (NumberFormatException e) {
+				throw new BundlingProcessException("The value of the property '"
+						+ propertyName + "' is not a valid integer : "
+						+ property, e);
+			}
+		}
+		return value;
+	}
+
 	/**
 	 * Returns the value of the property associated to the key passed in
 	 * parameter
@@ -1378,4 +2071,22 @@ public class JawrConfig implements Serializable {
 		return jsEngineName;
 	}
 
+	/**
+	 * Returns the number of Javascript engines per pool
+	 * @return the number of Javascript engines per pool
+	 */
+	public int getJavascriptEnginePoolSize() {
+		return getIntProperty(JawrConstant.JS_ENGINE_POOL_SIZE_PROPERTY,
+				JawrConstant.DEFAULT_JS_ENGINE_POOL_SIZE);
+	}
+
+	/**
+	 * Returns the flag indicating if all the Javascript engines of a pool must
+	 * be created at startup
+	 * @return the flag indicating if the Javascript engine pools must be warmed up
+	 */
+	public boolean isJavascriptEnginePoolWarmUp() {
+		return getBooleanProperty(JawrConstant.JS_ENGINE_POOL_WARMUP_PROPERTY, false);
+	}
+
 }
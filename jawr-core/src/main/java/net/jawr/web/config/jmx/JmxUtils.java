@@ -22,7 +22,11 @@ import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
 import javax.servlet.ServletContext;
 
+import net.jawr.web.cache.BoundedCacheManagerMBean;
+import net.jawr.web.cache.JawrCacheManager;
 import net.jawr.web.exception.JmxConfigException;
+import net.jawr.web.resource.bundle.renderer.BundleLinkFragmentCache;
+import net.jawr.web.resource.handler.bundle.GzipBundleOptimizer;
 import net.jawr.web.util.ServletContextUtils;
 import net.jawr.web.util.StringUtils;
 
@@ -47,6 +51,15 @@ public final class JmxUtils {
 	/** The Jawr Config Manager type */
 	private static final String JAWR_CONFIG_MANAGER_TYPE = "JawrConfigManager";
 
+	/** The Jawr Cache Manager type */
+	private static final String JAWR_CACHE_MANAGER_TYPE = "JawrCacheManager";
+
+	/** The Jawr link fragment cache type */
+	private static final String JAWR_LINK_FRAGMENT_CACHE_TYPE = "JawrLinkFragmentCache";
+
+	/** The Jawr gzip bundle optimizer type */
+	private static final String JAWR_GZIP_BUNDLE_OPTIMIZER_TYPE = "JawrGzipBundleOptimizer";
+
 	
 	/**
 	 * Constructor 
@@ -93,6 +106,89 @@ public final class JmxUtils {
 
 	}
 	
+	/**
+	 * Registers the MBean of a cache manager, which exposes its statistics.
+	 * Nothing is done if the cache manager doesn't implement an MBean
+	 * interface.
+	 * 
+	 * @param cacheManager the cache manager
+	 * @param servletContext the servlet context
+	 * @param resourceType the resource type
+	 * @param mBeanPrefix the MBean prefix
+	 */
+	public static void initCacheManagerMBean(JawrCacheManager cacheManager, ServletContext servletContext, String resourceType, String mBeanPrefix) {
+		
+		if(!(cacheManager instanceof BoundedCacheManagerMBean)){
+			return;
+		}
+		
+		try {
+			MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+			if(mbs != null){
+				ObjectName cacheMgrObjName = getMBeanObjectName(getContextPath(servletContext), JAWR_CACHE_MANAGER_TYPE, mBeanPrefix, resourceType);
+				if(mbs.isRegistered(cacheMgrObjName)){
+					mbs.unregisterMBean(cacheMgrObjName);
+				}
+				mbs.registerMBean(cacheManager, cacheMgrObjName);
+			}
+		} catch (Exception e) {
+			LOGGER.error("Unable to register the cache manager MBean for resource type '"+resourceType+"'", e);
+		}
+	}
+	
+	/**
+	 * Registers the MBean of the link fragment cache, which exposes the hit
+	 * ratios of the renderers. Nothing is done if the cache is disabled.
+	 * 
+	 * @param fragmentCache the link fragment cache
+	 * @param servletContext the servlet context
+	 * @param resourceType the resource type
+	 * @param mBeanPrefix the MBean prefix
+	 */
+	public static void initLinkFragmentCacheMBean(BundleLinkFragmentCache fragmentCache, ServletContext servletContext, String resourceType, String mBeanPrefix) {
+		
+		if(fragmentCache == null){
+			return;
+		}
+		
+		try {
+			MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+			if(mbs != null){
+				ObjectName fragmentCacheObjName = getMBeanObjectName(getContextPath(servletContext), JAWR_LINK_FRAGMENT_CACHE_TYPE, mBeanPrefix, resourceType);
+				if(mbs.isRegistered(fragmentCacheObjName)){
+					mbs.unregisterMBean(fragmentCacheObjName);
+				}
+				mbs.registerMBean(fragmentCache, fragmentCacheObjName);
+			}
+		} catch (Exception e) {
+			LOGGER.error("Unable to register the link fragment cache MBean for resource type '"+resourceType+"'", e);
+		}
+	}
+	
+	/**
+	 * Initialize the MBean of the gzip bundle optimizer
+	 * 
+	 * @param optimizer the gzip bundle optimizer
+	 * @param servletContext the servlet context
+	 * @param resourceType the resource type
+	 * @param mBeanPrefix the MBean prefix
+	 */
+	public static void initGzipBundleOptimizerMBean(GzipBundleOptimizer optimizer, ServletContext servletContext, String resourceType, String mBeanPrefix) {
+		
+		try {
+			MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+			if(mbs != null){
+				ObjectName optimizerObjName = getMBeanObjectName(getContextPath(servletContext), JAWR_GZIP_BUNDLE_OPTIMIZER_TYPE, mBeanPrefix, resourceType);
+				if(mbs.isRegistered(optimizerObjName)){
+					mbs.unregisterMBean(optimizerObjName);
+				}
+				mbs.registerMBean(optimizer, optimizerObjName);
+			}
+		} catch (Exception e) {
+			LOGGER.error("Unable to register the gzip bundle optimizer MBean for resource type '"+resourceType+"'", e);
+		}
+	}
+	
 	/**
 	 * Returns the current MBean server or create a new one if not exist.
 	 * 
@@ -0,0 +1,207 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.resource;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class defines the bidirectional index between the original URL of the
+ * binary resources and their cache busted URL.
+ *
+ * The lookups are lock free in both directions. The updates are synchronized
+ * to keep the two maps consistent with each other.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class BinaryResourcePathIndex {
+
+	/** The map of the cache URLs, indexed by original URL */
+	private final ConcurrentMap<String, String> cacheUrlMap = new ConcurrentHashMap<String, String>();
+
+	/** The map of the original URLs, indexed by cache URL */
+	private final ConcurrentMap<String, String> binaryUrlMap = new ConcurrentHashMap<String, String>();
+
+	/** The unmodifiable view of the cache URL map */
+	private final Map<String, String> cacheUrlMapView = Collections.unmodifiableMap(cacheUrlMap);
+
+	/** The number of lookups by original URL */
+	private final AtomicLong lookupCount = new AtomicLong();
+
+	/** The number of successful lookups by original URL */
+	private final AtomicLong lookupHitCount = new AtomicLong();
+
+	/** The number of lookups by cache URL */
+	private final AtomicLong reverseLookupCount = new AtomicLong();
+
+	/** The number of successful lookups by cache URL */
+	private final AtomicLong reverseLookupHitCount = new AtomicLong();
+
+	/**
+	 * Adds a mapping to the index. If the original URL was already mapped to
+	 * another cache URL, the previous reverse mapping is removed.
+	 *
+	 * @param binaryUrl
+	 *            the original URL
+	 * @param cacheUrl
+	 *            the cache URL
+	 */
+	public synchronized void put(String binaryUrl, String cacheUrl) {
+
+		String oldCacheUrl = cacheUrlMap.put(binaryUrl, cacheUrl);
+		if (oldCacheUrl != null && !oldCacheUrl.equals(cacheUrl)) {
+			binaryUrlMap.remove(oldCacheUrl, binaryUrl);
+		}
+		binaryUrlMap.put(cacheUrl, binaryUrl);
+	}
+
+	/**
+	 * Returns the cache URL of the binary resource
+	 *
+	 * @param binaryUrl
+	 *            the original URL
+	 * @return the cache URL, or null if the resource is not mapped
+	 */
+	public String getCacheUrl(String binaryUrl) {
+
+		lookupCount.incrementAndGet();
+		String cacheUrl = cacheUrlMap.get(binaryUrl);
+		if (cacheUrl != null) {
+			lookupHitCount.incrementAndGet();
+		}
+		return cacheUrl;
+	}
+
+	/**
+	 * Returns the original URL of the binary resource
+	 *
+	 * @param cacheUrl
+	 *            the cache URL
+	 * @return the original URL, or null if the cache URL is unknown
+	 */
+	public String getBinaryUrl(String cacheUrl) {
+
+		reverseLookupCount.incrementAndGet();
+		String binaryUrl = binaryUrlMap.get(cacheUrl);
+		if (binaryUrl != null) {
+			reverseLookupHitCount.incrementAndGet();
+		}
+		return binaryUrl;
+	}
+
+	/**
+	 * Checks if the cache URL is defined in the index
+	 *
+	 * @param cacheUrl
+	 *            the cache URL
+	 * @return true if the cache URL is defined in the index
+	 */
+	public boolean containsCacheUrl(String cacheUrl) {
+		return getBinaryUrl(cacheUrl) != null;
+	}
+
+	/**
+	 * Removes the mapping of the binary resource, if it is still mapped to
+	 * the given cache URL
+	 *
+	 * @param binaryUrl
+	 *            the original URL
+	 * @param cacheUrl
+	 *            the cache URL
+	 * @return true if the mapping has been removed
+	 */
+	public synchronized boolean remove(String binaryUrl, String cacheUrl) {
+
+		boolean removed = cacheUrlMap.remove(binaryUrl, cacheUrl);
+		if (removed) {
+			binaryUrlMap.remove(cacheUrl, binaryUrl);
+		}
+		return removed;
+	}
+
+	/**
+	 * Removes all the mappings
+	 */
+	public synchronized void clear() {
+		cacheUrlMap.clear();
+		binaryUrlMap.clear();
+	}
+
+	/**
+	 * Returns the number of mapped binary resources
+	 *
+	 * @return the number of mapped binary resources
+	 */
+	public int size() {
+		return cacheUrlMap.size();
+	}
+
+	/**
+	 * Returns an unmodifiable view of the cache URLs, indexed by original URL
+	 *
+	 * @return the map of the cache URLs
+	 */
+	public Map<String, String> asMap() {
+		return cacheUrlMapView;
+	}
+
+	/**
+	 * Returns the number of lookups by original URL
+	 *
+	 * @return the number of lookups by original URL
+	 */
+	public long getLookupCount() {
+		return lookupCount.get();
+	}
+
+	/**
+	 * Returns the number of successful lookups by original URL
+	 *
+	 * @return the number of successful lookups by original URL
+	 */
+	public long getLookupHitCount() {
+		return lookupHitCount.get();
+	}
+
+	/**
+	 * Returns the number of lookups by cache URL
+	 *
+	 * @return the number of lookups by cache URL
+	 */
+	public long getReverseLookupCount() {
+		return reverseLookupCount.get();
+	}
+
+	/**
+	 * Returns the number of successful lookups by cache URL
+	 *
+	 * @return the number of successful lookups by cache URL
+	 */
+	public long getReverseLookupHitCount() {
+		return reverseLookupHitCount.get();
+	}
+
+	/**
+	 * Resets the lookup counters
+	 */
+	public void resetStatistics() {
+		lookupCount.set(0);
+		lookupHitCount.set(0);
+		reverseLookupCount.set(0);
+		reverseLookupHitCount.set(0);
+	}
+}
@@ -1,5 +1,5 @@
 /**
- * Copyright 2009-2014 Ibrahim Chaehoi
+ * Copyright 2009-2016 Ibrahim Chaehoi
  * 
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
  * except in compliance with the License. You may obtain a copy of the License at
@@ -15,9 +15,15 @@ package net.jawr.web.resource;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.jawr.web.config.JawrConfig;
+import net.jawr.web.exception.BundlingProcessException;
 import net.jawr.web.exception.ResourceNotFoundException;
 import net.jawr.web.resource.bundle.CheckSumUtils;
 import net.jawr.web.resource.bundle.factory.util.PathNormalizer;
@@ -28,13 +34,19 @@ import net.jawr.web.resource.handler.reader.ResourceReaderHandler;
 /**
  * This class defines the binary web resource handler.
  * 
+ * The cache busted URLs are computed once per binary resource. The concurrent
+ * requests for the same uncached resource wait for a single checksum
+ * computation. A requested hashcode which doesn't match the computed one is
+ * checked again against the current content, as the resource may have changed
+ * since its checksum was computed.
+ * 
  * @author Ibrahim Chaehoi
  *
  */
 public class BinaryResourcesHandler {
 
-	/** The binary web resource map */
-	private final Map<String, String> binaryResourcePathMap = new ConcurrentHashMap<String, String>();
+	/** The binary web resource index */
+	private final BinaryResourcePathIndex binaryResourcePathIndex = new BinaryResourcePathIndex();
 	
 	/** The Jawr config */
 	private final JawrConfig jawrConfig;
@@ -45,6 +57,12 @@ public class BinaryResourcesHandler {
 	/** The resource bundle handler */
 	private final ResourceBundleHandler rsBundleHandler;
 	
+	/** The checksum computations in progress, indexed by original URL */
+	private final ConcurrentMap<String, FutureTask<String>> cacheUrlTasks = new ConcurrentHashMap<String, FutureTask<String>>();
+	
+	/** The generation of the mappings, incremented when they are cleared */
+	private final AtomicLong mappingGeneration = new AtomicLong();
+	
 	/**
 	 * Constructor
 	 * @param config the Jawr config
@@ -82,19 +100,27 @@ public class BinaryResourcesHandler {
 	
 	/**
 	 * Returns the binary map
-	 * @return the binary Map
+	 * @return the unmodifiable binary Map
 	 */
 	public Map<String, String> getBinaryPathMap() {
-		return binaryResourcePathMap;
+		return binaryResourcePathIndex.asMap();
 	}
 
+	/**
+	 * Returns the binary resource path index
+	 * @return the binary resource path index
+	 */
+	public BinaryResourcePathIndex getBinaryPathIndex() {
+		return binaryResourcePathIndex;
+	}
+	
 	/**
 	 * Add a binary mapping
 	 * @param binaryUrl the original url
 	 * @param cacheUrl the cache url
 	 */
 	public void addMapping(String binaryUrl, String cacheUrl){
-		binaryResourcePathMap.put(binaryUrl, cacheUrl);
+		binaryResourcePathIndex.put(binaryUrl, cacheUrl);
 	}
 	
 	/**
@@ -103,15 +129,101 @@ public class BinaryResourcesHandler {
 	 * @return the cache image URL
 	 */
 	public String getCacheUrl(String binaryUrl){
-		return binaryResourcePathMap.get(binaryUrl);
+		return binaryResourcePathIndex.getCacheUrl(binaryUrl);
 	}
 	
 	/**
-	 * Clears the binary map 
+	 * Returns the cache busted URL of a binary resource, computing its
+	 * checksum if it is not already mapped. Only one checksum computation is
+	 * done for a resource, whatever the number of concurrent callers.
+	 * 
+	 * @param binaryUrl the binary url
+	 * @return the cache busted URL
+	 * @throws IOException if an IO exception occurs
+	 * @throws ResourceNotFoundException if the resource is not found
 	 */
-	public void clear(){
+	public String getCacheBustedUrl(final String binaryUrl) throws IOException, ResourceNotFoundException {
+		
+		String cacheUrl = getCacheUrl(binaryUrl);
+		if(cacheUrl != null){
+			return cacheUrl;
+		}
+		
+		final long generation = mappingGeneration.get();
+		FutureTask<String> task = new FutureTask<String>(new Callable<String>() {
+			public String call() throws Exception {
+				// The mapping may have been added by a computation which ended 
+				// between the cache lookup and the task registration
+				String url = binaryResourcePathIndex.asMap().get(binaryUrl);
+				if(url == null){
+					url = CheckSumUtils.getCacheBustedUrl(binaryUrl, rsHandler, jawrConfig);
+					addMapping(binaryUrl, url, generation);
+				}
+				return url;
+			}
+		});
+		FutureTask<String> existingTask = cacheUrlTasks.putIfAbsent(binaryUrl, task);
+		if(existingTask == null){
+			try {
+				task.run();
+			} finally {
+				cacheUrlTasks.remove(binaryUrl, task);
+			}
+		}else{
+			task = existingTask;
+		}
+		
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new BundlingProcessException("Interrupted while computing the checksum of '"+binaryUrl+"'", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException){
+				throw (IOException) cause;
+			}else if(cause instanceof ResourceNotFoundException){
+				throw (ResourceNotFoundException) cause;
+			}else if(cause instanceof RuntimeException){
+				throw (RuntimeException) cause;
+			}else if(cause instanceof Error){
+				throw (Error) cause;
+			}
+			throw new BundlingProcessException(cause);
+		}
+	}
+	
+	/**
+	 * Return the original URL of a cache image URL
+	 * @param cacheUrl the cache url
+	 * @return the original binary URL
+	 */
+	public String getBinaryUrl(String cacheUrl){
+		return binaryResourcePathIndex.getBinaryUrl(cacheUrl);
+	}
+	
+	/**
+	 * Adds a binary mapping computed from the mappings of the given generation. 
+	 * The mapping is ignored if the mappings have been cleared since.
+	 * @param binaryUrl the original url
+	 * @param cacheUrl the cache url
+	 * @param generation the generation of the mappings
+	 */
+	private synchronized void addMapping(String binaryUrl, String cacheUrl, long generation){
+		
+		if(mappingGeneration.get() == generation){
+			addMapping(binaryUrl, cacheUrl);
+		}
+	}
 	
-		binaryResourcePathMap.clear();
+	/**
+	 * Clears the binary map and discards the checksum computations in progress
+	 */
+	public synchronized void clear(){
+	
+		mappingGeneration.incrementAndGet();
+		cacheUrlTasks.clear();
+		binaryResourcePathIndex.clear();
 	}
 
 	/**
@@ -121,7 +233,7 @@ public class BinaryResourcesHandler {
 	 */
 	public BundleHashcodeType getBundleHashcodeType(String requestedPath) {
 		
-		if(binaryResourcePathMap.containsValue(requestedPath)){
+		if(binaryResourcePathIndex.containsCacheUrl(requestedPath)){
 			return BundleHashcodeType.VALID_HASHCODE;
 		}
 		
@@ -130,9 +242,12 @@ public class BinaryResourcesHandler {
 		String binaryRequest = resourceInfo[0];
 		if(resourceInfo[1] != null){ // an hashcode is defined in the path
 			try {
-				String cacheBustedPath = CheckSumUtils.getCacheBustedUrl(binaryRequest,
-						getRsReaderHandler(), jawrConfig);
-				addMapping(binaryRequest, cacheBustedPath);
+				String cacheBustedPath = getCacheBustedUrl(binaryRequest);
+				if(!requestedPath.equals(cacheBustedPath) 
+						&& binaryResourcePathIndex.remove(binaryRequest, cacheBustedPath)){
+					// The resource may have changed since its checksum was computed
+					cacheBustedPath = getCacheBustedUrl(binaryRequest);
+				}
 				
 				if(requestedPath.equals(cacheBustedPath)){
 					bundleHashcodeType = BundleHashcodeType.VALID_HASHCODE;
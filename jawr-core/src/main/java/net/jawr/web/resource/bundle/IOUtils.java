@@ -24,6 +24,8 @@ import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 
+import net.jawr.web.util.ByteBufferChannel;
+
 public class IOUtils {
 
 	/** the buffer size for reading data */
@@ -134,6 +136,13 @@ public class IOUtils {
 		if (inChannel instanceof FileChannel) {
 			((FileChannel) inChannel).transferTo(0, ((FileChannel) inChannel)
 					.size(), outChannel);
+		} else if (inChannel instanceof ByteBufferChannel) {
+			try {
+				((ByteBufferChannel) inChannel).transferTo(outChannel);
+			} finally {
+				IOUtils.close(inChannel);
+				IOUtils.close(outChannel);
+			}
 		} else {
 
 			final ByteBuffer buffer = ByteBuffer.allocateDirect(16 * 1024);
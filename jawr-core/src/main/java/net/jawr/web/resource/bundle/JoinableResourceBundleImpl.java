@@ -124,6 +124,9 @@ public class JoinableResourceBundleImpl implements JoinableResourceBundle {
 	/** The bundle post processor */
 	private ResourceBundlePostProcessor bundlePostProcessor;
 
+	/** The processor of the variants which have not been processed yet */
+	private volatile LazyVariantProcessor lazyVariantProcessor;
+
 	/**
 	 * Protected access constructor, which omits the mappings parameter.
 	 * 
@@ -637,6 +640,16 @@ public class JoinableResourceBundleImpl implements JoinableResourceBundle {
 		initPathList();
 	}
 
+	/**
+	 * Returns the path mappings of the bundle, which may contain directory
+	 * mappings like 'myPath/**'
+	 * 
+	 * @return the path mappings
+	 */
+	public List<String> getMappings() {
+		return pathMappings;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -776,7 +789,7 @@ public class JoinableResourceBundleImpl implements JoinableResourceBundle {
 		if (variants != null && !variants.isEmpty()) {
 			String key = getAvailableVariant(variants);
 			if (StringUtils.isNotEmpty(key)) {
-				return prefixMap.get(key) + "." + key + "/";
+				return getBundleDataHashCode(key) + "." + key + "/";
 			}
 		}
 		return this.urlPrefix + "/";
@@ -793,10 +806,29 @@ public class JoinableResourceBundleImpl implements JoinableResourceBundle {
 		if (StringUtils.isEmpty(variantKey)) {
 			return this.urlPrefix;
 		} else {
-			return (String) prefixMap.get(variantKey);
+			String prefix = prefixMap.get(variantKey);
+			LazyVariantProcessor processor = lazyVariantProcessor;
+			if (prefix == null && processor != null) {
+				processor.processVariant(this, variantKey);
+				prefix = prefixMap.get(variantKey);
+			}
+			return prefix;
 		}
 	}
 
+	/**
+	 * Sets the processor of the variants which have not been processed yet.
+	 * If it is set, the variants without bundle data hashcode are processed
+	 * when their hashcode is requested.
+	 * 
+	 * @param lazyVariantProcessor
+	 *            the processor to set, or null to disable the lazy processing
+	 */
+	public void setLazyVariantProcessor(
+			LazyVariantProcessor lazyVariantProcessor) {
+		this.lazyVariantProcessor = lazyVariantProcessor;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -811,6 +843,9 @@ public class JoinableResourceBundleImpl implements JoinableResourceBundle {
 
 		if (StringUtils.isEmpty(variantKey)) {
 			this.urlPrefix = prefix;
+		} else if (prefix == null) {
+			// The variant will be processed again if it is processed lazily
+			prefixMap.remove(variantKey);
 		} else {
 			prefixMap.put(variantKey, prefix);
 		}
@@ -0,0 +1,35 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.resource.bundle;
+
+/**
+ * This interface defines the processor of the bundle variants, which are not
+ * processed at startup but on their first request.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public interface LazyVariantProcessor {
+
+	/**
+	 * Processes and stores a variant of a bundle, if it has not been processed
+	 * yet, and sets its bundle data hashcode. The concurrent calls for the
+	 * same variant wait for a single processing.
+	 *
+	 * @param bundle
+	 *            the bundle
+	 * @param variantKey
+	 *            the variant key
+	 */
+	void processVariant(JoinableResourceBundle bundle, String variantKey);
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.resource.bundle.encoding;
+
+import java.io.IOException;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+
+import net.jawr.web.config.JawrConfig;
+import net.jawr.web.exception.BundlingProcessException;
+
+/**
+ * This class defines the brotli bundle content encoder. As the bundles are
+ * compressed only once, the highest quality is used by default.
+ *
+ * This encoder requires the brotli4j library.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class BrotliBundleContentEncoder implements BundleContentEncoder {
+
+	/** The default brotli quality */
+	public static final int DEFAULT_QUALITY = 11;
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see net.jawr.web.resource.bundle.encoding.BundleContentEncoder#
+	 * getContentEncoding()
+	 */
+	@Override
+	public String getContentEncoding() {
+		return ContentEncodingUtils.BROTLI;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * net.jawr.web.resource.bundle.encoding.BundleContentEncoder#encode(net.
+	 * jawr.web.config.JawrConfig, byte[])
+	 */
+	@Override
+	public byte[] encode(JawrConfig config, byte[] content) throws IOException {
+
+		try {
+			Brotli4jLoader.ensureAvailability();
+		} catch (UnsatisfiedLinkError e) {
+			throw new BundlingProcessException(
+					"The brotli native library is not available", e);
+		}
+
+		int quality = config.getIntProperty(
+				JawrConfig.JAWR_BUNDLE_CONTENT_ENCODER_BROTLI_QUALITY,
+				DEFAULT_QUALITY);
+		return Encoder.compress(content,
+				new Encoder.Parameters().setQuality(quality));
+	}
+
+}
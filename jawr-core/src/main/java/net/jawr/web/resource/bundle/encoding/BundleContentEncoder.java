@@ -0,0 +1,49 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.resource.bundle.encoding;
+
+import java.io.IOException;
+
+import net.jawr.web.config.JawrConfig;
+
+/**
+ * This interface defines the methods for the encoders which pre-compress the
+ * bundles at bundling time, in addition to the gzip version.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public interface BundleContentEncoder {
+
+	/**
+	 * Returns the HTTP content coding of the encoded content, like "br". This
+	 * value is used in the Content-Encoding header and in the bundle URLs.
+	 *
+	 * @return the content coding
+	 */
+	String getContentEncoding();
+
+	/**
+	 * Encodes the content of a bundle
+	 *
+	 * @param config
+	 *            the Jawr config
+	 * @param content
+	 *            the bundle content, encoded with the resource charset
+	 * @return the encoded content
+	 * @throws IOException
+	 *             if an IO exception occurs
+	 */
+	byte[] encode(JawrConfig config, byte[] content) throws IOException;
+
+}
@@ -0,0 +1,177 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.resource.bundle.encoding;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.zip.GZIPOutputStream;
+
+import net.jawr.web.JawrConstant;
+import net.jawr.web.resource.bundle.renderer.BundleRenderer;
+
+/**
+ * Utility class for the content encodings of the bundles.
+ *
+ * The URL of an encoded bundle starts with a prefix made of its content
+ * coding, like '/gzip_' or '/br_', which is followed by the bundle hashcode
+ * and the bundle path. The gzip prefix is always recognized, while the
+ * prefixes of the other content codings are only recognized if an encoder
+ * is defined for them in the configuration.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public final class ContentEncodingUtils {
+
+	/** The gzip content coding */
+	public static final String GZIP = "gzip";
+
+	/** The brotli content coding */
+	public static final String BROTLI = "br";
+
+	/** The zstd content coding */
+	public static final String ZSTD = "zstd";
+
+	/**
+	 * Constructor
+	 */
+	private ContentEncodingUtils() {
+
+	}
+
+	/**
+	 * Returns the prefix of the URLs of the bundles encoded with the content
+	 * coding given in parameter
+	 *
+	 * @param encoding
+	 *            the content coding
+	 * @return the path prefix
+	 */
+	public static String getPathPrefix(String encoding) {
+		if (GZIP.equals(encoding)) {
+			return BundleRenderer.GZIP_PATH_PREFIX;
+		}
+		return JawrConstant.URL_SEPARATOR + encoding + "_";
+	}
+
+	/**
+	 * Returns the content coding defined in the path, or null if the path
+	 * doesn't contain any content coding prefix. Only the gzip prefix is
+	 * recognized.
+	 *
+	 * @param path
+	 *            the path
+	 * @return the content coding defined in the path
+	 */
+	public static String getContentEncoding(String path) {
+		return getContentEncoding(path, null);
+	}
+
+	/**
+	 * Returns the content coding defined in the path, or null if the path
+	 * doesn't contain any content coding prefix. Apart from gzip, only the
+	 * content codings given in parameter are recognized.
+	 *
+	 * @param path
+	 *            the path
+	 * @param encodings
+	 *            the content codings of the configured encoders, or null
+	 * @return the content coding defined in the path
+	 */
+	public static String getContentEncoding(String path,
+			Collection<String> encodings) {
+
+		String encoding = null;
+		int encodingIdx = getPathPrefixIndex(path, GZIP);
+		if (encodingIdx != -1) {
+			encoding = GZIP;
+		}
+		if (encodings != null) {
+			for (String pathEncoding : encodings) {
+				int idx = getPathPrefixIndex(path, pathEncoding);
+				if (idx != -1 && (encodingIdx == -1 || idx < encodingIdx)) {
+					encoding = pathEncoding;
+					encodingIdx = idx;
+				}
+			}
+		}
+		return encoding;
+	}
+
+	/**
+	 * Returns the position of the prefix of the content coding in the path,
+	 * or -1 if it is not found. The prefix must be followed by the bundle
+	 * hashcode and by the bundle path, so a resource whose name starts like
+	 * the prefix, like '/js/br_widgets.js', is not taken for an encoded
+	 * bundle.
+	 *
+	 * @param path
+	 *            the path
+	 * @param encoding
+	 *            the content coding
+	 * @return the position of the prefix in the path
+	 */
+	public static int getPathPrefixIndex(String path, String encoding) {
+
+		String prefix = getPathPrefix(encoding);
+		int idx = path.indexOf(prefix);
+		if (idx != -1) {
+			int hashcodeEndIdx = path.indexOf(JawrConstant.URL_SEPARATOR, idx
+					+ prefix.length());
+			if (hashcodeEndIdx <= idx + prefix.length()) {
+				idx = -1;
+			}
+		}
+		return idx;
+	}
+
+	/**
+	 * Creates a gzip output stream which compresses the data with the
+	 * deflate level given in parameter
+	 *
+	 * @param out
+	 *            the output stream
+	 * @param level
+	 *            the deflate level, from 0 to 9, or -1 for the default level
+	 * @return the gzip output stream
+	 * @throws IOException
+	 *             if an IO exception occurs
+	 */
+	public static GZIPOutputStream createGzipOutputStream(OutputStream out,
+			final int level) throws IOException {
+		return new GZIPOutputStream(out) {
+			{
+				def.setLevel(level);
+			}
+		};
+	}
+
+	/**
+	 * Removes the content coding prefix and what precedes it from the path
+	 *
+	 * @param path
+	 *            the path
+	 * @param encoding
+	 *            the content coding of the path
+	 * @return the path without the content coding prefix
+	 */
+	public static String removeContentEncodingPrefix(String path,
+			String encoding) {
+
+		String prefix = getPathPrefix(encoding);
+		int idx = getPathPrefixIndex(path, encoding);
+		return JawrConstant.URL_SEPARATOR
+				+ path.substring(idx + prefix.length());
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.resource.bundle.encoding;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import net.jawr.web.config.JawrConfig;
+
+/**
+ * This class defines a gzip encoder which spends more CPU for a smaller
+ * output. The content is compressed at the best deflate level with each
+ * deflate strategy, and the smallest result is kept.
+ *
+ * This encoder is used to optimize the gzipped bundles in background. An
+ * encoder based on an exhaustive deflate implementation like zopfli can be
+ * used instead, by setting its class name in the configuration.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class ExhaustiveGzipBundleContentEncoder implements
+		BundleContentEncoder {
+
+	/** The deflate strategies to try */
+	private static final int[] STRATEGIES = new int[] {
+			Deflater.DEFAULT_STRATEGY, Deflater.FILTERED };
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see net.jawr.web.resource.bundle.encoding.BundleContentEncoder#
+	 * getContentEncoding()
+	 */
+	@Override
+	public String getContentEncoding() {
+		return ContentEncodingUtils.GZIP;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * net.jawr.web.resource.bundle.encoding.BundleContentEncoder#encode(net.
+	 * jawr.web.config.JawrConfig, byte[])
+	 */
+	@Override
+	public byte[] encode(JawrConfig config, byte[] content) throws IOException {
+
+		byte[] result = null;
+		for (int strategy : STRATEGIES) {
+			byte[] data = gzip(content, strategy);
+			if (result == null || data.length < result.length) {
+				result = data;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Compresses the content at the best deflate level with the strategy
+	 * given in parameter
+	 * 
+	 * @param content
+	 *            the content
+	 * @param strategy
+	 *            the deflate strategy
+	 * @return the gzipped content
+	 * @throws IOException
+	 *             if an IO exception occurs
+	 */
+	private byte[] gzip(byte[] content, final int strategy) throws IOException {
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		GZIPOutputStream gzOut = new GZIPOutputStream(bos) {
+			{
+				def.setLevel(Deflater.BEST_COMPRESSION);
+				def.setStrategy(strategy);
+			}
+		};
+		gzOut.write(content);
+		gzOut.close();
+		return bos.toByteArray();
+	}
+}
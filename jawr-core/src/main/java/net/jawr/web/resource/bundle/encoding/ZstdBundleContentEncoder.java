@@ -0,0 +1,66 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.resource.bundle.encoding;
+
+import java.io.IOException;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdException;
+
+import net.jawr.web.config.JawrConfig;
+
+/**
+ * This class defines the zstd bundle content encoder.
+ *
+ * This encoder requires the zstd-jni library.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class ZstdBundleContentEncoder implements BundleContentEncoder {
+
+	/** The default zstd compression level */
+	public static final int DEFAULT_LEVEL = 19;
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see net.jawr.web.resource.bundle.encoding.BundleContentEncoder#
+	 * getContentEncoding()
+	 */
+	@Override
+	public String getContentEncoding() {
+		return ContentEncodingUtils.ZSTD;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * net.jawr.web.resource.bundle.encoding.BundleContentEncoder#encode(net.
+	 * jawr.web.config.JawrConfig, byte[])
+	 */
+	@Override
+	public byte[] encode(JawrConfig config, byte[] content) throws IOException {
+
+		int level = config.getIntProperty(
+				JawrConfig.JAWR_BUNDLE_CONTENT_ENCODER_ZSTD_LEVEL,
+				DEFAULT_LEVEL);
+		try {
+			return Zstd.compress(content, level);
+		} catch (ZstdException e) {
+			throw new IOException("Unable to compress the content with zstd", e);
+		}
+	}
+
+}
@@ -13,6 +13,7 @@
  */
 package net.jawr.web.resource.bundle.factory.util;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -59,6 +60,20 @@ public class MultipleFileConfigSource extends PropsFilePropertiesSource implemen
 		return baseConfig;
 	}
 	
+	/* (non-Javadoc)
+	 * @see net.jawr.web.resource.bundle.factory.util.PropsFilePropertiesSource#getConfigFiles()
+	 */
+	public List<File> getConfigFiles() {
+		List<File> configFiles = super.getConfigFiles();
+		if(null == propertyBaseNames)
+			return configFiles;
+		
+		for(Iterator<String> it = propertyBaseNames.iterator(); it.hasNext();) {
+			addConfigFile(configFiles, it.next());
+		}
+		return configFiles;
+	}
+	
 	/**
 	 * Initializes the propertyBaseNames list by reading the jawr.config.sources servlet context param. 
 	 * Subclasses may override this method to use a different strategy. 
@@ -16,6 +16,7 @@ package net.jawr.web.resource.bundle.factory.util;
 import java.io.File;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
@@ -28,8 +29,8 @@ import org.slf4j.LoggerFactory;
 
 import net.jawr.web.JawrConstant;
 import net.jawr.web.exception.JawrLinkRenderingException;
+import net.jawr.web.resource.bundle.encoding.ContentEncodingUtils;
 import net.jawr.web.resource.bundle.generator.GeneratorRegistry;
-import net.jawr.web.resource.bundle.renderer.BundleRenderer;
 import net.jawr.web.servlet.JawrRequestHandler;
 import net.jawr.web.util.StringUtils;
 
@@ -129,20 +130,39 @@ public final class PathNormalizer {
 	 */
 	public static String[] extractBundleInfoFromPath(String path) {
 
+		return extractBundleInfoFromPath(path, null);
+	}
+
+	/**
+	 * Removes the URL prefix defined in the configuration from a path. If the
+	 * prefix contains a variant information, it adds it to the name. Apart
+	 * from gzip, only the prefixes of the content codings given in parameter
+	 * are recognized.
+	 * 
+	 * @param path the path
+	 * @param encodings the content codings of the configured bundle encoders, or null
+	 * @return the bundle info from the path. Here is the content of the array : [bundlePrefix, path, variantPrefix, hashcode]
+	 * 
+	 */
+	public static String[] extractBundleInfoFromPath(String path, Collection<String> encodings) {
+
 		String[] result = new String[4];
 		String bundlePrefix = null;
 		String resultPath = null;
 
 		try {
-			int idxGzip = path.indexOf(BundleRenderer.GZIP_PATH_PREFIX);
-			if (idxGzip != -1) {
-				if (idxGzip != 0) {
+			String encoding = ContentEncodingUtils.getContentEncoding(path, encodings);
+			if (encoding != null) {
+				String encodingPrefix = ContentEncodingUtils
+						.getPathPrefix(encoding);
+				int idxEncoding = ContentEncodingUtils.getPathPrefixIndex(path, encoding);
+				if (idxEncoding != 0) {
 					bundlePrefix = PathNormalizer.asDirPath(path.substring(1,
-							idxGzip));
+							idxEncoding));
 				}
 
-				resultPath = path.substring(idxGzip
-						+ BundleRenderer.GZIP_PATH_PREFIX.length());
+				resultPath = path.substring(idxEncoding
+						+ encodingPrefix.length());
 			} else {
 				// Remove first slash
 				resultPath = path.substring(1);
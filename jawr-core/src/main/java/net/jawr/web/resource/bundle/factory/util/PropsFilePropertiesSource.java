@@ -17,9 +17,14 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 import net.jawr.web.exception.BundlingProcessException;
+import net.jawr.web.exception.ResourceNotFoundException;
 import net.jawr.web.resource.bundle.IOUtils;
 
 import org.slf4j.Logger;
@@ -125,6 +130,54 @@ public class PropsFilePropertiesSource implements ConfigPropertiesSource {
 		}
 	}
 
+	/**
+	 * Returns the configuration files which are located on the file system.
+	 * The configuration files packaged in an archive are not returned.
+	 * 
+	 * @return the configuration files
+	 */
+	public List<File> getConfigFiles() {
+		List<File> configFiles = new ArrayList<File>();
+		addConfigFile(configFiles, this.configLocation);
+		return configFiles;
+	}
+
+	/**
+	 * Adds the configuration file defined at the specified path, if it is
+	 * located on the file system.
+	 * 
+	 * @param configFiles
+	 *            the list of configuration files to update
+	 * @param path
+	 *            the configuration path
+	 */
+	protected void addConfigFile(List<File> configFiles, String path) {
+
+		if (path == null) {
+			return;
+		}
+
+		File file = null;
+		if (path.startsWith(FILE_PREFIX)) {
+			file = new File(path.substring(FILE_PREFIX.length()));
+		} else {
+			try {
+				URL url = ClassLoaderResourceUtils.getResourceURL(path, this);
+				if ("file".equals(url.getProtocol())) {
+					file = new File(url.toURI());
+				}
+			} catch (ResourceNotFoundException e) {
+				// The file is not found, so it can't be watched
+			} catch (URISyntaxException e) {
+				// The file can't be located on the file system
+			}
+		}
+
+		if (file != null && file.isFile()) {
+			configFiles.add(file.getAbsoluteFile());
+		}
+	}
+
 	/**
 	 * @param configLocation
 	 *            the configLocation to set
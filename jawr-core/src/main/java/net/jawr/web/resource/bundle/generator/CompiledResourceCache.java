@@ -0,0 +1,424 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.resource.bundle.generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.ServletContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.jawr.web.JawrConstant;
+import net.jawr.web.config.JawrConfig;
+import net.jawr.web.context.ThreadLocalJawrContext;
+import net.jawr.web.exception.ResourceNotFoundException;
+import net.jawr.web.resource.bundle.CheckSumUtils;
+import net.jawr.web.resource.bundle.IOUtils;
+import net.jawr.web.resource.handler.reader.ResourceReaderHandler;
+import net.jawr.web.util.LRUCache;
+import net.jawr.web.util.StringUtils;
+
+/**
+ * This class defines the cache of the content compiled by a generator, like
+ * the LESS or the SASS generator, in debug mode.
+ *
+ * An entry is kept for each root resource. It holds the compiled content and
+ * the stamps of all the resources of its import graph, including the imports
+ * which were looked up but not found. The entry is valid as long as none of
+ * these stamps has changed. The stamp of a resource is its modification date
+ * and length, if it is a file of the web application or of the base context
+ * directory, or the checksum of its content otherwise.
+ *
+ * When the incremental bundle processing or the resource watcher is enabled,
+ * the stamps of the import graph of the last compilation of each root resource
+ * are also recorded, so the bundle fingerprints can check if a generated
+ * resource has changed without compiling it again, and the resource watcher
+ * can watch the imported resources.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class CompiledResourceCache {
+
+	/** The logger */
+	private static final Logger LOGGER = LoggerFactory
+			.getLogger(CompiledResourceCache.class);
+
+	/** The default maximum number of entries */
+	public static final int DEFAULT_MAX_ENTRIES = 100;
+
+	/** The stamp of a resource which doesn't exist */
+	private static final String ABSENT_RESOURCE_STAMP = "absent";
+
+	/** The compiled content, indexed by root resource path */
+	private final LRUCache<String, CompiledResource> cache;
+
+	/** The stamps of the last recorded import graphs, indexed by root resource path */
+	private final Map<String, Map<String, String>> importGraphStamps = new ConcurrentHashMap<String, Map<String, String>>();
+
+	/** The reader classes to exclude when reading the resources */
+	private final List<Class<?>> excludedReaders;
+
+	/**
+	 * Constructor
+	 *
+	 * @param maxEntries
+	 *            the maximum number of entries
+	 * @param generatorClass
+	 *            the class of the generator, which is excluded when reading
+	 *            the resources
+	 */
+	public CompiledResourceCache(int maxEntries, Class<?> generatorClass) {
+		this.cache = new LRUCache<String, CompiledResource>(maxEntries);
+		List<Class<?>> excluded = new ArrayList<Class<?>>();
+		excluded.add(generatorClass);
+		this.excludedReaders = Collections.unmodifiableList(excluded);
+	}
+
+	/**
+	 * Checks if the cache must be used for the current request. The compiled
+	 * content is only cached in debug mode, because the resources are
+	 * compiled only once per bundle otherwise.
+	 *
+	 * @param config
+	 *            the Jawr config
+	 * @return true if the cache must be used
+	 */
+	public boolean isEnabled(JawrConfig config) {
+		return config.isDebugModeOn()
+				|| ThreadLocalJawrContext.isDebugOverriden();
+	}
+
+	/**
+	 * Checks if the import graph of the compiled resources must be built,
+	 * which is the case if the cache is enabled or if the import graph must be
+	 * recorded.
+	 *
+	 * @param config
+	 *            the Jawr config
+	 * @return true if the import graph must be built
+	 */
+	public boolean isImportGraphEnabled(JawrConfig config) {
+		return isEnabled(config) || isImportGraphRecorded(config);
+	}
+
+	/**
+	 * Checks if the import graph of the compiled resources must be recorded,
+	 * which is the case for the incremental bundle processing and for the
+	 * resource watcher, which watches the imported resources.
+	 *
+	 * @param config
+	 *            the Jawr config
+	 * @return true if the import graph must be recorded
+	 */
+	private boolean isImportGraphRecorded(JawrConfig config) {
+		return config.isIncrementalBundleProcessing()
+				|| config.isResourceWatchEnabled();
+	}
+
+	/**
+	 * Returns the compiled content of a root resource, or null if it is not
+	 * in the cache or if a resource of its import graph has changed.
+	 *
+	 * @param path
+	 *            the path of the root resource
+	 * @param context
+	 *            the generator context
+	 * @return the compiled content, or null
+	 */
+	public String get(String path, GeneratorContext context) {
+
+		CompiledResource compiledResource = cache.get(path);
+		if (compiledResource == null) {
+			return null;
+		}
+
+		if (!isUpToDate(compiledResource.stamps, context)) {
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("A resource imported by '" + path
+						+ "' has changed, it will be compiled again");
+			}
+			cache.remove(path);
+			return null;
+		}
+		return compiledResource.content;
+	}
+
+	/**
+	 * Creates the import graph of a root resource, which records the stamps
+	 * of the resources as they are read by the compiler
+	 *
+	 * @param path
+	 *            the path of the root resource
+	 * @param context
+	 *            the generator context
+	 * @return the import graph
+	 */
+	public ImportGraph createImportGraph(String path, GeneratorContext context) {
+		ImportGraph importGraph = new ImportGraph(context);
+		importGraph.addResource(path);
+		return importGraph;
+	}
+
+	/**
+	 * Stores the compiled content of a root resource. Nothing is stored if
+	 * the stamp of a resource of the import graph couldn't be defined.
+	 *
+	 * @param path
+	 *            the path of the root resource
+	 * @param content
+	 *            the compiled content
+	 * @param importGraph
+	 *            the import graph of the root resource
+	 */
+	public void put(String path, String content, ImportGraph importGraph) {
+		if (importGraph.valid) {
+			cache.put(path, new CompiledResource(content, importGraph.stamps));
+		}
+	}
+
+	/**
+	 * Records the stamps of the import graph of a root resource, if the
+	 * incremental bundle processing or the resource watcher is enabled. The
+	 * previous record is removed if the stamp of a resource couldn't be defined.
+	 *
+	 * @param path
+	 *            the path of the root resource
+	 * @param importGraph
+	 *            the import graph of the root resource
+	 */
+	public void recordImportGraph(String path, ImportGraph importGraph) {
+
+		if (isImportGraphRecorded(importGraph.context.getConfig())
+				&& importGraph.valid) {
+			importGraphStamps.put(path, Collections
+					.unmodifiableMap(new HashMap<String, String>(importGraph.stamps)));
+		} else {
+			importGraphStamps.remove(path);
+		}
+	}
+
+	/**
+	 * Returns the stamps of the last recorded import graph of a root resource
+	 *
+	 * @param path
+	 *            the path of the root resource
+	 * @return the stamps of the resources, indexed by path, or null if no
+	 *         import graph has been recorded
+	 */
+	public Map<String, String> getImportGraphStamps(String path) {
+		return importGraphStamps.get(path);
+	}
+
+	/**
+	 * Checks if none of the resources of an import graph has changed
+	 *
+	 * @param stamps
+	 *            the stamps of the resources, indexed by path
+	 * @param context
+	 *            the generator context
+	 * @return true if all the stamps are unchanged
+	 */
+	public boolean isUpToDate(Map<String, String> stamps, GeneratorContext context) {
+
+		for (Iterator<Map.Entry<String, String>> it = stamps.entrySet()
+				.iterator(); it.hasNext();) {
+			Map.Entry<String, String> entry = it.next();
+			if (!entry.getValue().equals(getStamp(entry.getKey(), context))) {
+				if (LOGGER.isDebugEnabled()) {
+					LOGGER.debug("The resource '" + entry.getKey()
+							+ "' has changed");
+				}
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Clears the cache
+	 */
+	public void clear() {
+		cache.clear();
+		importGraphStamps.clear();
+	}
+
+	/**
+	 * Returns the stamp of a resource
+	 *
+	 * @param path
+	 *            the resource path
+	 * @param context
+	 *            the generator context
+	 * @return the stamp of the resource, or null if it can't be defined
+	 */
+	protected String getStamp(String path, GeneratorContext context) {
+
+		File file = getFile(path, context.getConfig());
+		if (file != null) {
+			return file.lastModified() + "-" + file.length();
+		}
+
+		ResourceReaderHandler rsHandler = context.getResourceReaderHandler();
+		Reader rd = null;
+		try {
+			rd = rsHandler.getResource(path, false, excludedReaders);
+			if (rd == null) {
+				return ABSENT_RESOURCE_STAMP;
+			}
+			return CheckSumUtils.getMD5Checksum(IOUtils.toString(rd), context
+					.getConfig().getResourceCharset());
+		} catch (ResourceNotFoundException e) {
+			return ABSENT_RESOURCE_STAMP;
+		} catch (IOException e) {
+			return null;
+		} finally {
+			IOUtils.close(rd);
+		}
+	}
+
+	/**
+	 * Returns the file of a resource, following the order of the resource
+	 * readers, or null if the resource is not a file
+	 *
+	 * @param path
+	 *            the resource path
+	 * @param config
+	 *            the Jawr config
+	 * @return the file of the resource
+	 */
+	private File getFile(String path, JawrConfig config) {
+
+		if (config.getGeneratorRegistry() != null
+				&& config.getGeneratorRegistry().isPathGenerated(path)) {
+			return null;
+		}
+
+		File baseContextFile = null;
+		String baseContextDir = config
+				.getProperty(JawrConstant.JAWR_BASECONTEXT_DIRECTORY);
+		if (StringUtils.isNotEmpty(baseContextDir)) {
+			if (baseContextDir.startsWith(JawrConstant.FILE_URI_PREFIX)) {
+				baseContextDir = baseContextDir
+						.substring(JawrConstant.FILE_URI_PREFIX.length());
+			}
+			baseContextFile = new File(baseContextDir, path);
+			if (Boolean.valueOf(config
+					.getProperty(JawrConstant.JAWR_BASECONTEXT_DIRECTORY_HIGH_PRIORITY))
+					&& baseContextFile.isFile()) {
+				return baseContextFile;
+			}
+		}
+
+		ServletContext servletContext = config.getContext();
+		if (servletContext != null) {
+			String realPath = servletContext.getRealPath(path);
+			if (realPath != null) {
+				File file = new File(realPath);
+				if (file.isFile()) {
+					return file;
+				}
+			}
+		}
+
+		if (baseContextFile != null && baseContextFile.isFile()) {
+			return baseContextFile;
+		}
+		return null;
+	}
+
+	/**
+	 * The import graph of a root resource. The stamp of each resource is
+	 * computed when it is added, which should be done before the compiler
+	 * reads it, so a change during the compilation is detected later.
+	 *
+	 * @author Ibrahim Chaehoi
+	 */
+	public class ImportGraph {
+
+		/** The generator context */
+		private final GeneratorContext context;
+
+		/** The stamps of the resources, indexed by path */
+		private final Map<String, String> stamps = new HashMap<String, String>();
+
+		/** The flag indicating if all the stamps have been defined */
+		private boolean valid = true;
+
+		/**
+		 * Constructor
+		 *
+		 * @param context
+		 *            the generator context
+		 */
+		private ImportGraph(GeneratorContext context) {
+			this.context = context;
+		}
+
+		/**
+		 * Adds a resource to the import graph. The resource may not exist, in
+		 * which case its creation will invalidate the compiled content.
+		 *
+		 * @param path
+		 *            the resource path
+		 */
+		public void addResource(String path) {
+			if (!stamps.containsKey(path)) {
+				String stamp = getStamp(path, context);
+				if (stamp == null) {
+					valid = false;
+				} else {
+					stamps.put(path, stamp);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The compiled content of a root resource, with the stamps of its import
+	 * graph
+	 *
+	 * @author Ibrahim Chaehoi
+	 */
+	private static class CompiledResource {
+
+		/** The compiled content */
+		private final String content;
+
+		/** The stamps of the resources of the import graph, indexed by path */
+		private final Map<String, String> stamps;
+
+		/**
+		 * Constructor
+		 *
+		 * @param content
+		 *            the compiled content
+		 * @param stamps
+		 *            the stamps of the resources of the import graph
+		 */
+		public CompiledResource(String content, Map<String, String> stamps) {
+			this.content = content;
+			this.stamps = stamps;
+		}
+	}
+}
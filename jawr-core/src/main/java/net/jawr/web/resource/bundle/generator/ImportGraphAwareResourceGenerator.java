@@ -0,0 +1,47 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.resource.bundle.generator;
+
+import java.util.Map;
+
+/**
+ * This interface is implemented by the resource generators which record the
+ * import graph of the generated resources. It allows to check if a generated
+ * resource has changed without generating it again.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public interface ImportGraphAwareResourceGenerator extends ResourceGenerator {
+
+	/**
+	 * Returns the stamps of the resources read during the last generation of
+	 * the resource
+	 *
+	 * @param path
+	 *            the path of the generated resource
+	 * @return the stamps of the resources, indexed by path, or null if unknown
+	 */
+	public Map<String, String> getImportGraphStamps(String path);
+
+	/**
+	 * Checks if none of the resources of an import graph has changed
+	 *
+	 * @param stamps
+	 *            the stamps of the resources, indexed by path
+	 * @param context
+	 *            the generator context
+	 * @return true if none of the resources has changed
+	 */
+	public boolean isImportGraphUpToDate(Map<String, String> stamps, GeneratorContext context);
+}
@@ -1,5 +1,5 @@
 /**
- * Copyright 2015 Ibrahim Chaehoi
+ * Copyright 2015-2016 Ibrahim Chaehoi
  * 
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
  * except in compliance with the License. You may obtain a copy of the License at
@@ -25,6 +25,7 @@ import net.jawr.web.exception.BundlingProcessException;
 import net.jawr.web.exception.ResourceNotFoundException;
 import net.jawr.web.resource.bundle.IOUtils;
 import net.jawr.web.resource.bundle.factory.util.PathNormalizer;
+import net.jawr.web.resource.bundle.generator.CompiledResourceCache.ImportGraph;
 import net.jawr.web.resource.handler.reader.ResourceReaderHandler;
 
 /**
@@ -37,6 +38,9 @@ public class JawrLessSource extends StringSource {
 	/** The resource reader handler */
 	private ResourceReaderHandler rsReaderHandler;
 	
+	/** The import graph of the compiled resource, which may be null */
+	private ImportGraph importGraph;
+	
 	/**
 	 * Constructor
 	 * 
@@ -46,8 +50,27 @@ public class JawrLessSource extends StringSource {
 	 *            the resource name
 	 */
 	public JawrLessSource(String content, String name, ResourceReaderHandler rsReaderHandler) {
+		this(content, name, rsReaderHandler, null);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param content
+	 *            the content
+	 * @param name
+	 *            the resource name
+	 * @param rsReaderHandler
+	 *            the resource reader handler
+	 * @param importGraph
+	 *            the import graph which records the imported resources, or
+	 *            null
+	 */
+	public JawrLessSource(String content, String name, ResourceReaderHandler rsReaderHandler,
+			ImportGraph importGraph) {
 		super(content, name);
 		this.rsReaderHandler = rsReaderHandler;
+		this.importGraph = importGraph;
 	}
 
 	/*
@@ -64,6 +87,9 @@ public class JawrLessSource extends StringSource {
 		if (!resource.startsWith("/")) { // relative URL
 			resource = PathNormalizer.concatWebPath(getName(), resource);
 		}
+		if (importGraph != null) {
+			importGraph.addResource(resource);
+		}
 		try {
 			Reader rd = getResourceReader(resource);
 			result = IOUtils.toString(rd);
@@ -73,7 +99,7 @@ public class JawrLessSource extends StringSource {
 			throw new BundlingProcessException(e);
 		}
 		
-		return new JawrLessSource(result, resource, rsReaderHandler);
+		return new JawrLessSource(result, resource, rsReaderHandler, importGraph);
 	}
 
 	/**
@@ -1,5 +1,5 @@
 /**
- * Copyright 2012-2015 Ibrahim Chaehoi
+ * Copyright 2012-2016 Ibrahim Chaehoi
  * 
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
  * except in compliance with the License. You may obtain a copy of the License at
@@ -18,6 +18,7 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,8 +35,11 @@ import net.jawr.web.exception.BundlingProcessException;
 import net.jawr.web.exception.ResourceNotFoundException;
 import net.jawr.web.resource.bundle.IOUtils;
 import net.jawr.web.resource.bundle.generator.AbstractCSSGenerator;
+import net.jawr.web.resource.bundle.generator.CompiledResourceCache;
+import net.jawr.web.resource.bundle.generator.CompiledResourceCache.ImportGraph;
 import net.jawr.web.resource.bundle.generator.GeneratorContext;
 import net.jawr.web.resource.bundle.generator.GeneratorRegistry;
+import net.jawr.web.resource.bundle.generator.ImportGraphAwareResourceGenerator;
 import net.jawr.web.resource.bundle.generator.PostInitializationAwareResourceGenerator;
 import net.jawr.web.resource.bundle.generator.ResourceReaderHandlerAwareResourceGenerator;
 import net.jawr.web.resource.bundle.generator.resolver.ResourceGeneratorResolver;
@@ -49,7 +53,8 @@ import net.jawr.web.util.StopWatch;
  * @author Ibrahim Chaehoi
  */
 public class LessCssGenerator extends AbstractCSSGenerator implements ILessCssResourceGenerator,
-		ResourceReaderHandlerAwareResourceGenerator, PostInitializationAwareResourceGenerator {
+		ResourceReaderHandlerAwareResourceGenerator, PostInitializationAwareResourceGenerator,
+		ImportGraphAwareResourceGenerator {
 
 	/** The Logger */
 	private static Logger PERF_LOGGER = LoggerFactory.getLogger(JawrConstant.PERF_PROCESSING_LOGGER);
@@ -66,6 +71,13 @@ public class LessCssGenerator extends AbstractCSSGenerator implements ILessCssRe
 	/** The Less compiler config */
 	private Configuration lessConfig;
 
+	/**
+	 * The cache of the compiled resources, used in debug mode, which also
+	 * records the import graphs for the incremental bundle processing
+	 */
+	private final CompiledResourceCache compilationCache = new CompiledResourceCache(
+			CompiledResourceCache.DEFAULT_MAX_ENTRIES, ILessCssResourceGenerator.class);
+
 	/**
 	 * Constructor
 	 */
@@ -85,6 +97,29 @@ public class LessCssGenerator extends AbstractCSSGenerator implements ILessCssRe
 		return resolver;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see net.jawr.web.resource.bundle.generator.
+	 * ImportGraphAwareResourceGenerator#getImportGraphStamps(java.lang.String)
+	 */
+	@Override
+	public Map<String, String> getImportGraphStamps(String path) {
+		return compilationCache.getImportGraphStamps(path);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see net.jawr.web.resource.bundle.generator.
+	 * ImportGraphAwareResourceGenerator#isImportGraphUpToDate(java.util.Map,
+	 * net.jawr.web.resource.bundle.generator.GeneratorContext)
+	 */
+	@Override
+	public boolean isImportGraphUpToDate(Map<String, String> stamps, GeneratorContext context) {
+		return compilationCache.isUpToDate(stamps, context);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -126,6 +161,19 @@ public class LessCssGenerator extends AbstractCSSGenerator implements ILessCssRe
 		String content = null;
 		Reader rd = null;
 
+		// In debug mode, reuse the compiled content if none of its imports
+		// has changed
+		ImportGraph importGraph = null;
+		if (compilationCache.isEnabled(context.getConfig())) {
+			String result = compilationCache.get(path, context);
+			if (result != null) {
+				return new StringReader(result);
+			}
+		}
+		if (compilationCache.isImportGraphEnabled(context.getConfig())) {
+			importGraph = compilationCache.createImportGraph(path, context);
+		}
+
 		try {
 			List<Class<?>> excluded = new ArrayList<Class<?>>();
 			excluded.add(ILessCssResourceGenerator.class);
@@ -135,7 +183,13 @@ public class LessCssGenerator extends AbstractCSSGenerator implements ILessCssRe
 				throw new ResourceNotFoundException(path);
 			}
 			content = IOUtils.toString(rd);
-			String result = compile(content, path);
+			String result = compile(content, path, importGraph);
+			if (importGraph != null) {
+				compilationCache.recordImportGraph(path, importGraph);
+				if (compilationCache.isEnabled(context.getConfig())) {
+					compilationCache.put(path, result, importGraph);
+				}
+			}
 			rd = new StringReader(result);
 
 		} catch (ResourceNotFoundException e) {
@@ -157,9 +211,25 @@ public class LessCssGenerator extends AbstractCSSGenerator implements ILessCssRe
 	 * @return the compiled CSS content
 	 */
 	public String compile(String content, String path) {
+		return compile(content, path, null);
+	}
+
+	/**
+	 * Compile the LESS source to a CSS source, recording the imported
+	 * resources in the import graph
+	 * 
+	 * @param content
+	 *            the resource content to compile
+	 * @param path
+	 *            the compiled resource path
+	 * @param importGraph
+	 *            the import graph of the compiled resource, or null
+	 * @return the compiled CSS content
+	 */
+	public String compile(String content, String path, ImportGraph importGraph) {
 		StopWatch stopWatch = new StopWatch("Compiling resource '" + path + "' with Less generator");
 		stopWatch.start();
-		LessSource source = new JawrLessSource(content, path, rsHandler);
+		LessSource source = new JawrLessSource(content, path, rsHandler, importGraph);
 		try {
 			CompilationResult result = compiler.compile(source, lessConfig);
 			return result.getCss();
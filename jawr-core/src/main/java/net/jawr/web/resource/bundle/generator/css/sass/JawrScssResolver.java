@@ -1,5 +1,5 @@
 /**
- * Copyright 2015 Ibrahim Chaehoi
+ * Copyright 2015-2016 Ibrahim Chaehoi
  * 
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
  * except in compliance with the License. You may obtain a copy of the License at
@@ -24,6 +24,7 @@ import com.vaadin.sass.internal.resolver.AbstractResolver;
 
 import net.jawr.web.exception.ResourceNotFoundException;
 import net.jawr.web.resource.bundle.factory.util.PathNormalizer;
+import net.jawr.web.resource.bundle.generator.CompiledResourceCache.ImportGraph;
 import net.jawr.web.resource.handler.reader.ResourceReaderHandler;
 
 /**
@@ -39,6 +40,9 @@ public class JawrScssResolver extends AbstractResolver {
 	/** The resource reader handler */
 	private ResourceReaderHandler rsHandler;
 
+	/** The import graph of the compiled resource, which may be null */
+	private transient ImportGraph importGraph;
+
 	/**
 	 * Constructor
 	 * 
@@ -46,7 +50,21 @@ public class JawrScssResolver extends AbstractResolver {
 	 *            the resource reader handler
 	 */
 	public JawrScssResolver(ResourceReaderHandler rsHandler) {
+		this(rsHandler, null);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param rsHandler
+	 *            the resource reader handler
+	 * @param importGraph
+	 *            the import graph which records the resolved resources, or
+	 *            null
+	 */
+	public JawrScssResolver(ResourceReaderHandler rsHandler, ImportGraph importGraph) {
 		this.rsHandler = rsHandler;
+		this.importGraph = importGraph;
 	}
 
 	/*
@@ -96,6 +114,12 @@ public class JawrScssResolver extends AbstractResolver {
 			fileName += ".scss";
 		}
 
+		// The resources which are not found are also recorded, as their
+		// creation would change the resolution
+		if (importGraph != null) {
+			importGraph.addResource(fileName);
+		}
+
 		List<Class<?>> excluded = new ArrayList<Class<?>>();
 		excluded.add(ISassResourceGenerator.class);
 		Reader rd = null;
@@ -1,5 +1,5 @@
 /**
- * Copyright 2015 Ibrahim Chaehoi
+ * Copyright 2015-2016 Ibrahim Chaehoi
  * 
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
  * except in compliance with the License. You may obtain a copy of the License at
@@ -19,6 +19,7 @@ import java.io.StringReader;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,9 +34,12 @@ import net.jawr.web.exception.BundlingProcessException;
 import net.jawr.web.exception.ResourceNotFoundException;
 import net.jawr.web.resource.bundle.IOUtils;
 import net.jawr.web.resource.bundle.generator.AbstractCSSGenerator;
+import net.jawr.web.resource.bundle.generator.CompiledResourceCache;
+import net.jawr.web.resource.bundle.generator.CompiledResourceCache.ImportGraph;
 import net.jawr.web.resource.bundle.generator.ConfigurationAwareResourceGenerator;
 import net.jawr.web.resource.bundle.generator.GeneratorContext;
 import net.jawr.web.resource.bundle.generator.GeneratorRegistry;
+import net.jawr.web.resource.bundle.generator.ImportGraphAwareResourceGenerator;
 import net.jawr.web.resource.bundle.generator.ResourceReaderHandlerAwareResourceGenerator;
 import net.jawr.web.resource.bundle.generator.resolver.ResourceGeneratorResolver;
 import net.jawr.web.resource.bundle.generator.resolver.ResourceGeneratorResolverFactory;
@@ -48,7 +52,8 @@ import net.jawr.web.util.StopWatch;
  * @author Ibrahim Chaehoi
  */
 public class SassGenerator extends AbstractCSSGenerator implements ISassResourceGenerator,
-		ResourceReaderHandlerAwareResourceGenerator, ConfigurationAwareResourceGenerator {
+		ResourceReaderHandlerAwareResourceGenerator, ConfigurationAwareResourceGenerator,
+		ImportGraphAwareResourceGenerator {
 
 	/** The Logger */
 	private static Logger PERF_LOGGER = LoggerFactory.getLogger(JawrConstant.PERF_PROCESSING_LOGGER);
@@ -63,8 +68,18 @@ public class SassGenerator extends AbstractCSSGenerator implements ISassResource
 	private ResourceGeneratorResolver resolver;
 
 	/** The ResourceReaderHandler */
+	private ResourceReaderHandler rsHandler;
+
+	/** The Scss resolver */
 	private JawrScssResolver scssResolver;
 
+	/**
+	 * The cache of the compiled resources, used in debug mode, which also
+	 * records the import graphs for the incremental bundle processing
+	 */
+	private final CompiledResourceCache compilationCache = new CompiledResourceCache(
+			CompiledResourceCache.DEFAULT_MAX_ENTRIES, ISassResourceGenerator.class);
+
 	/**
 	 * The URL mode handling for binary resource URL present in the Scss file
 	 */
@@ -89,6 +104,29 @@ public class SassGenerator extends AbstractCSSGenerator implements ISassResource
 		return resolver;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see net.jawr.web.resource.bundle.generator.
+	 * ImportGraphAwareResourceGenerator#getImportGraphStamps(java.lang.String)
+	 */
+	@Override
+	public Map<String, String> getImportGraphStamps(String path) {
+		return compilationCache.getImportGraphStamps(path);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see net.jawr.web.resource.bundle.generator.
+	 * ImportGraphAwareResourceGenerator#isImportGraphUpToDate(java.util.Map,
+	 * net.jawr.web.resource.bundle.generator.GeneratorContext)
+	 */
+	@Override
+	public boolean isImportGraphUpToDate(Map<String, String> stamps, GeneratorContext context) {
+		return compilationCache.isUpToDate(stamps, context);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -99,6 +137,7 @@ public class SassGenerator extends AbstractCSSGenerator implements ISassResource
 	 */
 	@Override
 	public void setResourceReaderHandler(ResourceReaderHandler rsHandler) {
+		this.rsHandler = rsHandler;
 		this.scssResolver = new JawrScssResolver(rsHandler);
 	}
 
@@ -130,6 +169,19 @@ public class SassGenerator extends AbstractCSSGenerator implements ISassResource
 		String content = null;
 		Reader rd = null;
 
+		// In debug mode, reuse the compiled content if none of its imports
+		// has changed
+		ImportGraph importGraph = null;
+		if (compilationCache.isEnabled(context.getConfig())) {
+			String result = compilationCache.get(path, context);
+			if (result != null) {
+				return new StringReader(result);
+			}
+		}
+		if (compilationCache.isImportGraphEnabled(context.getConfig())) {
+			importGraph = compilationCache.createImportGraph(path, context);
+		}
+
 		try {
 			List<Class<?>> excluded = new ArrayList<Class<?>>();
 			excluded.add(ISassResourceGenerator.class);
@@ -140,7 +192,13 @@ public class SassGenerator extends AbstractCSSGenerator implements ISassResource
 			}
 			content = IOUtils.toString(rd);
 
-			String result = compile(content, path, context.getCharset());
+			String result = compile(content, path, context.getCharset(), importGraph);
+			if (importGraph != null) {
+				compilationCache.recordImportGraph(path, importGraph);
+				if (compilationCache.isEnabled(context.getConfig())) {
+					compilationCache.put(path, result, importGraph);
+				}
+			}
 			rd = new StringReader(result);
 
 		} catch (ResourceNotFoundException e) {
@@ -162,11 +220,33 @@ public class SassGenerator extends AbstractCSSGenerator implements ISassResource
 	 * @return the compiled CSS content
 	 */
 	public String compile(String content, String path, Charset charset) {
+		return compile(content, path, charset, null);
+	}
+
+	/**
+	 * Compile the SASS source to a CSS source, recording the resolved
+	 * resources in the import graph
+	 * 
+	 * @param content
+	 *            the resource content to compile
+	 * @param path
+	 *            the compiled resource path
+	 * @param charset
+	 *            the charset
+	 * @param importGraph
+	 *            the import graph of the compiled resource, or null
+	 * @return the compiled CSS content
+	 */
+	public String compile(String content, String path, Charset charset, ImportGraph importGraph) {
 		StopWatch stopWatch = new StopWatch("Compiling resource '" + path + "' with Sass generator");
 		stopWatch.start();
 
+		JawrScssResolver resolver = scssResolver;
+		if (importGraph != null) {
+			resolver = new JawrScssResolver(rsHandler, importGraph);
+		}
 		try {
-			ScssStylesheet sheet = new JawrScssStylesheet(content, path, scssResolver, charset);
+			ScssStylesheet sheet = new JawrScssStylesheet(content, path, resolver, charset);
 			sheet.compile(urlMode);
 			String parsedScss = sheet.printState();
 			return parsedScss;
@@ -22,6 +22,7 @@ import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.script.Bindings;
 import javax.script.ScriptException;
 
 import org.slf4j.Logger;
@@ -41,6 +42,8 @@ import net.jawr.web.resource.bundle.generator.resolver.ResourceGeneratorResolver
 import net.jawr.web.resource.bundle.generator.resolver.ResourceGeneratorResolverFactory;
 import net.jawr.web.util.StopWatch;
 import net.jawr.web.util.js.JavascriptEngine;
+import net.jawr.web.util.js.JavascriptEngineFactory;
+import net.jawr.web.util.js.JavascriptEnginePool;
 
 /**
  * This class defines the coffee script generator
@@ -77,14 +80,14 @@ public class CoffeeScriptGenerator extends AbstractJavascriptGenerator
 	/** The jawr config */
 	private JawrConfig config;
 
-	/** The coffeeScript object*/
-	private Object coffeeScript;
-	
-	/** The coffee script options */
-	private Object options;
+	/** The name of the engine binding which holds the coffee script options */
+	private static final String OPTIONS_BINDING = "jawrCoffeeScriptOptions";
+
+	/** The name of the engine binding which holds the coffeeScript object */
+	private static final String COFFEE_SCRIPT_BINDING = "jawrCoffeeScript";
 
-	/** The Rhino engine */
-	private JavascriptEngine jsEngine;
+	/** The pool of engines, where the coffee script compiler is loaded */
+	private JavascriptEnginePool jsEnginePool;
 
 	/**
 	 * Constructor
@@ -117,16 +120,26 @@ public class CoffeeScriptGenerator extends AbstractJavascriptGenerator
 		stopWatch.start();
 		
 		// Load JavaScript Script Engine
-		String script = config.getProperty(
+		final String script = config.getProperty(
 				JAWR_JS_GENERATOR_COFFEE_SCRIPT_LOCATION,
 				DEFAULT_COFFEE_SCRIPT_JS_LOCATION);
-		jsEngine = new JavascriptEngine(config.getJavascriptEngineName(JAWR_JS_GENERATOR_COFFEE_SCRIPT_JS_ENGINE));
-		InputStream inputStream = getResourceInputStream(script);
-		jsEngine.evaluate("coffee-script.js", inputStream);
-		String strOptions = config.getProperty(JAWR_JS_GENERATOR_COFFEE_SCRIPT_OPTIONS,
+		final String jsEngineName = config.getJavascriptEngineName(JAWR_JS_GENERATOR_COFFEE_SCRIPT_JS_ENGINE);
+		final String strOptions = config.getProperty(JAWR_JS_GENERATOR_COFFEE_SCRIPT_OPTIONS,
 				COFEE_SCRIPT_DEFAULT_OPTIONS);
-		options = jsEngine.execEval(strOptions);
-		coffeeScript = jsEngine.execEval("CoffeeScript");
+		jsEnginePool = new JavascriptEnginePool("coffeescript", config.getJavascriptEnginePoolSize(),
+				new JavascriptEngineFactory() {
+
+					@Override
+					public JavascriptEngine createEngine() {
+						JavascriptEngine jsEngine = new JavascriptEngine(jsEngineName);
+						InputStream inputStream = getResourceInputStream(script);
+						jsEngine.evaluate("coffee-script.js", inputStream);
+						jsEngine.getBindings().put(OPTIONS_BINDING, jsEngine.execEval(strOptions));
+						jsEngine.getBindings().put(COFFEE_SCRIPT_BINDING, jsEngine.execEval("CoffeeScript"));
+						return jsEngine;
+					}
+				});
+		jsEnginePool.warmUp(config.isJavascriptEnginePoolWarmUp() ? jsEnginePool.getSize() : 1);
 		stopWatch.stop();
 		if(PERF_LOGGER.isDebugEnabled()){
 			PERF_LOGGER.debug(stopWatch.shortSummary());
@@ -208,10 +221,15 @@ public class CoffeeScriptGenerator extends AbstractJavascriptGenerator
 		stopWatch.start();
 
 		String result = null;
+		JavascriptEngine jsEngine = jsEnginePool.borrowEngine();
 		try {
-			result = (String) jsEngine.invokeMethod(coffeeScript, "compile", coffeeScriptSource, options);
+			Bindings bindings = jsEngine.getBindings();
+			result = (String) jsEngine.invokeMethod(bindings.get(COFFEE_SCRIPT_BINDING), "compile",
+					coffeeScriptSource, bindings.get(OPTIONS_BINDING));
 		} catch (NoSuchMethodException | ScriptException e) {
 			throw new BundlingProcessException(e);
+		} finally {
+			jsEnginePool.returnEngine(jsEngine);
 		}
 
 		
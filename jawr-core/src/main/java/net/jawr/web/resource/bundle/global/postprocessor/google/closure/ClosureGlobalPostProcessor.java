@@ -15,6 +15,7 @@
  */
 package net.jawr.web.resource.bundle.global.postprocessor.google.closure;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -30,10 +31,17 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.GZIPOutputStream;
@@ -44,6 +52,7 @@ import net.jawr.web.exception.BundlingProcessException;
 import net.jawr.web.exception.ResourceNotFoundException;
 import net.jawr.web.resource.bundle.IOUtils;
 import net.jawr.web.resource.bundle.JoinableResourceBundle;
+import net.jawr.web.resource.bundle.encoding.ContentEncodingUtils;
 import net.jawr.web.resource.bundle.factory.global.postprocessor.GlobalPostProcessingContext;
 import net.jawr.web.resource.bundle.factory.util.PathNormalizer;
 import net.jawr.web.resource.bundle.global.processor.AbstractChainedGlobalProcessor;
@@ -114,6 +123,12 @@ public class ClosureGlobalPostProcessor extends
 	/** The advanced optimizations compilation level */
 	private static final String ADVANCED_OPTIMIZATIONS_COMPILATION_LEVEL = "ADVANCED_OPTIMIZATIONS";
 
+	/** The rename prefix argument for the closure command line runner */
+	private static final String RENAME_PREFIX_ARG = "--rename_prefix";
+
+	/** The prefix of the rename prefix of each group of modules */
+	private static final String MODULE_GROUP_RENAME_PREFIX = "jawr";
+
 	/** The warning level argument for the closure command line runner */
 	private static final String WARNING_LEVEL_ARG = "--warning_level";
 
@@ -126,6 +141,17 @@ public class ClosureGlobalPostProcessor extends
 	/** The property for disable thread */
 	private static final String JAWR_JS_CLOSURE_DISABLE_THREAD = "jawr.js.closure.disableThread";
 
+	/**
+	 * The property for the parallel compilation of the independent groups of
+	 * modules
+	 */
+	private static final String JAWR_JS_CLOSURE_PARALLEL = "jawr.js.closure.parallel";
+
+	/**
+	 * The property for the number of threads used by the parallel compilation
+	 */
+	private static final String JAWR_JS_CLOSURE_PARALLEL_THREAD_COUNT = "jawr.js.closure.parallel.thread.count";
+
 	/**
 	 * The closure modules property, whose the value will be passed to the
 	 * closure compiler
@@ -135,7 +161,9 @@ public class ClosureGlobalPostProcessor extends
 	/** The list of the jawr js closure properties */
 	private static final List<String> JAWR_JS_CLOSURE_SPECIFIC_PROPERTIES = Arrays
 			.asList(JAWR_JS_CLOSURE_BUNDLES_EXCLUDED,
-					JAWR_JS_CLOSURE_DISABLE_THREAD, JAWR_JS_CLOSURE_MODULES);
+					JAWR_JS_CLOSURE_DISABLE_THREAD, JAWR_JS_CLOSURE_MODULES,
+					JAWR_JS_CLOSURE_PARALLEL,
+					JAWR_JS_CLOSURE_PARALLEL_THREAD_COUNT);
 
 	/** The google closure temporary directory */
 	public static final String GOOGLE_CLOSURE_TEMP_DIR = "/googleClosure/temp/";
@@ -211,6 +239,12 @@ public class ClosureGlobalPostProcessor extends
 				tempDir = workingDir + GOOGLE_CLOSURE_TEMP_DIR;
 			}
 
+			if (ctx.getJawrConfig().getBooleanProperty(
+					JAWR_JS_CLOSURE_PARALLEL, false)) {
+				compileInParallel(ctx, bundles);
+				return;
+			}
+
 			// Create result directory
 			File dir = new File(destDir);
 			if (!dir.exists() && !dir.mkdirs()) {
@@ -253,7 +287,285 @@ public class ClosureGlobalPostProcessor extends
 		}
 	}
 
-	
+
+	/**
+	 * Compiles the independent groups of modules in parallel, each group with
+	 * its own closure compiler. The sources are read from the bundle text
+	 * directory, and the compiled bundles are kept in memory until all the
+	 * compilations succeed, then they are stored in the bundle text and gzip
+	 * directories.
+	 * 
+	 * Two groups are independent when no module of one group depends on a
+	 * module of the other one. Note that if global bundles are defined, all
+	 * the modules depend on them, so there is only one group.
+	 * 
+	 * @param ctx
+	 *            the global processing context
+	 * @param bundles
+	 *            the bundles
+	 */
+	private void compileInParallel(GlobalPostProcessingContext ctx,
+			List<JoinableResourceBundle> bundles) {
+
+		Map<String, String> resultBundleMapping = new HashMap<String, String>();
+		String[] args = getClosureCompilerArgs(ctx, bundles,
+				resultBundleMapping);
+		List<String[]> moduleGroupArgs = getIndependentModuleGroupArgs(args);
+		if (moduleGroupArgs.size() > 1 && isAdvancedOptimizations(args)) {
+			moduleGroupArgs = isolateModuleGroups(args, moduleGroupArgs);
+		}
+
+		int threadCount = ctx.getJawrConfig().getIntProperty(
+				JAWR_JS_CLOSURE_PARALLEL_THREAD_COUNT,
+				Runtime.getRuntime().availableProcessors());
+		threadCount = Math.max(1,
+				Math.min(threadCount, moduleGroupArgs.size()));
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Compiling " + moduleGroupArgs.size()
+					+ " independent group(s) of modules with " + threadCount
+					+ " thread(s)");
+		}
+
+		Map<String, byte[]> compiledBundles = new ConcurrentHashMap<String, byte[]>();
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try {
+			List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+			for (String[] groupArgs : moduleGroupArgs) {
+				final JawrClosureCommandLineRunner cmdRunner = new JawrClosureCommandLineRunner(
+						ctx, groupArgs, resultBundleMapping, compiledBundles);
+				results.add(executor.submit(new Callable<Integer>() {
+
+					public Integer call() throws Exception {
+						return cmdRunner.doRun();
+					}
+				}));
+			}
+
+			for (Future<Integer> result : results) {
+				if (result.get().intValue() != 0) {
+					throw new BundlingProcessException(
+							"The closure compilation of the bundles has failed. Please check the compiler messages.");
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new BundlingProcessException(e);
+		} catch (ExecutionException e) {
+			throw new BundlingProcessException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+
+		try {
+			storeCompiledBundles(compiledBundles, ctx.getJawrConfig()
+					.getGzipCompressionLevel());
+		} catch (IOException e) {
+			throw new BundlingProcessException(e);
+		}
+	}
+
+	/**
+	 * Splits the closure compiler arguments into the arguments of the
+	 * independent groups of modules. Each group keeps the common arguments,
+	 * the JAWR root module and its modules in the original order, so the
+	 * modules are still defined after their dependencies.
+	 * 
+	 * @param args
+	 *            the closure compiler arguments of all the modules
+	 * @return the arguments of each group of modules
+	 */
+	protected List<String[]> getIndependentModuleGroupArgs(String[] args) {
+
+		List<String> commonArgs = new ArrayList<String>();
+		List<String[]> modules = new ArrayList<String[]>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals(JS_ARG) && i + 3 < args.length
+					&& args[i + 2].equals(MODULE_ARG)) {
+				modules.add(new String[] { args[i + 1], args[i + 3] });
+				i += 3;
+			} else {
+				commonArgs.add(args[i]);
+			}
+		}
+
+		// Link each module to its dependencies, except the JAWR root module
+		Map<String, String> groupByModule = new HashMap<String, String>();
+		String[] rootModule = null;
+		for (String[] module : modules) {
+			String moduleName = getModuleName(module[1]);
+			if (moduleName.equals(JAWR_ROOT_MODULE_NAME)) {
+				rootModule = module;
+			} else {
+				findGroup(groupByModule, moduleName);
+				Matcher matcher = MODULE_ARG_PATTERN.matcher(module[1]);
+				if (matcher.find() && StringUtils.isNotEmpty(matcher.group(1))) {
+					for (String dep : matcher.group(1).split(
+							MODULE_DEPENDENCIES_SEPARATOR)) {
+						if (!dep.equals(JAWR_ROOT_MODULE_NAME)) {
+							groupByModule.put(findGroup(groupByModule, dep),
+									findGroup(groupByModule, moduleName));
+						}
+					}
+				}
+			}
+		}
+
+		Map<String, List<String>> groupArgs = new LinkedHashMap<String, List<String>>();
+		for (String[] module : modules) {
+			if (module != rootModule) {
+				String group = findGroup(groupByModule,
+						getModuleName(module[1]));
+				List<String> moduleArgs = groupArgs.get(group);
+				if (moduleArgs == null) {
+					moduleArgs = new ArrayList<String>(commonArgs);
+					if (rootModule != null) {
+						moduleArgs.addAll(Arrays.asList(JS_ARG, rootModule[0],
+								MODULE_ARG, rootModule[1]));
+					}
+					groupArgs.put(group, moduleArgs);
+				}
+				moduleArgs.addAll(Arrays.asList(JS_ARG, module[0], MODULE_ARG,
+						module[1]));
+			}
+		}
+
+		List<String[]> result = new ArrayList<String[]>();
+		for (List<String> moduleArgs : groupArgs.values()) {
+			result.add(moduleArgs.toArray(new String[moduleArgs.size()]));
+		}
+		return result;
+	}
+
+	/**
+	 * Checks if the closure compiler arguments define the advanced
+	 * optimizations compilation level
+	 * 
+	 * @param args
+	 *            the closure compiler arguments
+	 * @return true if the advanced optimizations are used
+	 */
+	private boolean isAdvancedOptimizations(String[] args) {
+
+		int idx = Arrays.asList(args).lastIndexOf(COMPILATION_LEVEL_ARG);
+		return idx != -1 && idx + 1 < args.length
+				&& args[idx + 1]
+						.equalsIgnoreCase(ADVANCED_OPTIMIZATIONS_COMPILATION_LEVEL);
+	}
+
+	/**
+	 * Isolates the groups of modules compiled with the advanced
+	 * optimizations. Each compiler renames the global names using the same
+	 * short names, so the bundles of two groups loaded in the same page would
+	 * overwrite each other's globals. A distinct rename prefix is given to
+	 * each group. If a rename prefix is already defined in the configuration,
+	 * the groups can't be isolated and all the modules are compiled together.
+	 * 
+	 * @param args
+	 *            the closure compiler arguments of all the modules
+	 * @param moduleGroupArgs
+	 *            the arguments of each group of modules
+	 * @return the arguments of the groups to compile
+	 */
+	protected List<String[]> isolateModuleGroups(String[] args,
+			List<String[]> moduleGroupArgs) {
+
+		if (Arrays.asList(args).contains(RENAME_PREFIX_ARG)) {
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("A rename prefix is defined, the modules are compiled with a single compiler");
+			}
+			List<String[]> result = new ArrayList<String[]>();
+			result.add(args);
+			return result;
+		}
+
+		List<String[]> result = new ArrayList<String[]>();
+		for (int i = 0; i < moduleGroupArgs.size(); i++) {
+			List<String> groupArgs = new ArrayList<String>(
+					Arrays.asList(moduleGroupArgs.get(i)));
+			groupArgs.add(0, RENAME_PREFIX_ARG);
+			groupArgs.add(1, MODULE_GROUP_RENAME_PREFIX + i + "_");
+			result.add(groupArgs.toArray(new String[groupArgs.size()]));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the module name from the module argument value
+	 * 
+	 * @param moduleArg
+	 *            the module argument value
+	 * @return the module name
+	 */
+	private String getModuleName(String moduleArg) {
+		return moduleArg.substring(0, moduleArg.indexOf(':'));
+	}
+
+	/**
+	 * Returns the group of a module, which is the module representing all
+	 * the modules linked together
+	 * 
+	 * @param groupByModule
+	 *            the map of the module links
+	 * @param moduleName
+	 *            the module name
+	 * @return the group of the module
+	 */
+	private String findGroup(Map<String, String> groupByModule,
+			String moduleName) {
+
+		String group = moduleName;
+		String parent = groupByModule.get(group);
+		while (parent != null && !parent.equals(group)) {
+			group = parent;
+			parent = groupByModule.get(group);
+		}
+		if (parent == null) {
+			groupByModule.put(group, group);
+		}
+		// Shorten the path for the next searches
+		if (!moduleName.equals(group)) {
+			groupByModule.put(moduleName, group);
+		}
+		return group;
+	}
+
+	/**
+	 * Stores the compiled bundles in the bundle text and gzip directories
+	 * 
+	 * @param compiledBundles
+	 *            the compiled bundles, indexed by bundle path
+	 * @param gzipCompressionLevel
+	 *            the deflate level of the gzipped bundles
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	private void storeCompiledBundles(Map<String, byte[]> compiledBundles,
+			int gzipCompressionLevel) throws IOException {
+
+		for (Entry<String, byte[]> entry : compiledBundles.entrySet()) {
+			String bundlePath = PathNormalizer.escapeToPhysicalPath(entry
+					.getKey());
+			File outFile = new File(srcDir, bundlePath);
+			outFile.getParentFile().mkdirs();
+			OutputStream os = new FileOutputStream(outFile);
+			try {
+				os.write(entry.getValue());
+			} finally {
+				IOUtils.close(os);
+			}
+
+			File outZipFile = new File(srcZipDir, bundlePath);
+			outZipFile.getParentFile().mkdirs();
+			os = ContentEncodingUtils.createGzipOutputStream(
+					new FileOutputStream(outZipFile), gzipCompressionLevel);
+			try {
+				os.write(entry.getValue());
+			} finally {
+				IOUtils.close(os);
+			}
+		}
+	}
+
 	/**
 	 * Returns the closure compiler arguments
 	 * 
@@ -692,6 +1004,17 @@ public class ClosureGlobalPostProcessor extends
 		 */
 		private Map<String, String> resultBundleMapping;
 
+		/**
+		 * The directory of the sources
+		 */
+		private String sourceDir;
+
+		/**
+		 * The compiled bundles indexed by bundle path, which is only defined
+		 * if the compiled bundles are kept in memory
+		 */
+		private Map<String, byte[]> compiledBundles;
+
 		/**
 		 * Constructor
 		 * 
@@ -709,6 +1032,31 @@ public class ClosureGlobalPostProcessor extends
 
 			this.ctx = ctx;
 			this.resultBundleMapping = resultBundleMapping;
+			this.sourceDir = tempDir;
+		}
+
+		/**
+		 * Constructor for a runner which reads the sources from the bundle
+		 * text directory and keeps the compiled bundles in memory
+		 * 
+		 * @param ctx
+		 *            the global post processing context
+		 * @param args
+		 *            the closure compiler arguments
+		 * @param resultBundleMapping
+		 *            the result bundle mapping
+		 * @param compiledBundles
+		 *            the map which will contain the compiled bundles
+		 */
+		public JawrClosureCommandLineRunner(GlobalPostProcessingContext ctx,
+				String[] args, Map<String, String> resultBundleMapping,
+				Map<String, byte[]> compiledBundles) {
+			super(args);
+
+			this.ctx = ctx;
+			this.resultBundleMapping = resultBundleMapping;
+			this.sourceDir = srcDir;
+			this.compiledBundles = compiledBundles;
 		}
 
 		/*
@@ -768,7 +1116,7 @@ public class ClosureGlobalPostProcessor extends
 					try {
 						try {
 							is = new FileInputStream(
-									new File(tempDir, filename));
+									new File(sourceDir, filename));
 							rd = Channels.newReader(Channels.newChannel(is),
 									ctx.getJawrConfig().getResourceCharset()
 											.displayName());
@@ -817,15 +1165,30 @@ public class ClosureGlobalPostProcessor extends
 			String bundleName = fileName.substring(0, fileExtensionIdx)
 					.substring(2);
 
-			String bundlePath = resultBundleMapping.get(bundleName);
-			bundlePath = PathNormalizer.escapeToPhysicalPath(bundlePath);
-			File outFile = new File(destDir, bundlePath);
+			final String bundlePath = resultBundleMapping.get(bundleName);
+			if (compiledBundles != null) {
+				if (bundleName.equals(JAWR_ROOT_MODULE_NAME)) {
+					return new ByteArrayOutputStream();
+				}
+				return new ByteArrayOutputStream() {
+
+					@Override
+					public void close() throws IOException {
+						super.close();
+						compiledBundles.put(bundlePath, toByteArray());
+					}
+				};
+			}
+
+			String physicalBundlePath = PathNormalizer.escapeToPhysicalPath(bundlePath);
+			File outFile = new File(destDir, physicalBundlePath);
 			outFile.getParentFile().mkdirs();
 			FileOutputStream fos = new FileOutputStream(outFile);
 			
-			File outZipFile = new File(destZipDir, bundlePath);
+			File outZipFile = new File(destZipDir, physicalBundlePath);
 			outZipFile.getParentFile().mkdirs();
-			GZIPOutputStream gzOs = new GZIPOutputStream(new FileOutputStream(outZipFile));
+			GZIPOutputStream gzOs = ContentEncodingUtils.createGzipOutputStream(new FileOutputStream(outZipFile),
+					ctx.getJawrConfig().getGzipCompressionLevel());
 			return new TeeOutputStream(fos, gzOs);
 		}
 
@@ -837,6 +1200,9 @@ public class ClosureGlobalPostProcessor extends
 		 */
 		public int doRun() throws FlagUsageException, IOException {
 			int result = super.doRun();
+			if (compiledBundles != null) {
+				return result;
+			}
 			// Delete JAWR_ROOT_MODULE file
 			File jawrRootModuleFile = new File(destDir,
 					resultBundleMapping.get(JAWR_ROOT_MODULE_NAME));
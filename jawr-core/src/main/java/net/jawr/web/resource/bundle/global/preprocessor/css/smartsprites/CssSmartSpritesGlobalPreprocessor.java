@@ -13,26 +13,39 @@
  */
 package net.jawr.web.resource.bundle.global.preprocessor.css.smartsprites;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 import net.jawr.web.JawrConstant;
 import net.jawr.web.config.JawrConfig;
 import net.jawr.web.exception.BundlingProcessException;
+import net.jawr.web.exception.ResourceNotFoundException;
 import net.jawr.web.resource.BinaryResourcesHandler;
+import net.jawr.web.resource.bundle.CheckSumUtils;
 import net.jawr.web.resource.bundle.JoinableResourceBundle;
 import net.jawr.web.resource.bundle.factory.global.preprocessor.GlobalPreprocessingContext;
+import net.jawr.web.resource.bundle.global.preprocessor.css.smartsprites.SmartSpritesBuildManifest.SpriteGroup;
 import net.jawr.web.resource.bundle.global.processor.AbstractChainedGlobalProcessor;
 import net.jawr.web.resource.bundle.iterator.BundlePath;
 import net.jawr.web.resource.handler.reader.ResourceReader;
 import net.jawr.web.resource.handler.reader.ResourceReaderHandler;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.carrot2.labs.smartsprites.SmartSpritesParameters;
 import org.carrot2.labs.smartsprites.SmartSpritesParameters.PngDepth;
 import org.carrot2.labs.smartsprites.SpriteBuilder;
@@ -66,6 +79,15 @@ public class CssSmartSpritesGlobalPreprocessor extends
 	/** The info level name */
 	private static final String INFO_LEVEL = "INFO";
 
+	/** The name of the manifest of the last sprite generation */
+	private static final String MANIFEST_FILE_NAME = "smartsprites.manifest";
+
+	/** The checksum of a missing image in a fingerprint */
+	private static final String MISSING_IMAGE_CHECKSUM = "missing";
+
+	/** The charset used to compute the checksums */
+	private static final Charset UTF8_CHARSET = Charset.forName("UTF-8");
+
 	/**
 	 * Constructor
 	 */
@@ -163,8 +185,12 @@ public class CssSmartSpritesGlobalPreprocessor extends
 				throw new BundlingProcessException(
 						"Impossible to create temporary directory : " + outDir);
 			}
-		}else{
-			// Clean temp directories
+		}
+
+		SmartSpritesBuildManifest manifest = new SmartSpritesBuildManifest(
+				new File(tmpDir.getParentFile(), MANIFEST_FILE_NAME));
+		if (!manifest.load()) {
+			// The generated files are unknown, so clean temp directories
 			try {
 				FileUtils.cleanDirectory(tmpDir);
 			} catch (IOException e) {
@@ -179,13 +205,237 @@ public class CssSmartSpritesGlobalPreprocessor extends
 		
 		SpriteBuilder spriteBuilder = new SpriteBuilder(params, messageLog,
 				smartSpriteRsHandler);
+
 		try {
-			spriteBuilder.buildSprites(resourcePaths);
+			buildSprites(spriteBuilder, smartSpriteRsHandler, manifest, tmpDir,
+					cssRsHandler, binaryRsHandler.getRsReaderHandler(),
+					resourcePaths, charset + "|" + smartSpriteRsHandler.getContextPath());
+			manifest.store();
 		} catch (IOException e) {
+			manifest.clear();
 			throw new BundlingProcessException("Unable to build sprites", e);
 		}
 	}
 
+	/**
+	 * Builds the sprites of the groups of CSS files, whose inputs changed
+	 * since the last generation, and removes the files generated for the CSS
+	 * files which don't use sprites anymore.
+	 * 
+	 * @param spriteBuilder
+	 *            the sprite builder
+	 * @param smartSpriteRsHandler
+	 *            the smartsprites resource handler
+	 * @param manifest
+	 *            the manifest of the last generation
+	 * @param tmpDir
+	 *            the sprite working directory
+	 * @param cssRsHandler
+	 *            the css resourceHandler
+	 * @param imgRsHandler
+	 *            the image resourceHandler
+	 * @param resourcePaths
+	 *            the set of CSS resource paths to handle
+	 * @param paramsFingerprint
+	 *            the fingerprint of the generation parameters
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	private void buildSprites(SpriteBuilder spriteBuilder,
+			SmartSpritesResourceHandler smartSpriteRsHandler,
+			SmartSpritesBuildManifest manifest, File tmpDir,
+			ResourceReaderHandler cssRsHandler,
+			ResourceReaderHandler imgRsHandler, Set<String> resourcePaths,
+			String paramsFingerprint) throws IOException {
+
+		// Group the CSS files by the sprites they share
+		Map<String, String> cssContents = new HashMap<String, String>();
+		Map<String, Set<String>> spriteIdsByCssPath = new HashMap<String, Set<String>>();
+		for (String path : resourcePaths) {
+			String content = readCssContent(cssRsHandler, path);
+			if (content != null) {
+				cssContents.put(path, content);
+				spriteIdsByCssPath.put(path,
+						SmartSpritesBuildManifest.getSpriteIds(content));
+			}
+		}
+
+		Map<String, SortedSet<String>> groups = new LinkedHashMap<String, SortedSet<String>>();
+		for (SortedSet<String> group : SmartSpritesBuildManifest
+				.groupCssPaths(spriteIdsByCssPath)) {
+			groups.put(getMD5Checksum(group.toString()), group);
+		}
+
+		// Remove the files generated for the groups which don't exist anymore
+		for (String key : new ArrayList<String>(manifest.getGroupKeys())) {
+			if (!groups.containsKey(key)) {
+				deleteGeneratedFiles(tmpDir, manifest.removeGroup(key)
+						.getGeneratedFiles());
+			}
+		}
+
+		int nbBuiltGroups = 0;
+		for (Map.Entry<String, SortedSet<String>> entry : groups.entrySet()) {
+
+			String key = entry.getKey();
+			SortedSet<String> cssPaths = entry.getValue();
+			SpriteGroup previousGroup = manifest.getGroup(key);
+			if (previousGroup != null
+					&& previousGroup.getFingerprint().equals(
+							getFingerprint(paramsFingerprint, cssPaths,
+									cssContents, previousGroup.getImagePaths(),
+									imgRsHandler))
+					&& generatedFilesExist(tmpDir, previousGroup)) {
+				continue;
+			}
+
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("Building the sprites of the CSS files " + cssPaths);
+			}
+			smartSpriteRsHandler.resetTracking();
+			spriteBuilder.buildSprites(cssPaths);
+			nbBuiltGroups++;
+
+			Set<String> imagePaths = smartSpriteRsHandler.getReadImagePaths();
+			SpriteGroup group = new SpriteGroup(getFingerprint(
+					paramsFingerprint, cssPaths, cssContents, imagePaths,
+					imgRsHandler), imagePaths,
+					smartSpriteRsHandler.getGeneratedFiles());
+			if (previousGroup != null) {
+				Set<String> obsoleteFiles = new HashSet<String>(
+						previousGroup.getGeneratedFiles());
+				obsoleteFiles.removeAll(group.getGeneratedFiles());
+				deleteGeneratedFiles(tmpDir, obsoleteFiles);
+			}
+			manifest.putGroup(key, group);
+		}
+
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Sprites built for " + nbBuiltGroups + " of "
+					+ groups.size() + " groups of CSS files");
+		}
+	}
+
+	/**
+	 * Reads the content of a CSS file
+	 * 
+	 * @param cssRsHandler
+	 *            the css resourceHandler
+	 * @param path
+	 *            the CSS path
+	 * @return the content of the CSS file, or null if it doesn't exist
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	private String readCssContent(ResourceReaderHandler cssRsHandler,
+			String path) throws IOException {
+
+		Reader rd = null;
+		try {
+			rd = cssRsHandler.getResource(path, true);
+			return IOUtils.toString(rd);
+		} catch (ResourceNotFoundException e) {
+			return null;
+		} finally {
+			IOUtils.closeQuietly(rd);
+		}
+	}
+
+	/**
+	 * Returns the fingerprint of the inputs of a group of CSS files
+	 * 
+	 * @param paramsFingerprint
+	 *            the fingerprint of the generation parameters
+	 * @param cssPaths
+	 *            the CSS paths
+	 * @param cssContents
+	 *            the CSS contents, indexed by path
+	 * @param imagePaths
+	 *            the paths of the images used by the sprites
+	 * @param imgRsHandler
+	 *            the image resourceHandler
+	 * @return the fingerprint
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	private String getFingerprint(String paramsFingerprint,
+			Set<String> cssPaths, Map<String, String> cssContents,
+			Set<String> imagePaths, ResourceReaderHandler imgRsHandler)
+			throws IOException {
+
+		StringBuilder fingerprint = new StringBuilder(paramsFingerprint);
+		for (String cssPath : cssPaths) {
+			fingerprint.append('\n').append(cssPath).append('=')
+					.append(getMD5Checksum(cssContents.get(cssPath)));
+		}
+		for (String imagePath : new TreeSet<String>(imagePaths)) {
+			fingerprint.append('\n').append(imagePath).append('=');
+			InputStream is = null;
+			try {
+				is = new BufferedInputStream(
+						imgRsHandler.getResourceAsStream(imagePath));
+				fingerprint.append(CheckSumUtils.getMD5Checksum(is));
+			} catch (ResourceNotFoundException e) {
+				fingerprint.append(MISSING_IMAGE_CHECKSUM);
+			} finally {
+				IOUtils.closeQuietly(is);
+			}
+		}
+		return getMD5Checksum(fingerprint.toString());
+	}
+
+	/**
+	 * Returns the MD5 checksum of a string
+	 * 
+	 * @param str
+	 *            the string
+	 * @return the MD5 checksum
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	private String getMD5Checksum(String str) throws IOException {
+		return CheckSumUtils.getMD5Checksum(str, UTF8_CHARSET);
+	}
+
+	/**
+	 * Checks if all the files generated for a group still exist
+	 * 
+	 * @param tmpDir
+	 *            the sprite working directory
+	 * @param group
+	 *            the group
+	 * @return true if all the files generated for the group exist
+	 */
+	private boolean generatedFilesExist(File tmpDir, SpriteGroup group) {
+
+		for (String path : group.getGeneratedFiles()) {
+			if (!new File(tmpDir, path).isFile()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Deletes generated files
+	 * 
+	 * @param tmpDir
+	 *            the sprite working directory
+	 * @param paths
+	 *            the paths of the generated files, relative to the working
+	 *            directory
+	 */
+	private void deleteGeneratedFiles(File tmpDir, Set<String> paths) {
+
+		for (String path : paths) {
+			File file = new File(tmpDir, path);
+			if (file.exists() && !file.delete()) {
+				LOGGER.warn("Unable to delete the generated file : "
+						+ file.getPath());
+			}
+		}
+	}
+
 	/**
 	 * Returns the list of all CSS files defined in the bundles.
 	 * 
@@ -0,0 +1,412 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.resource.bundle.global.preprocessor.css.smartsprites;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.jawr.web.util.StringUtils;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class defines the manifest of the last sprite generation. The CSS files
+ * are grouped by the sprites they declare or reference, as SmartSprites
+ * rewrites a CSS file with all its sprites at once. For each group, the
+ * manifest stores the fingerprint of its inputs, the images read to build its
+ * sprites and the files generated, so a group whose inputs didn't change is
+ * not rebuilt.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class SmartSpritesBuildManifest {
+
+	/** The logger */
+	private static final Logger LOGGER = LoggerFactory.getLogger(SmartSpritesBuildManifest.class);
+
+	/** The pattern of the sprite image directive */
+	private static final Pattern SPRITE_IMAGE_DIRECTIVE = Pattern.compile("/\\*+\\s+(sprite:[^*]*)\\*+/");
+
+	/** The pattern of the sprite reference directive */
+	private static final Pattern SPRITE_REFERENCE_DIRECTIVE = Pattern.compile("/\\*+\\s+(sprite-ref:[^*]*)\\*+/");
+
+	/** The version of the manifest format */
+	private static final String MANIFEST_VERSION = "1";
+
+	/** The version property name */
+	private static final String VERSION_PROPERTY = "version";
+
+	/** The prefix of the group properties */
+	private static final String GROUP_PREFIX = "group.";
+
+	/** The suffix of the fingerprint property of a group */
+	private static final String FINGERPRINT_SUFFIX = ".fingerprint";
+
+	/** The suffix of the image paths property of a group */
+	private static final String IMAGES_SUFFIX = ".images";
+
+	/** The suffix of the generated files property of a group */
+	private static final String GENERATED_FILES_SUFFIX = ".generatedFiles";
+
+	/** The separator of the paths in a property value */
+	private static final String PATH_SEPARATOR = "|";
+
+	/** The manifest file */
+	private final File manifestFile;
+
+	/** The groups, indexed by their key */
+	private final Map<String, SpriteGroup> groups = new TreeMap<String, SpriteGroup>();
+
+	/** The flag indicating if the manifest has been loaded from its file */
+	private boolean loaded;
+
+	/**
+	 * Constructor
+	 *
+	 * @param manifestFile
+	 *            the manifest file
+	 */
+	public SmartSpritesBuildManifest(File manifestFile) {
+		this.manifestFile = manifestFile;
+	}
+
+	/**
+	 * Loads the manifest from its file. An invalid or missing manifest is
+	 * ignored.
+	 *
+	 * @return true if the manifest has been loaded
+	 */
+	public boolean load() {
+
+		groups.clear();
+		loaded = false;
+		if (!manifestFile.isFile()) {
+			return false;
+		}
+
+		Properties props = new Properties();
+		InputStream in = null;
+		try {
+			in = new FileInputStream(manifestFile);
+			props.load(in);
+		} catch (IOException e) {
+			LOGGER.warn("Unable to read the sprite manifest : " + manifestFile.getPath(), e);
+			return false;
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+
+		if (!MANIFEST_VERSION.equals(props.getProperty(VERSION_PROPERTY))) {
+			return false;
+		}
+
+		for (String name : props.stringPropertyNames()) {
+			if (name.startsWith(GROUP_PREFIX) && name.endsWith(FINGERPRINT_SUFFIX)) {
+				String key = name.substring(GROUP_PREFIX.length(), name.length() - FINGERPRINT_SUFFIX.length());
+				String prefix = GROUP_PREFIX + key;
+				groups.put(key, new SpriteGroup(props.getProperty(name),
+						splitPaths(props.getProperty(prefix + IMAGES_SUFFIX)),
+						splitPaths(props.getProperty(prefix + GENERATED_FILES_SUFFIX))));
+			}
+		}
+		loaded = true;
+		return true;
+	}
+
+	/**
+	 * Stores the manifest in its file
+	 *
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	public void store() throws IOException {
+
+		Properties props = new Properties();
+		props.setProperty(VERSION_PROPERTY, MANIFEST_VERSION);
+		for (Map.Entry<String, SpriteGroup> entry : groups.entrySet()) {
+			String prefix = GROUP_PREFIX + entry.getKey();
+			SpriteGroup group = entry.getValue();
+			props.setProperty(prefix + FINGERPRINT_SUFFIX, group.getFingerprint());
+			props.setProperty(prefix + IMAGES_SUFFIX, joinPaths(group.getImagePaths()));
+			props.setProperty(prefix + GENERATED_FILES_SUFFIX, joinPaths(group.getGeneratedFiles()));
+		}
+
+		OutputStream out = null;
+		try {
+			out = new FileOutputStream(manifestFile);
+			props.store(out, "SmartSprites build manifest");
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+		loaded = true;
+	}
+
+	/**
+	 * Deletes the manifest file and forgets all the groups
+	 */
+	public void clear() {
+
+		groups.clear();
+		loaded = false;
+		if (manifestFile.exists() && !manifestFile.delete()) {
+			LOGGER.warn("Unable to delete the sprite manifest : " + manifestFile.getPath());
+		}
+	}
+
+	/**
+	 * Returns true if the manifest has been loaded or stored
+	 *
+	 * @return true if the manifest has been loaded or stored
+	 */
+	public boolean isLoaded() {
+		return loaded;
+	}
+
+	/**
+	 * Returns the group
+	 *
+	 * @param key
+	 *            the group key
+	 * @return the group or null
+	 */
+	public SpriteGroup getGroup(String key) {
+		return groups.get(key);
+	}
+
+	/**
+	 * Sets the group
+	 *
+	 * @param key
+	 *            the group key
+	 * @param group
+	 *            the group
+	 */
+	public void putGroup(String key, SpriteGroup group) {
+		groups.put(key, group);
+	}
+
+	/**
+	 * Removes the group
+	 *
+	 * @param key
+	 *            the group key
+	 * @return the removed group or null
+	 */
+	public SpriteGroup removeGroup(String key) {
+		return groups.remove(key);
+	}
+
+	/**
+	 * Returns the keys of the groups
+	 *
+	 * @return the keys of the groups
+	 */
+	public Set<String> getGroupKeys() {
+		return Collections.unmodifiableSet(groups.keySet());
+	}
+
+	/**
+	 * Returns the IDs of the sprites declared or referenced by a CSS content
+	 *
+	 * @param content
+	 *            the CSS content
+	 * @return the sprite IDs
+	 */
+	public static Set<String> getSpriteIds(CharSequence content) {
+
+		Set<String> spriteIds = new TreeSet<String>();
+		addSpriteIds(SPRITE_IMAGE_DIRECTIVE, "sprite", content, spriteIds);
+		addSpriteIds(SPRITE_REFERENCE_DIRECTIVE, "sprite-ref", content, spriteIds);
+		return spriteIds;
+	}
+
+	/**
+	 * Adds the sprite IDs defined by the directives matching a pattern
+	 *
+	 * @param pattern
+	 *            the directive pattern
+	 * @param propertyName
+	 *            the name of the directive property holding the sprite ID
+	 * @param content
+	 *            the CSS content
+	 * @param spriteIds
+	 *            the sprite IDs to update
+	 */
+	private static void addSpriteIds(Pattern pattern, String propertyName, CharSequence content,
+			Set<String> spriteIds) {
+
+		Matcher matcher = pattern.matcher(content);
+		while (matcher.find()) {
+			for (String property : matcher.group(1).split(";")) {
+				int idx = property.indexOf(':');
+				if (idx != -1 && property.substring(0, idx).trim().equals(propertyName)) {
+					spriteIds.add(property.substring(idx + 1).trim());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Groups the CSS files sharing sprites. The CSS files which don't declare
+	 * nor reference any sprite are not part of any group.
+	 *
+	 * @param spriteIdsByCssPath
+	 *            the sprite IDs, indexed by CSS path
+	 * @return the groups of CSS paths
+	 */
+	public static List<SortedSet<String>> groupCssPaths(Map<String, Set<String>> spriteIdsByCssPath) {
+
+		Map<String, SortedSet<String>> groupBySpriteId = new HashMap<String, SortedSet<String>>();
+		List<SortedSet<String>> groups = new ArrayList<SortedSet<String>>();
+		for (Map.Entry<String, Set<String>> entry : new TreeMap<String, Set<String>>(spriteIdsByCssPath)
+				.entrySet()) {
+			if (entry.getValue().isEmpty()) {
+				continue;
+			}
+
+			// Merges the groups of the sprites used by the CSS file
+			SortedSet<String> group = new TreeSet<String>();
+			group.add(entry.getKey());
+			Set<String> spriteIds = new TreeSet<String>(entry.getValue());
+			for (String spriteId : entry.getValue()) {
+				SortedSet<String> existingGroup = groupBySpriteId.get(spriteId);
+				if (existingGroup != null && existingGroup != group && groups.remove(existingGroup)) {
+					group.addAll(existingGroup);
+					for (String cssPath : existingGroup) {
+						spriteIds.addAll(spriteIdsByCssPath.get(cssPath));
+					}
+				}
+			}
+			for (String spriteId : spriteIds) {
+				groupBySpriteId.put(spriteId, group);
+			}
+			groups.add(group);
+		}
+		return groups;
+	}
+
+	/**
+	 * Splits the paths of a property value
+	 *
+	 * @param value
+	 *            the property value
+	 * @return the paths
+	 */
+	private static SortedSet<String> splitPaths(String value) {
+
+		SortedSet<String> paths = new TreeSet<String>();
+		if (StringUtils.isNotEmpty(value)) {
+			Collections.addAll(paths, value.split(Pattern.quote(PATH_SEPARATOR)));
+		}
+		return paths;
+	}
+
+	/**
+	 * Joins the paths in a property value
+	 *
+	 * @param paths
+	 *            the paths
+	 * @return the property value
+	 */
+	private static String joinPaths(Set<String> paths) {
+
+		StringBuilder value = new StringBuilder();
+		for (String path : paths) {
+			if (value.length() > 0) {
+				value.append(PATH_SEPARATOR);
+			}
+			value.append(path);
+		}
+		return value.toString();
+	}
+
+	/**
+	 * This class defines the result of the last generation of a group of CSS
+	 * files sharing sprites.
+	 */
+	public static class SpriteGroup {
+
+		/** The fingerprint of the inputs of the group */
+		private final String fingerprint;
+
+		/** The paths of the images read to build the sprites */
+		private final SortedSet<String> imagePaths;
+
+		/** The generated files, relative to the sprite working directory */
+		private final SortedSet<String> generatedFiles;
+
+		/**
+		 * Constructor
+		 *
+		 * @param fingerprint
+		 *            the fingerprint of the inputs of the group
+		 * @param imagePaths
+		 *            the paths of the images read to build the sprites
+		 * @param generatedFiles
+		 *            the generated files, relative to the sprite working
+		 *            directory
+		 */
+		public SpriteGroup(String fingerprint, Set<String> imagePaths, Set<String> generatedFiles) {
+			this.fingerprint = fingerprint;
+			this.imagePaths = new TreeSet<String>(imagePaths);
+			this.generatedFiles = new TreeSet<String>(generatedFiles);
+		}
+
+		/**
+		 * Returns the fingerprint of the inputs of the group
+		 *
+		 * @return the fingerprint
+		 */
+		public String getFingerprint() {
+			return fingerprint;
+		}
+
+		/**
+		 * Returns the paths of the images read to build the sprites
+		 *
+		 * @return the image paths
+		 */
+		public SortedSet<String> getImagePaths() {
+			return imagePaths;
+		}
+
+		/**
+		 * Returns the generated files, relative to the sprite working
+		 * directory
+		 *
+		 * @return the generated files
+		 */
+		public SortedSet<String> getGeneratedFiles() {
+			return generatedFiles;
+		}
+	}
+}
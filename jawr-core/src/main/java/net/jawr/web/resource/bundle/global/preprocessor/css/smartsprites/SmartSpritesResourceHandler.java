@@ -13,6 +13,7 @@
  */
 package net.jawr.web.resource.bundle.global.preprocessor.css.smartsprites;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -22,6 +23,9 @@ import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
 
 import net.jawr.web.JawrConstant;
 import net.jawr.web.exception.BundlingProcessException;
@@ -31,6 +35,7 @@ import net.jawr.web.resource.bundle.factory.util.PathNormalizer;
 import net.jawr.web.resource.bundle.generator.GeneratorRegistry;
 import net.jawr.web.resource.handler.reader.ResourceReaderHandler;
 
+import org.apache.commons.io.FileUtils;
 import org.carrot2.labs.smartsprites.message.MessageLog;
 import org.carrot2.labs.smartsprites.resource.ResourceHandler;
 
@@ -61,6 +66,12 @@ public class SmartSpritesResourceHandler implements ResourceHandler {
 	
 	/** The webapp context path */
 	private String contextPath = null;
+
+	/** The paths of the images read since the last reset */
+	private final Set<String> readImagePaths = new TreeSet<String>();
+
+	/** The files generated since the last reset, relative to the working directory */
+	private final Set<String> generatedFiles = new TreeSet<String>();
 	
 	/**
 	 * Constructor
@@ -97,6 +108,41 @@ public class SmartSpritesResourceHandler implements ResourceHandler {
 		this.contextPath = contextPath;
 	}
 
+	/**
+	 * Returns the context path
+	 * @return the contextPath
+	 */
+	public String getContextPath() {
+		return contextPath;
+	}
+
+	/**
+	 * Returns the paths of the images read since the last reset
+	 * 
+	 * @return the paths of the images read
+	 */
+	public Set<String> getReadImagePaths() {
+		return readImagePaths;
+	}
+
+	/**
+	 * Returns the files generated since the last reset, relative to the
+	 * working directory
+	 * 
+	 * @return the generated files
+	 */
+	public Set<String> getGeneratedFiles() {
+		return generatedFiles;
+	}
+
+	/**
+	 * Resets the images read and the files generated
+	 */
+	public void resetTracking() {
+		readImagePaths.clear();
+		generatedFiles.clear();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -120,6 +166,7 @@ public class SmartSpritesResourceHandler implements ResourceHandler {
 	public InputStream getResourceAsInputStream(String resourceName)
 			throws IOException {
 		
+		readImagePaths.add(resourceName);
 		try {
 			return imgRsHandler.getResourceAsStream(resourceName);
 		} catch (ResourceNotFoundException e) {
@@ -179,7 +226,8 @@ public class SmartSpritesResourceHandler implements ResourceHandler {
 			file = file.getAbsoluteFile();
 		}
 
-		return new FileOutputStream(file);
+		generatedFiles.add(generatedFilePath.substring(workingDir.length()));
+		return new UnchangedContentSkippingOutputStream(file);
 	}
 
 	/*
@@ -196,4 +244,54 @@ public class SmartSpritesResourceHandler implements ResourceHandler {
 			throw new BundlingProcessException(e);
 		}
 	}
+
+	/**
+	 * This class defines the output stream of a generated file, which keeps
+	 * the existing file untouched if its content didn't change. This way, the
+	 * sprites rebuilt with the same content keep their last modification date.
+	 */
+	private static class UnchangedContentSkippingOutputStream extends ByteArrayOutputStream {
+
+		/** The generated file */
+		private final File file;
+
+		/** The flag indicating if the stream is closed */
+		private boolean closed;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param file
+		 *            the generated file
+		 */
+		public UnchangedContentSkippingOutputStream(File file) {
+			this.file = file;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.io.ByteArrayOutputStream#close()
+		 */
+		@Override
+		public void close() throws IOException {
+
+			if (closed) {
+				return;
+			}
+			closed = true;
+			byte[] content = toByteArray();
+			if (file.isFile() && file.length() == content.length
+					&& Arrays.equals(FileUtils.readFileToByteArray(file), content)) {
+				return;
+			}
+
+			OutputStream out = new FileOutputStream(file);
+			try {
+				out.write(content);
+			} finally {
+				out.close();
+			}
+		}
+	}
 }
@@ -0,0 +1,242 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.resource.bundle.handler;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.jawr.web.resource.bundle.variant.VariantSet;
+
+/**
+ * This class keeps, between two reloads of the configuration, the fingerprint
+ * of the processed bundles and the result of their processing. A bundle whose
+ * fingerprint hasn't changed doesn't need to be processed again.
+ *
+ * The fingerprint of a bundle is computed from its definition, its member
+ * paths and the content hash of its members. The fingerprints are only valid
+ * for a given global fingerprint, which is computed from the global
+ * configuration.
+ *
+ * The store also keeps the stamps of the import graph of the generated
+ * resources, which are recorded by the generators while processing the
+ * bundles. They allow to check if a generated resource has changed without
+ * generating it again.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class BundleFingerprintStore {
+
+	/** The global fingerprint */
+	private String globalFingerprint;
+
+	/** The processed bundles, indexed by bundle ID */
+	private final Map<String, ProcessedBundle> processedBundles = new ConcurrentHashMap<String, ProcessedBundle>();
+
+	/** The stamps of the import graphs, indexed by generated resource path */
+	private final Map<String, Map<String, String>> importGraphStamps = new ConcurrentHashMap<String, Map<String, String>>();
+
+	/**
+	 * Updates the global fingerprint. If it has changed, all the processed
+	 * bundles are discarded.
+	 *
+	 * @param fingerprint
+	 *            the new global fingerprint
+	 * @return true if the global fingerprint hasn't changed
+	 */
+	public synchronized boolean updateGlobalFingerprint(String fingerprint) {
+
+		boolean unchanged = fingerprint.equals(globalFingerprint);
+		if (!unchanged) {
+			processedBundles.clear();
+			importGraphStamps.clear();
+			globalFingerprint = fingerprint;
+		}
+		return unchanged;
+	}
+
+	/**
+	 * Returns the processed bundle if its fingerprint matches the one passed
+	 * in parameter
+	 *
+	 * @param bundleId
+	 *            the bundle ID
+	 * @param fingerprint
+	 *            the current fingerprint of the bundle
+	 * @return the processed bundle, or null if the bundle must be processed
+	 */
+	public ProcessedBundle getProcessedBundle(String bundleId, String fingerprint) {
+
+		ProcessedBundle processedBundle = processedBundles.get(bundleId);
+		if (processedBundle != null && !processedBundle.getFingerprint().equals(fingerprint)) {
+			processedBundle = null;
+		}
+		return processedBundle;
+	}
+
+	/**
+	 * Stores the processed bundle
+	 *
+	 * @param bundleId
+	 *            the bundle ID
+	 * @param processedBundle
+	 *            the processed bundle
+	 */
+	public void putProcessedBundle(String bundleId, ProcessedBundle processedBundle) {
+		processedBundles.put(bundleId, processedBundle);
+	}
+
+	/**
+	 * Returns the stamps of the import graph of a generated resource
+	 *
+	 * @param path
+	 *            the generated resource path
+	 * @return the stamps of the resources, indexed by path, or null if no
+	 *         import graph has been recorded
+	 */
+	public Map<String, String> getImportGraphStamps(String path) {
+		return importGraphStamps.get(path);
+	}
+
+	/**
+	 * Stores the stamps of the import graph of a generated resource
+	 *
+	 * @param path
+	 *            the generated resource path
+	 * @param stamps
+	 *            the stamps of the resources, indexed by path
+	 */
+	public void putImportGraphStamps(String path, Map<String, String> stamps) {
+		importGraphStamps.put(path, stamps);
+	}
+
+	/**
+	 * Removes the bundles which are not in the collection of bundle IDs
+	 *
+	 * @param bundleIds
+	 *            the IDs of the bundles to keep
+	 */
+	public void retainBundles(Collection<String> bundleIds) {
+		processedBundles.keySet().retainAll(bundleIds);
+	}
+
+	/**
+	 * Returns the number of processed bundles
+	 *
+	 * @return the number of processed bundles
+	 */
+	public int size() {
+		return processedBundles.size();
+	}
+
+	/**
+	 * This class holds the result of the processing of a bundle
+	 *
+	 * @author Ibrahim Chaehoi
+	 */
+	public static class ProcessedBundle {
+
+		/** The fingerprint of the bundle */
+		private final String fingerprint;
+
+		/** The variants of the bundle, including the post processing ones */
+		private final Map<String, VariantSet> variants;
+
+		/** The bundle data hashcodes, indexed by variant key */
+		private final Map<String, String> hashcodes;
+
+		/** The live processed bundles, indexed by bundle name */
+		private final Map<String, LiveProcessedBundle> liveProcessedBundles;
+
+		/**
+		 * The cache busted URLs of the binary resources referenced by the
+		 * bundle, indexed by original URL
+		 */
+		private final Map<String, String> binaryMapping;
+
+		/**
+		 * Constructor
+		 *
+		 * @param fingerprint
+		 *            the fingerprint of the bundle
+		 * @param variants
+		 *            the variants of the bundle
+		 * @param hashcodes
+		 *            the bundle data hashcodes, indexed by variant key. The
+		 *            default variant has a null key.
+		 * @param liveProcessedBundles
+		 *            the live processed bundles, indexed by bundle name
+		 * @param binaryMapping
+		 *            the cache busted URLs of the binary resources referenced
+		 *            by the bundle, indexed by original URL
+		 */
+		public ProcessedBundle(String fingerprint, Map<String, VariantSet> variants, Map<String, String> hashcodes,
+				Map<String, LiveProcessedBundle> liveProcessedBundles, Map<String, String> binaryMapping) {
+			this.fingerprint = fingerprint;
+			this.variants = variants;
+			this.hashcodes = Collections.unmodifiableMap(new HashMap<String, String>(hashcodes));
+			this.liveProcessedBundles = Collections
+					.unmodifiableMap(new HashMap<String, LiveProcessedBundle>(liveProcessedBundles));
+			this.binaryMapping = Collections.unmodifiableMap(new HashMap<String, String>(binaryMapping));
+		}
+
+		/**
+		 * Returns the fingerprint of the bundle
+		 *
+		 * @return the fingerprint
+		 */
+		public String getFingerprint() {
+			return fingerprint;
+		}
+
+		/**
+		 * Returns the variants of the bundle
+		 *
+		 * @return the variants
+		 */
+		public Map<String, VariantSet> getVariants() {
+			return variants;
+		}
+
+		/**
+		 * Returns the bundle data hashcodes, indexed by variant key
+		 *
+		 * @return the hashcodes
+		 */
+		public Map<String, String> getHashcodes() {
+			return hashcodes;
+		}
+
+		/**
+		 * Returns the live processed bundles, indexed by bundle name
+		 *
+		 * @return the live processed bundles
+		 */
+		public Map<String, LiveProcessedBundle> getLiveProcessedBundles() {
+			return liveProcessedBundles;
+		}
+
+		/**
+		 * Returns the cache busted URLs of the binary resources referenced by
+		 * the bundle, indexed by original URL
+		 *
+		 * @return the binary mapping
+		 */
+		public Map<String, String> getBinaryMapping() {
+			return binaryMapping;
+		}
+	}
+}
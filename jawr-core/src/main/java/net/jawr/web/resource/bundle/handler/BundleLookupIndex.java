@@ -0,0 +1,116 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.resource.bundle.handler;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.jawr.web.resource.bundle.JoinableResourceBundle;
+import net.jawr.web.resource.bundle.iterator.BundlePath;
+
+/**
+ * This class defines an immutable index of the bundles, which associates the
+ * bundle IDs and the paths of the bundle members to their bundle.
+ *
+ * The item paths of the bundles are already expanded from the directory
+ * mappings and the generator mappings, so a lookup only costs the hash of the
+ * requested path, whatever the number of bundles is.
+ *
+ * When a path belongs to several bundles, the first bundle in the bundle order
+ * is retained, as it is done by a sequential search.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class BundleLookupIndex {
+
+	/** The bundles indexed by ID and by item path */
+	private final Map<String, JoinableResourceBundle> bundlesByPath;
+
+	/**
+	 * Constructor
+	 *
+	 * @param bundles
+	 *            the bundles to index, in the bundle order
+	 */
+	public BundleLookupIndex(List<JoinableResourceBundle> bundles) {
+
+		Map<String, JoinableResourceBundle> index = new HashMap<String, JoinableResourceBundle>();
+		for (JoinableResourceBundle bundle : bundles) {
+			addPath(index, bundle.getId(), bundle);
+			addPaths(index, bundle.getItemPathList(), bundle);
+			addPaths(index, bundle.getItemDebugPathList(), bundle);
+		}
+		this.bundlesByPath = index;
+	}
+
+	/**
+	 * Adds the paths to the index
+	 *
+	 * @param index
+	 *            the index
+	 * @param paths
+	 *            the paths
+	 * @param bundle
+	 *            the bundle
+	 */
+	private static void addPaths(Map<String, JoinableResourceBundle> index, List<BundlePath> paths,
+			JoinableResourceBundle bundle) {
+
+		if (paths != null) {
+			for (BundlePath path : paths) {
+				addPath(index, path.getPath(), bundle);
+			}
+		}
+	}
+
+	/**
+	 * Adds a path to the index, if it is not already associated to a previous
+	 * bundle
+	 *
+	 * @param index
+	 *            the index
+	 * @param path
+	 *            the path
+	 * @param bundle
+	 *            the bundle
+	 */
+	private static void addPath(Map<String, JoinableResourceBundle> index, String path,
+			JoinableResourceBundle bundle) {
+
+		if (path != null && !index.containsKey(path)) {
+			index.put(path, bundle);
+		}
+	}
+
+	/**
+	 * Returns the bundle whose ID is the path or which contains the path
+	 *
+	 * @param path
+	 *            the path
+	 * @return the bundle or null if no bundle matches
+	 */
+	public JoinableResourceBundle getBundle(String path) {
+		return bundlesByPath.get(path);
+	}
+
+	/**
+	 * Returns the number of indexed paths
+	 *
+	 * @return the number of indexed paths
+	 */
+	public int size() {
+		return bundlesByPath.size();
+	}
+}
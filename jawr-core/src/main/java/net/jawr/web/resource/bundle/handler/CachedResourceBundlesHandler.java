@@ -13,13 +13,12 @@
  */
 package net.jawr.web.resource.bundle.handler;
 
-import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Writer;
-import java.nio.channels.Channels;
-import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -29,10 +28,13 @@ import net.jawr.web.cache.CacheManagerFactory;
 import net.jawr.web.config.JawrConfig;
 import net.jawr.web.exception.BundlingProcessException;
 import net.jawr.web.exception.ResourceNotFoundException;
-import net.jawr.web.resource.bundle.IOUtils;
 import net.jawr.web.resource.bundle.JoinableResourceBundle;
+import net.jawr.web.resource.bundle.encoding.ContentEncodingUtils;
 import net.jawr.web.resource.bundle.iterator.ConditionalCommentCallbackHandler;
 import net.jawr.web.resource.bundle.iterator.ResourceBundlePathsIterator;
+import net.jawr.web.resource.bundle.renderer.BundleLinkFragmentCache;
+import net.jawr.web.resource.bundle.variant.VariantUtils;
+import net.jawr.web.resource.handler.bundle.BundleContent;
 
 
 /**
@@ -54,11 +56,17 @@ public class CachedResourceBundlesHandler implements ResourceBundlesHandler {
 	/** The prefix for zipped element in cache */
 	private static String ZIP_CACHE_PREFIX = "ZIP.";
 	
+	/** The prefix for the elements encoded with another content coding in cache */
+	private static String ENCODED_CACHE_PREFIX = "ENCODED.";
+	
 	/** The resource bundle handler */
 	private ResourceBundlesHandler rsHandler;
 
 	/** The cache manager */
 	private JawrCacheManager cacheMgr;
+
+	/** The checksums of the cached encoded bundles, indexed by cache key */
+	private final Map<String, String> cachedChecksums = new HashMap<String, String>();
 	
 	/**
 	 * Build a cached wrapper around the supplied ResourceBundlesHandler.
@@ -157,6 +165,47 @@ public class CachedResourceBundlesHandler implements ResourceBundlesHandler {
 		rsHandler.initAllBundles();
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * net.jawr.web.resource.bundle.handler.ResourceBundlesHandler#rebuildBundles
+	 * (java.util.Collection)
+	 */
+	@Override
+	public void rebuildBundles(Collection<String> bundleIds) {
+		rsHandler.rebuildBundles(bundleIds);
+
+		// The encoded bundles are checked against the checksum of the stored
+		// ones, but the text bundles are cached as is
+		for (JoinableResourceBundle bundle : getBundles()) {
+			if (bundleIds.contains(bundle.getId())) {
+				List<String> variantKeys = new ArrayList<String>();
+				if (bundle.getVariantKeys() != null) {
+					variantKeys.addAll(bundle.getVariantKeys());
+				}
+				variantKeys.add(null);
+				for (String variantKey : variantKeys) {
+					cacheMgr.remove(TEXT_CACHE_PREFIX
+							+ VariantUtils.getVariantBundleName(bundle.getId(),
+									variantKey, false));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns all the bundles
+	 * 
+	 * @return the bundles
+	 */
+	private List<JoinableResourceBundle> getBundles() {
+		List<JoinableResourceBundle> bundles = new ArrayList<JoinableResourceBundle>(
+				rsHandler.getContextBundles());
+		bundles.addAll(rsHandler.getGlobalBundles());
+		return bundles;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -180,33 +229,112 @@ public class CachedResourceBundlesHandler implements ResourceBundlesHandler {
 	public void streamBundleTo(String bundlePath, OutputStream out)
 			throws ResourceNotFoundException {
 
-		try {
-			//byte[] gzip = gzipCache.get(bundlePath);
-			byte[] gzip = (byte[]) cacheMgr.get(ZIP_CACHE_PREFIX+bundlePath);
-			// If it's not cached yet
-			if (null == gzip) {
-				// Stream the stored data
-				ByteArrayOutputStream baOs = new ByteArrayOutputStream();
-				BufferedOutputStream bfOs = new BufferedOutputStream(baOs);
-				rsHandler.streamBundleTo(bundlePath, bfOs);
-
-				// Copy the data into the ByteBuffer
-				bfOs.close();
-				gzip = baOs.toByteArray();
-
-				// Cache the byte array
-				cacheMgr.put(ZIP_CACHE_PREFIX+bundlePath, gzip);
-			}
+		streamBundleTo(bundlePath, ContentEncodingUtils.GZIP, out);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * net.jawr.web.resource.bundle.ResourceBundlesHandler#streamBundleTo(java
+	 * .lang.String, java.lang.String, java.io.OutputStream)
+	 */
+	@Override
+	public void streamBundleTo(String bundlePath, String encoding,
+			OutputStream out) throws ResourceNotFoundException {
+
+		// The content of the live processed bundles depends on the request
+		// URL, and is already cached by the wrapped handler.
+		if (rsHandler.isLiveProcessedBundle(bundlePath)) {
+			rsHandler.streamBundleTo(bundlePath, encoding, out);
+			return;
+		}
 
+		BundleContent content = getBundleContent(bundlePath, encoding);
+		try {
 			// Write bytes to the outputstream
-			IOUtils.write(gzip, out);
+			content.writeTo(out);
 			
 		} catch (IOException e) {
 			throw new BundlingProcessException(
 					"Unexpected IOException writing bundle[" + bundlePath + "]",
 					e);
+		} finally {
+			content.close();
+		}
+
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * net.jawr.web.resource.bundle.handler.ResourceBundlesHandler#getBundleContent
+	 * (java.lang.String, java.lang.String)
+	 */
+	@Override
+	public BundleContent getBundleContent(String bundlePath, String encoding)
+			throws ResourceNotFoundException {
+
+		if (rsHandler.isLiveProcessedBundle(bundlePath)) {
+			return rsHandler.getBundleContent(bundlePath, encoding);
+		}
+		if (encoding == null) {
+			return new BundleContent(getBundleTextBytes(bundlePath), null);
+		}
+
+		String cacheKey = ContentEncodingUtils.GZIP.equals(encoding) ? ZIP_CACHE_PREFIX
+				+ bundlePath
+				: ENCODED_CACHE_PREFIX + encoding + "." + bundlePath;
+
+		// The stored file may have been replaced since it has been cached,
+		// like when the gzipped bundle is optimized
+		String checksum = rsHandler.getBundleChecksum(bundlePath, encoding);
+		synchronized (cachedChecksums) {
+			if (checksum != null && checksum.equals(cachedChecksums.get(cacheKey))) {
+				byte[] cachedContent = (byte[]) cacheMgr.get(cacheKey);
+				if (cachedContent != null) {
+					return new BundleContent(cachedContent, checksum);
+				}
+			}
+		}
+
+		// If it's not cached yet
+		BundleContent content = rsHandler.getBundleContent(bundlePath, encoding);
+		byte[] bytes = null;
+		try {
+			bytes = content.toByteArray();
+		} catch (IOException e) {
+			throw new BundlingProcessException(
+					"Unexpected IOException reading bundle[" + bundlePath + "]",
+					e);
+		} finally {
+			content.close();
 		}
 
+		// Cache the byte array with the checksum of the bytes read
+		synchronized (cachedChecksums) {
+			cacheMgr.put(cacheKey, bytes);
+			if (content.getChecksum() != null) {
+				cachedChecksums.put(cacheKey, content.getChecksum());
+			} else {
+				cachedChecksums.remove(cacheKey);
+			}
+		}
+		return new BundleContent(bytes, content.getChecksum());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * net.jawr.web.resource.bundle.handler.ResourceBundlesHandler#getBundleChecksum
+	 * (java.lang.String, java.lang.String)
+	 */
+	@Override
+	public String getBundleChecksum(String bundlePath, String encoding)
+			throws ResourceNotFoundException {
+		return rsHandler.getBundleChecksum(bundlePath, encoding);
 	}
 
 	/*
@@ -219,23 +347,17 @@ public class CachedResourceBundlesHandler implements ResourceBundlesHandler {
 	@Override
 	public void writeBundleTo(String bundlePath, Writer writer)
 			throws ResourceNotFoundException {
-		//String text = (String) textCache.get(bundlePath);
-		String text = (String) cacheMgr.get(TEXT_CACHE_PREFIX+bundlePath);
-		try {
-			// If it's not cached yet
-			if (null == text) {
-				String charsetName = rsHandler.getConfig().getResourceCharset()
-						.name();
-				ByteArrayOutputStream baOs = new ByteArrayOutputStream();
-				WritableByteChannel wrChannel = Channels.newChannel(baOs);
-				Writer tempWriter = Channels.newWriter(wrChannel, charsetName);
-				rsHandler.writeBundleTo(bundlePath, tempWriter);
-				text = baOs.toString(charsetName);
-				cacheMgr.put(TEXT_CACHE_PREFIX+bundlePath, text);
-			}
 
+		if (rsHandler.isLiveProcessedBundle(bundlePath)) {
+			rsHandler.writeBundleTo(bundlePath, writer);
+			return;
+		}
+
+		byte[] text = getBundleTextBytes(bundlePath);
+		try {
 			// Write the text to the outputstream
-			writer.write(text);
+			writer.write(new String(text, rsHandler.getConfig()
+					.getResourceCharset()));
 			writer.flush();
 
 		} catch (IOException e) {
@@ -245,6 +367,53 @@ public class CachedResourceBundlesHandler implements ResourceBundlesHandler {
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * net.jawr.web.resource.bundle.handler.ResourceBundlesHandler#getBundleTextBytes
+	 * (java.lang.String)
+	 */
+	@Override
+	public byte[] getBundleTextBytes(String bundlePath)
+			throws ResourceNotFoundException {
+
+		if (rsHandler.isLiveProcessedBundle(bundlePath)) {
+			return rsHandler.getBundleTextBytes(bundlePath);
+		}
+
+		// The text is cached encoded, so it is written as is in the response
+		byte[] text = (byte[]) cacheMgr.get(TEXT_CACHE_PREFIX+bundlePath);
+		if (null == text) {
+			// The stored bytes are read without being decoded and encoded
+			// again through a writer
+			BundleContent content = rsHandler.getBundleContent(bundlePath, null);
+			try {
+				text = content.toByteArray();
+			} catch (IOException e) {
+				throw new BundlingProcessException(
+						"Unexpected IOException reading bundle[" + bundlePath + "]",
+						e);
+			} finally {
+				content.close();
+			}
+			cacheMgr.put(TEXT_CACHE_PREFIX+bundlePath, text);
+		}
+		return text;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * net.jawr.web.resource.bundle.handler.ResourceBundlesHandler#isLiveProcessedBundle
+	 * (java.lang.String)
+	 */
+	@Override
+	public boolean isLiveProcessedBundle(String bundlePath) {
+		return rsHandler.isLiveProcessedBundle(bundlePath);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -256,6 +425,17 @@ public class CachedResourceBundlesHandler implements ResourceBundlesHandler {
 		return rsHandler.getClientSideHandler();
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see net.jawr.web.resource.bundle.handler.ResourceBundlesHandler#
+	 * getLinkFragmentCache()
+	 */
+	@Override
+	public BundleLinkFragmentCache getLinkFragmentCache() {
+		return rsHandler.getLinkFragmentCache();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -50,6 +50,20 @@ public interface ClientSideHandlerGenerator {
 	 */
 	public StringBuffer getClientSideHandlerScript(HttpServletRequest request);
 	
+	/**
+	 * Builds the javascript script used to include bundles in non dynamic html pages, 
+	 * for the given variants. As it doesn't depend on a request, it can be used to 
+	 * precompute the script at startup.
+	 * @param contextPath the context path of the web application
+	 * @param variants the variant map of the javascript bundles
+	 * @param cssVariants the variant map of the CSS bundles
+	 * @param secure the flag indicating if the script is requested through a secure connection
+	 * @param useGzip the flag indicating if the gzipped bundles must be referenced
+	 * @return the content of the javascript
+	 */
+	public StringBuffer getClientSideHandlerScript(String contextPath, Map<String, String> variants, 
+			Map<String, String> cssVariants, boolean secure, boolean useGzip);
+	
 	/**
 	 * Returns the part of the script that creates all instances of ResourceBundle javascript objects
 	 * for a given resourcehandler.  
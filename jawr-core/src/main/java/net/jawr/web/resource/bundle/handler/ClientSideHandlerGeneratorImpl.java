@@ -16,6 +16,7 @@ package net.jawr.web.resource.bundle.handler;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -111,15 +112,37 @@ public class ClientSideHandlerGeneratorImpl implements
 	 */
 	public StringBuffer getClientSideHandlerScript(HttpServletRequest request) {
 
-		StringBuffer sb = getHeaderSection(request);
-
 		boolean useGzip = RendererRequestUtils.isRequestGzippable(request,
 				this.config);
 
 		Map<String, String> variants = this.config.getGeneratorRegistry()
 				.resolveVariants(request);
+		Map<String, String> cssVariants = null;
+		ResourceBundlesHandler rsHandler = getCssBundlesHandler();
+		if (null != rsHandler) {
+			cssVariants = rsHandler.getConfig().getGeneratorRegistry()
+					.resolveVariants(request);
+		}
+		return getClientSideHandlerScript(request.getContextPath(), variants,
+				cssVariants, request.isSecure(), useGzip);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see net.jawr.web.resource.bundle.handler.ClientSideHandlerGenerator#
+	 * getClientSideHandlerScript(java.lang.String, java.util.Map,
+	 * java.util.Map, boolean, boolean)
+	 */
+	public StringBuffer getClientSideHandlerScript(String contextPath,
+			Map<String, String> variants, Map<String, String> cssVariants,
+			boolean secure, boolean useGzip) {
+
+		StringBuffer sb = getHeaderSection(contextPath);
+
 		sb.append("JAWR.loader.mapping='")
-				.append(getPathPrefix(request, this.config)).append("';\n");
+				.append(getPathPrefix(contextPath, secure, this.config))
+				.append("';\n");
 
 		// Start an self executing function
 		sb.append("(function(){\n");
@@ -132,9 +155,7 @@ public class ClientSideHandlerGeneratorImpl implements
 		sb.append("]\n");
 
 		// Retrieve the resourcehandler for CSS if there is one.
-		ResourceBundlesHandler rsHandler = (ResourceBundlesHandler) request
-				.getSession().getServletContext()
-				.getAttribute(JawrConstant.CSS_CONTEXT_ATTRIBUTE);
+		ResourceBundlesHandler rsHandler = getCssBundlesHandler();
 		boolean isCSSHandler = false;
 		if (null != rsHandler) {
 			ClientSideHandlerGenerator generator = rsHandler
@@ -143,18 +164,19 @@ public class ClientSideHandlerGeneratorImpl implements
 			// generator is the javascript one,
 			// so we add CSS bundles to the script
 			if (this != generator) {
-				variants = rsHandler.getConfig().getGeneratorRegistry()
-						.resolveVariants(request);
+				if (cssVariants == null) {
+					cssVariants = new HashMap<String, String>();
+				}
 				sb.append(";JAWR.loader.cssbundles = [");
-				sb.append(generator.getClientSideBundles(variants, useGzip));
+				sb.append(generator.getClientSideBundles(cssVariants, useGzip));
 				sb.append("];\n");
 			} else
 				isCSSHandler = true;
 
 			// Add the mapping for css resources
 			sb.append("JAWR.loader.cssmapping='")
-					.append(getPathPrefix(request, rsHandler.getConfig()))
-					.append("';\n");
+					.append(getPathPrefix(contextPath, secure,
+							rsHandler.getConfig())).append("';\n");
 		}
 		// End self executing function
 		sb.append("})();");
@@ -196,12 +218,38 @@ public class ClientSideHandlerGeneratorImpl implements
 	 * @return the header section for the client side handler
 	 */
 	protected StringBuffer getHeaderSection(HttpServletRequest request) {
+		return getHeaderSection(request.getContextPath());
+	}
+
+	/**
+	 * Returns the header section for the client side handler
+	 * 
+	 * @param contextPath the context path
+	 * @return the header section for the client side handler
+	 */
+	protected StringBuffer getHeaderSection(String contextPath) {
 		StringBuffer sb = new StringBuffer(mainScriptTemplate.toString());
-		sb.append("JAWR.app_context_path='").append(request.getContextPath())
+		sb.append("JAWR.app_context_path='").append(contextPath)
 				.append("';\n");
 		return sb;
 	}
 
+	/**
+	 * Returns the CSS resource bundles handler, or null if it is not
+	 * initialized
+	 * 
+	 * @return the CSS resource bundles handler
+	 */
+	protected ResourceBundlesHandler getCssBundlesHandler() {
+
+		ResourceBundlesHandler rsHandler = null;
+		if (null != this.config.getContext()) {
+			rsHandler = (ResourceBundlesHandler) this.config.getContext()
+					.getAttribute(JawrConstant.CSS_CONTEXT_ATTRIBUTE);
+		}
+		return rsHandler;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -225,12 +273,15 @@ public class ClientSideHandlerGeneratorImpl implements
 	 * context path override if present, or using the context path and possibly
 	 * the jawr mapping.
 	 * 
-	 * @param request the request
+	 * @param contextPath the context path
+	 * @param secure the flag indicating if the connection is secure
+	 * @param config the Jawr config
 	 * @return the path prefix
 	 */
-	private String getPathPrefix(HttpServletRequest request, JawrConfig config) {
+	private String getPathPrefix(String contextPath, boolean secure,
+			JawrConfig config) {
 
-		if (request.isSecure()) {
+		if (secure) {
 			if (null != config.getContextPathSslOverride()) {
 				return config.getContextPathSslOverride();
 			}
@@ -242,8 +293,7 @@ public class ClientSideHandlerGeneratorImpl implements
 
 		String mapping = null == config.getServletMapping() ? "" : config
 				.getServletMapping();
-		String path = PathNormalizer.joinPaths(request.getContextPath(),
-				mapping);
+		String path = PathNormalizer.joinPaths(contextPath, mapping);
 		path = path.endsWith("/") ? path : path + '/';
 		return path;
 	}
@@ -1,5 +1,5 @@
 /**
- * Copyright 2008-2014 Jordi Hernández Sellés, Ibrahim Chaehoi
+ * Copyright 2008-2016 Jordi Hernández Sellés, Ibrahim Chaehoi
  * 
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
  * except in compliance with the License. You may obtain a copy of the License at
@@ -13,26 +13,45 @@
  */
 package net.jawr.web.resource.bundle.handler;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
-import java.io.StringReader;
-import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import net.jawr.web.JawrConstant;
 import net.jawr.web.config.JawrConfig;
 import net.jawr.web.exception.BundlingProcessException;
-import net.jawr.web.resource.bundle.IOUtils;
+import net.jawr.web.resource.bundle.JoinableResourceBundle;
+import net.jawr.web.resource.bundle.encoding.ContentEncodingUtils;
+import net.jawr.web.resource.bundle.factory.util.PathNormalizer;
+import net.jawr.web.resource.bundle.variant.VariantSet;
 import net.jawr.web.resource.bundle.variant.VariantUtils;
 import net.jawr.web.servlet.RendererRequestUtils;
+import net.jawr.web.util.LRUCache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Handles requests for the client side script used in non dynamic html pages. 
  * 
+ * The script is generated once per variant, gzip and secure connection combination, 
+ * and kept in a bounded cache with its gzipped content. The scripts of the bundle variants 
+ * are precomputed at startup by {@link #init(String)}.
+ * 
+ * Besides the standard URL (/jawr_loader.js), which is revalidated by the browsers, 
+ * the script is available through a hash-versioned URL (/jawr_loader.[hash].js), 
+ * which is served with long-lived caching headers.
+ * 
  * @author Jordi Hernández Sellés
  * @author Ibrahim Chaehoi
  */
@@ -41,6 +60,10 @@ public class ClientSideHandlerScriptRequestHandler implements Serializable {
 	/** The serial version UID */
 	private static final long serialVersionUID = 5891646272143678994L;
 
+	/** The logger */
+	private static final Logger LOGGER = LoggerFactory
+			.getLogger(ClientSideHandlerScriptRequestHandler.class);
+	
 	/** The start time */
 	private static final long START_TIME = System.currentTimeMillis();
 	
@@ -72,6 +95,36 @@ public class ClientSideHandlerScriptRequestHandler implements Serializable {
      */
     public static final String HEADER_USER_AGENT = "User-Agent";
 
+    /** The cache control header */
+    private static final String HEADER_CACHE_CONTROL = "Cache-Control";
+
+    /** The cache control value of the hash-versioned script */
+    private static final String VERSIONED_CACHE_CONTROL_VALUE = "public, max-age=315360000, post-check=315360000, pre-check=315360000";
+
+    /** The expires header */
+    private static final String HEADER_EXPIRES = "Expires";
+
+    /** The vary header */
+    private static final String HEADER_VARY = "Vary";
+
+    /** The duration of the caching of the hash-versioned script : 10 years */
+    private static final long VERSIONED_EXPIRES_DELAY = 10L * 365 * 24 * 3600 * 1000;
+
+    /** The prefix of the hash-versioned script path */
+    public static final String VERSIONED_SCRIPT_PATH_PREFIX = "/jawr_loader.";
+
+    /** The suffix of the hash-versioned script path */
+    public static final String VERSIONED_SCRIPT_PATH_SUFFIX = ".js";
+
+    /** The ETag suffix of the gzipped script */
+    private static final String GZIP_ETAG_SUFFIX = "-gz";
+
+    /** The start of the script tag which loads the script */
+    private static final String SCRIPT_TAG_START = "<script type=\"text/javascript\" src=\"";
+
+    /** The end of the script tag which loads the script */
+    private static final String SCRIPT_TAG_END = "\" ></script>";
+
 	/** The resource bundle handler */
 	private ResourceBundlesHandler rsHandler;
 	
@@ -79,11 +132,17 @@ public class ClientSideHandlerScriptRequestHandler implements Serializable {
 	private JawrConfig config;
 	
 	/** The handler cache */
-	private Map<String, Handler> handlerCache;
+	private LRUCache<String, Handler> handlerCache;
+	
+	/** The variant sets of the bundles of the resource bundle handler */
+	private Map<String, VariantSet> variantSets;
+	
+	/** The variant sets of the CSS bundles, computed for the current CSS bundles handler */
+	private volatile CssVariantSets cssVariantSets;
 	
 	/**
-	 * Placeholder for a script stringbuffer and its hashcode, meant to 
-	 * avoid constant recalculation of the hash value. 
+	 * Placeholder for a script content and its hashcode, meant to 
+	 * avoid constant recalculation of the script. 
 	 * 
 	 * @author Jordi Hernández Sellés
 	 */
@@ -92,13 +151,40 @@ public class ClientSideHandlerScriptRequestHandler implements Serializable {
 		/** The serial version UID */
 		private static final long serialVersionUID = -8016918532036667397L;
 		
+		/** The hashcode of the script */
 		String hash;
 		
-		StringBuffer data;
+		/** The encoded script content, gzipped if the gzip flag is set */
+		byte[] data;
+		
+		/** The flag indicating if the data are gzipped */
+		boolean gzipped;
 		
-		Handler(StringBuffer data, String hash){
+		/** The CSS bundles handler used to generate the script */
+		transient ResourceBundlesHandler cssHandler;
+		
+		Handler(byte[] data, boolean gzipped, String hash, ResourceBundlesHandler cssHandler){
 			this.data = data;
+			this.gzipped = gzipped;
 			this.hash = hash;
+			this.cssHandler = cssHandler;
+		}
+	}
+	
+	/**
+	 * The variant sets of the bundles of a CSS bundles handler 
+	 */
+	private static class CssVariantSets {
+		
+		/** The CSS bundles handler */
+		final ResourceBundlesHandler cssHandler;
+		
+		/** The variant sets */
+		final Map<String, VariantSet> variantSets;
+		
+		CssVariantSets(ResourceBundlesHandler cssHandler, Map<String, VariantSet> variantSets){
+			this.cssHandler = cssHandler;
+			this.variantSets = variantSets;
 		}
 	}
 	
@@ -112,9 +198,53 @@ public class ClientSideHandlerScriptRequestHandler implements Serializable {
 		super();
 		this.rsHandler = rsHandler;
 		this.config = config;
-		this.handlerCache = new ConcurrentHashMap<String, ClientSideHandlerScriptRequestHandler.Handler>();
+		this.handlerCache = new LRUCache<String, ClientSideHandlerScriptRequestHandler.Handler>(
+				Math.max(1, config.getClientSideHandlerCacheSize()));
+		this.variantSets = getVariantSets(rsHandler);
 	}
 	
+	/**
+	 * Precomputes the scripts of the bundle variants, with and without gzip, for 
+	 * non secure connections. When the lazy variant processing is enabled, only the 
+	 * script of the default variants is precomputed, so the other variants are not 
+	 * processed at startup. The number of precomputed scripts is limited by the cache size.
+	 * 
+	 * @param contextPath the context path of the web application
+	 */
+	public void init(String contextPath) {
+		
+		if(config.isDebugModeOn() || contextPath == null){
+			return;
+		}
+		
+		List<Map<String, String>> allVariants = new ArrayList<Map<String,String>>();
+		if(config.isLazyVariantProcessing() || variantSets.isEmpty()){
+			allVariants.add(getDefaultVariants(variantSets));
+		}else{
+			allVariants.addAll(VariantUtils.getAllVariants(variantSets));
+		}
+		
+		ResourceBundlesHandler cssHandler = getCssBundlesHandler();
+		Map<String, String> cssVariants = null;
+		if(cssHandler != null){
+			cssVariants = getDefaultVariants(getCssVariantSets(cssHandler));
+		}
+		
+		int maxScripts = handlerCache.getMaxEntries();
+		boolean[] gzipFlags = config.isGzipResourcesModeOn() ? new boolean[]{ false, true } : new boolean[]{ false };
+		int nbScripts = 0;
+		for (Iterator<Map<String, String>> it = allVariants.iterator(); it.hasNext() && nbScripts < maxScripts;) {
+			Map<String, String> variants = it.next();
+			for (int i = 0; i < gzipFlags.length && nbScripts < maxScripts; i++) {
+				String key = getCacheKey(variants, cssVariants, false, gzipFlags[i]);
+				handlerCache.put(key, createHandler(contextPath, variants, cssVariants, false, gzipFlags[i], cssHandler));
+				nbScripts++;
+			}
+		}
+		if(LOGGER.isDebugEnabled()){
+			LOGGER.debug(nbScripts+" client side handler scripts have been precomputed");
+		}
+	}
 
 	/**
 	 * Generates a locale dependent script used to include bundles in non dynamic html pages. 
@@ -126,77 +256,315 @@ public class ClientSideHandlerScriptRequestHandler implements Serializable {
 	 * @param response the response
 	 */
 	public void handleClientSideHandlerRequest(HttpServletRequest request, HttpServletResponse response){
-		Handler handler;
-		
-		Map<String, String> variants = config.getGeneratorRegistry().resolveVariants(request);
-		String variantKey = VariantUtils.getVariantKey(variants);
+		handleClientSideHandlerRequest(request, response, null);
+	}
+	
+	/**
+	 * Generates a locale dependent script used to include bundles in non dynamic html pages. 
+	 * If the requested hash matches the hash of the script, the script is served with 
+	 * long-lived caching headers. 
+	 * 
+	 * @param request the request
+	 * @param response the response
+	 * @param requestedHash the hash of the hash-versioned URL, or null for the standard URL
+	 */
+	public void handleClientSideHandlerRequest(HttpServletRequest request, HttpServletResponse response, String requestedHash){
 		
-		if(handlerCache.containsKey(variantKey)){
-			handler = (Handler) handlerCache.get(variantKey);
-		}
-		else {	
-			StringBuffer sb = rsHandler.getClientSideHandler().getClientSideHandlerScript(request);
-			handler = new Handler(sb, Integer.toString(sb.hashCode()));
-			handlerCache.put(variantKey, handler);
-		}
+		Handler handler = getHandler(request);
+		String eTag = getETag(handler);
 
 		// Decide wether to set a 304 response		
-		if(useNotModifiedHeader(request,handler.hash)){
+		if(useNotModifiedHeader(request,eTag)){
 			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			response.setHeader(HEADER_ETAG, eTag);
 			return;
 		}
-		response.setHeader(HEADER_ETAG, handler.hash);
+		response.setHeader(HEADER_ETAG, eTag);
 		response.setDateHeader(HEADER_LAST_MODIFIED,START_TIME);
+		if(handler.hash.equals(requestedHash)){
+			response.setHeader(HEADER_CACHE_CONTROL, VERSIONED_CACHE_CONTROL_VALUE);
+			response.setDateHeader(HEADER_EXPIRES, System.currentTimeMillis() + VERSIONED_EXPIRES_DELAY);
+		}
+		if(config.isGzipResourcesModeOn()){
+			response.setHeader(HEADER_VARY, "Accept-Encoding");
+		}
 		response.setContentType(JAVASCRIPT_CONTENT_TYPE);
 		
-		if(RendererRequestUtils.isRequestGzippable(request, this.config)) {			
-			try {
+		try {
+			if(handler.gzipped) {			
 				response.setHeader("Content-Encoding", "gzip");
-				GZIPOutputStream gzOut = new GZIPOutputStream(response.getOutputStream());
-				byte[] data = handler.data.toString().getBytes(this.config.getResourceCharset().name());
+			}
+			response.setContentLength(handler.data.length);
+			response.getOutputStream().write(handler.data);
+		} catch (IOException e) {
+			throw new BundlingProcessException("Unexpected IOException writing ClientSideHandlerScript",e);
+		}
+	}
+	
+	/**
+	 * Returns the path of the hash-versioned script for the request, relative to the 
+	 * Jawr servlet mapping. As its content never changes, this path can be cached 
+	 * by the browsers without revalidation.
+	 * 
+	 * @param request the request
+	 * @return the path of the hash-versioned script
+	 */
+	public String getClientSideHandlerScriptPath(HttpServletRequest request){
+		return VERSIONED_SCRIPT_PATH_PREFIX + getHandler(request).hash + VERSIONED_SCRIPT_PATH_SUFFIX;
+	}
+	
+	/**
+	 * Returns the URL of the hash-versioned script for the request, including 
+	 * the context path (or its override) and the Jawr servlet mapping.
+	 * 
+	 * @param request the request
+	 * @return the URL of the hash-versioned script
+	 */
+	public String getClientSideHandlerScriptUrl(HttpServletRequest request){
+		
+		String prefix = null;
+		if (request.isSecure()) {
+			prefix = config.getContextPathSslOverride();
+		} else {
+			prefix = config.getContextPathOverride();
+		}
+		if(prefix == null){
+			String mapping = null == config.getServletMapping() ? "" : config.getServletMapping();
+			prefix = PathNormalizer.joinPaths(request.getContextPath(), mapping);
+		}
+		return PathNormalizer.joinPaths(prefix, getClientSideHandlerScriptPath(request));
+	}
+
+	/**
+	 * Returns the script tag which loads the hash-versioned script for the request
+	 *
+	 * @param request the request
+	 * @return the script tag
+	 */
+	public String getClientSideHandlerScriptTag(HttpServletRequest request){
+		return SCRIPT_TAG_START + getClientSideHandlerScriptUrl(request) + SCRIPT_TAG_END;
+	}
+
+	/**
+	 * Returns the hash of the hash-versioned script path, or null if the path 
+	 * is not a hash-versioned script path
+	 * 
+	 * @param requestedPath the requested path
+	 * @return the hash of the script
+	 */
+	public static String getRequestedHash(String requestedPath){
+		
+		String hash = null;
+		if(requestedPath != null && requestedPath.startsWith(VERSIONED_SCRIPT_PATH_PREFIX) 
+				&& requestedPath.endsWith(VERSIONED_SCRIPT_PATH_SUFFIX)){
+			hash = requestedPath.substring(VERSIONED_SCRIPT_PATH_PREFIX.length(), 
+					requestedPath.length() - VERSIONED_SCRIPT_PATH_SUFFIX.length());
+			if(hash.length() == 0 || hash.indexOf('/') != -1 || hash.indexOf('.') != -1){
+				hash = null;
+			}
+		}
+		return hash;
+	}
+	
+	/**
+	 * Returns the script handler for the request, generating the script if it is 
+	 * not in the cache or if the CSS bundles handler has changed since its generation.
+	 * 
+	 * @param request the request
+	 * @return the script handler
+	 */
+	private Handler getHandler(HttpServletRequest request){
+		
+		Map<String, String> variants = config.getGeneratorRegistry().getAvailableVariantMap(
+				variantSets, config.getGeneratorRegistry().resolveVariants(request));
+		
+		ResourceBundlesHandler cssHandler = getCssBundlesHandler();
+		Map<String, String> cssVariants = null;
+		if(cssHandler != null){
+			cssVariants = cssHandler.getConfig().getGeneratorRegistry().getAvailableVariantMap(
+					getCssVariantSets(cssHandler), cssHandler.getConfig().getGeneratorRegistry().resolveVariants(request));
+		}
+		
+		boolean secure = request.isSecure();
+		boolean useGzip = RendererRequestUtils.isRequestGzippable(request, config);
+		String key = getCacheKey(variants, cssVariants, secure, useGzip);
+		Handler handler = handlerCache.get(key);
+		if(handler == null || handler.cssHandler != cssHandler){
+			handler = createHandler(request.getContextPath(), variants, cssVariants, secure, useGzip, cssHandler);
+			handlerCache.put(key, handler);
+		}
+		return handler;
+	}
+	
+	/**
+	 * Generates the script and creates its handler
+	 * 
+	 * @param contextPath the context path
+	 * @param variants the variants of the javascript bundles
+	 * @param cssVariants the variants of the CSS bundles
+	 * @param secure the flag indicating if the connection is secure
+	 * @param useGzip the flag indicating if the script is gzipped
+	 * @param cssHandler the CSS bundles handler
+	 * @return the script handler
+	 */
+	private Handler createHandler(String contextPath, Map<String, String> variants, Map<String, String> cssVariants, 
+			boolean secure, boolean useGzip, ResourceBundlesHandler cssHandler){
+		
+		String script = rsHandler.getClientSideHandler().getClientSideHandlerScript(
+				contextPath, variants, cssVariants, secure, useGzip).toString();
+		String hash = config.getBundleHashcodeGenerator().generateHashCode(config, script);
+		try {
+			byte[] data = script.getBytes(config.getResourceCharset().name());
+			if(useGzip){
+				ByteArrayOutputStream baOs = new ByteArrayOutputStream();
+				GZIPOutputStream gzOut = ContentEncodingUtils.createGzipOutputStream(baOs,
+						config.getGzipCompressionLevel());
 				gzOut.write(data, 0, data.length);
 				gzOut.close();
-			} catch (IOException e) {
-				throw new BundlingProcessException("Unexpected IOException writing ClientSideHandlerScript",e);
+				data = baOs.toByteArray();
 			}
+			return new Handler(data, useGzip, hash, cssHandler);
+		} catch (IOException e) {
+			throw new BundlingProcessException("Unexpected IOException creating ClientSideHandlerScript",e);
 		}
-		else {
-			StringReader rd = new StringReader(handler.data.toString());
-			try {
-				Writer writer = response.getWriter();
-                IOUtils.copy(rd, writer, true);
-			} catch (IOException e) {
-				throw new BundlingProcessException("Unexpected IOException writing ClientSideHandlerScript",e);
+	}
+	
+	/**
+	 * Returns the key of the script in the cache
+	 * 
+	 * @param variants the variants of the javascript bundles
+	 * @param cssVariants the variants of the CSS bundles
+	 * @param secure the flag indicating if the connection is secure
+	 * @param useGzip the flag indicating if the script is gzipped
+	 * @return the cache key
+	 */
+	private String getCacheKey(Map<String, String> variants, Map<String, String> cssVariants, 
+			boolean secure, boolean useGzip){
+		
+		StringBuilder key = new StringBuilder(VariantUtils.getVariantKey(variants));
+		key.append('|').append(VariantUtils.getVariantKey(cssVariants));
+		if(useGzip){
+			key.append("|gzip");
+		}
+		if(secure){
+			key.append("|ssl");
+		}
+		return key.toString();
+	}
+	
+	/**
+	 * Returns the ETag of the script
+	 * 
+	 * @param handler the script handler
+	 * @return the ETag
+	 */
+	private String getETag(Handler handler){
+		
+		StringBuilder eTag = new StringBuilder();
+		eTag.append('"').append(handler.hash);
+		if(handler.gzipped){
+			eTag.append(GZIP_ETAG_SUFFIX);
+		}
+		return eTag.append('"').toString();
+	}
+	
+	/**
+	 * Returns the CSS bundles handler, or null if it is not initialized
+	 * 
+	 * @return the CSS bundles handler
+	 */
+	private ResourceBundlesHandler getCssBundlesHandler(){
+		
+		ResourceBundlesHandler cssHandler = null;
+		if(config.getContext() != null){
+			cssHandler = (ResourceBundlesHandler) config.getContext().getAttribute(JawrConstant.CSS_CONTEXT_ATTRIBUTE);
+			if(cssHandler == rsHandler){
+				// The CSS bundles are not added to the script of the CSS handler
+				cssHandler = null;
 			}
 		}
+		return cssHandler;
+	}
+	
+	/**
+	 * Returns the variant sets of the CSS bundles handler
+	 * 
+	 * @param cssHandler the CSS bundles handler
+	 * @return the variant sets
+	 */
+	private Map<String, VariantSet> getCssVariantSets(ResourceBundlesHandler cssHandler){
+		
+		CssVariantSets current = cssVariantSets;
+		if(current == null || current.cssHandler != cssHandler){
+			current = new CssVariantSets(cssHandler, getVariantSets(cssHandler));
+			cssVariantSets = current;
+		}
+		return current.variantSets;
+	}
+	
+	/**
+	 * Returns the variant sets of all the bundles of a bundles handler
+	 * 
+	 * @param bundlesHandler the bundles handler
+	 * @return the variant sets
+	 */
+	private static Map<String, VariantSet> getVariantSets(ResourceBundlesHandler bundlesHandler){
+		
+		Map<String, VariantSet> result = new HashMap<String, VariantSet>();
+		List<JoinableResourceBundle> bundles = new ArrayList<JoinableResourceBundle>(bundlesHandler.getGlobalBundles());
+		bundles.addAll(bundlesHandler.getContextBundles());
+		for (JoinableResourceBundle bundle : bundles) {
+			result = VariantUtils.concatVariants(result, bundle.getVariants());
+		}
+		return Collections.unmodifiableMap(result);
+	}
+	
+	/**
+	 * Returns the default variants of variant sets
+	 * 
+	 * @param variantSets the variant sets
+	 * @return the default variants
+	 */
+	private static Map<String, String> getDefaultVariants(Map<String, VariantSet> variantSets){
+		
+		Map<String, String> variants = new HashMap<String, String>();
+		for (Map.Entry<String, VariantSet> entry : variantSets.entrySet()) {
+			variants.put(entry.getKey(), entry.getValue().getDefaultVariant());
+		}
+		return variants;
 	}
 	
 	/**
 	 * Determines wether a response should get a 304 response and empty body, according to 
-	 * etags and if-modified-since headers. 
+	 * etags and if-modified-since headers. The If-None-Match header takes precedence 
+	 * over the If-Modified-Since header.
 	 * 
-	 * @param request
-	 * @param scriptEtag
-	 * @return
+	 * @param request the request
+	 * @param scriptEtag the ETag of the script
+	 * @return true if the script has not been modified
 	 */
 	private boolean useNotModifiedHeader(HttpServletRequest request,String scriptEtag) {
+		
+		String eTag = request.getHeader(HEADER_IF_NONE);
+		if(eTag != null){
+			for (String tag : eTag.split(",")) {
+				tag = tag.trim();
+				if(tag.startsWith("W/")){
+					tag = tag.substring(2);
+				}
+				if(tag.equals("*") || tag.equals(scriptEtag)){
+					return true;
+				}
+			}
+			return false;
+		}
+		
 		long modifiedHeader = -1;
 		try
         {
             modifiedHeader = request.getDateHeader(HEADER_IF_MODIFIED);
-			if(modifiedHeader != -1)
-				modifiedHeader -= modifiedHeader % 1000;
         }
         catch (RuntimeException ex){}
-        String eTag = request.getHeader(HEADER_IF_NONE);
-        if(modifiedHeader == -1) {
-        	return scriptEtag.equals(eTag);
-        }
-        else if(null == eTag){
-        	return modifiedHeader <= START_TIME;
-        }
-        else {
-        	return scriptEtag.equals(eTag) && modifiedHeader <= START_TIME;
-        }
+        return modifiedHeader != -1 && modifiedHeader >= START_TIME - START_TIME % 1000;
     }
 }
@@ -0,0 +1,168 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.resource.bundle.handler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import net.jawr.web.JawrConstant;
+import net.jawr.web.resource.bundle.encoding.ContentEncodingUtils;
+import net.jawr.web.util.LRUCache;
+
+/**
+ * This class holds the content of a bundle which must be processed in live,
+ * because it contains the bundle path placeholder. The content is split once
+ * at the placeholder offsets, so the substitution of the request URL is only a
+ * concatenation of the precomputed segments. The gzipped content is computed
+ * once per request URL and kept in a bounded cache.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class LiveProcessedBundle {
+
+	/** The content segments, located between the placeholders */
+	private final String[] segments;
+
+	/** The charset */
+	private final Charset charset;
+
+	/**
+	 * The gzipped content cache, indexed by request URL, or null if the
+	 * gzipped content is not cached
+	 */
+	private final LRUCache<String, byte[]> gzipContentCache;
+
+	/** The deflate level of the gzipped content */
+	private final int gzipCompressionLevel;
+
+	/**
+	 * Constructor
+	 *
+	 * @param content
+	 *            the bundle content
+	 * @param charset
+	 *            the charset
+	 * @param maxCachedUrls
+	 *            the maximum number of request URLs for which the gzipped
+	 *            content is cached, or 0 to disable the cache
+	 */
+	public LiveProcessedBundle(String content, Charset charset, int maxCachedUrls) {
+		this(content, charset, maxCachedUrls, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param content
+	 *            the bundle content
+	 * @param charset
+	 *            the charset
+	 * @param maxCachedUrls
+	 *            the maximum number of request URLs for which the gzipped
+	 *            content is cached, or 0 to disable the cache
+	 * @param gzipCompressionLevel
+	 *            the deflate level of the gzipped content
+	 */
+	public LiveProcessedBundle(String content, Charset charset, int maxCachedUrls, int gzipCompressionLevel) {
+		this.segments = split(content);
+		this.charset = charset;
+		this.gzipContentCache = maxCachedUrls > 0 ? new LRUCache<String, byte[]>(maxCachedUrls) : null;
+		this.gzipCompressionLevel = gzipCompressionLevel;
+	}
+
+	/**
+	 * Splits the content at the placeholder offsets
+	 *
+	 * @param content
+	 *            the content
+	 * @return the content segments
+	 */
+	private static String[] split(String content) {
+
+		List<String> result = new ArrayList<String>();
+		int placeholderLength = JawrConstant.JAWR_BUNDLE_PATH_PLACEHOLDER.length();
+		int start = 0;
+		int idx = content.indexOf(JawrConstant.JAWR_BUNDLE_PATH_PLACEHOLDER);
+		while (idx != -1) {
+			result.add(content.substring(start, idx));
+			start = idx + placeholderLength;
+			idx = content.indexOf(JawrConstant.JAWR_BUNDLE_PATH_PLACEHOLDER, start);
+		}
+		result.add(content.substring(start));
+		return result.toArray(new String[result.size()]);
+	}
+
+	/**
+	 * Writes the content of the bundle, where the placeholders are replaced by
+	 * the request URL. If the request URL is null, the placeholders are kept.
+	 *
+	 * @param writer
+	 *            the writer
+	 * @param requestURL
+	 *            the request URL
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	public void writeTo(Writer writer, String requestURL) throws IOException {
+
+		String replacement = requestURL == null ? JawrConstant.JAWR_BUNDLE_PATH_PLACEHOLDER : requestURL;
+		writer.write(segments[0]);
+		for (int i = 1; i < segments.length; i++) {
+			writer.write(replacement);
+			writer.write(segments[i]);
+		}
+	}
+
+	/**
+	 * Returns the gzipped content of the bundle for the request URL
+	 *
+	 * @param requestURL
+	 *            the request URL
+	 * @return the gzipped content
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	public byte[] getGzippedContent(String requestURL) throws IOException {
+
+		byte[] data = gzipContentCache == null ? null : gzipContentCache.get(requestURL);
+		if (data == null) {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			Writer writer = new OutputStreamWriter(
+					ContentEncodingUtils.createGzipOutputStream(bos, gzipCompressionLevel), charset);
+			writeTo(writer, requestURL);
+			writer.close();
+			data = bos.toByteArray();
+			if (gzipContentCache != null) {
+				gzipContentCache.put(requestURL, data);
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * Returns the number of request URLs for which the gzipped content is
+	 * cached
+	 *
+	 * @return the number of cached request URLs
+	 */
+	public int getCachedUrlCount() {
+		return gzipContentCache == null ? 0 : gzipContentCache.size();
+	}
+}
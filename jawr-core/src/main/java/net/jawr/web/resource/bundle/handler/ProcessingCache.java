@@ -0,0 +1,545 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.resource.bundle.handler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.jawr.web.resource.bundle.IOUtils;
+import net.jawr.web.resource.bundle.variant.VariantSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class defines the persistent cache of the processed bundle contents.
+ * Each entry is stored in its own file, whose name is the key of the entry.
+ * The key is computed by the bundles handler from the content of the bundle
+ * members, the post processors and the variants, so an entry can be reused
+ * after a restart of the application, or on another server, as long as the
+ * processing inputs are identical.
+ *
+ * The total size of the cache is bounded. When it is exceeded, the least
+ * recently used entries are removed. The last modification date of an entry
+ * file is updated each time it is read.
+ *
+ * The main method of this class copies the entries of a cache directory into
+ * another one, which allows to pre-seed the cache of the servers from a cache
+ * generated on a build machine.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class ProcessingCache {
+
+	/** The logger */
+	private static final Logger LOGGER = LoggerFactory.getLogger(ProcessingCache.class);
+
+	/** The suffix of the entry files */
+	public static final String ENTRY_FILE_SUFFIX = ".entry";
+
+	/** The suffix of the temporary files */
+	private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+	/** The marker of the entry files */
+	private static final int ENTRY_FILE_MAGIC = 0x4A415752;
+
+	/** The version of the entry file format */
+	private static final int ENTRY_FILE_VERSION = 1;
+
+	/**
+	 * The ratio of the maximum size to which the cache is reduced, when it is
+	 * exceeded
+	 */
+	private static final double EVICTION_RATIO = 0.9;
+
+	/** The charset of the cached contents */
+	private static final Charset CONTENT_CHARSET = Charset.forName("UTF-8");
+
+	/** The entry file filter */
+	private static final FilenameFilter ENTRY_FILE_FILTER = new FilenameFilter() {
+
+		public boolean accept(File dir, String name) {
+			return name.endsWith(ENTRY_FILE_SUFFIX);
+		}
+	};
+
+	/** The cache directory */
+	private final File cacheDir;
+
+	/** The maximum size of the cache in bytes */
+	private final long maxSize;
+
+	/** The estimated size of the cache in bytes */
+	private final AtomicLong size = new AtomicLong();
+
+	/** The number of cache hits */
+	private final AtomicLong hitCount = new AtomicLong();
+
+	/** The number of cache misses */
+	private final AtomicLong missCount = new AtomicLong();
+
+	/**
+	 * Constructor
+	 *
+	 * @param cacheDir
+	 *            the cache directory
+	 * @param maxSize
+	 *            the maximum size of the cache in bytes
+	 */
+	public ProcessingCache(File cacheDir, long maxSize) {
+
+		this.cacheDir = cacheDir;
+		this.maxSize = maxSize;
+		if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+			LOGGER.warn("Unable to create the processing cache directory '" + cacheDir + "'");
+		}
+		size.set(getDirectorySize());
+	}
+
+	/**
+	 * Returns the cache directory
+	 *
+	 * @return the cache directory
+	 */
+	public File getCacheDir() {
+		return cacheDir;
+	}
+
+	/**
+	 * Returns the maximum size of the cache in bytes
+	 *
+	 * @return the maximum size of the cache in bytes
+	 */
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Returns the estimated size of the cache in bytes
+	 *
+	 * @return the estimated size of the cache in bytes
+	 */
+	public long getSize() {
+		return size.get();
+	}
+
+	/**
+	 * Returns the number of cache hits
+	 *
+	 * @return the number of cache hits
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * Returns the number of cache misses
+	 *
+	 * @return the number of cache misses
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * Returns the cached content
+	 *
+	 * @param key
+	 *            the key
+	 * @return the cached content, or null if it is not in the cache
+	 */
+	public ProcessedContent get(String key) {
+
+		File entryFile = getEntryFile(key);
+		ProcessedContent content = null;
+		if (entryFile.isFile()) {
+			try {
+				content = readEntry(entryFile, key);
+			} catch (IOException e) {
+				LOGGER.warn("Unable to read the processing cache entry '" + entryFile + "'", e);
+			}
+			if (content == null) {
+				removeEntry(entryFile);
+			} else if (!entryFile.setLastModified(System.currentTimeMillis()) && LOGGER.isDebugEnabled()) {
+				LOGGER.debug("Unable to update the last modification date of '" + entryFile + "'");
+			}
+		}
+
+		if (content == null) {
+			missCount.incrementAndGet();
+		} else {
+			hitCount.incrementAndGet();
+		}
+		return content;
+	}
+
+	/**
+	 * Stores a processed content in the cache. The cache is reduced if its
+	 * maximum size is exceeded.
+	 *
+	 * @param key
+	 *            the key
+	 * @param content
+	 *            the processed content
+	 */
+	public void put(String key, ProcessedContent content) {
+
+		File entryFile = getEntryFile(key);
+		File tempFile = new File(cacheDir, key + "-" + Thread.currentThread().getId() + TEMP_FILE_SUFFIX);
+		try {
+			writeEntry(tempFile, key, content);
+			long previousLength = entryFile.length();
+			// The entry may have been stored by another server sharing the
+			// directory
+			if (entryFile.exists() && !entryFile.delete() || !tempFile.renameTo(entryFile)) {
+				throw new IOException("Unable to rename '" + tempFile + "' to '" + entryFile + "'");
+			}
+			if (size.addAndGet(entryFile.length() - previousLength) > maxSize) {
+				evict();
+			}
+		} catch (IOException e) {
+			LOGGER.warn("Unable to store the processing cache entry '" + entryFile + "'", e);
+		} finally {
+			if (tempFile.exists() && !tempFile.delete()) {
+				LOGGER.warn("Unable to delete the temporary file '" + tempFile + "'");
+			}
+		}
+	}
+
+	/**
+	 * Removes the least recently used entries, until the size of the cache is
+	 * lower than the eviction ratio of its maximum size
+	 */
+	public synchronized void evict() {
+
+		File[] entryFiles = cacheDir.listFiles(ENTRY_FILE_FILTER);
+		if (entryFiles == null) {
+			return;
+		}
+
+		final Map<File, Long> lastModifiedDates = new HashMap<File, Long>();
+		long totalSize = 0;
+		for (File entryFile : entryFiles) {
+			lastModifiedDates.put(entryFile, entryFile.lastModified());
+			totalSize += entryFile.length();
+		}
+
+		List<File> files = new ArrayList<File>(Arrays.asList(entryFiles));
+		Collections.sort(files, new Comparator<File>() {
+
+			public int compare(File f1, File f2) {
+				return lastModifiedDates.get(f1).compareTo(lastModifiedDates.get(f2));
+			}
+		});
+
+		long targetSize = (long) (maxSize * EVICTION_RATIO);
+		int removedCount = 0;
+		for (int i = 0; i < files.size() && totalSize > targetSize; i++) {
+			File entryFile = files.get(i);
+			long length = entryFile.length();
+			if (entryFile.delete()) {
+				totalSize -= length;
+				removedCount++;
+			}
+		}
+		size.set(totalSize);
+
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug(removedCount + " entries have been removed from the processing cache '" + cacheDir
+					+ "', its size is now " + totalSize + " bytes");
+		}
+	}
+
+	/**
+	 * Returns the file of an entry
+	 *
+	 * @param key
+	 *            the key
+	 * @return the file of the entry
+	 */
+	private File getEntryFile(String key) {
+		return new File(cacheDir, key + ENTRY_FILE_SUFFIX);
+	}
+
+	/**
+	 * Removes an invalid entry
+	 *
+	 * @param entryFile
+	 *            the entry file
+	 */
+	private void removeEntry(File entryFile) {
+
+		long length = entryFile.length();
+		if (entryFile.delete()) {
+			size.addAndGet(-length);
+		}
+	}
+
+	/**
+	 * Returns the size of the entry files of the cache directory
+	 *
+	 * @return the size of the entry files
+	 */
+	private long getDirectorySize() {
+
+		long dirSize = 0;
+		File[] entryFiles = cacheDir.listFiles(ENTRY_FILE_FILTER);
+		if (entryFiles != null) {
+			for (File entryFile : entryFiles) {
+				dirSize += entryFile.length();
+			}
+		}
+		return dirSize;
+	}
+
+	/**
+	 * Writes an entry file
+	 *
+	 * @param file
+	 *            the file
+	 * @param key
+	 *            the key
+	 * @param content
+	 *            the processed content
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	private static void writeEntry(File file, String key, ProcessedContent content) throws IOException {
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(ENTRY_FILE_MAGIC);
+			out.writeInt(ENTRY_FILE_VERSION);
+			out.writeUTF(key);
+
+			Map<String, VariantSet> variants = content.getPostProcessVariants();
+			out.writeInt(variants.size());
+			for (Map.Entry<String, VariantSet> entry : variants.entrySet()) {
+				VariantSet variantSet = entry.getValue();
+				out.writeUTF(entry.getKey());
+				writeNullableString(out, variantSet.getDefaultVariant());
+				out.writeInt(variantSet.size());
+				for (String variant : variantSet) {
+					writeNullableString(out, variant);
+				}
+			}
+
+			byte[] data = content.getContent().getBytes(CONTENT_CHARSET);
+			out.writeInt(data.length);
+			out.write(data);
+		} finally {
+			IOUtils.close(out);
+		}
+	}
+
+	/**
+	 * Reads an entry file
+	 *
+	 * @param file
+	 *            the file
+	 * @param key
+	 *            the expected key, or null if the key must not be checked
+	 * @return the processed content, or null if the file is not a valid entry
+	 *         for the key
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	private static ProcessedContent readEntry(File file, String key) throws IOException {
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != ENTRY_FILE_MAGIC || in.readInt() != ENTRY_FILE_VERSION) {
+				return null;
+			}
+			String entryKey = in.readUTF();
+			if (key != null && !key.equals(entryKey)) {
+				return null;
+			}
+
+			Map<String, VariantSet> variants = new HashMap<String, VariantSet>();
+			int variantSetCount = in.readInt();
+			for (int i = 0; i < variantSetCount; i++) {
+				String type = in.readUTF();
+				String defaultVariant = readNullableString(in);
+				int variantCount = in.readInt();
+				List<String> variantValues = new ArrayList<String>();
+				for (int j = 0; j < variantCount; j++) {
+					variantValues.add(readNullableString(in));
+				}
+				variants.put(type, new VariantSet(type, defaultVariant, variantValues));
+			}
+
+			byte[] data = new byte[in.readInt()];
+			in.readFully(data);
+			return new ProcessedContent(new String(data, CONTENT_CHARSET), variants);
+		} finally {
+			IOUtils.close(in);
+		}
+	}
+
+	/**
+	 * Writes a string which may be null
+	 *
+	 * @param out
+	 *            the output stream
+	 * @param str
+	 *            the string
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	private static void writeNullableString(DataOutputStream out, String str) throws IOException {
+
+		out.writeBoolean(str != null);
+		if (str != null) {
+			out.writeUTF(str);
+		}
+	}
+
+	/**
+	 * Reads a string which may be null
+	 *
+	 * @param in
+	 *            the input stream
+	 * @return the string
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	private static String readNullableString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	/**
+	 * Copies the valid entries of a cache directory, which doesn't exist in
+	 * the target cache, and reduces the target cache if its maximum size is
+	 * exceeded.
+	 *
+	 * @param sourceDir
+	 *            the source cache directory
+	 * @param target
+	 *            the target cache
+	 * @return the number of copied entries
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	public static int seed(File sourceDir, ProcessingCache target) throws IOException {
+
+		File[] entryFiles = sourceDir.listFiles(ENTRY_FILE_FILTER);
+		if (entryFiles == null) {
+			throw new IOException("The directory '" + sourceDir + "' doesn't exist");
+		}
+
+		int copiedCount = 0;
+		for (File entryFile : entryFiles) {
+			String name = entryFile.getName();
+			String key = name.substring(0, name.length() - ENTRY_FILE_SUFFIX.length());
+			if (!target.getEntryFile(key).exists()) {
+				ProcessedContent content = readEntry(entryFile, key);
+				if (content != null) {
+					target.put(key, content);
+					copiedCount++;
+				} else {
+					LOGGER.warn("The file '" + entryFile + "' is not a valid processing cache entry");
+				}
+			}
+		}
+		return copiedCount;
+	}
+
+	/**
+	 * Pre-seeds a processing cache from the cache generated on another
+	 * machine, for example by the build.
+	 *
+	 * Usage : <code>ProcessingCache &lt;source dir&gt; &lt;target dir&gt;
+	 * [max size in MB]</code>
+	 *
+	 * @param args
+	 *            the arguments
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	public static void main(String[] args) throws IOException {
+
+		if (args.length < 2) {
+			System.err.println("Usage : " + ProcessingCache.class.getName()
+					+ " <source dir> <target dir> [max size in MB]");
+			System.exit(1);
+		}
+
+		long maxSize = (args.length > 2 ? Long.parseLong(args[2]) : 100) * 1024 * 1024;
+		ProcessingCache target = new ProcessingCache(new File(args[1]), maxSize);
+		int copiedCount = seed(new File(args[0]), target);
+		System.out.println(copiedCount + " entries copied to '" + args[1] + "', size : " + target.getSize()
+				+ " bytes");
+	}
+
+	/**
+	 * This class defines a processed content, with the post process variants
+	 * which have been defined while processing it.
+	 */
+	public static class ProcessedContent {
+
+		/** The processed content */
+		private final String content;
+
+		/** The post process variants */
+		private final Map<String, VariantSet> postProcessVariants;
+
+		/**
+		 * Constructor
+		 *
+		 * @param content
+		 *            the processed content
+		 * @param postProcessVariants
+		 *            the post process variants
+		 */
+		public ProcessedContent(String content, Map<String, VariantSet> postProcessVariants) {
+			this.content = content;
+			this.postProcessVariants = postProcessVariants;
+		}
+
+		/**
+		 * Returns the processed content
+		 *
+		 * @return the processed content
+		 */
+		public String getContent() {
+			return content;
+		}
+
+		/**
+		 * Returns the post process variants
+		 *
+		 * @return the post process variants
+		 */
+		public Map<String, VariantSet> getPostProcessVariants() {
+			return postProcessVariants;
+		}
+	}
+}
@@ -15,6 +15,7 @@ package net.jawr.web.resource.bundle.handler;
 
 import java.io.OutputStream;
 import java.io.Writer;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -24,6 +25,8 @@ import net.jawr.web.exception.ResourceNotFoundException;
 import net.jawr.web.resource.bundle.JoinableResourceBundle;
 import net.jawr.web.resource.bundle.iterator.ConditionalCommentCallbackHandler;
 import net.jawr.web.resource.bundle.iterator.ResourceBundlePathsIterator;
+import net.jawr.web.resource.bundle.renderer.BundleLinkFragmentCache;
+import net.jawr.web.resource.handler.bundle.BundleContent;
 
 /**
  * Main interface to work with resource bundles. It helps in resolving groups of resources
@@ -124,6 +127,23 @@ public interface ResourceBundlesHandler {
 	 */
 	public void writeBundleTo(String bundlePath, Writer writer) throws ResourceNotFoundException;
 	
+	/**
+	 * Returns the content of a bundle, encoded with the resource charset.
+	 * This method is used to write the text data in the output stream with
+	 * its exact length. 
+	 * @param bundlePath the bundle path
+	 * @return the encoded content of the bundle
+	 */
+	public byte[] getBundleTextBytes(String bundlePath) throws ResourceNotFoundException;
+	
+	/**
+	 * Returns true if the content of the bundle depends on the request URL,
+	 * because it must be processed in live.
+	 * @param bundlePath the bundle path
+	 * @return true if the bundle is processed in live
+	 */
+	public boolean isLiveProcessedBundle(String bundlePath);
+	
 	/**
 	 * Writes the bytes of a bundle to the specified OutputStream.
 	 * This method is used to copy the gzip data in the output stream. 
@@ -132,6 +152,41 @@ public interface ResourceBundlesHandler {
 	 */
 	public void streamBundleTo(String bundlePath, OutputStream out) throws ResourceNotFoundException;
 	
+	/**
+	 * Writes the bytes of a bundle encoded with the content coding given in
+	 * parameter to the specified OutputStream.
+	 * The live processed bundles are only available in gzip.
+	 * @param bundlePath the bundle path
+	 * @param encoding the content coding, like "gzip" or "br"
+	 * @param out the output stream
+	 */
+	public void streamBundleTo(String bundlePath, String encoding, OutputStream out) throws ResourceNotFoundException;
+	
+	/**
+	 * Returns the content of a bundle encoded with the content coding given in
+	 * parameter. This method is used to write the data in the output stream 
+	 * with its exact length, or to write only a range of it, without reading 
+	 * the whole stored bundle.
+	 * The live processed bundles are only available in gzip.
+	 * @param bundlePath the bundle path
+	 * @param encoding the content coding, like "gzip" or "br", or null for the
+	 * text version encoded with the resource charset
+	 * @return the content of the bundle, which must be closed once written
+	 */
+	public BundleContent getBundleContent(String bundlePath, String encoding) throws ResourceNotFoundException;
+	
+	/**
+	 * Returns the checksum of the stored version of a bundle encoded with the
+	 * content coding given in parameter. The checksum identifies the encoded 
+	 * bytes, which may change while the bundle content stays the same, like 
+	 * when the gzipped bundle is optimized.
+	 * @param bundlePath the bundle path
+	 * @param encoding the content coding, like "gzip" or "br"
+	 * @return the checksum of the encoded bundle, or null for a bundle 
+	 * processed in live
+	 */
+	public String getBundleChecksum(String bundlePath, String encoding) throws ResourceNotFoundException;
+	
 	/**
 	 * Returns the global bundles
 	 * @return the global bundles
@@ -148,6 +203,12 @@ public interface ResourceBundlesHandler {
 	 * Generates all file bundles so that they will be ready to attend requests. 
 	 */
 	public void initAllBundles();
+
+	/**
+	 * Processes again the bundles whose resources have changed. The other bundles are kept as they are.
+	 * @param bundleIds the IDs of the bundles to process
+	 */
+	public void rebuildBundles(Collection<String> bundleIds);
 	
 	/**
 	 * Retrieves the configuration for this bundler
@@ -162,6 +223,12 @@ public interface ResourceBundlesHandler {
 	 */
 	public ClientSideHandlerGenerator getClientSideHandler();
 
+	/**
+	 * Returns the cache of the link fragments rendered by the bundle tags
+	 * @return the link fragment cache, or null if the cache is disabled
+	 */
+	public BundleLinkFragmentCache getLinkFragmentCache();
+
 	/**
 	 * Returns the type of bundle hashcode (valid, invalid, unknown bunle) for the requested path given in parameter 
 	 * @param requestedPath the requested path
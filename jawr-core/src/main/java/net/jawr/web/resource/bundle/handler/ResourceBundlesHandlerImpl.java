@@ -13,27 +13,40 @@
  */
 package net.jawr.web.resource.bundle.handler;
 
-import java.io.BufferedWriter;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
-import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import javax.management.ObjectName;
+import javax.servlet.ServletContext;
 
 import net.jawr.web.DebugMode;
 import net.jawr.web.JawrConstant;
@@ -42,16 +55,28 @@ import net.jawr.web.context.ThreadLocalJawrContext;
 import net.jawr.web.exception.BundlingProcessException;
 import net.jawr.web.exception.ResourceNotFoundException;
 import net.jawr.web.resource.BinaryResourcesHandler;
+import net.jawr.web.resource.bundle.CheckSumUtils;
 import net.jawr.web.resource.bundle.CompositeResourceBundle;
 import net.jawr.web.resource.bundle.IOUtils;
 import net.jawr.web.resource.bundle.JoinableResourceBundle;
 import net.jawr.web.resource.bundle.JoinableResourceBundleContent;
+import net.jawr.web.resource.bundle.JoinableResourceBundleImpl;
 import net.jawr.web.resource.bundle.JoinableResourceBundlePropertySerializer;
+import net.jawr.web.resource.bundle.LazyVariantProcessor;
 import net.jawr.web.resource.bundle.factory.global.postprocessor.GlobalPostProcessingContext;
+import net.jawr.web.resource.bundle.factory.PropertiesBundleConstant;
 import net.jawr.web.resource.bundle.factory.global.preprocessor.GlobalPreprocessingContext;
 import net.jawr.web.resource.bundle.factory.util.ClassLoaderResourceUtils;
+import net.jawr.web.resource.bundle.encoding.ContentEncodingUtils;
+import net.jawr.web.resource.bundle.generator.GeneratorContext;
+import net.jawr.web.resource.bundle.generator.GeneratorRegistry;
+import net.jawr.web.resource.bundle.generator.ImportGraphAwareResourceGenerator;
+import net.jawr.web.resource.bundle.generator.ResourceGenerator;
 import net.jawr.web.resource.bundle.factory.util.PathNormalizer;
+import net.jawr.web.resource.bundle.global.processor.EmptyGlobalProcessor;
 import net.jawr.web.resource.bundle.global.processor.GlobalProcessor;
+import net.jawr.web.resource.bundle.handler.BundleFingerprintStore.ProcessedBundle;
+import net.jawr.web.resource.bundle.handler.ProcessingCache.ProcessedContent;
 import net.jawr.web.resource.bundle.hashcode.BundleHashcodeGenerator;
 import net.jawr.web.resource.bundle.iterator.BundlePath;
 import net.jawr.web.resource.bundle.iterator.ConditionalCommentCallbackHandler;
@@ -60,12 +85,17 @@ import net.jawr.web.resource.bundle.iterator.IECssDebugPathsIteratorImpl;
 import net.jawr.web.resource.bundle.iterator.PathsIteratorImpl;
 import net.jawr.web.resource.bundle.iterator.ResourceBundlePathsIterator;
 import net.jawr.web.resource.bundle.postprocess.BundleProcessingStatus;
+import net.jawr.web.resource.bundle.postprocess.ChainedResourceBundlePostProcessor;
 import net.jawr.web.resource.bundle.postprocess.ResourceBundlePostProcessor;
+import net.jawr.web.resource.bundle.postprocess.StreamingPostProcessorAdapter;
+import net.jawr.web.resource.bundle.renderer.BundleLinkFragmentCache;
 import net.jawr.web.resource.bundle.sorting.GlobalResourceBundleComparator;
 import net.jawr.web.resource.bundle.variant.VariantSet;
 import net.jawr.web.resource.bundle.variant.VariantUtils;
+import net.jawr.web.resource.handler.bundle.BundleContent;
 import net.jawr.web.resource.handler.bundle.ResourceBundleHandler;
 import net.jawr.web.resource.handler.reader.ResourceReaderHandler;
+import net.jawr.web.util.DaemonThreadFactory;
 import net.jawr.web.util.StopWatch;
 import net.jawr.web.util.StringUtils;
 import net.jawr.web.util.bom.UnicodeBOMReader;
@@ -85,6 +115,40 @@ public class ResourceBundlesHandlerImpl implements ResourceBundlesHandler {
 	private static final Logger LOGGER = LoggerFactory
 			.getLogger(ResourceBundlesHandler.class);
 
+	/** The name of the processing cache directory in the working directory */
+	private static final String PROCESSING_CACHE_DIR = "processingCache";
+
+	/**
+	 * The prefixes of the configuration properties which don't change the
+	 * processed content of the bundles, and which are not part of the
+	 * processing cache key
+	 */
+	private static final String[] PROCESSING_CACHE_IGNORED_PROPERTY_PREFIXES = {
+			"jawr.config.", "jawr.jmx.", JawrConfig.JAWR_PROCESSING_CACHE,
+			"jawr.gzip.", JawrConfig.JAWR_STRICT_MODE,
+			JawrConfig.JAWR_USE_BUNDLE_MAPPING,
+			JawrConfig.JAWR_WORKING_DIRECTORY,
+			JawrConfig.JAWR_BUNDLE_HASHCODE_GENERATOR,
+			JawrConfig.JAWR_BUNDLE_PROCESSING_THREAD_COUNT,
+			JawrConfig.JAWR_INCREMENTAL_BUNDLE_PROCESSING,
+			JawrConfig.JAWR_USE_MEMORY_MAPPED_BUNDLES,
+			JawrConfig.JAWR_BUNDLE_CONTENT_ENCODERS,
+			"jawr.bundle.content.encoder.",
+			JawrConfig.JAWR_LINK_FRAGMENT_CACHE_MAX_ENTRIES,
+			JawrConfig.JAWR_LAZY_VARIANT_PROCESSING,
+			JawrConfig.JAWR_CLIENTSIDE_HANDLER_CACHE_SIZE,
+			JawrConfig.JAWR_LIVE_PROCESSED_BUNDLE_CACHE_SIZE,
+			JawrConfig.JAWR_DEBUG_OVERRIDE_KEY,
+			JawrConfig.JAWR_USE_RANDOM_PARAM, JawrConfig.JAWR_CSSLINKS_FLAVOR,
+			JawrConfig.JAWR_JS_CLIENTSIDE_HANDLER,
+			JawrConfig.JAWR_JS_BUNDLE_LINK_RENDERER_CLASS,
+			JawrConfig.JAWR_CSS_BUNDLE_LINK_RENDERER_CLASS,
+			JawrConfig.JAWR_IMG_RENDERER_CLASS };
+
+	/** The resource types of the handlers */
+	private static final String[] RESOURCE_TYPES = { JawrConstant.JS_TYPE,
+			JawrConstant.CSS_TYPE, JawrConstant.BINARY_TYPE };
+
 	/**
 	 * The bundles that this handler manages.
 	 */
@@ -102,9 +166,9 @@ public class ResourceBundlesHandlerImpl implements ResourceBundlesHandler {
 
 	/**
 	 * The bundles that will be processed once when the server will be up and
-	 * running.
+	 * running, indexed by bundle name.
 	 */
-	private List<String> liveProcessBundles = new ArrayList<String>();
+	private Map<String, LiveProcessedBundle> liveProcessBundles = new ConcurrentHashMap<String, LiveProcessedBundle>();
 
 	/** The resource handler */
 	private ResourceReaderHandler resourceHandler;
@@ -142,6 +206,47 @@ public class ResourceBundlesHandlerImpl implements ResourceBundlesHandler {
 	/** The bundle mapping */
 	private Properties bundleMapping;
 
+	/**
+	 * The fingerprints of the processed bundles, which is only defined if the
+	 * incremental bundle processing is enabled
+	 */
+	private BundleFingerprintStore fingerprintStore;
+
+	/**
+	 * The index of the bundles by ID and by item path, which is built once the
+	 * bundles are initialized
+	 */
+	private volatile BundleLookupIndex bundleLookupIndex;
+
+	/**
+	 * The cache of the link fragments rendered by the bundle tags
+	 */
+	private BundleLinkFragmentCache linkFragmentCache;
+
+	/**
+	 * The persistent cache of the processed bundle contents, which is only
+	 * defined if the processing cache is enabled
+	 */
+	private ProcessingCache processingCache;
+
+	/**
+	 * The flag indicating if the bundle variants are processed on their first
+	 * request
+	 */
+	private volatile boolean lazyVariantProcessing;
+
+	/**
+	 * The processing tasks of the variants processed on their first request,
+	 * indexed by variant bundle name
+	 */
+	private final ConcurrentHashMap<String, FutureTask<Void>> lazyVariantTasks = new ConcurrentHashMap<String, FutureTask<Void>>();
+
+	/**
+	 * The locks which serialize the lazy processing of the variants, indexed
+	 * by post processor chains
+	 */
+	private final ConcurrentHashMap<List<ResourceBundlePostProcessor>, Object> lazyProcessingLocks = new ConcurrentHashMap<List<ResourceBundlePostProcessor>, Object>();
+
 	/**
 	 * Build a ResourceBundlesHandler.
 	 * 
@@ -196,6 +301,11 @@ public class ResourceBundlesHandlerImpl implements ResourceBundlesHandler {
 						.getClientSideHandlerGeneratorClass());
 		this.clientSideHandlerGenerator.init(config, globalBundles,
 				contextBundles);
+
+		if (config.getLinkFragmentCacheMaxEntries() > 0) {
+			this.linkFragmentCache = new BundleLinkFragmentCache(
+					config.getLinkFragmentCacheMaxEntries());
+		}
 	}
 
 	/*
@@ -436,10 +546,14 @@ public class ResourceBundlesHandlerImpl implements ResourceBundlesHandler {
 				// Prefixes are used only in production mode
 				String path = PathNormalizer
 						.removeVariantPrefixFromPath(bundlePath);
-				rd = resourceBundleHandler.getResourceBundleReader(path);
-				if (liveProcessBundles.contains(path)) {
-					rd = processInLive(rd);
+				LiveProcessedBundle liveBundle = liveProcessBundles.get(path);
+				if (liveBundle != null) {
+					liveBundle.writeTo(writer,
+							ThreadLocalJawrContext.getRequestURL());
+					writer.flush();
+					return;
 				}
+				rd = resourceBundleHandler.getResourceBundleReader(path);
 			}
 
 			IOUtils.copy(rd, writer);
@@ -453,26 +567,32 @@ public class ResourceBundlesHandlerImpl implements ResourceBundlesHandler {
 		}
 	}
 
-	/**
-	 * Process the bundle content in live
+	/*
+	 * (non-Javadoc)
 	 * 
-	 * @param reader the reader
-	 * @return the processed bundle content
-	 * @throws IOException if an IOException occured
+	 * @see
+	 * net.jawr.web.resource.bundle.handler.ResourceBundlesHandler#getBundleTextBytes
+	 * (java.lang.String)
 	 */
-	private StringReader processInLive(Reader reader) throws IOException {
+	public byte[] getBundleTextBytes(String bundlePath)
+			throws ResourceNotFoundException {
 
-		String requestURL = ThreadLocalJawrContext.getRequestURL();
-		StringWriter swriter = new StringWriter();
-		IOUtils.copy(reader, swriter, true);
-		String updatedContent = swriter.getBuffer().toString();
-		if (requestURL != null) {
+		ByteArrayOutputStream baOs = new ByteArrayOutputStream();
+		Writer writer = new OutputStreamWriter(baOs, config.getResourceCharset());
+		writeBundleTo(bundlePath, writer);
+		return baOs.toByteArray();
+	}
 
-			updatedContent = updatedContent.replaceAll(
-					JawrConstant.JAWR_BUNDLE_PATH_PLACEHOLDER_PATTERN,
-					requestURL);
-		}
-		return new StringReader(updatedContent);
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * net.jawr.web.resource.bundle.handler.ResourceBundlesHandler#isLiveProcessedBundle
+	 * (java.lang.String)
+	 */
+	public boolean isLiveProcessedBundle(String bundlePath) {
+		return liveProcessBundles.containsKey(PathNormalizer
+				.removeVariantPrefixFromPath(bundlePath));
 	}
 
 	/*
@@ -485,39 +605,37 @@ public class ResourceBundlesHandlerImpl implements ResourceBundlesHandler {
 	public void streamBundleTo(String bundlePath, OutputStream out)
 			throws ResourceNotFoundException {
 
+		streamBundleTo(bundlePath, ContentEncodingUtils.GZIP, out);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * net.jawr.web.resource.bundle.ResourceBundlesHandler#streamBundleTo(java
+	 * .lang.String, java.lang.String, java.io.OutputStream)
+	 */
+	public void streamBundleTo(String bundlePath, String encoding,
+			OutputStream out) throws ResourceNotFoundException {
+
 		// Remove prefix, which are used only in production mode
 		String path = PathNormalizer.removeVariantPrefixFromPath(bundlePath);
 		ReadableByteChannel data = null;
 		try {
-			if (liveProcessBundles.contains(path)) {
-
-				Reader rd = null;
-				try {
-					rd = resourceBundleHandler.getResourceBundleReader(path);
-					StringReader strRd = processInLive(rd);
-					StringWriter strWriter = new StringWriter();
-					IOUtils.copy(strRd, strWriter);
-
-					ByteArrayOutputStream bos = new ByteArrayOutputStream();
-					GZIPOutputStream gzOut = new GZIPOutputStream(bos);
-					byte[] byteData = strWriter.getBuffer().toString()
-							.getBytes(config.getResourceCharset().name());
-					gzOut.write(byteData, 0, byteData.length);
-					gzOut.close();
-					ByteArrayInputStream bis = new ByteArrayInputStream(
-							bos.toByteArray());
-					data = Channels.newChannel(bis);
-				} finally {
-					IOUtils.close(rd);
+			LiveProcessedBundle liveBundle = liveProcessBundles.get(path);
+			if (liveBundle != null) {
+				if (!ContentEncodingUtils.GZIP.equals(encoding)) {
+					throw new ResourceNotFoundException(bundlePath);
 				}
-
+				IOUtils.write(liveBundle.getGzippedContent(ThreadLocalJawrContext
+						.getRequestURL()), out);
 			} else {
-				data = resourceBundleHandler.getResourceBundleChannel(path);
+				data = resourceBundleHandler.getResourceBundleChannel(path,
+						encoding);
+				WritableByteChannel outChannel = Channels.newChannel(out);
+				IOUtils.copy(data, outChannel);
 			}
 
-			WritableByteChannel outChannel = Channels.newChannel(out);
-			IOUtils.copy(data, outChannel);
-
 		} catch (IOException e) {
 			throw new BundlingProcessException(
 					"Unexpected IOException writing bundle [" + path + "]", e);
@@ -526,6 +644,61 @@ public class ResourceBundlesHandlerImpl implements ResourceBundlesHandler {
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * net.jawr.web.resource.bundle.handler.ResourceBundlesHandler#getBundleContent
+	 * (java.lang.String, java.lang.String)
+	 */
+	public BundleContent getBundleContent(String bundlePath, String encoding)
+			throws ResourceNotFoundException {
+
+		// In debug mode, the resources are retrieved one by one
+		if (encoding == null && config.isDebugModeOn()) {
+			return new BundleContent(getBundleTextBytes(bundlePath), null);
+		}
+
+		String path = PathNormalizer.removeVariantPrefixFromPath(bundlePath);
+		LiveProcessedBundle liveBundle = liveProcessBundles.get(path);
+		if (liveBundle != null) {
+			if (encoding == null) {
+				return new BundleContent(getBundleTextBytes(bundlePath), null);
+			}
+			if (!ContentEncodingUtils.GZIP.equals(encoding)) {
+				throw new ResourceNotFoundException(bundlePath);
+			}
+			try {
+				return new BundleContent(
+						liveBundle.getGzippedContent(ThreadLocalJawrContext
+								.getRequestURL()), null);
+			} catch (IOException e) {
+				throw new BundlingProcessException(
+						"Unexpected IOException writing bundle [" + path + "]", e);
+			}
+		}
+
+		return resourceBundleHandler.getResourceBundleContent(path, encoding);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * net.jawr.web.resource.bundle.handler.ResourceBundlesHandler#getBundleChecksum
+	 * (java.lang.String, java.lang.String)
+	 */
+	public String getBundleChecksum(String bundlePath, String encoding)
+			throws ResourceNotFoundException {
+
+		String path = PathNormalizer.removeVariantPrefixFromPath(bundlePath);
+		if (liveProcessBundles.containsKey(path)) {
+			return null;
+		}
+		return Long.toHexString(resourceBundleHandler
+				.getResourceBundleChecksum(path, encoding));
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -568,39 +741,89 @@ public class ResourceBundlesHandlerImpl implements ResourceBundlesHandler {
 			resourceTypePreprocessor.processBundles(ctx, bundles);
 		}
 
+		fingerprintStore = null;
+		if (processBundleFlag && isIncrementalBundleProcessingEnabled()) {
+			fingerprintStore = getBundleFingerprintStore();
+			if (!fingerprintStore.updateGlobalFingerprint(getGlobalFingerprint())
+					&& LOGGER.isDebugEnabled()) {
+				LOGGER.debug("The global configuration has changed, all the bundles will be processed");
+			}
+		}
+
+		processingCache = null;
+		if (processBundleFlag && isProcessingCacheEnabled()) {
+			processingCache = createProcessingCache();
+		}
+
+		lazyVariantProcessing = processBundleFlag
+				&& isLazyVariantProcessingEnabled();
+		lazyVariantTasks.clear();
+		lazyProcessingLocks.clear();
+
 		StopWatch stopWatch = ThreadLocalJawrContext.getStopWatch();
-		for (Iterator<JoinableResourceBundle> itCol = bundles.iterator(); itCol
-				.hasNext();) {
-		
-			JoinableResourceBundle bundle = itCol.next();
-			if(stopWatch!= null){
-				stopWatch.start("Processing bundle '"+bundle.getName()+"'");
+		int threadCount = Math.min(config.getBundleProcessingThreadCount(), bundles.size());
+		if (threadCount > 1) {
+			processBundlesInParallel(processBundleFlag, threadCount, stopWatch);
+		} else {
+			for (Iterator<JoinableResourceBundle> itCol = bundles.iterator(); itCol
+					.hasNext();) {
+
+				JoinableResourceBundle bundle = itCol.next();
+				if(stopWatch!= null){
+					stopWatch.start("Processing bundle '"+bundle.getName()+"'");
+				}
+				processBundle(bundle, processBundleFlag);
+				if(stopWatch!= null){
+					stopWatch.stop();
+				}
 			}
-			boolean processBundle = processBundleFlag;
-			if (!ThreadLocalJawrContext.isBundleProcessingAtBuildTime()
-					&& null != bundle.getAlternateProductionURL()) {
-				if (LOGGER.isDebugEnabled()) {
-					LOGGER.debug("No bundle generated for '"
-							+ bundle.getId()
-							+ "' because a production URL is defined for this bundle.");
+		}
+
+		if (fingerprintStore != null) {
+			List<String> bundleIds = new ArrayList<String>();
+			for (JoinableResourceBundle bundle : bundles) {
+				bundleIds.add(bundle.getId());
+			}
+			fingerprintStore.retainBundles(bundleIds);
+		}
+
+		if (processingCache != null) {
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("Processing cache '" + processingCache.getCacheDir()
+						+ "' : " + processingCache.getHitCount() + " hits, "
+						+ processingCache.getMissCount() + " misses");
+			}
+			processingCache = null;
+		}
+
+		if (lazyVariantProcessing) {
+			LazyVariantProcessor lazyVariantProcessor = new LazyVariantProcessorImpl();
+			for (JoinableResourceBundle bundle : bundles) {
+				if (bundle instanceof JoinableResourceBundleImpl
+						&& bundle.getAlternateProductionURL() == null) {
+					((JoinableResourceBundleImpl) bundle)
+							.setLazyVariantProcessor(lazyVariantProcessor);
 				}
-				processBundle = false;
 			}
-			if (bundle instanceof CompositeResourceBundle)
-				joinAndStoreCompositeResourcebundle(
-						(CompositeResourceBundle) bundle, processBundle);
-			else
-				joinAndStoreBundle(bundle, processBundle);
+		}
+
+		// Replace the bundle lookup index, once the bundles are initialized
+		bundleLookupIndex = new BundleLookupIndex(bundles);
 
-			if (config.getUseBundleMapping() && !mappingFileExists) {
+		// The rendered links contain the bundle hashcodes
+		if (linkFragmentCache != null) {
+			linkFragmentCache.clear();
+		}
+
+		// The bundle mapping is serialized in the bundle order, whatever the
+		// processing mode is
+		if (config.getUseBundleMapping() && !mappingFileExists) {
+			for (Iterator<JoinableResourceBundle> itCol = bundles.iterator(); itCol
+					.hasNext();) {
 				JoinableResourceBundlePropertySerializer.serializeInProperties(
-						bundle, resourceBundleHandler.getResourceType(),
+						itCol.next(), resourceBundleHandler.getResourceType(),
 						bundleMapping);
 			}
-			
-			if(stopWatch!= null){
-				stopWatch.stop();
-			}
 		}
 
 		// Launch global postprocessing
@@ -612,6 +835,12 @@ public class ResourceBundlesHandlerImpl implements ResourceBundlesHandler {
 					config, this, resourceHandler, processBundleFlag);
 
 			resourceTypePostprocessor.processBundles(ctx, bundles);
+
+			// The global postprocessor rewrites the stored text versions, so
+			// the encoded versions must be generated again from them
+			if (ctx.hasBundleToBeProcessed()) {
+				storeEncodedBundles(bundles);
+			}
 			if(stopWatch!= null){
 				stopWatch.stop();
 			}
@@ -654,176 +883,1145 @@ public class ResourceBundlesHandlerImpl implements ResourceBundlesHandler {
 		}
 	}
 
-	/**
-	 * Joins the members of a composite bundle in all its variants, storing in a
-	 * separate file for each variant.
+	/*
+	 * (non-Javadoc)
 	 * 
-	 * @param composite the composite resource bundle
-	 * @param processBundle the flag indicating if we should process the bundle
-	 *            or not
+	 * @see
+	 * net.jawr.web.resource.bundle.handler.ResourceBundlesHandler#rebuildBundles
+	 * (java.util.Collection)
 	 */
-	private void joinAndStoreCompositeResourcebundle(
-			CompositeResourceBundle composite, boolean processBundle) {
-
-		BundleProcessingStatus status = new BundleProcessingStatus(
-				BundleProcessingStatus.FILE_PROCESSING_TYPE, composite,
-				resourceHandler, config);
-
-		// Collect all variant names from child bundles
-		Map<String, VariantSet> compositeBundleVariants = new HashMap<String, VariantSet>();
-		for (Iterator<JoinableResourceBundle> it = composite.getChildBundles()
-				.iterator(); it.hasNext();) {
-			JoinableResourceBundle childbundle = it.next();
-			if (null != childbundle.getVariants())
-				compositeBundleVariants = VariantUtils.concatVariants(
-						compositeBundleVariants, childbundle.getVariants());
+	public void rebuildBundles(Collection<String> bundleIds) {
+
+		// The global processors work on all the bundles at once, and the
+		// bundle mapping is stored for all the bundles
+		if (config.getUseBundleMapping()
+				|| resourceTypePreprocessor != null
+				&& !(resourceTypePreprocessor instanceof EmptyGlobalProcessor)
+				|| resourceTypePostprocessor != null
+				&& !(resourceTypePostprocessor instanceof EmptyGlobalProcessor)) {
+			initAllBundles();
+			return;
 		}
-		composite.setVariants(compositeBundleVariants);
-		status.setSearchingPostProcessorVariants(true);
-		joinAndPostProcessBundle(composite, status, processBundle);
 
-		Map<String, VariantSet> postProcessVariants = status
-				.getPostProcessVariants();
-		if (!postProcessVariants.isEmpty()) {
+		for (JoinableResourceBundle bundle : bundles) {
+			if (!bundleIds.contains(bundle.getId())) {
+				continue;
+			}
 			if (LOGGER.isDebugEnabled()) {
-				LOGGER.debug("Post process variants found for bundle "
-						+ composite.getId() + ":" + postProcessVariants);
+				LOGGER.debug("Processing again the bundle '" + bundle.getId()
+						+ "'");
 			}
-			Map<String, VariantSet> newVariants = VariantUtils.concatVariants(
-					composite.getVariants(), postProcessVariants);
-			composite.setVariants(newVariants);
-			status.setSearchingPostProcessorVariants(false);
-			joinAndPostProcessBundle(composite, status, processBundle);
+
+			// The variants which are processed lazily will be processed again
+			// on demand
+			if (lazyVariantProcessing && bundle.getVariantKeys() != null) {
+				for (String variantKey : bundle.getVariantKeys()) {
+					if (!isVariantProcessedAtStartup(variantKey)) {
+						lazyVariantTasks.remove(VariantUtils
+								.getVariantBundleName(bundle.getId(),
+										variantKey, false));
+						bundle.setBundleDataHashCode(variantKey, null);
+					}
+				}
+			}
+			processBundle(bundle, true);
 		}
 
+		// The rendered links contain the bundle hashcodes
+		if (linkFragmentCache != null) {
+			linkFragmentCache.clear();
+		}
 	}
 
 	/**
-	 * Joins and post process the variant composite bundle
+	 * Joins, post processes and stores the bundle
 	 * 
-	 * @param composite the composite bundle
-	 * @param status the status
-	 * @param compositeBundleVariants the variants
-	 * @param processBundle the flag indicating if we must process the bundle or
-	 *            not.
+	 * @param bundle the bundle
+	 * @param processBundleFlag the flag indicating if the bundles must be
+	 *            processed
 	 */
-	private void joinAndPostProcessBundle(CompositeResourceBundle composite,
-			BundleProcessingStatus status, boolean processBundle) {
-		JoinableResourceBundleContent store;
-
-		List<Map<String, String>> allVariants = VariantUtils
-				.getAllVariants(composite.getVariants());
-		// Add the default bundle variant (the non variant one)
-		allVariants.add(null);
-		// Process all variants
-		for (Iterator<Map<String, String>> vars = allVariants.iterator(); vars
-				.hasNext();) {
+	private void processBundle(JoinableResourceBundle bundle,
+			boolean processBundleFlag) {
 
-			Map<String, String> variants = vars.next();
-			status.setBundleVariants(variants);
-			store = new JoinableResourceBundleContent();
-			for (Iterator<JoinableResourceBundle> it = composite
-					.getChildBundles().iterator(); it.hasNext();) {
-				JoinableResourceBundle childbundle = (JoinableResourceBundle) it
-						.next();
-
-				if(!childbundle.getInclusionPattern().isIncludeOnlyOnDebug()){
-					JoinableResourceBundleContent childContent = joinAndPostprocessBundle(
-							childbundle, variants, status, processBundle);
-					// Do unitary postprocessing.
-					status.setProcessingType(BundleProcessingStatus.FILE_PROCESSING_TYPE);
-					StringBuffer content = executeUnitaryPostProcessing(composite,
-							status, childContent.getContent(),
-							this.unitaryCompositePostProcessor);
-					childContent.setContent(content);
-					store.append(childContent);
+		boolean processBundle = processBundleFlag;
+		if (!ThreadLocalJawrContext.isBundleProcessingAtBuildTime()
+				&& null != bundle.getAlternateProductionURL()) {
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("No bundle generated for '"
+						+ bundle.getId()
+						+ "' because a production URL is defined for this bundle.");
+			}
+			processBundle = false;
+		}
+		String definition = null;
+		Set<String> memberPaths = null;
+		Map<String, String> contentHashes = null;
+		if (processBundle && fingerprintStore != null) {
+			memberPaths = new TreeSet<String>();
+			definition = getBundleDefinition(bundle, memberPaths);
+			contentHashes = new HashMap<String, String>();
+			String fingerprint = getBundleFingerprint(definition, memberPaths,
+					contentHashes);
+			if (fingerprint != null
+					&& restoreProcessedBundle(bundle, fingerprint)) {
+				if (LOGGER.isDebugEnabled()) {
+					LOGGER.debug("The bundle '" + bundle.getId()
+							+ "' hasn't changed, its previous processing is reused.");
 				}
+				return;
 			}
+		}
 
-			// Post process composite bundle as needed
-			store = postProcessJoinedCompositeBundle(composite,
-					store.getContent(), status);
-
-			if (processBundle) {
-
-				String variantKey = VariantUtils.getVariantKey(variants);
-				String name = VariantUtils.getVariantBundleName(
-						composite.getId(), variantKey, false);
-				storeBundle(name, store);
-				initBundleDataHashcode(composite, store, variantKey);
+		BundleProcessingStatus status = null;
+		if (bundle instanceof CompositeResourceBundle)
+			status = joinAndStoreCompositeResourcebundle(
+					(CompositeResourceBundle) bundle, processBundle);
+		else
+			status = joinAndStoreBundle(bundle, processBundle);
+
+		if (definition != null) {
+			// The import graphs of the generated resources are now recorded
+			String fingerprint = getBundleFingerprint(definition, memberPaths,
+					contentHashes);
+			if (fingerprint != null) {
+				storeProcessedBundle(bundle, fingerprint, status);
 			}
 		}
 	}
 
 	/**
-	 * Postprocess the composite bundle only if a composite bundle post
-	 * processor is defined
+	 * Checks if the incremental bundle processing is enabled. The global
+	 * processors work on all the bundles at once, so the incremental
+	 * processing is disabled if one of them is defined.
 	 * 
-	 * @param composite the composite bundle
-	 * @param content the content
-	 * @param status the status
-	 * @return the content
+	 * @return true if the incremental bundle processing is enabled
 	 */
-	private JoinableResourceBundleContent postProcessJoinedCompositeBundle(
-			CompositeResourceBundle composite, StringBuffer content,
-			BundleProcessingStatus status) {
-
-		JoinableResourceBundleContent store = new JoinableResourceBundleContent();
-		StringBuffer processedContent = null;
-		status.setProcessingType(BundleProcessingStatus.BUNDLE_PROCESSING_TYPE);
-		ResourceBundlePostProcessor bundlePostProcessor = composite
-				.getBundlePostProcessor();
-		if (null != bundlePostProcessor) {
-
-			processedContent = bundlePostProcessor.postProcessBundle(status,
-					content);
-		} else if (null != this.compositePostProcessor) {
+	private boolean isIncrementalBundleProcessingEnabled() {
+
+		boolean enabled = config.isIncrementalBundleProcessing();
+		if (enabled
+				&& (resourceTypePreprocessor != null && !(resourceTypePreprocessor instanceof EmptyGlobalProcessor) || resourceTypePostprocessor != null
+						&& !(resourceTypePostprocessor instanceof EmptyGlobalProcessor))) {
+			LOGGER.warn("The incremental bundle processing is disabled because a global processor is defined for the resource type '"
+					+ resourceBundleHandler.getResourceType() + "'");
+			enabled = false;
+		}
+		return enabled;
+	}
 
-			processedContent = this.compositePostProcessor.postProcessBundle(
-					status, content);
-		} else {
-			processedContent = content;
+	/**
+	 * Checks if the lazy variant processing is enabled. The bundle mapping and
+	 * the global postprocessors need all the variants to be processed, so the
+	 * lazy variant processing is disabled if one of them is used, or if the
+	 * bundles are processed at build time.
+	 * 
+	 * @return true if the lazy variant processing is enabled
+	 */
+	private boolean isLazyVariantProcessingEnabled() {
+
+		boolean enabled = config.isLazyVariantProcessing();
+		if (enabled
+				&& (config.getUseBundleMapping()
+						|| ThreadLocalJawrContext.isBundleProcessingAtBuildTime() || resourceTypePostprocessor != null
+						&& !(resourceTypePostprocessor instanceof EmptyGlobalProcessor))) {
+			LOGGER.warn("The lazy variant processing is disabled for the resource type '"
+					+ resourceBundleHandler.getResourceType()
+					+ "' because the bundle mapping, the build time processing or a global postprocessor is used");
+			enabled = false;
 		}
+		return enabled;
+	}
 
-		store.setContent(processedContent);
+	/**
+	 * Checks if a variant is processed at startup. If the lazy variant
+	 * processing is enabled, only the default variant and the warmup variants
+	 * are processed at startup.
+	 * 
+	 * @param variantKey the variant key
+	 * @return true if the variant is processed at startup
+	 */
+	private boolean isVariantProcessedAtStartup(String variantKey) {
 
-		return store;
+		return !lazyVariantProcessing
+				|| StringUtils.isEmpty(variantKey)
+				|| config.getLazyVariantProcessingWarmupVariants().contains(
+						variantKey);
 	}
 
 	/**
-	 * Initialize the bundle data hashcode and initialize the bundle mapping if
-	 * needed
+	 * Processes and stores a variant of a bundle, which has not been processed
+	 * at startup. As the post processors are not required to be thread safe,
+	 * the variants which share the same post processor chains are processed one
+	 * at a time.
 	 * 
 	 * @param bundle the bundle
-	 * @param store the data to store
+	 * @param variantKey the variant key
 	 */
-	private void initBundleDataHashcode(JoinableResourceBundle bundle,
-			JoinableResourceBundleContent store, String variant) {
+	private void processLazyVariant(JoinableResourceBundle bundle,
+			String variantKey) {
+
+		Map<String, String> variants = null;
+		for (Map<String, String> variantMap : VariantUtils.getAllVariants(bundle
+				.getVariants())) {
+			if (variantKey.equals(VariantUtils.getVariantKey(variantMap))) {
+				variants = variantMap;
+				break;
+			}
+		}
+		if (variants == null) {
+			return;
+		}
 
-		String bundleHashcode = bundleHashcodeGenerator.generateHashCode(
-				config, store.getContent().toString());
-		bundle.setBundleDataHashCode(variant, bundleHashcode);
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Processing the variant '" + variantKey
+					+ "' of the bundle '" + bundle.getId() + "'");
+		}
+		BundleProcessingStatus status = new BundleProcessingStatus(
+				BundleProcessingStatus.FILE_PROCESSING_TYPE, bundle,
+				resourceHandler, config);
+		status.setSearchingPostProcessorVariants(false);
+		synchronized (getLazyProcessingLock(bundle)) {
+			if (bundle instanceof CompositeResourceBundle) {
+				joinAndStoreCompositeVariant((CompositeResourceBundle) bundle,
+						variants, status, true);
+			} else {
+				joinAndStoreVariant(bundle, variants, status, true);
+			}
+		}
 	}
 
-	/*
-	 * (non-Javadoc)
+	/**
+	 * Returns the lock which serializes the lazy processing of the variants
+	 * using the same post processor chains as the bundle
 	 * 
-	 * @see net.jawr.web.resource.bundle.handler.ResourceBundlesHandler#
-	 * getTypeBundleHashcode(java.lang.String)
+	 * @param bundle the bundle
+	 * @return the lock
 	 */
-	public BundleHashcodeType getBundleHashcodeType(String requestedPath) {
+	private Object getLazyProcessingLock(JoinableResourceBundle bundle) {
 
-		BundleHashcodeType typeBundleHashcode = BundleHashcodeType.UNKNOW_BUNDLE;
+		boolean composite = bundle instanceof CompositeResourceBundle;
+		ResourceBundlePostProcessor bundleProcessor = bundle
+				.getBundlePostProcessor();
+		if (bundleProcessor == null) {
+			bundleProcessor = composite ? compositePostProcessor : postProcessor;
+		}
+		ResourceBundlePostProcessor fileProcessor = bundle
+				.getUnitaryPostProcessor();
+		if (fileProcessor == null) {
+			fileProcessor = composite ? unitaryCompositePostProcessor
+					: unitaryPostProcessor;
+		}
 
-		String[] pathInfos = PathNormalizer
-				.extractBundleInfoFromPath(requestedPath);
+		List<ResourceBundlePostProcessor> chains = Arrays.asList(
+				bundleProcessor, fileProcessor);
+		Object lock = lazyProcessingLocks.get(chains);
+		if (lock == null) {
+			Object newLock = new Object();
+			lock = lazyProcessingLocks.putIfAbsent(chains, newLock);
+			if (lock == null) {
+				lock = newLock;
+			}
+		}
+		return lock;
+	}
 
-		if (pathInfos != null) {
-			String bundlePrefix = pathInfos[0];
 
-			String bundleId = pathInfos[1];
-			String variantKey = pathInfos[2];
-			String hashcode = pathInfos[3];
+	/**
+	 * Checks if the persistent processing cache is enabled. The CSS post
+	 * processors depend on resources which are not bundle members, like the
+	 * imported stylesheets and the images, so the cache is not used for the
+	 * CSS bundles.
+	 * 
+	 * @return true if the persistent processing cache is enabled
+	 */
+	private boolean isProcessingCacheEnabled() {
+
+		boolean enabled = config.isUseProcessingCache();
+		if (enabled
+				&& JawrConstant.CSS_TYPE.equals(resourceBundleHandler
+						.getResourceType())) {
+			LOGGER.warn("The processing cache is not used for the CSS bundles, because their processing depends on resources which are not bundle members");
+			enabled = false;
+		}
+		return enabled;
+	}
+
+	/**
+	 * Creates the persistent processing cache, which is located in the
+	 * directory defined in the configuration, or in the working directory
+	 * 
+	 * @return the persistent processing cache
+	 */
+	private ProcessingCache createProcessingCache() {
+
+		String cacheDir = config.getProcessingCacheDirectory();
+		if (StringUtils.isEmpty(cacheDir)) {
+			cacheDir = resourceHandler.getWorkingDirectory() + File.separator
+					+ PROCESSING_CACHE_DIR;
+		}
+		return new ProcessingCache(new File(cacheDir),
+				config.getProcessingCacheMaxSize() * 1024L * 1024L);
+	}
+
+	/**
+	 * Returns the store of the bundle fingerprints, which is kept in the
+	 * servlet context to be available after a reload of the configuration
+	 * 
+	 * @return the store of the bundle fingerprints
+	 */
+	private BundleFingerprintStore getBundleFingerprintStore() {
+
+		ServletContext context = config.getContext();
+		String attributeName = JawrConstant.BUNDLE_FINGERPRINT_STORE_ATTRIBUTE_PREFIX
+				+ resourceBundleHandler.getResourceType();
+		BundleFingerprintStore store = (BundleFingerprintStore) context
+				.getAttribute(attributeName);
+		if (store == null) {
+			store = new BundleFingerprintStore();
+			context.setAttribute(attributeName, store);
+		}
+		return store;
+	}
+
+	/**
+	 * Returns the global fingerprint, which is computed from the configuration
+	 * properties, except the bundle definitions which are part of the bundle
+	 * fingerprints.
+	 * 
+	 * @return the global fingerprint
+	 */
+	private String getGlobalFingerprint() {
+
+		String typePrefix = PropertiesBundleConstant.PROPS_PREFIX
+				+ resourceBundleHandler.getResourceType() + ".";
+		String bundleDefinitionPrefix = typePrefix
+				+ PropertiesBundleConstant.BUNDLE_FACTORY_CUSTOM_PROPERTY;
+		String bundleFactoryPrefix = typePrefix + "bundle.factory.";
+		String baseDirKey = typePrefix + PropertiesBundleConstant.RESOURCES_BASEDIR;
+
+		StringBuilder fingerprint = new StringBuilder();
+		Properties props = config.getConfigProperties();
+		for (String key : new TreeSet<String>(props.stringPropertyNames())) {
+			if (!key.startsWith(bundleDefinitionPrefix)
+					|| key.startsWith(bundleFactoryPrefix)
+					|| key.equals(baseDirKey)) {
+				fingerprint.append(key).append('=')
+						.append(props.getProperty(key)).append('\n');
+			}
+		}
+
+		// The CSS bundles reference the binary resources, whose cache busted
+		// URLs depend on the binary configuration. The binary resources
+		// themselves are checked for each bundle.
+		BinaryResourcesHandler binaryRsHandler = getBinaryResourcesHandler();
+		if (binaryRsHandler != null) {
+			Properties binaryProps = binaryRsHandler.getConfig()
+					.getConfigProperties();
+			for (String key : new TreeSet<String>(
+					binaryProps.stringPropertyNames())) {
+				fingerprint.append("binary:").append(key).append('=')
+						.append(binaryProps.getProperty(key)).append('\n');
+			}
+		}
+		return getMD5Checksum(fingerprint.toString());
+	}
+
+	/**
+	 * Returns the definition of the bundle used in its fingerprint, which is
+	 * made of its properties and its member paths, for all its variants. It
+	 * must be retrieved before processing the bundle, which updates its
+	 * variants and its hashcodes.
+	 * 
+	 * @param bundle the bundle
+	 * @param memberPaths the set of member paths, which is updated
+	 * @return the definition of the bundle
+	 */
+	private String getBundleDefinition(JoinableResourceBundle bundle,
+			Set<String> memberPaths) {
+
+		StringBuilder fingerprint = new StringBuilder();
+
+		// The bundle definition
+		Properties definition = new Properties();
+		JoinableResourceBundlePropertySerializer.serializeInProperties(bundle,
+				resourceBundleHandler.getResourceType(), definition);
+		for (String key : new TreeSet<String>(definition.stringPropertyNames())) {
+			fingerprint.append(key).append('=')
+					.append(definition.getProperty(key)).append('\n');
+		}
+
+		// The bundle members
+		List<JoinableResourceBundle> memberBundles = null;
+		if (bundle instanceof CompositeResourceBundle) {
+			memberBundles = ((CompositeResourceBundle) bundle).getChildBundles();
+		} else {
+			memberBundles = Collections.singletonList(bundle);
+		}
+
+		List<Map<String, String>> allVariants = VariantUtils
+				.getAllVariants(bundle.getVariants());
+		allVariants.add(null);
+		for (Map<String, String> variants : allVariants) {
+			for (JoinableResourceBundle memberBundle : memberBundles) {
+				fingerprint.append(memberBundle.getName()).append('\n');
+				List<BundlePath> itemPaths = null;
+				if (memberBundle.getInclusionPattern().isIncludeOnlyOnDebug()) {
+					itemPaths = memberBundle.getItemDebugPathList(variants);
+				} else {
+					itemPaths = memberBundle.getItemPathList(variants);
+				}
+				for (BundlePath bundlePath : itemPaths) {
+					fingerprint.append(bundlePath.getPath()).append('\n');
+					memberPaths.add(bundlePath.getPath());
+				}
+			}
+		}
+		return fingerprint.toString();
+	}
+
+	/**
+	 * Returns the fingerprint of the bundle, which is computed from its
+	 * definition and the content hash of its members. This method returns
+	 * null if the content hash of a member is unknown, in which case the
+	 * bundle must be processed.
+	 * 
+	 * @param definition the definition of the bundle
+	 * @param memberPaths the member paths
+	 * @param contentHashes the content hashes already computed for the
+	 *            bundle, indexed by path, which is updated
+	 * @return the fingerprint of the bundle, or null
+	 */
+	private String getBundleFingerprint(String definition,
+			Set<String> memberPaths, Map<String, String> contentHashes) {
+
+		StringBuilder fingerprint = new StringBuilder(definition);
+		for (String path : memberPaths) {
+			String contentHash = contentHashes.get(path);
+			if (contentHash == null) {
+				contentHash = getResourceContentHash(path);
+				if (contentHash == null) {
+					return null;
+				}
+				contentHashes.put(path, contentHash);
+			}
+			fingerprint.append(path).append(':').append(contentHash)
+					.append('\n');
+		}
+		return getMD5Checksum(fingerprint.toString());
+	}
+
+	/**
+	 * Returns the hash of the content of a resource. The generators are not
+	 * run to compute it. The hash of a resource generated by an
+	 * {@link ImportGraphAwareResourceGenerator} is computed from the stamps of
+	 * its import graph, and the hash of the other resources from their raw
+	 * source. Only the generated resources which have no source, like the
+	 * message bundles, are generated to compute their hash.
+	 * 
+	 * @param path the resource path
+	 * @return the hash of the content of a resource, or null if it is unknown
+	 */
+	private String getResourceContentHash(String path) {
+
+		GeneratorRegistry generatorRegistry = config.getGeneratorRegistry();
+		boolean generatedPath = generatorRegistry.isPathGenerated(path);
+		if (generatedPath) {
+			ResourceGenerator generator = generatorRegistry
+					.getResourceGenerator(path);
+			if (generator instanceof ImportGraphAwareResourceGenerator) {
+				return getImportGraphHash(path,
+						(ImportGraphAwareResourceGenerator) generator);
+			}
+		}
+
+		String contentHash = null;
+		Reader rd = null;
+		try {
+			List<Class<?>> excluded = new ArrayList<Class<?>>();
+			excluded.add(ResourceGenerator.class);
+			rd = resourceHandler.getResource(path, true, excluded);
+			if (rd == null) {
+				throw new ResourceNotFoundException(path);
+			}
+			contentHash = getReaderContentHash(path, rd);
+		} catch (ResourceNotFoundException e) {
+			contentHash = generatedPath ? getGeneratedContentHash(path)
+					: "not-found";
+		} finally {
+			IOUtils.close(rd);
+		}
+		return contentHash;
+	}
+
+	/**
+	 * Returns the hash of a resource generated by an import graph aware
+	 * generator. The import graph recorded by the generator during the last
+	 * generation is used, or the one stored for the previous processing of
+	 * the bundles. The hash is unknown if no import graph has been recorded
+	 * or if one of its resources has changed.
+	 * 
+	 * @param path the resource path
+	 * @param generator the generator
+	 * @return the hash of the stamps of the import graph, or null
+	 */
+	private String getImportGraphHash(String path,
+			ImportGraphAwareResourceGenerator generator) {
+
+		Map<String, String> stamps = generator.getImportGraphStamps(path);
+		if (stamps != null) {
+			fingerprintStore.putImportGraphStamps(path, stamps);
+		} else {
+			stamps = fingerprintStore.getImportGraphStamps(path);
+		}
+
+		GeneratorContext context = new GeneratorContext(config, path);
+		context.setResourceReaderHandler(resourceHandler);
+		if (stamps == null || !generator.isImportGraphUpToDate(stamps, context)) {
+			return null;
+		}
+
+		StringBuilder importGraph = new StringBuilder();
+		for (Map.Entry<String, String> entry : new TreeMap<String, String>(
+				stamps).entrySet()) {
+			importGraph.append(entry.getKey()).append('=')
+					.append(entry.getValue()).append('\n');
+		}
+		return getMD5Checksum(importGraph.toString());
+	}
+
+	/**
+	 * Returns the hash of a generated resource which has no source
+	 * 
+	 * @param path the resource path
+	 * @return the hash of the generated content
+	 */
+	private String getGeneratedContentHash(String path) {
+
+		String contentHash = null;
+		Reader rd = null;
+		try {
+			rd = resourceHandler.getResource(path, true);
+			contentHash = getReaderContentHash(path, rd);
+		} catch (ResourceNotFoundException e) {
+			contentHash = "not-found";
+		} finally {
+			IOUtils.close(rd);
+		}
+		return contentHash;
+	}
+
+	/**
+	 * Returns the hash of the content of a reader
+	 * 
+	 * @param path the resource path
+	 * @param rd the reader
+	 * @return the hash of the content
+	 */
+	private String getReaderContentHash(String path, Reader rd) {
+
+		try {
+			StringWriter writer = new StringWriter();
+			IOUtils.copy(rd, writer);
+			return getMD5Checksum(writer.toString());
+		} catch (IOException e) {
+			throw new BundlingProcessException(
+					"Unable to read the resource '" + path + "'", e);
+		}
+	}
+
+	/**
+	 * Returns the MD5 checksum of a string
+	 * 
+	 * @param str the string
+	 * @return the MD5 checksum
+	 */
+	private String getMD5Checksum(String str) {
+		try {
+			return CheckSumUtils.getMD5Checksum(str, config.getResourceCharset());
+		} catch (IOException e) {
+			throw new BundlingProcessException(
+					"Unable to generate the bundle fingerprint", e);
+		}
+	}
+
+	/**
+	 * Restores the result of the previous processing of the bundle, if its
+	 * fingerprint hasn't changed and the stored bundles are still available.
+	 * 
+	 * @param bundle the bundle
+	 * @param fingerprint the fingerprint of the bundle
+	 * @return true if the bundle has been restored
+	 */
+	private boolean restoreProcessedBundle(JoinableResourceBundle bundle,
+			String fingerprint) {
+
+		ProcessedBundle processedBundle = fingerprintStore.getProcessedBundle(
+				bundle.getId(), fingerprint);
+		if (processedBundle == null
+				|| !isBinaryMappingUpToDate(processedBundle.getBinaryMapping())) {
+			return false;
+		}
+
+		Map<String, String> hashcodes = processedBundle.getHashcodes();
+		for (String variantKey : hashcodes.keySet()) {
+			String name = VariantUtils.getVariantBundleName(bundle.getId(),
+					variantKey, false);
+			if (!isStoredBundle(name)) {
+				return false;
+			}
+		}
+
+		if (processedBundle.getVariants() != null) {
+			bundle.setVariants(processedBundle.getVariants());
+		}
+		Map<String, LiveProcessedBundle> liveBundles = processedBundle
+				.getLiveProcessedBundles();
+		for (Map.Entry<String, String> entry : hashcodes.entrySet()) {
+			bundle.setBundleDataHashCode(entry.getKey(), entry.getValue());
+			String name = VariantUtils.getVariantBundleName(bundle.getId(),
+					entry.getKey(), false);
+			if (!liveBundles.containsKey(name)) {
+				liveProcessBundles.remove(name);
+			}
+		}
+		liveProcessBundles.putAll(liveBundles);
+
+		// The binary resource handler may have been reloaded since the
+		// bundle has been processed
+		BinaryResourcesHandler binaryRsHandler = getBinaryResourcesHandler();
+		if (binaryRsHandler != null) {
+			for (Map.Entry<String, String> entry : processedBundle
+					.getBinaryMapping().entrySet()) {
+				binaryRsHandler.addMapping(entry.getKey(), entry.getValue());
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if the binary resources referenced by a processed bundle haven't
+	 * changed. The cache busted URL of each binary resource is computed again
+	 * from its current content. If a binary resource has changed, its new
+	 * cache busted URL is registered in the binary resource handler, so the
+	 * processing of the bundle uses it.
+	 * 
+	 * @param binaryMapping the cache busted URLs of the binary resources
+	 *            referenced by the bundle, indexed by original URL
+	 * @return true if none of the binary resources has changed
+	 */
+	private boolean isBinaryMappingUpToDate(Map<String, String> binaryMapping) {
+
+		if (binaryMapping.isEmpty()) {
+			return true;
+		}
+
+		BinaryResourcesHandler binaryRsHandler = getBinaryResourcesHandler();
+		if (binaryRsHandler == null) {
+			return false;
+		}
+
+		boolean upToDate = true;
+		for (Map.Entry<String, String> entry : binaryMapping.entrySet()) {
+			String cacheUrl = null;
+			try {
+				cacheUrl = CheckSumUtils.getCacheBustedUrl(entry.getKey(),
+						binaryRsHandler.getRsReaderHandler(),
+						binaryRsHandler.getConfig());
+			} catch (ResourceNotFoundException e) {
+				return false;
+			} catch (IOException e) {
+				return false;
+			}
+			if (!cacheUrl.equals(entry.getValue())) {
+				if (LOGGER.isDebugEnabled()) {
+					LOGGER.debug("The binary resource '" + entry.getKey()
+							+ "' has changed");
+				}
+				binaryRsHandler.addMapping(entry.getKey(), cacheUrl);
+				upToDate = false;
+			}
+		}
+		return upToDate;
+	}
+
+	/**
+	 * Returns the binary resource handler
+	 * 
+	 * @return the binary resource handler, or null if it is not defined
+	 */
+	private BinaryResourcesHandler getBinaryResourcesHandler() {
+
+		return (BinaryResourcesHandler) config.getContext().getAttribute(
+				JawrConstant.BINARY_CONTEXT_ATTRIBUTE);
+	}
+
+	/**
+	 * Checks if the text, gzipped and encoded versions of the bundle are
+	 * stored
+	 * 
+	 * @param bundleName the bundle name
+	 * @return true if the bundle is stored
+	 */
+	private boolean isStoredBundle(String bundleName) {
+
+		boolean stored = true;
+		try {
+			IOUtils.close(resourceBundleHandler
+					.getResourceBundleReader(bundleName));
+			IOUtils.close(resourceBundleHandler
+					.getResourceBundleChannel(bundleName));
+			for (String encoding : resourceBundleHandler.getContentEncodings()) {
+				IOUtils.close(resourceBundleHandler.getResourceBundleChannel(
+						bundleName, encoding));
+			}
+		} catch (ResourceNotFoundException e) {
+			stored = false;
+		}
+		return stored;
+	}
+
+	/**
+	 * Stores the result of the processing of the bundle in the fingerprint
+	 * store
+	 * 
+	 * @param bundle the bundle
+	 * @param fingerprint the fingerprint of the bundle
+	 * @param status the processing status of the bundle
+	 */
+	@SuppressWarnings("unchecked")
+	private void storeProcessedBundle(JoinableResourceBundle bundle,
+			String fingerprint, BundleProcessingStatus status) {
+
+		List<String> variantKeys = new ArrayList<String>();
+		if (bundle.getVariantKeys() != null) {
+			variantKeys.addAll(bundle.getVariantKeys());
+		}
+		variantKeys.add(null);
+
+		Map<String, String> hashcodes = new HashMap<String, String>();
+		Map<String, LiveProcessedBundle> liveBundles = new HashMap<String, LiveProcessedBundle>();
+		for (String variantKey : variantKeys) {
+			String hashcode = bundle.getBundleDataHashCode(variantKey);
+			if (hashcode != null) {
+				hashcodes.put(variantKey, hashcode);
+			}
+			String name = VariantUtils.getVariantBundleName(bundle.getId(),
+					variantKey, false);
+			LiveProcessedBundle liveBundle = liveProcessBundles.get(name);
+			if (liveBundle != null) {
+				liveBundles.put(name, liveBundle);
+			}
+		}
+
+		// The binary resources referenced by the bundle
+		Map<String, String> binaryMapping = new HashMap<String, String>();
+		Map<String, String> imageMapping = status == null ? null
+				: (Map<String, String>) status
+						.getData(JawrConstant.POST_PROCESSING_CTX_JAWR_BINARY_MAPPING);
+		if (imageMapping != null) {
+			for (Map.Entry<String, String> entry : imageMapping.entrySet()) {
+				if (!entry.getKey().equals(entry.getValue())) {
+					binaryMapping.put(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+		fingerprintStore.putProcessedBundle(bundle.getId(),
+				new ProcessedBundle(fingerprint, bundle.getVariants(),
+						hashcodes, liveBundles, binaryMapping));
+	}
+
+	/**
+	 * Processes the bundles in parallel, using a bounded pool of threads. The
+	 * time spent on each bundle by each thread is reported in the stop watch.
+	 * 
+	 * @param processBundleFlag the flag indicating if the bundles must be
+	 *            processed
+	 * @param threadCount the number of threads
+	 * @param stopWatch the stop watch, which may be null
+	 */
+	private void processBundlesInParallel(boolean processBundleFlag,
+			int threadCount, StopWatch stopWatch) {
+
+		if (stopWatch != null) {
+			stopWatch.start("Processing " + bundles.size() + " bundles using "
+					+ threadCount + " threads");
+		}
+
+		List<StopWatch> bundleStopWatches = new ArrayList<StopWatch>();
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount,
+				new DaemonThreadFactory("jawr-" + resourceBundleHandler.getResourceType()
+						+ "-bundle-processing"));
+		try {
+			List<Future<StopWatch>> futures = new ArrayList<Future<StopWatch>>();
+			for (JoinableResourceBundle bundle : bundles) {
+				futures.add(executor.submit(new BundleProcessingTask(bundle,
+						processBundleFlag)));
+			}
+
+			for (Future<StopWatch> future : futures) {
+				try {
+					bundleStopWatches.add(future.get());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new BundlingProcessException(
+							"Interrupted while processing the bundles", e);
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					} else if (cause instanceof Error) {
+						throw (Error) cause;
+					}
+					throw new BundlingProcessException(cause);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		if (stopWatch != null) {
+			stopWatch.stop();
+
+			Map<String, Long> threadTimings = new TreeMap<String, Long>();
+			for (StopWatch bundleStopWatch : bundleStopWatches) {
+				String threadName = bundleStopWatch.getId();
+				stopWatch.addTaskInfo("[" + threadName + "] "
+						+ bundleStopWatch.getLastTaskName(),
+						bundleStopWatch.getTotalTimeMillis());
+				Long threadTime = threadTimings.get(threadName);
+				threadTimings.put(threadName, bundleStopWatch.getTotalTimeMillis()
+						+ (threadTime == null ? 0 : threadTime.longValue()));
+			}
+			for (Map.Entry<String, Long> entry : threadTimings.entrySet()) {
+				stopWatch.addTaskInfo("[" + entry.getKey() + "] Total time",
+						entry.getValue().longValue());
+			}
+		}
+	}
+
+	/**
+	 * The task which processes a bundle in a thread of the bundle processing
+	 * pool. The Jawr context of the thread which launched the processing is
+	 * propagated to the processing thread.
+	 * 
+	 * @author Ibrahim Chaehoi
+	 */
+	private class BundleProcessingTask implements Callable<StopWatch> {
+
+		/** The bundle to process */
+		private final JoinableResourceBundle bundle;
+
+		/** The flag indicating if the bundle must be processed */
+		private final boolean processBundleFlag;
+
+		/** The flag indicating if the bundle is processed at build time */
+		private final boolean bundleProcessingAtBuildTime;
+
+		/** The flag indicating if the debug mode is overridden */
+		private final boolean debugOverriden;
+
+		/** The mbean object name of the Jawr config manager */
+		private final ObjectName jawrConfigMgrObjectName;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param bundle the bundle to process
+		 * @param processBundleFlag the flag indicating if the bundle must be
+		 *            processed
+		 */
+		public BundleProcessingTask(JoinableResourceBundle bundle,
+				boolean processBundleFlag) {
+			this.bundle = bundle;
+			this.processBundleFlag = processBundleFlag;
+			this.bundleProcessingAtBuildTime = ThreadLocalJawrContext
+					.isBundleProcessingAtBuildTime();
+			this.debugOverriden = ThreadLocalJawrContext.isDebugOverriden();
+			this.jawrConfigMgrObjectName = ThreadLocalJawrContext
+					.getJawrConfigMgrObjectName();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		@Override
+		public StopWatch call() throws Exception {
+
+			StopWatch stopWatch = new StopWatch(Thread.currentThread().getName());
+			ThreadLocalJawrContext.setBundleProcessingAtBuildTime(bundleProcessingAtBuildTime);
+			ThreadLocalJawrContext.setDebugOverriden(debugOverriden);
+			ThreadLocalJawrContext.setJawrConfigMgrObjectName(jawrConfigMgrObjectName);
+			ThreadLocalJawrContext.setStopWatch(stopWatch);
+			try {
+				stopWatch.start("Processing bundle '" + bundle.getName() + "'");
+				processBundle(bundle, processBundleFlag);
+				stopWatch.stop();
+			} finally {
+				ThreadLocalJawrContext.reset();
+			}
+			return stopWatch;
+		}
+	}
+
+	/**
+	 * The processor of the variants which are processed on their first
+	 * request. The concurrent requests for the same variant wait for a single
+	 * processing. A failed processing is not kept, so the next request
+	 * processes the variant again.
+	 * 
+	 * @author Ibrahim Chaehoi
+	 */
+	private class LazyVariantProcessorImpl implements LazyVariantProcessor {
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see
+		 * net.jawr.web.resource.bundle.LazyVariantProcessor#processVariant(net
+		 * .jawr.web.resource.bundle.JoinableResourceBundle, java.lang.String)
+		 */
+		public void processVariant(final JoinableResourceBundle bundle,
+				final String variantKey) {
+
+			List<String> variantKeys = bundle.getVariantKeys();
+			if (variantKeys == null || !variantKeys.contains(variantKey)) {
+				return;
+			}
+
+			final String name = VariantUtils.getVariantBundleName(
+					bundle.getId(), variantKey, false);
+			FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+				public Void call() throws Exception {
+					processLazyVariant(bundle, variantKey);
+					return null;
+				}
+			}) {
+				@Override
+				protected void setException(Throwable t) {
+					// The task is removed before the waiting requests are
+					// released, so no request can join the failed task
+					lazyVariantTasks.remove(name, this);
+					super.setException(t);
+				}
+			};
+			FutureTask<Void> existingTask = lazyVariantTasks.putIfAbsent(name,
+					task);
+			if (existingTask == null) {
+				task.run();
+			} else {
+				task = existingTask;
+			}
+
+			try {
+				task.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new BundlingProcessException(
+						"Interrupted while processing the bundle '" + name
+								+ "'", e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				} else if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new BundlingProcessException(cause);
+			}
+		}
+	}
+
+	/**
+	 * Joins the members of a composite bundle in all its variants, storing in a
+	 * separate file for each variant.
+	 * 
+	 * @param composite the composite resource bundle
+	 * @param processBundle the flag indicating if we should process the bundle
+	 *            or not
+	 * @return the processing status of the bundle
+	 */
+	private BundleProcessingStatus joinAndStoreCompositeResourcebundle(
+			CompositeResourceBundle composite, boolean processBundle) {
+
+		BundleProcessingStatus status = new BundleProcessingStatus(
+				BundleProcessingStatus.FILE_PROCESSING_TYPE, composite,
+				resourceHandler, config);
+
+		// Collect all variant names from child bundles
+		Map<String, VariantSet> compositeBundleVariants = new HashMap<String, VariantSet>();
+		for (Iterator<JoinableResourceBundle> it = composite.getChildBundles()
+				.iterator(); it.hasNext();) {
+			JoinableResourceBundle childbundle = it.next();
+			if (null != childbundle.getVariants())
+				compositeBundleVariants = VariantUtils.concatVariants(
+						compositeBundleVariants, childbundle.getVariants());
+		}
+		composite.setVariants(compositeBundleVariants);
+		status.setSearchingPostProcessorVariants(true);
+		joinAndPostProcessBundle(composite, status, processBundle);
+
+		Map<String, VariantSet> postProcessVariants = status
+				.getPostProcessVariants();
+		if (!postProcessVariants.isEmpty()) {
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("Post process variants found for bundle "
+						+ composite.getId() + ":" + postProcessVariants);
+			}
+			Map<String, VariantSet> newVariants = VariantUtils.concatVariants(
+					composite.getVariants(), postProcessVariants);
+			composite.setVariants(newVariants);
+			status.setSearchingPostProcessorVariants(false);
+			joinAndPostProcessBundle(composite, status, processBundle);
+		}
+		return status;
+	}
+
+	/**
+	 * Joins and post process the variant composite bundle
+	 * 
+	 * @param composite the composite bundle
+	 * @param status the status
+	 * @param compositeBundleVariants the variants
+	 * @param processBundle the flag indicating if we must process the bundle or
+	 *            not.
+	 */
+	private void joinAndPostProcessBundle(CompositeResourceBundle composite,
+			BundleProcessingStatus status, boolean processBundle) {
+
+		List<Map<String, String>> allVariants = VariantUtils
+				.getAllVariants(composite.getVariants());
+		// Add the default bundle variant (the non variant one)
+		allVariants.add(null);
+		// Process all variants
+		for (Iterator<Map<String, String>> vars = allVariants.iterator(); vars
+				.hasNext();) {
+
+			Map<String, String> variants = vars.next();
+			if (isVariantProcessedAtStartup(VariantUtils.getVariantKey(variants))) {
+				joinAndStoreCompositeVariant(composite, variants, status,
+						processBundle);
+			}
+		}
+	}
+
+	/**
+	 * Joins, post processes and stores a variant of the composite bundle
+	 * 
+	 * @param composite the composite bundle
+	 * @param variants the variant map
+	 * @param status the status
+	 * @param processBundle the flag indicating if we must process the bundle or
+	 *            not.
+	 */
+	private void joinAndStoreCompositeVariant(CompositeResourceBundle composite,
+			Map<String, String> variants, BundleProcessingStatus status,
+			boolean processBundle) {
+
+		status.setBundleVariants(variants);
+		JoinableResourceBundleContent store = new JoinableResourceBundleContent();
+		for (Iterator<JoinableResourceBundle> it = composite.getChildBundles()
+				.iterator(); it.hasNext();) {
+			JoinableResourceBundle childbundle = (JoinableResourceBundle) it
+					.next();
+
+			if(!childbundle.getInclusionPattern().isIncludeOnlyOnDebug()){
+				JoinableResourceBundleContent childContent = joinAndPostprocessBundle(
+						childbundle, variants, status, processBundle);
+				// Do unitary postprocessing.
+				status.setProcessingType(BundleProcessingStatus.FILE_PROCESSING_TYPE);
+				StringBuffer content = executeUnitaryPostProcessing(composite,
+						status, childContent.getContent(),
+						this.unitaryCompositePostProcessor);
+				childContent.setContent(content);
+				store.append(childContent);
+			}
+		}
+
+		// Post process composite bundle as needed
+		store = postProcessJoinedCompositeBundle(composite, store.getContent(),
+				status);
+
+		if (processBundle) {
+
+			String variantKey = VariantUtils.getVariantKey(variants);
+			String name = VariantUtils.getVariantBundleName(composite.getId(),
+					variantKey, false);
+			storeBundle(name, store);
+			initBundleDataHashcode(composite, store, variantKey);
+		}
+	}
+
+	/**
+	 * Postprocess the composite bundle only if a composite bundle post
+	 * processor is defined
+	 * 
+	 * @param composite the composite bundle
+	 * @param content the content
+	 * @param status the status
+	 * @return the content
+	 */
+	private JoinableResourceBundleContent postProcessJoinedCompositeBundle(
+			CompositeResourceBundle composite, StringBuffer content,
+			BundleProcessingStatus status) {
+
+		JoinableResourceBundleContent store = new JoinableResourceBundleContent();
+		StringBuffer processedContent = null;
+		status.setProcessingType(BundleProcessingStatus.BUNDLE_PROCESSING_TYPE);
+		ResourceBundlePostProcessor bundlePostProcessor = composite
+				.getBundlePostProcessor();
+		if (null != bundlePostProcessor) {
+
+			processedContent = bundlePostProcessor.postProcessBundle(status,
+					content);
+		} else if (null != this.compositePostProcessor) {
+
+			processedContent = this.compositePostProcessor.postProcessBundle(
+					status, content);
+		} else {
+			processedContent = content;
+		}
+
+		store.setContent(processedContent);
+
+		return store;
+	}
+
+	/**
+	 * Initialize the bundle data hashcode and initialize the bundle mapping if
+	 * needed
+	 * 
+	 * @param bundle the bundle
+	 * @param store the data to store
+	 */
+	private void initBundleDataHashcode(JoinableResourceBundle bundle,
+			JoinableResourceBundleContent store, String variant) {
+
+		String bundleHashcode = bundleHashcodeGenerator.generateHashCode(
+				config, store.getContent().toString());
+		bundle.setBundleDataHashCode(variant, bundleHashcode);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see net.jawr.web.resource.bundle.handler.ResourceBundlesHandler#
+	 * getTypeBundleHashcode(java.lang.String)
+	 */
+	public BundleHashcodeType getBundleHashcodeType(String requestedPath) {
+
+		BundleHashcodeType typeBundleHashcode = BundleHashcodeType.UNKNOW_BUNDLE;
+
+		String[] pathInfos = PathNormalizer.extractBundleInfoFromPath(
+				requestedPath, config.getContentEncodings());
+
+		if (pathInfos != null) {
+			String bundlePrefix = pathInfos[0];
+
+			String bundleId = pathInfos[1];
+			String variantKey = pathInfos[2];
+			String hashcode = pathInfos[3];
 
 			JoinableResourceBundle bundle = resolveBundleForPath(bundleId);
 			if (bundle != null) {
@@ -849,13 +2047,16 @@ public class ResourceBundlesHandlerImpl implements ResourceBundlesHandler {
 	 * 
 	 * @param bundle the bundle
 	 * @param the flag indicating if we should process the bundle or not
+	 * @return the processing status of the bundle, or null if the bundle is
+	 *         not processed
 	 */
-	private void joinAndStoreBundle(JoinableResourceBundle bundle,
+	private BundleProcessingStatus joinAndStoreBundle(JoinableResourceBundle bundle,
 			boolean processBundle) {
 
+		BundleProcessingStatus status = null;
 		if (processBundle) {
 
-			BundleProcessingStatus status = new BundleProcessingStatus(
+			status = new BundleProcessingStatus(
 					BundleProcessingStatus.FILE_PROCESSING_TYPE, bundle,
 					resourceHandler, config);
 			JoinableResourceBundleContent store = null;
@@ -890,6 +2091,38 @@ public class ResourceBundlesHandlerImpl implements ResourceBundlesHandler {
 			initBundleDataHashcode(bundle, store, null);
 
 		}
+		return status;
+	}
+
+	/**
+	 * Stores again the encoded versions of the bundles and of their variants
+	 * from their stored text versions. The variants which are not stored yet,
+	 * because they are processed lazily, are skipped.
+	 * 
+	 * @param bundles the bundles
+	 */
+	private void storeEncodedBundles(List<JoinableResourceBundle> bundles) {
+
+		for (JoinableResourceBundle bundle : bundles) {
+			List<String> variantKeys = new ArrayList<String>();
+			if (bundle.getVariantKeys() != null) {
+				variantKeys.addAll(bundle.getVariantKeys());
+			}
+			variantKeys.add(null);
+
+			for (String variantKey : variantKeys) {
+				String name = VariantUtils.getVariantBundleName(bundle.getId(),
+						variantKey, false);
+				try {
+					resourceBundleHandler.storeEncodedBundles(name);
+				} catch (ResourceNotFoundException e) {
+					if (LOGGER.isDebugEnabled()) {
+						LOGGER.debug("The bundle '" + name
+								+ "' is not stored yet");
+					}
+				}
+			}
+		}
 	}
 
 	/**
@@ -901,8 +2134,16 @@ public class ResourceBundlesHandlerImpl implements ResourceBundlesHandler {
 	private void storeBundle(String bundleId,
 			JoinableResourceBundleContent store) {
 
-		if (bundleMustBeProcessedInLive(store.getContent().toString())) {
-			liveProcessBundles.add(bundleId);
+		String content = store.getContent().toString();
+		if (bundleMustBeProcessedInLive(content)) {
+			liveProcessBundles.put(bundleId, new LiveProcessedBundle(content,
+					config.getResourceCharset(),
+					config.getLiveProcessedBundleCacheSize(),
+					config.getGzipCompressionLevel()));
+		} else {
+			// The bundle may have contained the placeholder before being
+			// processed again
+			liveProcessBundles.remove(bundleId);
 		}
 		resourceBundleHandler.storeBundle(bundleId, store);
 	}
@@ -928,7 +2169,6 @@ public class ResourceBundlesHandlerImpl implements ResourceBundlesHandler {
 	private void joinAndPostProcessBundle(JoinableResourceBundle bundle,
 			BundleProcessingStatus status, boolean processBundle) {
 
-		JoinableResourceBundleContent store;
 		List<Map<String, String>> allVariants = VariantUtils
 				.getAllVariants(bundle.getVariants());
 		// Add the default bundle variant (the non variant one)
@@ -937,17 +2177,35 @@ public class ResourceBundlesHandlerImpl implements ResourceBundlesHandler {
 		for (Iterator<Map<String, String>> it = allVariants.iterator(); it
 				.hasNext();) {
 			Map<String, String> variantMap = it.next();
-			status.setBundleVariants(variantMap);
-			String variantKey = VariantUtils.getVariantKey(variantMap);
-			String name = VariantUtils.getVariantBundleName(bundle.getId(),
-					variantKey, false);
-			store = joinAndPostprocessBundle(bundle, variantMap, status,
-					processBundle);
-			storeBundle(name, store);
-			initBundleDataHashcode(bundle, store, variantKey);
+			if (isVariantProcessedAtStartup(VariantUtils.getVariantKey(variantMap))) {
+				joinAndStoreVariant(bundle, variantMap, status, processBundle);
+			}
 		}
 	}
 
+	/**
+	 * Joins, post processes and stores a variant of the bundle
+	 * 
+	 * @param bundle the bundle
+	 * @param variantMap the variant map
+	 * @param status the bundle processing status
+	 * @param processBundle the flag indicating if we must process the bundle or
+	 *            not
+	 */
+	private void joinAndStoreVariant(JoinableResourceBundle bundle,
+			Map<String, String> variantMap, BundleProcessingStatus status,
+			boolean processBundle) {
+
+		status.setBundleVariants(variantMap);
+		String variantKey = VariantUtils.getVariantKey(variantMap);
+		String name = VariantUtils.getVariantBundleName(bundle.getId(),
+				variantKey, false);
+		JoinableResourceBundleContent store = joinAndPostprocessBundle(bundle,
+				variantMap, status, processBundle);
+		storeBundle(name, store);
+		initBundleDataHashcode(bundle, store, variantKey);
+	}
+
 	/**
 	 * Reads all the members of a bundle and executes all associated
 	 * postprocessors.
@@ -988,11 +2246,14 @@ public class ResourceBundlesHandlerImpl implements ResourceBundlesHandler {
 				pathIterator = bundle.getItemPathList(variants).iterator();
 			}
 
+			// The member contents are read first, as they are part of the
+			// processing cache key
+			List<String> memberPaths = new ArrayList<String>();
+			List<StringBuffer> memberContents = new ArrayList<StringBuffer>();
 			for (Iterator<BundlePath> it = pathIterator; it.hasNext();) {
 
 				// File is first created in memory using a stringwriter.
 				StringWriter writer = new StringWriter();
-				BufferedWriter bwriter = new BufferedWriter(writer);
 
 				String path = (String) it.next().getPath();
 				if (LOGGER.isDebugEnabled())
@@ -1012,9 +2273,6 @@ public class ResourceBundlesHandlerImpl implements ResourceBundlesHandler {
 					continue;
 				}
 
-				// Update the status.
-				status.setLastPathAdded(path);
-
 				rd = new UnicodeBOMReader(rd, config.getResourceCharset());
 				if (!firstPath && ((UnicodeBOMReader) rd).hasBOM()) {
 					((UnicodeBOMReader) rd).skipBOM();
@@ -1022,24 +2280,74 @@ public class ResourceBundlesHandlerImpl implements ResourceBundlesHandler {
 					firstPath = false;
 				}
 
-				IOUtils.copy(rd, bwriter, true);
+				IOUtils.copy(rd, writer, true);
 
 				// Add new line at the end if it doesn't exist
 				StringBuffer buffer = writer.getBuffer();
 
-				if (!buffer.toString().endsWith(StringUtils.STR_LINE_FEED)) {
+				if (buffer.length() == 0
+						|| buffer.charAt(buffer.length() - 1) != '\n') {
 					buffer.append(StringUtils.STR_LINE_FEED);
 				}
+				memberPaths.add(path);
+				memberContents.add(buffer);
+			}
+
+			ProcessingCache cache = processingCache;
+			String cacheKey = null;
+			if (cache != null) {
+				cacheKey = getProcessingCacheKey(bundle, variants, status,
+						memberPaths, memberContents);
+				ProcessedContent cachedContent = cache.get(cacheKey);
+				if (cachedContent != null) {
+					if (LOGGER.isDebugEnabled()) {
+						LOGGER.debug("The processed content of the bundle '"
+								+ bundle.getId() + "' for the variants "
+								+ variants
+								+ " has been retrieved from the processing cache");
+					}
+					if (!cachedContent.getPostProcessVariants().isEmpty()) {
+						status.addPostProcessVariant(cachedContent
+								.getPostProcessVariants());
+					}
+					bundleContent.setContent(new StringBuffer(cachedContent
+							.getContent()));
+					return bundleContent;
+				}
+			}
+
+			Map<String, VariantSet> previousPostProcessVariants = new HashMap<String, VariantSet>(
+					status.getPostProcessVariants());
+			for (int i = 0; i < memberPaths.size(); i++) {
+
+				// Update the status.
+				status.setLastPathAdded(memberPaths.get(i));
 
 				// Do unitary postprocessing.
-				status.setProcessingType(BundleProcessingStatus.FILE_PROCESSING_TYPE);
-				bundleData.append(executeUnitaryPostProcessing(bundle, status,
-						buffer, this.unitaryPostProcessor));
+				executeUnitaryPostProcessing(bundle, status,
+						memberContents.get(i), this.unitaryPostProcessor,
+						bundleData);
 			}
 
 			// Post process bundle as needed
 			store = executeBundlePostProcessing(bundle, status, bundleData);
 
+			if (cacheKey != null) {
+				// Only the post process variants defined while processing
+				// this content are stored
+				Map<String, VariantSet> postProcessVariants = new HashMap<String, VariantSet>();
+				for (Map.Entry<String, VariantSet> entry : status
+						.getPostProcessVariants().entrySet()) {
+					if (!entry.getValue().equals(
+							previousPostProcessVariants.get(entry.getKey()))) {
+						postProcessVariants.put(entry.getKey(),
+								entry.getValue());
+					}
+				}
+				cache.put(cacheKey, new ProcessedContent(store.toString(),
+						postProcessVariants));
+			}
+
 		} catch (IOException e) {
 			throw new BundlingProcessException(
 					"Unexpected IOException generating collected file ["
@@ -1050,6 +2358,113 @@ public class ResourceBundlesHandlerImpl implements ResourceBundlesHandler {
 		return bundleContent;
 	}
 
+	/**
+	 * Returns the key of the processed content of a bundle in the processing
+	 * cache. The key is computed from the Jawr version, the configuration,
+	 * the bundle IDs, the post processors, the variants and the content of the
+	 * bundle members.
+	 * 
+	 * @param bundle the bundle
+	 * @param variants the variant map
+	 * @param status the bundle processing status
+	 * @param memberPaths the paths of the bundle members
+	 * @param memberContents the contents of the bundle members
+	 * @return the key of the processed content
+	 */
+	private String getProcessingCacheKey(JoinableResourceBundle bundle,
+			Map<String, String> variants, BundleProcessingStatus status,
+			List<String> memberPaths, List<StringBuffer> memberContents) {
+
+		StringBuilder key = new StringBuilder();
+		key.append(JawrConfig.class.getPackage().getImplementationVersion())
+				.append('\n');
+
+		// The configuration properties which may change the processed
+		// content, like the post processors options
+		Properties props = config.getConfigProperties();
+		for (String propName : new TreeSet<String>(props.stringPropertyNames())) {
+			if (isProcessingCacheKeyProperty(propName)) {
+				key.append(propName).append('=')
+						.append(props.getProperty(propName)).append('\n');
+			}
+		}
+
+		// The bundle may be a child of the bundle being processed
+		key.append(bundle.getId()).append('\n')
+				.append(status.getCurrentBundle().getId()).append('\n');
+		key.append(getPostProcessorId(bundle.getUnitaryPostProcessor() != null ? bundle
+				.getUnitaryPostProcessor() : unitaryPostProcessor));
+		key.append('\n');
+		key.append(getPostProcessorId(bundle.getBundlePostProcessor() != null ? bundle
+				.getBundlePostProcessor() : postProcessor));
+		key.append('\n');
+		if (variants != null) {
+			key.append(new TreeMap<String, String>(variants));
+		}
+		key.append('\n').append(status.isSearchingPostProcessorVariants())
+				.append('\n');
+
+		for (int i = 0; i < memberPaths.size(); i++) {
+			key.append(memberPaths.get(i)).append(':')
+					.append(getMD5Checksum(memberContents.get(i).toString()))
+					.append('\n');
+		}
+		return getMD5Checksum(key.toString());
+	}
+
+	/**
+	 * Checks if a configuration property is part of the processing cache key.
+	 * The bundle definitions are not part of the key, as the bundle processing
+	 * only depends on its ID, its post processors and its members. The
+	 * properties of the other resource types and the properties which only
+	 * define how the bundles are stored, served or reloaded are not part of
+	 * the key either.
+	 * 
+	 * @param propName the property name
+	 * @return true if the property is part of the processing cache key
+	 */
+	private boolean isProcessingCacheKeyProperty(String propName) {
+
+		if (!propName.startsWith(PropertiesBundleConstant.PROPS_PREFIX)) {
+			return false;
+		}
+
+		String resourceType = resourceBundleHandler.getResourceType();
+		for (String type : RESOURCE_TYPES) {
+			String typePrefix = PropertiesBundleConstant.PROPS_PREFIX + type
+					+ ".";
+			if (type.equals(resourceType) ? propName.startsWith(typePrefix
+					+ PropertiesBundleConstant.BUNDLE_FACTORY_CUSTOM_PROPERTY)
+					: propName.startsWith(typePrefix)) {
+				return false;
+			}
+		}
+
+		for (String prefix : PROCESSING_CACHE_IGNORED_PROPERTY_PREFIXES) {
+			if (propName.startsWith(prefix)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the ID of a post processor
+	 * 
+	 * @param processor the post processor
+	 * @return the ID of the post processor
+	 */
+	private String getPostProcessorId(ResourceBundlePostProcessor processor) {
+
+		String id = null;
+		if (processor instanceof ChainedResourceBundlePostProcessor) {
+			id = ((ChainedResourceBundlePostProcessor) processor).getId();
+		} else if (processor != null) {
+			id = processor.getClass().getName();
+		}
+		return id;
+	}
+
 	/**
 	 * Executes the unitary resource post processing
 	 * 
@@ -1063,24 +2478,49 @@ public class ResourceBundlesHandlerImpl implements ResourceBundlesHandler {
 			StringBuffer content,
 			ResourceBundlePostProcessor defaultPostProcessor) {
 
-		StringBuffer bundleData = new StringBuffer();
-		status.setProcessingType(BundleProcessingStatus.FILE_PROCESSING_TYPE);
-		if (null != bundle.getUnitaryPostProcessor()) {
-			StringBuffer resourceData = bundle.getUnitaryPostProcessor()
-					.postProcessBundle(status, content);
+		StringBuffer bundleData = content;
+		if (null != bundle.getUnitaryPostProcessor()
+				|| null != defaultPostProcessor) {
+			bundleData = new StringBuffer();
+			executeUnitaryPostProcessing(bundle, status, content,
+					defaultPostProcessor, bundleData);
+		} else {
+			status.setProcessingType(BundleProcessingStatus.FILE_PROCESSING_TYPE);
+		}
+
+		return bundleData;
+	}
+
+	/**
+	 * Executes the unitary resource post processing, and appends the
+	 * processed content to the bundle data
+	 * 
+	 * @param bundle the bundle
+	 * @param status the bundle processing status
+	 * @param content the content to process
+	 * @param defaultPostProcessor the default post processor
+	 * @param bundleData the bundle data
+	 */
+	private void executeUnitaryPostProcessing(JoinableResourceBundle bundle,
+			BundleProcessingStatus status, CharSequence content,
+			ResourceBundlePostProcessor defaultPostProcessor,
+			StringBuffer bundleData) {
 
-			bundleData.append(resourceData);
-		} else if (null != defaultPostProcessor) {
+		status.setProcessingType(BundleProcessingStatus.FILE_PROCESSING_TYPE);
+		ResourceBundlePostProcessor processor = bundle
+				.getUnitaryPostProcessor();
+		if (null == processor && null != defaultPostProcessor) {
 			if (LOGGER.isDebugEnabled())
 				LOGGER.debug("POSTPROCESSING UNIT:" + status.getLastPathAdded());
-			StringBuffer resourceData = defaultPostProcessor.postProcessBundle(
-					status, content);
-			bundleData.append(resourceData);
-		} else {
-			bundleData = content;
+			processor = defaultPostProcessor;
 		}
 
-		return bundleData;
+		if (null != processor) {
+			StreamingPostProcessorAdapter.adapt(processor).postProcessBundle(
+					status, content, bundleData);
+		} else {
+			bundleData.append(content);
+		}
 	}
 
 	/**
@@ -1095,16 +2535,17 @@ public class ResourceBundlesHandlerImpl implements ResourceBundlesHandler {
 			JoinableResourceBundle bundle, BundleProcessingStatus status,
 			StringBuffer bundleData) {
 
-		StringBuffer store;
+		StringBuffer store = bundleData;
 		status.setProcessingType(BundleProcessingStatus.BUNDLE_PROCESSING_TYPE);
 		status.setLastPathAdded(bundle.getId());
-		if (null != bundle.getBundlePostProcessor())
-			store = bundle.getBundlePostProcessor().postProcessBundle(status,
-					bundleData);
-		else if (null != this.postProcessor)
-			store = this.postProcessor.postProcessBundle(status, bundleData);
-		else
-			store = bundleData;
+		ResourceBundlePostProcessor processor = bundle.getBundlePostProcessor();
+		if (null == processor)
+			processor = this.postProcessor;
+		if (null != processor) {
+			store = new StringBuffer();
+			StreamingPostProcessorAdapter.adapt(processor).postProcessBundle(
+					status, bundleData, store);
+		}
 		return store;
 	}
 
@@ -1116,6 +2557,11 @@ public class ResourceBundlesHandlerImpl implements ResourceBundlesHandler {
 	 */
 	public JoinableResourceBundle resolveBundleForPath(String path) {
 
+		BundleLookupIndex index = bundleLookupIndex;
+		if (index != null) {
+			return index.getBundle(path);
+		}
+
 		JoinableResourceBundle theBundle = null;
 		for (Iterator<JoinableResourceBundle> it = bundles.iterator(); it
 				.hasNext();) {
@@ -1138,6 +2584,16 @@ public class ResourceBundlesHandlerImpl implements ResourceBundlesHandler {
 		return this.clientSideHandlerGenerator;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see net.jawr.web.resource.bundle.handler.ResourceBundlesHandler#
+	 * getLinkFragmentCache()
+	 */
+	public BundleLinkFragmentCache getLinkFragmentCache() {
+		return linkFragmentCache;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -24,11 +24,16 @@ import org.slf4j.LoggerFactory;
  * Chained abstract implementation of ResourceBundlePostProcessor.
  * Implementations can be used as a processing chain.
  * 
+ * Subclasses must override one of the doPostProcessBundle methods. The
+ * streaming one avoids a copy of the content in a new buffer, when the
+ * processor is the last one of the chain.
+ * 
  * @author Jordi Hernández Sellés
  * @author Ibrahim Chaehoi
  */
 public abstract class AbstractChainedResourceBundlePostProcessor implements
-		ChainedResourceBundlePostProcessor {
+		ChainedResourceBundlePostProcessor,
+		StreamingResourceBundlePostProcessor {
 
 	/** The logger */
 	private static final Logger LOGGER = LoggerFactory
@@ -91,6 +96,36 @@ public abstract class AbstractChainedResourceBundlePostProcessor implements
 		return processedBundle;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see net.jawr.web.resource.bundle.postprocess.
+	 * StreamingResourceBundlePostProcessor
+	 * #postProcessBundle(net.jawr.web.resource
+	 * .bundle.postprocess.BundleProcessingStatus, java.lang.CharSequence,
+	 * java.lang.Appendable)
+	 */
+	public void postProcessBundle(BundleProcessingStatus status,
+			CharSequence bundleData, Appendable out) {
+		try {
+			if (LOGGER.isDebugEnabled())
+				LOGGER.debug("postprocessing bundle:"
+						+ status.getCurrentBundle().getId());
+			if (null == nextProcessor) {
+				doPostProcessBundle(status, bundleData, out);
+			} else {
+				StringBuffer processedBundle = new StringBuffer();
+				doPostProcessBundle(status, bundleData, processedBundle);
+				StreamingPostProcessorAdapter.adapt(nextProcessor)
+						.postProcessBundle(status, processedBundle, out);
+			}
+		} catch (IOException e) {
+			throw new BundlingProcessException(
+					"Unexpected IOException during execution of a postprocessor.",
+					e);
+		}
+	}
+
 	/**
 	 * Set the next post processor in the chain.
 	 * 
@@ -108,8 +143,13 @@ public abstract class AbstractChainedResourceBundlePostProcessor implements
 
 	/**
 	 * Postprocess a bundle of resources in the context of this chain of
-	 * processors.
+	 * processors. A streaming postprocessor can implement this method by
+	 * delegating to
+	 * {@link #doPostProcessBundle(BundleProcessingStatus, CharSequence, Appendable)}
+	 * with a new {@link StringBuffer} as output.
 	 * 
+	 * @param status
+	 *            the bundle processing status
 	 * @param bundleData
 	 *            the bundle data
 	 * @return the processed content
@@ -119,4 +159,25 @@ public abstract class AbstractChainedResourceBundlePostProcessor implements
 	protected abstract StringBuffer doPostProcessBundle(
 			BundleProcessingStatus status, StringBuffer bundleData)
 			throws IOException;
+
+	/**
+	 * Postprocess a bundle of resources in the context of this chain of
+	 * processors, and appends the result to the output. By default, the
+	 * result of {@link #doPostProcessBundle(BundleProcessingStatus, StringBuffer)}
+	 * is appended.
+	 * 
+	 * @param status
+	 *            the bundle processing status
+	 * @param bundleData
+	 *            the bundle data, which must not be modified
+	 * @param out
+	 *            the output
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	protected void doPostProcessBundle(BundleProcessingStatus status,
+			CharSequence bundleData, Appendable out) throws IOException {
+		out.append(doPostProcessBundle(status,
+				StreamingPostProcessorAdapter.toStringBuffer(bundleData)));
+	}
 }
@@ -42,6 +42,18 @@ public class EmptyResourceBundlePostProcessor extends
 			StringBuffer bundleData) throws IOException {
 		return bundleData;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * net.jawr.web.resource.bundle.postprocess.AbstractChainedResourceBundlePostProcessor#doPostProcessBundle(net.jawr.web.resource.bundle.postprocess
+	 * .BundleProcessingStatus, java.lang.CharSequence, java.lang.Appendable)
+	 */
+	protected void doPostProcessBundle(BundleProcessingStatus status,
+			CharSequence bundleData, Appendable out) throws IOException {
+		out.append(bundleData);
+	}
 	
 	/**
 	 * Set the next post processor in the chain. 
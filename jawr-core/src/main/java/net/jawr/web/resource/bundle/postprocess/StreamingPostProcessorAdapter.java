@@ -0,0 +1,112 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.resource.bundle.postprocess;
+
+import java.io.IOException;
+
+import net.jawr.web.exception.BundlingProcessException;
+
+/**
+ * This class adapts a legacy postprocessor, which works on a
+ * {@link StringBuffer}, to the {@link StreamingResourceBundlePostProcessor}
+ * interface. The content to process is only copied if it is not already a
+ * {@link StringBuffer}.
+ * 
+ * @author Ibrahim Chaehoi
+ */
+public class StreamingPostProcessorAdapter implements
+		StreamingResourceBundlePostProcessor {
+
+	/** The adapted postprocessor */
+	private final ResourceBundlePostProcessor processor;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param processor
+	 *            the postprocessor to adapt
+	 */
+	public StreamingPostProcessorAdapter(ResourceBundlePostProcessor processor) {
+		this.processor = processor;
+	}
+
+	/**
+	 * Returns the streaming postprocessor of a postprocessor, which is the
+	 * postprocessor itself if it already implements the streaming interface
+	 * 
+	 * @param processor
+	 *            the postprocessor
+	 * @return the streaming postprocessor
+	 */
+	public static StreamingResourceBundlePostProcessor adapt(
+			ResourceBundlePostProcessor processor) {
+
+		if (processor instanceof StreamingResourceBundlePostProcessor) {
+			return (StreamingResourceBundlePostProcessor) processor;
+		}
+		return new StreamingPostProcessorAdapter(processor);
+	}
+
+	/**
+	 * Returns the content as a {@link StringBuffer}, which is only created if
+	 * the content is not already a {@link StringBuffer}
+	 * 
+	 * @param content
+	 *            the content
+	 * @return the content as a {@link StringBuffer}
+	 */
+	public static StringBuffer toStringBuffer(CharSequence content) {
+
+		if (content instanceof StringBuffer) {
+			return (StringBuffer) content;
+		}
+		return new StringBuffer(content);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * net.jawr.web.resource.bundle.postprocess.ResourceBundlePostProcessor#
+	 * postProcessBundle(net.jawr.web.resource.bundle.postprocess.
+	 * BundleProcessingStatus, java.lang.StringBuffer)
+	 */
+	public StringBuffer postProcessBundle(BundleProcessingStatus status,
+			StringBuffer bundleData) {
+		return processor.postProcessBundle(status, bundleData);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see net.jawr.web.resource.bundle.postprocess.
+	 * StreamingResourceBundlePostProcessor
+	 * #postProcessBundle(net.jawr.web.resource
+	 * .bundle.postprocess.BundleProcessingStatus, java.lang.CharSequence,
+	 * java.lang.Appendable)
+	 */
+	public void postProcessBundle(BundleProcessingStatus status,
+			CharSequence bundleData, Appendable out) {
+
+		StringBuffer processedBundle = processor.postProcessBundle(status,
+				toStringBuffer(bundleData));
+		try {
+			out.append(processedBundle);
+		} catch (IOException e) {
+			throw new BundlingProcessException(
+					"Unexpected IOException while writing the postprocessed content.",
+					e);
+		}
+	}
+}
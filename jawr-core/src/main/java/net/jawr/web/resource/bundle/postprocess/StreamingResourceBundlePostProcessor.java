@@ -0,0 +1,44 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.resource.bundle.postprocess;
+
+/**
+ * Interface for the bundle postprocessors, which read the content to process
+ * as a character sequence and append the processed content to the output. A
+ * chain of such postprocessors doesn't need to copy the content in a new
+ * buffer at each step.
+ * 
+ * The legacy postprocessors are adapted to this interface using
+ * {@link StreamingPostProcessorAdapter}.
+ * 
+ * @author Ibrahim Chaehoi
+ */
+public interface StreamingResourceBundlePostProcessor extends
+		ResourceBundlePostProcessor {
+
+	/**
+	 * Postprocess a bundle of resources, and appends the result to the
+	 * output.
+	 * 
+	 * @param status
+	 *            the bundle processing status
+	 * @param bundleData
+	 *            the content to process, which must not be modified
+	 * @param out
+	 *            the output
+	 */
+	public void postProcessBundle(BundleProcessingStatus status,
+			CharSequence bundleData, Appendable out);
+
+}
@@ -21,6 +21,7 @@ import org.slf4j.LoggerFactory;
 import net.jawr.web.exception.BundlingProcessException;
 import net.jawr.web.resource.bundle.postprocess.AbstractChainedResourceBundlePostProcessor;
 import net.jawr.web.resource.bundle.postprocess.BundleProcessingStatus;
+import net.jawr.web.resource.bundle.postprocess.StreamingPostProcessorAdapter;
 
 /**
  * This class defines the abstract JS postprocessor
@@ -59,7 +60,7 @@ public abstract class AbstractJsChainedResourceBundlePostProcessor extends
 				LOGGER.debug("postprocessing bundle:"
 						+ status.getCurrentBundle().getId());
 			processedBundle = doPostProcessBundle(status, bundleData);
-			if (processedBundle.toString().endsWith(")")) {
+			if (endsWithParenthesis(processedBundle)) {
 				processedBundle.append(";");
 			}
 		} catch (IOException e) {
@@ -74,4 +75,114 @@ public abstract class AbstractJsChainedResourceBundlePostProcessor extends
 		return processedBundle;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see net.jawr.web.resource.bundle.postprocess.
+	 * AbstractChainedResourceBundlePostProcessor
+	 * #postProcessBundle(net.jawr.web.resource
+	 * .bundle.postprocess.BundleProcessingStatus, java.lang.CharSequence,
+	 * java.lang.Appendable)
+	 */
+	public void postProcessBundle(BundleProcessingStatus status,
+			CharSequence bundleData, Appendable out) {
+		try {
+			if (LOGGER.isDebugEnabled())
+				LOGGER.debug("postprocessing bundle:"
+						+ status.getCurrentBundle().getId());
+			if (null == nextProcessor) {
+				LastCharacterTracker tracker = new LastCharacterTracker(out);
+				doPostProcessBundle(status, bundleData, tracker);
+				if (tracker.lastCharacter == ')') {
+					out.append(';');
+				}
+			} else {
+				StringBuffer processedBundle = new StringBuffer();
+				doPostProcessBundle(status, bundleData, processedBundle);
+				if (endsWithParenthesis(processedBundle)) {
+					processedBundle.append(";");
+				}
+				StreamingPostProcessorAdapter.adapt(nextProcessor)
+						.postProcessBundle(status, processedBundle, out);
+			}
+		} catch (IOException e) {
+			throw new BundlingProcessException(
+					"Unexpected IOException during execution of a postprocessor.",
+					e);
+		}
+	}
+
+	/**
+	 * Checks if the content ends with a closing parenthesis
+	 * 
+	 * @param content
+	 *            the content
+	 * @return true if the content ends with a closing parenthesis
+	 */
+	private static boolean endsWithParenthesis(CharSequence content) {
+		return content.length() > 0
+				&& content.charAt(content.length() - 1) == ')';
+	}
+
+	/**
+	 * This class appends the characters to an output, and keeps the last
+	 * appended character.
+	 */
+	private static class LastCharacterTracker implements Appendable {
+
+		/** The output */
+		private final Appendable out;
+
+		/** The last appended character */
+		private char lastCharacter;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param out
+		 *            the output
+		 */
+		private LastCharacterTracker(Appendable out) {
+			this.out = out;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Appendable#append(java.lang.CharSequence)
+		 */
+		public Appendable append(CharSequence csq) throws IOException {
+			out.append(csq);
+			if (csq != null && csq.length() > 0) {
+				lastCharacter = csq.charAt(csq.length() - 1);
+			}
+			return this;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Appendable#append(java.lang.CharSequence, int, int)
+		 */
+		public Appendable append(CharSequence csq, int start, int end)
+				throws IOException {
+			CharSequence content = csq == null ? "null" : csq;
+			out.append(content, start, end);
+			if (end > start) {
+				lastCharacter = content.charAt(end - 1);
+			}
+			return this;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Appendable#append(char)
+		 */
+		public Appendable append(char c) throws IOException {
+			out.append(c);
+			lastCharacter = c;
+			return this;
+		}
+	}
 }
@@ -32,6 +32,8 @@ import net.jawr.web.resource.bundle.postprocess.BundleProcessingStatus;
 import net.jawr.web.resource.bundle.postprocess.PostProcessFactoryConstant;
 import net.jawr.web.util.StopWatch;
 import net.jawr.web.util.js.JavascriptEngine;
+import net.jawr.web.util.js.JavascriptEngineFactory;
+import net.jawr.web.util.js.JavascriptEnginePool;
 
 /**
  * This class defines the autoprefixer postprocessor
@@ -60,11 +62,11 @@ public class AutoPrefixerPostProcessor extends AbstractChainedResourceBundlePost
 	/** The default options */
 	public static final String AUTOPREFIXER_DEFAULT_OPTIONS = "{}";
 
-	/** The autoprefixer script options */
-	private Object options;
+	/** The name of the engine binding which holds the autoprefixer options */
+	private static final String OPTIONS_BINDING = "jawrAutoprefixerOptions";
 
-	/** The Rhino engine */
-	private JavascriptEngine jsEngine;
+	/** The pool of engines, where the autoprefixer script is loaded */
+	private volatile JavascriptEnginePool jsEnginePool;
 
 	/**
 	 * Constructor
@@ -75,34 +77,54 @@ public class AutoPrefixerPostProcessor extends AbstractChainedResourceBundlePost
 
 	/**
 	 * Initialize the postprocessor
+	 * 
+	 * @param config
+	 *            the Jawr config
+	 * @return the pool of engines
 	 */
-	private void initialize(JawrConfig config) {
+	private synchronized JavascriptEnginePool initialize(final JawrConfig config) {
+
+		if (jsEnginePool != null) {
+			return jsEnginePool;
+		}
 
 		StopWatch stopWatch = new StopWatch("Initializing JS engine for Autoprefixer");
 		stopWatch.start();
 		
 		// Load JavaScript Script Engine
-		String script = config.getProperty(AUTOPREFIXER_SCRIPT_LOCATION, AUTOPREFIXER_SCRIPT_DEFAULT_LOCATION);
-		String jsEngineName = config.getJavascriptEngineName(AUTOPREFIXER_JS_ENGINE);
-		jsEngine = new JavascriptEngine(jsEngineName, true);
-		jsEngine.getBindings().put("logger", PERF_LOGGER);
-		InputStream inputStream = getResourceInputStream(config, script);
-		jsEngine.evaluate("autoprefixer.js", inputStream);
-		String strOptions = config.getProperty(AUTOPREFIXER_SCRIPT_OPTIONS, AUTOPREFIXER_DEFAULT_OPTIONS);
-		this.options = jsEngine.execEval(strOptions);
-		
-		jsEngine.evaluate("initAutoPrefixer.js", String.format("processor = autoprefixer(%s);", strOptions));
-		jsEngine.evaluate("jawrAutoPrefixerProcess.js",
-				String.format("function process(cssSource, opts){" 
-						+ "var result = processor.process(cssSource, opts);"
-						+ "if(result.warnings){" + "result.warnings().forEach(function(message){"
-						+ "if(logger.isWarnEnabled()){" + "logger.warn(message.toString());" + "}" + "});}"
-						+ "return result.css;" + "}"));
+		final String script = config.getProperty(AUTOPREFIXER_SCRIPT_LOCATION, AUTOPREFIXER_SCRIPT_DEFAULT_LOCATION);
+		final String jsEngineName = config.getJavascriptEngineName(AUTOPREFIXER_JS_ENGINE);
+		final String strOptions = config.getProperty(AUTOPREFIXER_SCRIPT_OPTIONS, AUTOPREFIXER_DEFAULT_OPTIONS);
+		JavascriptEnginePool pool = new JavascriptEnginePool("autoprefixer", config.getJavascriptEnginePoolSize(),
+				new JavascriptEngineFactory() {
+
+					@Override
+					public JavascriptEngine createEngine() {
+						JavascriptEngine jsEngine = new JavascriptEngine(jsEngineName, true);
+						jsEngine.getBindings().put("logger", PERF_LOGGER);
+						InputStream inputStream = getResourceInputStream(config, script);
+						jsEngine.evaluate("autoprefixer.js", inputStream);
+						jsEngine.getBindings().put(OPTIONS_BINDING, jsEngine.execEval(strOptions));
+
+						jsEngine.evaluate("initAutoPrefixer.js",
+								String.format("processor = autoprefixer(%s);", strOptions));
+						jsEngine.evaluate("jawrAutoPrefixerProcess.js",
+								String.format("function process(cssSource, opts){"
+										+ "var result = processor.process(cssSource, opts);"
+										+ "if(result.warnings){" + "result.warnings().forEach(function(message){"
+										+ "if(logger.isWarnEnabled()){" + "logger.warn(message.toString());" + "}"
+										+ "});}" + "return result.css;" + "}"));
+						return jsEngine;
+					}
+				});
+		pool.warmUp(config.isJavascriptEnginePoolWarmUp() ? pool.getSize() : 1);
+		jsEnginePool = pool;
 
 		stopWatch.stop();
 		if (PERF_LOGGER.isDebugEnabled()) {
 			PERF_LOGGER.debug(stopWatch.shortSummary());
 		}
+		return pool;
 	}
 
 	/**
@@ -140,8 +162,9 @@ public class AutoPrefixerPostProcessor extends AbstractChainedResourceBundlePost
 	protected StringBuffer doPostProcessBundle(BundleProcessingStatus status, StringBuffer bundleData)
 			throws IOException {
 
-		if (jsEngine == null) {
-			initialize(status.getJawrConfig());
+		JavascriptEnginePool pool = jsEnginePool;
+		if (pool == null) {
+			pool = initialize(status.getJawrConfig());
 		}
 
 		StopWatch stopWatch = new StopWatch();
@@ -149,13 +172,16 @@ public class AutoPrefixerPostProcessor extends AbstractChainedResourceBundlePost
 
 		String cssSource = bundleData.toString();
 		String res = null;
+		JavascriptEngine jsEngine = pool.borrowEngine();
 		try {
-			res = (String) jsEngine.invokeFunction("process", cssSource, options);
+			res = (String) jsEngine.invokeFunction("process", cssSource, jsEngine.getBindings().get(OPTIONS_BINDING));
 
 		} catch (NoSuchMethodException e) {
 			throw new BundlingProcessException(e);
 		} catch (ScriptException e) {
 			throw new BundlingProcessException(e);
+		} finally {
+			pool.returnEngine(jsEngine);
 		}
 
 		stopWatch.stop();
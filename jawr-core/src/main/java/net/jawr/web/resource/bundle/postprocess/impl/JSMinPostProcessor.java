@@ -15,12 +15,16 @@ package net.jawr.web.resource.bundle.postprocess.impl;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 
 import net.jawr.web.exception.BundlingProcessException;
 import net.jawr.web.minification.JSMin;
@@ -28,6 +32,7 @@ import net.jawr.web.minification.JSMin.JSMinException;
 import net.jawr.web.resource.bundle.IOUtils;
 import net.jawr.web.resource.bundle.postprocess.BundleProcessingStatus;
 import net.jawr.web.resource.bundle.postprocess.PostProcessFactoryConstant;
+import net.jawr.web.util.io.CharSequenceInputStream;
 
 /**
  * This postprocessor will minify a javascript bundle using Douglas Crockford's JSMin,
@@ -54,29 +59,36 @@ public class JSMinPostProcessor extends
 	}
 
 	/* (non-Javadoc)
-	 * @see net.jawr.web.resource.bundle.postprocess.impl.AbstractChainedResourceBundlePostProcessor#doPostProcessBundle(java.lang.StringBuffer)
+	 * @see net.jawr.web.resource.bundle.postprocess.AbstractChainedResourceBundlePostProcessor#doPostProcessBundle(net.jawr.web.resource.bundle.postprocess.BundleProcessingStatus, java.lang.StringBuffer)
 	 */
-	protected StringBuffer doPostProcessBundle(BundleProcessingStatus status,StringBuffer bundleString)
+	protected StringBuffer doPostProcessBundle(BundleProcessingStatus status, StringBuffer bundleData)
+			throws IOException {
+		StringBuffer processedBundle = new StringBuffer();
+		doPostProcessBundle(status, bundleData, processedBundle);
+		return processedBundle;
+	}
+
+	/* (non-Javadoc)
+	 * @see net.jawr.web.resource.bundle.postprocess.AbstractChainedResourceBundlePostProcessor#doPostProcessBundle(net.jawr.web.resource.bundle.postprocess.BundleProcessingStatus, java.lang.CharSequence, java.lang.Appendable)
+	 */
+	protected void doPostProcessBundle(BundleProcessingStatus status, CharSequence bundleData, Appendable out)
 			throws IOException {
 		Charset charset = status.getJawrConfig().getResourceCharset();
 		
 		// The original JSMin doesn't handle Dos (CRLF) line endings
-		// So here we replace the CRLF with LF only
-		String bundleContent = bundleString.toString().replaceAll(CR_LF,LF);
+		// So here we replace the CRLF with LF only, while the content is encoded
+		InputStream bIs = new CrLfFilterInputStream(new CharSequenceInputStream(bundleData, charset));
+		MinifiedContentOutputStream bOs = new MinifiedContentOutputStream(bundleData.length() / 2 + 16);
 		
-		byte[] bundleBytes = bundleContent.getBytes(charset.name());
-		ByteArrayInputStream bIs = new ByteArrayInputStream(bundleBytes);
-		ByteArrayOutputStream bOs = new ByteArrayOutputStream();
-		
-		// Compress data and recover it as a byte array. 
+		// Compress data
 		JSMin minifier = new JSMin(bIs,bOs);
 		try {
 			minifier.jsmin();
 		} catch (JSMinException e) {
-			formatAndThrowJSLintError(status, bundleBytes, e);				
-			} 
-		byte[] minified = bOs.toByteArray();
-		return  byteArrayToString(charset, minified);
+			byte[] bundleBytes = bundleData.toString().replaceAll(CR_LF,LF).getBytes(charset.name());
+			formatAndThrowJSLintError(status, bundleBytes, e);
+		}
+		bOs.appendTo(out, charset);
 	}
 	
 	/**
@@ -151,4 +163,98 @@ public class JSMinPostProcessor extends
 		
 		throw new BundlingProcessException(errorMsg.toString(),e);
 	}
+
+	/**
+	 * This input stream replaces the CRLF sequences by LF.
+	 */
+	private static class CrLfFilterInputStream extends FilterInputStream {
+		
+		/** The value indicating that no byte has been read in advance */
+		private static final int NONE = -2;
+		
+		/** The byte read in advance */
+		private int next = NONE;
+		
+		/**
+		 * Constructor
+		 * @param in the input stream
+		 */
+		private CrLfFilterInputStream(InputStream in) {
+			super(in);
+		}
+		
+		/* (non-Javadoc)
+		 * @see java.io.FilterInputStream#read()
+		 */
+		@Override
+		public int read() throws IOException {
+			int c = next;
+			next = NONE;
+			if (c == NONE) {
+				c = in.read();
+			}
+			if (c == '\r') {
+				int n = in.read();
+				if (n == '\n') {
+					c = n;
+				} else {
+					next = n;
+				}
+			}
+			return c;
+		}
+		
+		/* (non-Javadoc)
+		 * @see java.io.FilterInputStream#read(byte[], int, int)
+		 */
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int count = 0;
+			while (count < len) {
+				int c = read();
+				if (c == -1) {
+					return count == 0 ? -1 : count;
+				}
+				b[off + count++] = (byte) c;
+			}
+			return count;
+		}
+	}
+	
+	/**
+	 * This output stream keeps the minified content, which is decoded once
+	 * the minification is done. The bytes are written without synchronization,
+	 * as the stream is only used by the minifier.
+	 */
+	private static class MinifiedContentOutputStream extends ByteArrayOutputStream {
+		
+		/**
+		 * Constructor
+		 * @param size the initial size
+		 */
+		private MinifiedContentOutputStream(int size) {
+			super(size);
+		}
+		
+		/* (non-Javadoc)
+		 * @see java.io.ByteArrayOutputStream#write(int)
+		 */
+		@Override
+		public void write(int b) {
+			if (count == buf.length) {
+				buf = Arrays.copyOf(buf, buf.length << 1);
+			}
+			buf[count++] = (byte) b;
+		}
+		
+		/**
+		 * Decodes the content and appends it to the output
+		 * @param out the output
+		 * @param charset the charset
+		 * @throws IOException if an IOException occurs
+		 */
+		private void appendTo(Appendable out, Charset charset) throws IOException {
+			out.append(charset.decode(ByteBuffer.wrap(buf, 0, count)));
+		}
+	}
 }
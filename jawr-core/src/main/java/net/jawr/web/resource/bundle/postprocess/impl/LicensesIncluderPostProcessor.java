@@ -14,14 +14,8 @@
 package net.jawr.web.resource.bundle.postprocess.impl;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.Reader;
-import java.io.Writer;
-import java.nio.channels.Channels;
-import java.nio.channels.WritableByteChannel;
-import java.nio.charset.Charset;
 import java.util.Iterator;
 
 import net.jawr.web.exception.BundlingProcessException;
@@ -50,6 +44,10 @@ public class LicensesIncluderPostProcessor extends
 	private static final Logger LOGGER = LoggerFactory
 			.getLogger(LicensesIncluderPostProcessor.class);
 
+	/** The line separator */
+	private static final String LINE_SEPARATOR = System
+			.getProperty("line.separator");
+
 	/**
 	 * Constructor
 	 */
@@ -60,24 +58,33 @@ public class LicensesIncluderPostProcessor extends
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see net.jawr.web.resource.bundle.postprocess.impl.
+	 * @see net.jawr.web.resource.bundle.postprocess.
 	 * AbstractChainedResourceBundlePostProcessor
-	 * #doPostProcessBundle(net.jawr.web.resource.bundle.JoinableResourceBundle,
+	 * #doPostProcessBundle(net.jawr.web
+	 * .resource.bundle.postprocess.BundleProcessingStatus,
 	 * java.lang.StringBuffer)
 	 */
 	protected StringBuffer doPostProcessBundle(BundleProcessingStatus status,
 			StringBuffer bundleData) throws IOException {
 
-		JoinableResourceBundle bundle = status.getCurrentBundle();
-		Charset charset = status.getJawrConfig().getResourceCharset();
-		if (bundle.getLicensesPathList().size() == 0)
-			return bundleData;
+		StringBuffer processedBundle = new StringBuffer();
+		doPostProcessBundle(status, bundleData, processedBundle);
+		return processedBundle;
+	}
 
-		ByteArrayOutputStream baOs = new ByteArrayOutputStream();
-		WritableByteChannel wrChannel = Channels.newChannel(baOs);
-		Writer writer = Channels.newWriter(wrChannel, charset.name());
-		BufferedWriter bwriter = new BufferedWriter(writer);
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see net.jawr.web.resource.bundle.postprocess.
+	 * AbstractChainedResourceBundlePostProcessor
+	 * #doPostProcessBundle(net.jawr.web
+	 * .resource.bundle.postprocess.BundleProcessingStatus,
+	 * java.lang.CharSequence, java.lang.Appendable)
+	 */
+	protected void doPostProcessBundle(BundleProcessingStatus status,
+			CharSequence bundleData, Appendable out) throws IOException {
 
+		JoinableResourceBundle bundle = status.getCurrentBundle();
 		for (Iterator<String> it = bundle.getLicensesPathList().iterator(); it
 				.hasNext();) {
 			String path = it.next();
@@ -100,15 +107,13 @@ public class LicensesIncluderPostProcessor extends
 
 			// Write each line and the corresponding new line.
 			while (line != null) {
-				bwriter.write(line);
+				out.append(line);
 				if (((line = bRd.readLine()) != null) || it.hasNext())
-					bwriter.newLine();
+					out.append(LINE_SEPARATOR);
 			}
 			bRd.close();
 		}
-		bwriter.close();
-		return new StringBuffer(baOs.toString(charset.name()))
-				.append(bundleData);
+		out.append(bundleData);
 	}
 
 }
@@ -22,7 +22,6 @@ import net.jawr.web.config.JawrConfig;
 import net.jawr.web.exception.ResourceNotFoundException;
 import net.jawr.web.resource.BinaryResourcesHandler;
 import net.jawr.web.resource.FileNameUtils;
-import net.jawr.web.resource.bundle.CheckSumUtils;
 import net.jawr.web.resource.bundle.css.CssImageUrlRewriter;
 import net.jawr.web.resource.bundle.factory.util.PathNormalizer;
 import net.jawr.web.resource.bundle.generator.GeneratorRegistry;
@@ -235,31 +234,28 @@ public class PostProcessorCssImageUrlRewriter extends CssImageUrlRewriter {
 		// Try to retrieve the from the image resource handler cache
 		if (binaryRsHandler != null) {
 			newUrl = binaryRsHandler.getCacheUrl(url);
-			if (newUrl != null) {
-				return newUrl;
+			if (newUrl == null) {
+				// Retrieve the new URL with the cache prefix
+				try {
+					newUrl = binaryRsHandler.getCacheBustedUrl(url);
+				} catch (ResourceNotFoundException e) {
+					LOGGER.info("Impossible to define the checksum for the resource '"
+							+ url + "'. ");
+					return url;
+				} catch (IOException e) {
+					LOGGER.info("Impossible to define the checksum for the resource '"
+							+ url + "'.");
+					return url;
+				}
 			}
-			// Retrieve the new URL with the cache prefix
-			try {
-				newUrl = CheckSumUtils.getCacheBustedUrl(url,
-						binaryRsHandler.getRsReaderHandler(),
-						binaryRsHandler.getConfig());
-			} catch (ResourceNotFoundException e) {
-				LOGGER.info("Impossible to define the checksum for the resource '"
-						+ url + "'. ");
-				return url;
-			} catch (IOException e) {
-				LOGGER.info("Impossible to define the checksum for the resource '"
-						+ url + "'.");
-				return url;
-			}
-
-			binaryRsHandler.addMapping(url, newUrl);
 
 		} else {
 			newUrl = url;
 		}
 
-		// Set the result in a cache, so we will not search for it the next time
+		// Set the result in a cache, so we will not search for it the next
+		// time. This mapping also holds the binary resources referenced by the
+		// bundle.
 		if (imageMapping == null) {
 			imageMapping = new HashMap<String, String>();
 			status.putData(JawrConstant.POST_PROCESSING_CTX_JAWR_BINARY_MAPPING,
@@ -29,6 +29,8 @@ import net.jawr.web.resource.bundle.factory.util.ClassLoaderResourceUtils;
 import net.jawr.web.util.StopWatch;
 import net.jawr.web.util.StringUtils;
 import net.jawr.web.util.js.JavascriptEngine;
+import net.jawr.web.util.js.JavascriptEngineFactory;
+import net.jawr.web.util.js.JavascriptEnginePool;
 
 /**
  * The Uglify JS engine. This compressor is using UglifyJS
@@ -46,16 +48,15 @@ public class UglifyJS {
 			"parse.js", "transform.js", "scope.js", "output.js", "compress.js",
 			"sourcemap.js", "uglify.js" };
 
-	/** The rhino engine */
-	boolean baseEngine = true;
-	private JavascriptEngine jsEngine;
+	/** The name of the engine binding which holds the Uglify options */
+	private static final String OPTIONS_BINDING = "jawrUglifyOptions";
+
+	/** The pool of engines, where the Uglify scripts are loaded */
+	private final JavascriptEnginePool jsEnginePool;
 
 	/** The Jawr configuration */
 	private final JawrConfig config;
 
-	/** The Uglify options in JSON format */
-	private Object options;
-
 	/**
 	 * Constructor
 	 * 
@@ -67,22 +68,29 @@ public class UglifyJS {
 	 *            the uglify options
 	 */
 	public UglifyJS(JawrConfig config, String scriptDirLocation,
-			String optionsInJson) {
+			final String optionsInJson) {
 
 		StopWatch stopWatch = new StopWatch();
 		stopWatch.start("initializing JS engine for Uglify");
 
-		String jsEngineName = config.getJavascriptEngineName(JawrConstant.UGLIFY_POSTPROCESSOR_JS_ENGINE);
-		this.jsEngine = new JavascriptEngine(jsEngineName);
 		this.config = config;
-		this.options = jsEngine.execEval(optionsInJson);
-		String baseJsLocation = StringUtils.isNotEmpty(scriptDirLocation) ? scriptDirLocation
+		final String jsEngineName = config.getJavascriptEngineName(JawrConstant.UGLIFY_POSTPROCESSOR_JS_ENGINE);
+		final String baseJsLocation = StringUtils.isNotEmpty(scriptDirLocation) ? scriptDirLocation
 				: JawrConstant.UGLIFY_POSTPROCESSOR_DEFAULT_JS_BASE_LOCATION;
-		for (String script : UGLIFY_SCRIPTS) {
-			jsEngine.evaluate(script, getResourceInputStream(baseJsLocation
-					+ script));
-
-		}
+		this.jsEnginePool = new JavascriptEnginePool("uglify", config.getJavascriptEnginePoolSize(),
+				new JavascriptEngineFactory() {
+
+					@Override
+					public JavascriptEngine createEngine() {
+						JavascriptEngine jsEngine = new JavascriptEngine(jsEngineName);
+						jsEngine.getBindings().put(OPTIONS_BINDING, jsEngine.execEval(optionsInJson));
+						for (String script : UGLIFY_SCRIPTS) {
+							jsEngine.evaluate(script, getResourceInputStream(baseJsLocation + script));
+						}
+						return jsEngine;
+					}
+				});
+		jsEnginePool.warmUp(config.isJavascriptEnginePoolWarmUp() ? jsEnginePool.getSize() : 1);
 		stopWatch.stop();
 		if(PERF_LOGGER.isDebugEnabled()){
 			PERF_LOGGER.debug(stopWatch.prettyPrint());
@@ -121,10 +129,13 @@ public class UglifyJS {
 		Object result = null;
 		StopWatch stopWatch = new StopWatch();
 		stopWatch.start("Compressing using Uglify");
+		JavascriptEngine jsEngine = jsEnginePool.borrowEngine();
 		try {
-			result = jsEngine.invokeFunction("minify", scriptSource, options);
+			result = jsEngine.invokeFunction("minify", scriptSource, jsEngine.getBindings().get(OPTIONS_BINDING));
 		} catch (NoSuchMethodException | ScriptException e) {
 			throw new BundlingProcessException(e);
+		} finally {
+			jsEnginePool.returnEngine(jsEngine);
 		}
 
 		stopWatch.stop();
@@ -31,7 +31,7 @@ public class UglifyPostProcessor extends
 		AbstractChainedResourceBundlePostProcessor {
 
 	/** The UglifyJS compressor */
-	private UglifyJS uglifyJS;
+	private volatile UglifyJS uglifyJS;
 
 	/**
 	 * Constructor
@@ -53,18 +53,35 @@ public class UglifyPostProcessor extends
 	protected StringBuffer doPostProcessBundle(BundleProcessingStatus status,
 			StringBuffer bundleData) throws IOException {
 
-		if (uglifyJS == null) {
-			JawrConfig config = status.getJawrConfig();
-			String scriptDirLocation = config.getProperty(
-					JawrConstant.UGLIFY_POSTPROCESSOR_SCRIPT_LOCATION,
-					JawrConstant.UGLIFY_POSTPROCESSOR_DEFAULT_JS_BASE_LOCATION);
+		CompressionResult result = getUglifyJS(status.getJawrConfig()).compress(bundleData.toString());
+		return new StringBuffer(result.getCode());
+	}
 
-			String optionsInJson = config.getProperty(JawrConstant.UGLIFY_POSTPROCESSOR_OPTIONS, "{}");
-			uglifyJS = new UglifyJS(config, scriptDirLocation, optionsInJson);
-		}
+	/**
+	 * Returns the UglifyJS compressor, which is initialized on first use
+	 * 
+	 * @param config
+	 *            the Jawr config
+	 * @return the UglifyJS compressor
+	 */
+	private UglifyJS getUglifyJS(JawrConfig config) {
 
-		CompressionResult result = uglifyJS.compress(bundleData.toString());
-		return new StringBuffer(result.getCode());
+		UglifyJS compressor = uglifyJS;
+		if (compressor == null) {
+			synchronized (this) {
+				compressor = uglifyJS;
+				if (compressor == null) {
+					String scriptDirLocation = config.getProperty(
+							JawrConstant.UGLIFY_POSTPROCESSOR_SCRIPT_LOCATION,
+							JawrConstant.UGLIFY_POSTPROCESSOR_DEFAULT_JS_BASE_LOCATION);
+
+					String optionsInJson = config.getProperty(JawrConstant.UGLIFY_POSTPROCESSOR_OPTIONS, "{}");
+					compressor = new UglifyJS(config, scriptDirLocation, optionsInJson);
+					uglifyJS = compressor;
+				}
+			}
+		}
+		return compressor;
 	}
 
 }
@@ -14,19 +14,25 @@
 package net.jawr.web.resource.bundle.renderer;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.io.Writer;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 
 import net.jawr.web.DebugMode;
 import net.jawr.web.context.ThreadLocalJawrContext;
 import net.jawr.web.resource.bundle.JoinableResourceBundle;
+import net.jawr.web.resource.bundle.encoding.ContentEncodingUtils;
 import net.jawr.web.resource.bundle.factory.util.PathNormalizer;
 import net.jawr.web.resource.bundle.handler.ResourceBundlesHandler;
 import net.jawr.web.resource.bundle.iterator.BundlePath;
 import net.jawr.web.resource.bundle.iterator.ResourceBundlePathsIterator;
+import net.jawr.web.resource.bundle.renderer.BundleLinkFragmentCache.BundleLinkFragment;
 import net.jawr.web.servlet.RendererRequestUtils;
 import net.jawr.web.util.StringUtils;
 
@@ -103,6 +109,58 @@ public abstract class AbstractBundleLinkRenderer implements BundleRenderer {
 			return;
 		}
 
+		// In production mode, the rendered links are cached
+		BundleLinkFragmentCache fragmentCache = bundler.getLinkFragmentCache();
+		String renderingAttributesKey = getRenderingAttributesKey();
+		if (!debugOn && fragmentCache != null
+				&& renderingAttributesKey != null) {
+
+			String key = BundleLinkFragmentCache.getKey(
+					renderingAttributesKey, requestedPath, ctx,
+					bundler.getConfig());
+			BundleLinkFragment fragment = fragmentCache.get(key, getClass()
+					.getSimpleName());
+			if (fragment == null) {
+				Set<String> includedBundles = new HashSet<String>(
+						ctx.getIncludedBundles());
+				Map<String, String> variants = ctx.getVariants() == null ? null
+						: new HashMap<String, String>(ctx.getVariants());
+				StringWriter fragmentWriter = new StringWriter();
+				doRenderBundleLinks(bundle, requestedPath, ctx,
+						fragmentWriter, debugOn);
+				fragment = new BundleLinkFragment(fragmentWriter.toString(),
+						includedBundles, variants, ctx);
+				fragmentCache.put(key, fragment);
+				out.write(fragmentWriter.toString());
+			} else {
+				fragment.writeTo(ctx, out);
+			}
+		} else {
+			doRenderBundleLinks(bundle, requestedPath, ctx, out, debugOn);
+		}
+	}
+
+	/**
+	 * Renders the links of the global bundles, if they have not been rendered
+	 * yet, and the links of the bundle
+	 * 
+	 * @param bundle
+	 *            the bundle
+	 * @param requestedPath
+	 *            the requested path
+	 * @param ctx
+	 *            the renderer context
+	 * @param out
+	 *            the writer
+	 * @param debugOn
+	 *            the debug flag
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	private void doRenderBundleLinks(JoinableResourceBundle bundle,
+			String requestedPath, BundleRendererContext ctx, Writer out,
+			boolean debugOn) throws IOException {
+
 		// If the global bundles had been added before, it will not be included
 		// again.
 		if (!ctx.isGlobalBundleAdded()) {
@@ -117,6 +175,18 @@ public abstract class AbstractBundleLinkRenderer implements BundleRenderer {
 		}
 	}
 
+	/**
+	 * Returns the key of the renderer attributes which define the rendered
+	 * links, or null if the links rendered by this renderer must not be
+	 * cached. The default implementation returns null, so only the renderers
+	 * which define their attributes use the link fragment cache.
+	 * 
+	 * @return the key of the renderer attributes
+	 */
+	protected String getRenderingAttributesKey() {
+		return null;
+	}
+
 	/**
 	 * Renders the links for a bundle
 	 * 
@@ -343,8 +413,9 @@ public abstract class AbstractBundleLinkRenderer implements BundleRenderer {
 					//	out.write(renderLink(resourceName));
 
 					} else if (!debugOn && useGzip) {
-						out.write(createGzipBundleLink(resourceName,
-								bundlePath.getBundlePrefix(), contextPath, isSslRequest));
+						out.write(createEncodedBundleLink(resourceName,
+								bundlePath.getBundlePrefix(), contextPath, isSslRequest,
+								ctx.getContentEncoding()));
 					} else {
 						out.write(createBundleLink(resourceName, bundlePath.getBundlePrefix(), null,
 								contextPath, isSslRequest));
@@ -390,9 +461,29 @@ public abstract class AbstractBundleLinkRenderer implements BundleRenderer {
 	 */
 	protected String createGzipBundleLink(String resourceName,
 			String bundlePrefix, String contextPath, boolean isSslRequest) {
+		return createEncodedBundleLink(resourceName, bundlePrefix,
+				contextPath, isSslRequest, ContentEncodingUtils.GZIP);
+	}
+
+	/**
+	 * Creates a link to a bundle in the page, prepending the prefix of the
+	 * content coding to its identifier.
+	 * 
+	 * @param resourceName
+	 *            the resource name
+	 * @param contextPath
+	 *            the context path
+	 * @param encoding
+	 *            the content coding
+	 * @return the link to the encoded bundle in the page
+	 */
+	protected String createEncodedBundleLink(String resourceName,
+			String bundlePrefix, String contextPath, boolean isSslRequest,
+			String encoding) {
 		// remove '/' from start of name
 		String resource = resourceName.substring(1, resourceName.length());
-		return createBundleLink(BundleRenderer.GZIP_PATH_PREFIX + resource,
+		return createBundleLink(
+				ContentEncodingUtils.getPathPrefix(encoding) + resource,
 				bundlePrefix, null, contextPath, isSslRequest);
 	}
 
@@ -0,0 +1,358 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.resource.bundle.renderer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.jawr.web.config.JawrConfig;
+import net.jawr.web.util.LRUCache;
+
+/**
+ * This class defines the cache of the HTML fragments rendered by the bundle
+ * tags. In production mode, the links rendered for a bundle only depend on the
+ * renderer attributes, the URL settings of the configuration, the requested
+ * path, the variants, the content coding, the SSL flag, the context path and the bundles
+ * already included in the page, so the rendered fragment is cached for these
+ * keys.
+ *
+ * A cache is created for each bundles handler, so it is invalidated when the
+ * configuration is reloaded.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class BundleLinkFragmentCache implements BundleLinkFragmentCacheMBean {
+
+	/**
+	 * The cached fragments. When the cache is full, the least recently used
+	 * fragment is evicted.
+	 */
+	private final LRUCache<String, BundleLinkFragment> fragments;
+
+	/** The statistics, indexed by renderer */
+	private final ConcurrentMap<String, RendererStatistics> statistics = new ConcurrentHashMap<String, RendererStatistics>();
+
+	/**
+	 * Constructor
+	 *
+	 * @param maxEntries
+	 *            the maximum number of cached fragments
+	 */
+	public BundleLinkFragmentCache(int maxEntries) {
+		this.fragments = new LRUCache<String, BundleLinkFragment>(maxEntries);
+	}
+
+	/**
+	 * Returns the cache key of a fragment
+	 *
+	 * @param rendererKey
+	 *            the key of the renderer attributes
+	 * @param requestedPath
+	 *            the requested path
+	 * @param ctx
+	 *            the renderer context
+	 * @param config
+	 *            the Jawr config
+	 * @return the cache key
+	 */
+	public static String getKey(String rendererKey, String requestedPath, BundleRendererContext ctx,
+			JawrConfig config) {
+
+		StringBuilder key = new StringBuilder(rendererKey);
+		key.append('|').append(config.getServletMapping()).append('|').append(config.getContextPathOverride())
+				.append('|').append(config.getContextPathSslOverride());
+		key.append('|').append(requestedPath).append('|').append(ctx.getContextPath()).append('|')
+				.append(ctx.getContentEncoding()).append('|').append(ctx.isSslRequest()).append('|')
+				.append(ctx.isGlobalBundleAdded()).append('|');
+		if (ctx.getVariants() != null) {
+			key.append(new TreeMap<String, String>(ctx.getVariants()));
+		}
+		key.append('|');
+		if (!ctx.getIncludedBundles().isEmpty()) {
+			List<String> includedBundles = new ArrayList<String>(ctx.getIncludedBundles());
+			Collections.sort(includedBundles);
+			key.append(includedBundles);
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Returns the cached fragment
+	 *
+	 * @param key
+	 *            the cache key
+	 * @param renderer
+	 *            the renderer name
+	 * @return the cached fragment or null
+	 */
+	public BundleLinkFragment get(String key, String renderer) {
+
+		BundleLinkFragment fragment = fragments.get(key);
+		RendererStatistics stats = getStatistics(renderer);
+		if (fragment == null) {
+			stats.missCount.incrementAndGet();
+		} else {
+			stats.hitCount.incrementAndGet();
+		}
+		return fragment;
+	}
+
+	/**
+	 * Caches a fragment. If the cache is full, the least recently used
+	 * fragment is evicted.
+	 *
+	 * @param key
+	 *            the cache key
+	 * @param fragment
+	 *            the fragment
+	 */
+	public void put(String key, BundleLinkFragment fragment) {
+
+		fragments.put(key, fragment);
+	}
+
+	/**
+	 * Returns the statistics of a renderer
+	 *
+	 * @param renderer
+	 *            the renderer name
+	 * @return the statistics of the renderer
+	 */
+	private RendererStatistics getStatistics(String renderer) {
+
+		RendererStatistics stats = statistics.get(renderer);
+		if (stats == null) {
+			RendererStatistics newStats = new RendererStatistics();
+			stats = statistics.putIfAbsent(renderer, newStats);
+			if (stats == null) {
+				stats = newStats;
+			}
+		}
+		return stats;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see net.jawr.web.resource.bundle.renderer.BundleLinkFragmentCacheMBean#
+	 * getMaxEntries()
+	 */
+	public int getMaxEntries() {
+		return fragments.getMaxEntries();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see net.jawr.web.resource.bundle.renderer.BundleLinkFragmentCacheMBean#
+	 * getEntryCount()
+	 */
+	public int getEntryCount() {
+		return fragments.size();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see net.jawr.web.resource.bundle.renderer.BundleLinkFragmentCacheMBean#
+	 * getHitCount()
+	 */
+	public long getHitCount() {
+
+		long hitCount = 0;
+		for (RendererStatistics stats : statistics.values()) {
+			hitCount += stats.hitCount.get();
+		}
+		return hitCount;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see net.jawr.web.resource.bundle.renderer.BundleLinkFragmentCacheMBean#
+	 * getMissCount()
+	 */
+	public long getMissCount() {
+
+		long missCount = 0;
+		for (RendererStatistics stats : statistics.values()) {
+			missCount += stats.missCount.get();
+		}
+		return missCount;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see net.jawr.web.resource.bundle.renderer.BundleLinkFragmentCacheMBean#
+	 * getHitRatio()
+	 */
+	public double getHitRatio() {
+		return getRatio(getHitCount(), getMissCount());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see net.jawr.web.resource.bundle.renderer.BundleLinkFragmentCacheMBean#
+	 * getRendererStatistics()
+	 */
+	public String[] getRendererStatistics() {
+
+		List<String> result = new ArrayList<String>();
+		for (Map.Entry<String, RendererStatistics> entry : new TreeMap<String, RendererStatistics>(statistics)
+				.entrySet()) {
+			long hitCount = entry.getValue().hitCount.get();
+			long missCount = entry.getValue().missCount.get();
+			result.add(entry.getKey() + ": hits=" + hitCount + ", misses=" + missCount + ", ratio="
+					+ getRatio(hitCount, missCount));
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see net.jawr.web.resource.bundle.renderer.BundleLinkFragmentCacheMBean#
+	 * getRendererHitRatio(java.lang.String)
+	 */
+	public double getRendererHitRatio(String renderer) {
+
+		RendererStatistics stats = statistics.get(renderer);
+		return stats == null ? 0 : getRatio(stats.hitCount.get(), stats.missCount.get());
+	}
+
+	/**
+	 * Returns the ratio of hits
+	 *
+	 * @param hitCount
+	 *            the number of hits
+	 * @param missCount
+	 *            the number of misses
+	 * @return the ratio of hits
+	 */
+	private static double getRatio(long hitCount, long missCount) {
+		long requestCount = hitCount + missCount;
+		return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see net.jawr.web.resource.bundle.renderer.BundleLinkFragmentCacheMBean#
+	 * resetStatistics()
+	 */
+	public void resetStatistics() {
+		statistics.clear();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * net.jawr.web.resource.bundle.renderer.BundleLinkFragmentCacheMBean#clear()
+	 */
+	public void clear() {
+		fragments.clear();
+	}
+
+	/**
+	 * This class defines a rendered fragment, with the changes it applies to
+	 * the renderer context.
+	 */
+	public static class BundleLinkFragment {
+
+		/** The rendered content */
+		private final String content;
+
+		/** The IDs of the bundles included by the fragment */
+		private final Set<String> includedBundles;
+
+		/** The variants set by the fragment */
+		private final Map<String, String> variants;
+
+		/**
+		 * Constructor
+		 *
+		 * @param content
+		 *            the rendered content
+		 * @param includedBundlesBefore
+		 *            the IDs of the bundles included before the rendering
+		 * @param variantsBefore
+		 *            the variants before the rendering
+		 * @param ctx
+		 *            the renderer context after the rendering
+		 */
+		public BundleLinkFragment(String content, Set<String> includedBundlesBefore,
+				Map<String, String> variantsBefore, BundleRendererContext ctx) {
+
+			this.content = content;
+			this.includedBundles = new HashSet<String>(ctx.getIncludedBundles());
+			this.includedBundles.removeAll(includedBundlesBefore);
+			this.variants = new HashMap<String, String>();
+			if (ctx.getVariants() != null) {
+				for (Map.Entry<String, String> entry : ctx.getVariants().entrySet()) {
+					String value = entry.getValue();
+					String previousValue = variantsBefore == null ? null : variantsBefore.get(entry.getKey());
+					if (value == null ? previousValue != null : !value.equals(previousValue)) {
+						variants.put(entry.getKey(), value);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Writes the fragment and applies its changes to the renderer context
+		 *
+		 * @param ctx
+		 *            the renderer context
+		 * @param out
+		 *            the writer
+		 * @throws IOException
+		 *             if an IOException occurs
+		 */
+		public void writeTo(BundleRendererContext ctx, Writer out) throws IOException {
+
+			ctx.setGlobalBundleAdded(true);
+			ctx.getIncludedBundles().addAll(includedBundles);
+			if (!variants.isEmpty()) {
+				ctx.getVariants().putAll(variants);
+			}
+			out.write(content);
+		}
+	}
+
+	/**
+	 * This class defines the statistics of a renderer
+	 */
+	private static class RendererStatistics {
+
+		/** The number of cache hits */
+		private final AtomicLong hitCount = new AtomicLong();
+
+		/** The number of cache misses */
+		private final AtomicLong missCount = new AtomicLong();
+	}
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.resource.bundle.renderer;
+
+/**
+ * The MBean interface of the link fragment cache, which exposes the cache
+ * statistics, globally and for each renderer.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public interface BundleLinkFragmentCacheMBean {
+
+	/**
+	 * Returns the maximum number of cached fragments
+	 *
+	 * @return the maximum number of cached fragments
+	 */
+	int getMaxEntries();
+
+	/**
+	 * Returns the number of cached fragments
+	 *
+	 * @return the number of cached fragments
+	 */
+	int getEntryCount();
+
+	/**
+	 * Returns the number of cache hits
+	 *
+	 * @return the number of cache hits
+	 */
+	long getHitCount();
+
+	/**
+	 * Returns the number of cache misses
+	 *
+	 * @return the number of cache misses
+	 */
+	long getMissCount();
+
+	/**
+	 * Returns the ratio of cache hits, between 0 and 1
+	 *
+	 * @return the ratio of cache hits
+	 */
+	double getHitRatio();
+
+	/**
+	 * Returns the statistics of each renderer, in the form
+	 * <code>renderer: hits=&lt;n&gt;, misses=&lt;n&gt;, ratio=&lt;r&gt;</code>
+	 *
+	 * @return the statistics of each renderer
+	 */
+	String[] getRendererStatistics();
+
+	/**
+	 * Returns the ratio of cache hits of a renderer, between 0 and 1
+	 *
+	 * @param renderer
+	 *            the simple class name of the renderer
+	 * @return the ratio of cache hits of the renderer
+	 */
+	double getRendererHitRatio(String renderer);
+
+	/**
+	 * Resets the statistics
+	 */
+	void resetStatistics();
+
+	/**
+	 * Clears the cached fragments
+	 */
+	void clear();
+}
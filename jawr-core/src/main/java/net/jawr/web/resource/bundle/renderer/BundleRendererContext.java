@@ -21,6 +21,7 @@ import java.util.Set;
 import javax.servlet.http.HttpServletRequest;
 
 import net.jawr.web.config.JawrConfig;
+import net.jawr.web.resource.bundle.encoding.ContentEncodingUtils;
 import net.jawr.web.servlet.RendererRequestUtils;
 
 /**
@@ -48,6 +49,9 @@ public class BundleRendererContext {
 	/** The flag indicating if we are using Gzip or not */
 	private boolean useGzip;
 	
+	/** The content coding of the compressed bundles, gzip if it's not defined */
+	private String contentEncoding;
+	
 	/** The flag indicating if it's an SSL request or not */
 	private boolean isSslRequest;
 	
@@ -82,7 +86,8 @@ public class BundleRendererContext {
 		this.request = request;
 		this.contextPath = request.getContextPath();
 		this.variants = jawrConfig.getGeneratorRegistry().resolveVariants(request);
-		this.useGzip = RendererRequestUtils.isRequestGzippable(request,jawrConfig);
+		this.contentEncoding = RendererRequestUtils.getPreferredContentEncoding(request,jawrConfig);
+		this.useGzip = contentEncoding != null;
 		this.isSslRequest = RendererRequestUtils.isSslRequest(request);
 		
 		this.includedBundles = new HashSet<String>();
@@ -170,6 +175,27 @@ public class BundleRendererContext {
 		this.useGzip = useGzip;
 	}
 
+	/**
+	 * Returns the content coding of the compressed bundles, or null if we 
+	 * don't use compression
+	 * @return the content coding of the compressed bundles
+	 */
+	public String getContentEncoding() {
+		String encoding = null;
+		if (useGzip) {
+			encoding = contentEncoding != null ? contentEncoding : ContentEncodingUtils.GZIP;
+		}
+		return encoding;
+	}
+
+	/**
+	 * Sets the content coding of the compressed bundles
+	 * @param contentEncoding the content coding to set
+	 */
+	public void setContentEncoding(String contentEncoding) {
+		this.contentEncoding = contentEncoding;
+	}
+
 	/**
 	 * Returns true if it's an SSL request
 	 * @return true if it's an SSL request
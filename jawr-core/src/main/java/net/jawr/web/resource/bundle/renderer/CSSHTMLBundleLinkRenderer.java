@@ -324,6 +324,20 @@ public class CSSHTMLBundleLinkRenderer extends AbstractBundleLinkRenderer
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see net.jawr.web.resource.bundle.renderer.AbstractBundleLinkRenderer#
+	 * getRenderingAttributesKey()
+	 */
+	@Override
+	protected String getRenderingAttributesKey() {
+		return getClass().getName() + "|media=" + media + "|alternate="
+				+ alternate + "|displayAlternateStyles="
+				+ displayAlternateStyles + "|title=" + title + "|closingFlavor="
+				+ closingFlavor.trim();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -96,6 +96,14 @@ public class JavascriptHTMLBundleLinkRenderer extends AbstractBundleLinkRenderer
 		renderGlobalLinks = false;
 	}
 	
+    /* (non-Javadoc)
+     * @see net.jawr.web.resource.bundle.renderer.AbstractBundleLinkRenderer#getRenderingAttributesKey()
+     */
+    @Override
+    protected String getRenderingAttributesKey() {
+    	return getClass().getName() + "|async=" + async + "|defer=" + defer;
+    }
+
     /* (non-Javadoc)
      * @see net.jawr.web.resource.bundle.renderer.AbstractBundleLinkRenderer#createBundleLink(java.lang.String, java.lang.String)
      */
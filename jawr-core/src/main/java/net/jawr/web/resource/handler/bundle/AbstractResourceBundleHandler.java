@@ -13,6 +13,7 @@
  */
 package net.jawr.web.resource.handler.bundle;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -22,21 +23,41 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Queue;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPOutputStream;
 
 import net.jawr.web.JawrConstant;
+import net.jawr.web.config.JawrConfig;
 import net.jawr.web.exception.BundlingProcessException;
 import net.jawr.web.exception.ResourceNotFoundException;
 import net.jawr.web.resource.bundle.IOUtils;
 import net.jawr.web.resource.bundle.JoinableResourceBundleContent;
+import net.jawr.web.resource.bundle.encoding.BundleContentEncoder;
+import net.jawr.web.resource.bundle.encoding.ContentEncodingUtils;
 import net.jawr.web.resource.bundle.factory.util.PathNormalizer;
 import net.jawr.web.resource.bundle.generator.GeneratorRegistry;
+import net.jawr.web.util.ByteBufferChannel;
 import net.jawr.web.util.StringUtils;
 
 import org.slf4j.Logger;
@@ -70,6 +91,12 @@ public abstract class AbstractResourceBundleHandler implements
 	 */
 	protected static final String TEMP_CSS_CLASSPATH_SUBDIR = "cssClasspath";
 
+	/** The suffix of the file used to write a bundle before replacing it */
+	protected static final String TEMP_FILE_SUFFIX = ".tmp";
+
+	/** The suffix of the copies of the bundle files which are memory mapped */
+	protected static final String MAPPED_FILE_SUFFIX = ".mapped";
+
 	/** The path of the temporary working directory */
 	protected String tempDirPath;
 
@@ -100,6 +127,60 @@ public abstract class AbstractResourceBundleHandler implements
 	 */
 	private boolean useFileSystemTempDir = true;
 
+	/**
+	 * The flag indicating if the stored bundles are served from memory mapped
+	 * files
+	 */
+	private volatile boolean useMemoryMappedBundles = false;
+
+	/** The memory mapped bundle files, indexed by file path */
+	private final ConcurrentMap<String, MappedBundle> mappedBundles = new ConcurrentHashMap<String, MappedBundle>();
+
+	/** The counter used to name the memory mapped copies of the bundles */
+	private final AtomicLong mappedFileCounter = new AtomicLong();
+
+	/**
+	 * The memory mapped copies which are not used anymore, and which couldn't
+	 * be deleted yet
+	 */
+	private final Queue<File> releasedMappedFiles = new ConcurrentLinkedQueue<File>();
+
+	/**
+	 * The encoders used to store the bundles in addition to gzip, indexed by
+	 * content coding
+	 */
+	private volatile Map<String, BundleContentEncoder> contentEncoders = Collections
+			.emptyMap();
+
+	/** The Jawr config passed to the content encoders */
+	private volatile JawrConfig contentEncodersConfig;
+
+	/** The deflate level of the gzipped bundles */
+	private volatile int gzipCompressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+	/** The optimizer of the gzipped bundles */
+	private volatile GzipBundleOptimizer gzipBundleOptimizer;
+
+	/**
+	 * The current version of the gzipped bundle files which are optimized,
+	 * indexed by file path. An optimized file only replaces the version from
+	 * which it has been computed.
+	 */
+	private final ConcurrentMap<String, Object> gzipBundleVersions = new ConcurrentHashMap<String, Object>();
+
+	/**
+	 * The CRC32 checksums of the stored encoded bundle files, indexed by file
+	 * path. The checksum of a file stored by a previous run is computed on
+	 * the first access.
+	 */
+	private final ConcurrentMap<String, Long> bundleChecksums = new ConcurrentHashMap<String, Long>();
+
+	/**
+	 * The lock under which the stored bundle files are replaced, so the
+	 * content of a file is always retrieved with its checksum
+	 */
+	private final Object storedFilesLock = new Object();
+
 	/**
 	 * Build a resource handler based on the specified temporary files root path
 	 * and charset.
@@ -423,10 +504,415 @@ public abstract class AbstractResourceBundleHandler implements
 			boolean gzipBundle) throws ResourceNotFoundException {
 
 		String tempFileName = getStoredBundlePath(bundleName, gzipBundle);
+		if (isMemoryMappingEnabled()) {
+			ByteBuffer buffer = getMappedBundle(tempFileName);
+			if (buffer != null) {
+				return new ByteBufferChannel(buffer);
+			}
+		}
 		InputStream is = getTemporaryResourceAsStream(tempFileName);
 		return Channels.newChannel(is);
 	}
 
+	/**
+	 * Returns the readable byte channel on the version of a bundle encoded
+	 * with the content coding given in parameter
+	 * 
+	 * @param bundleName
+	 *            the bundle name
+	 * @param encoding
+	 *            the content coding
+	 * @return the readable byte channel on the encoded bundle
+	 * @throws ResourceNotFoundException
+	 *             if the encoded bundle is not found
+	 */
+	public ReadableByteChannel getResourceBundleChannel(String bundleName,
+			String encoding) throws ResourceNotFoundException {
+
+		if (ContentEncodingUtils.GZIP.equals(encoding)) {
+			return getResourceBundleChannel(bundleName, true);
+		}
+		if (!contentEncoders.containsKey(encoding)) {
+			throw new ResourceNotFoundException(bundleName);
+		}
+
+		String tempFileName = getStoredBundlePath(getEncodedDirPath(encoding),
+				bundleName);
+		if (isMemoryMappingEnabled()) {
+			ByteBuffer buffer = getMappedBundle(tempFileName);
+			if (buffer != null) {
+				return new ByteBufferChannel(buffer);
+			}
+		}
+		InputStream is = getTemporaryResourceAsStream(tempFileName);
+		return Channels.newChannel(is);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see net.jawr.web.resource.handler.bundle.ResourceBundleHandler#
+	 * getResourceBundleChecksum(java.lang.String, java.lang.String)
+	 */
+	public long getResourceBundleChecksum(String bundleName, String encoding)
+			throws ResourceNotFoundException {
+
+		String key = getEncodedBundleFilePath(bundleName, encoding);
+		Long checksum = bundleChecksums.get(key);
+		if (checksum == null) {
+			CRC32 crc = new CRC32();
+			ReadableByteChannel channel = getResourceBundleChannel(bundleName,
+					encoding);
+			try {
+				ByteBuffer buffer = ByteBuffer.allocate(8192);
+				while (channel.read(buffer) != -1) {
+					buffer.flip();
+					crc.update(buffer.array(), 0, buffer.limit());
+					buffer.clear();
+				}
+			} catch (IOException e) {
+				throw new BundlingProcessException(
+						"Unexpected IOException reading bundle [" + bundleName
+								+ "]", e);
+			} finally {
+				IOUtils.close(channel);
+			}
+
+			// A checksum recorded by a concurrent store takes precedence
+			Long previous = bundleChecksums.putIfAbsent(key, crc.getValue());
+			checksum = previous != null ? previous : crc.getValue();
+		}
+		return checksum;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see net.jawr.web.resource.handler.bundle.ResourceBundleHandler#
+	 * getResourceBundleContent(java.lang.String, java.lang.String)
+	 */
+	public BundleContent getResourceBundleContent(String bundleName,
+			String encoding) throws ResourceNotFoundException {
+
+		if (encoding != null && !ContentEncodingUtils.GZIP.equals(encoding)
+				&& !contentEncoders.containsKey(encoding)) {
+			throw new ResourceNotFoundException(bundleName);
+		}
+
+		if (!useFileSystemTempDir) {
+			return readResourceBundleContent(bundleName, encoding);
+		}
+
+		// The checksum of a file stored by a previous run is computed before
+		// taking the lock
+		if (encoding != null) {
+			getResourceBundleChecksum(bundleName, encoding);
+		}
+
+		String filePath = encoding == null ? new File(getStoredBundlePath(
+				bundleName, false)).getPath() : getEncodedBundleFilePath(
+				bundleName, encoding);
+		synchronized (storedFilesLock) {
+			String checksum = null;
+			if (encoding != null) {
+				checksum = Long.toHexString(getResourceBundleChecksum(
+						bundleName, encoding));
+			}
+			if (isMemoryMappingEnabled()) {
+				ByteBuffer buffer = getMappedBundle(filePath);
+				if (buffer != null) {
+					return new BundleContent(buffer, checksum);
+				}
+			}
+
+			FileInputStream fis = null;
+			try {
+				fis = new FileInputStream(filePath);
+				return new BundleContent(fis.getChannel(), checksum);
+			} catch (FileNotFoundException e) {
+				throw new ResourceNotFoundException(filePath);
+			} catch (IOException e) {
+				IOUtils.close(fis);
+				throw new BundlingProcessException(
+						"Unexpected IOException reading bundle [" + bundleName
+								+ "]", e);
+			}
+		}
+	}
+
+	/**
+	 * Reads the content of a bundle which is not stored on the file system
+	 * 
+	 * @param bundleName
+	 *            the bundle name
+	 * @param encoding
+	 *            the content coding, or null for the text version
+	 * @return the bundle content
+	 * @throws ResourceNotFoundException
+	 *             if the bundle is not found
+	 */
+	private BundleContent readResourceBundleContent(String bundleName,
+			String encoding) throws ResourceNotFoundException {
+
+		ReadableByteChannel channel = encoding == null ? getResourceBundleChannel(
+				bundleName, false) : getResourceBundleChannel(bundleName,
+				encoding);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			IOUtils.copy(channel, Channels.newChannel(out));
+		} catch (IOException e) {
+			throw new BundlingProcessException(
+					"Unexpected IOException reading bundle [" + bundleName
+							+ "]", e);
+		} finally {
+			IOUtils.close(channel);
+		}
+
+		byte[] content = out.toByteArray();
+		String checksum = null;
+		if (encoding != null) {
+			CRC32 crc = new CRC32();
+			crc.update(content);
+			checksum = Long.toHexString(crc.getValue());
+		}
+		return new BundleContent(content, checksum);
+	}
+
+	/**
+	 * Returns the path of the file in which the encoded version of a bundle is
+	 * stored. This path is the key of the checksum of the file.
+	 * 
+	 * @param bundleName
+	 *            the bundle name
+	 * @param encoding
+	 *            the content coding
+	 * @return the file path
+	 */
+	private String getEncodedBundleFilePath(String bundleName, String encoding) {
+
+		String rootDir = ContentEncodingUtils.GZIP.equals(encoding) ? gzipDirPath
+				: getEncodedDirPath(encoding);
+		return new File(getStoredBundlePath(rootDir, bundleName)).getPath();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * net.jawr.web.resource.handler.bundle.ResourceBundleHandler#getContentEncodings
+	 * ()
+	 */
+	public Set<String> getContentEncodings() {
+		return contentEncoders.keySet();
+	}
+
+	/**
+	 * Sets the encoders used to store the bundles in addition to gzip. The
+	 * encoded versions are stored in a directory named after their content
+	 * coding.
+	 * 
+	 * @param encoders
+	 *            the content encoders
+	 * @param config
+	 *            the Jawr config passed to the encoders
+	 */
+	public void setBundleContentEncoders(List<BundleContentEncoder> encoders,
+			JawrConfig config) {
+
+		Map<String, BundleContentEncoder> encoderMap = new LinkedHashMap<String, BundleContentEncoder>();
+		for (BundleContentEncoder encoder : encoders) {
+			String encoding = encoder.getContentEncoding();
+			try {
+				createDir(getEncodedDirPath(encoding));
+			} catch (IOException e) {
+				throw new BundlingProcessException(
+						"Unexpected IOException creating temporary jawr directory",
+						e);
+			}
+			encoderMap.put(encoding, encoder);
+		}
+		this.contentEncodersConfig = config;
+		this.contentEncoders = Collections.unmodifiableMap(encoderMap);
+	}
+
+	/**
+	 * Sets the deflate level of the gzipped bundles
+	 * 
+	 * @param gzipCompressionLevel
+	 *            the deflate level, from 0 to 9, or -1 for the default level
+	 */
+	public void setGzipCompressionLevel(int gzipCompressionLevel) {
+		this.gzipCompressionLevel = gzipCompressionLevel;
+	}
+
+	/**
+	 * Sets the optimizer of the gzipped bundles. Once a gzipped bundle is
+	 * stored, the optimizer computes a smaller version which replaces it.
+	 * 
+	 * @param gzipBundleOptimizer
+	 *            the optimizer, or null to disable the optimization
+	 */
+	public void setGzipBundleOptimizer(GzipBundleOptimizer gzipBundleOptimizer) {
+		this.gzipBundleOptimizer = gzipBundleOptimizer;
+	}
+
+	/**
+	 * Returns the optimizer of the gzipped bundles
+	 * 
+	 * @return the optimizer of the gzipped bundles
+	 */
+	public GzipBundleOptimizer getGzipBundleOptimizer() {
+		return gzipBundleOptimizer;
+	}
+
+	/**
+	 * Returns the path of the directory which contains the bundles encoded
+	 * with the content coding given in parameter
+	 * 
+	 * @param encoding
+	 *            the content coding
+	 * @return the path of the directory
+	 */
+	private String getEncodedDirPath(String encoding) {
+		return tempDirPath + File.separator + encoding;
+	}
+
+	/**
+	 * Sets the flag indicating if the stored bundles are served from memory
+	 * mapped files. The memory mapping is only used if the temporary directory
+	 * is on the file system.
+	 * 
+	 * @param useMemoryMappedBundles
+	 *            the flag to set
+	 */
+	public void setUseMemoryMappedBundles(boolean useMemoryMappedBundles) {
+		this.useMemoryMappedBundles = useMemoryMappedBundles;
+		if (!useMemoryMappedBundles) {
+			synchronized (storedFilesLock) {
+				for (String key : mappedBundles.keySet()) {
+					releaseMappedBundle(key);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the flag indicating if the stored bundles are served from memory
+	 * mapped files
+	 * 
+	 * @return the flag indicating if the stored bundles are served from memory
+	 *         mapped files
+	 */
+	public boolean isUseMemoryMappedBundles() {
+		return useMemoryMappedBundles;
+	}
+
+	/**
+	 * Checks if the stored bundles are served from memory mapped files
+	 * 
+	 * @return true if the stored bundles are served from memory mapped files
+	 */
+	private boolean isMemoryMappingEnabled() {
+		return useMemoryMappedBundles && useFileSystemTempDir;
+	}
+
+	/**
+	 * Returns the memory mapped content of a stored bundle file. The mapping
+	 * is done on a copy of the file, which is created on the first access and
+	 * reused until the bundle is stored again. As the bundle files themselves
+	 * are never mapped, they can always be replaced, even on the platforms
+	 * which lock the mapped files. This method returns null if the file can't
+	 * be mapped, in which case it is read from the file system.
+	 * 
+	 * @param filePath
+	 *            the file path
+	 * @return the memory mapped content, or null if the file can't be mapped
+	 * @throws ResourceNotFoundException
+	 *             if the file doesn't exist
+	 */
+	private ByteBuffer getMappedBundle(String filePath)
+			throws ResourceNotFoundException {
+
+		String key = new File(filePath).getPath();
+		MappedBundle mappedBundle = mappedBundles.get(key);
+		if (mappedBundle != null) {
+			return mappedBundle.buffer;
+		}
+
+		// The lock prevents from mapping a file while it is replaced
+		synchronized (storedFilesLock) {
+			mappedBundle = mappedBundles.get(key);
+			if (mappedBundle == null) {
+				File bundleFile = new File(key);
+				if (!bundleFile.isFile()) {
+					throw new ResourceNotFoundException(filePath);
+				}
+
+				File mappedFile = new File(key + "."
+						+ mappedFileCounter.incrementAndGet()
+						+ MAPPED_FILE_SUFFIX);
+				FileInputStream fis = null;
+				try {
+					Files.copy(bundleFile.toPath(), mappedFile.toPath(),
+							StandardCopyOption.REPLACE_EXISTING);
+					fis = new FileInputStream(mappedFile);
+					FileChannel channel = fis.getChannel();
+					mappedBundle = new MappedBundle(mappedFile, channel.map(
+							FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+				} catch (IOException e) {
+					LOGGER.warn("Unable to map the bundle file " + filePath
+							+ ", it will be read from the file system", e);
+					releaseMappedFile(mappedFile);
+					return null;
+				} finally {
+					// The mapping stays valid after the channel is closed
+					IOUtils.close(fis);
+				}
+				mappedBundles.put(key, mappedBundle);
+			}
+		}
+		return mappedBundle.buffer;
+	}
+
+	/**
+	 * Releases the memory mapped copy of a bundle file. This method must be
+	 * called with the lock on the stored files.
+	 * 
+	 * @param key
+	 *            the path of the bundle file
+	 */
+	private void releaseMappedBundle(String key) {
+
+		MappedBundle mappedBundle = mappedBundles.remove(key);
+		if (mappedBundle != null) {
+			releaseMappedFile(mappedBundle.file);
+		}
+
+		// The copies which were still mapped are deleted as soon as possible
+		for (int i = releasedMappedFiles.size(); i > 0; i--) {
+			File file = releasedMappedFiles.poll();
+			if (file != null) {
+				releaseMappedFile(file);
+			}
+		}
+	}
+
+	/**
+	 * Deletes a memory mapped copy of a bundle file. The buffers already
+	 * mapped stay readable. If the copy can't be deleted while it is mapped,
+	 * it will be deleted later.
+	 * 
+	 * @param file
+	 *            the memory mapped copy
+	 */
+	private void releaseMappedFile(File file) {
+
+		if (file.exists() && !file.delete()) {
+			releasedMappedFiles.add(file);
+			file.deleteOnExit();
+		}
+	}
+
 	/**
 	 * Resolves the file name with which a bundle is stored.
 	 * 
@@ -494,30 +980,95 @@ public abstract class AbstractResourceBundleHandler implements
 
 		// Text version
 		String bundleContent = bundleResourcesContent.getContent().toString();
-		storeBundle(bundleName, bundleContent, false, textDirPath);
+		storeBundle(bundleName, bundleContent, null, textDirPath);
 
 		// binary version
-		storeBundle(bundleName, bundleContent, true, gzipDirPath);
+		storeBundle(bundleName, bundleContent, ContentEncodingUtils.GZIP,
+				gzipDirPath);
+
+		// encoded versions
+		for (String encoding : contentEncoders.keySet()) {
+			storeBundle(bundleName, bundleContent, encoding,
+					getEncodedDirPath(encoding));
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see net.jawr.web.resource.handler.bundle.ResourceBundleHandler#
+	 * storeEncodedBundles(java.lang.String)
+	 */
+	public void storeEncodedBundles(String bundleName)
+			throws ResourceNotFoundException {
+
+		// The gzipped version may have been rewritten by a global
+		// postprocessor, so its checksum is computed again from the file
+		bundleChecksums.remove(getEncodedBundleFilePath(bundleName,
+				ContentEncodingUtils.GZIP));
+
+		GzipBundleOptimizer optimizer = gzipBundleOptimizer;
+		if (contentEncoders.isEmpty() && optimizer == null) {
+			return;
+		}
+
+		String bundleContent = getStoredBundleText(bundleName);
+
+		// The gzipped version is stored again when it is optimized, so the
+		// pending optimization of the previous content is cancelled and the
+		// optimization of the new content is submitted
+		if (optimizer != null) {
+			storeBundle(bundleName, bundleContent, ContentEncodingUtils.GZIP,
+					gzipDirPath);
+		}
+		for (String encoding : contentEncoders.keySet()) {
+			storeBundle(bundleName, bundleContent, encoding,
+					getEncodedDirPath(encoding));
+		}
+	}
+
+	/**
+	 * Returns the content of the stored text version of a bundle
+	 * 
+	 * @param bundleName
+	 *            the bundle name
+	 * @return the content of the bundle
+	 * @throws ResourceNotFoundException
+	 *             if the text version of the bundle is not found
+	 */
+	private String getStoredBundleText(String bundleName)
+			throws ResourceNotFoundException {
+
+		Reader rd = getResourceBundleReader(bundleName);
+		try {
+			return IOUtils.toString(rd);
+		} catch (IOException e) {
+			throw new BundlingProcessException(
+					"Unexpected IOException reading bundle [" + bundleName
+							+ "]", e);
+		} finally {
+			IOUtils.close(rd);
+		}
 	}
 
 	/**
-	 * Stores a resource bundle either in text or binary gzipped format.
+	 * Stores a resource bundle either in text or in an encoded binary format.
 	 * 
 	 * @param bundleName
 	 *            the bundle name
 	 * @param bundledResources
 	 *            the bundledRessources
-	 * @param gzipFile
-	 *            a fag defining if the file is gzipped or not
+	 * @param encoding
+	 *            the content coding of the file, or null for the text file
 	 * @param rootDir
 	 *            the root directory
 	 */
 	@SuppressWarnings("resource")
 	private void storeBundle(String bundleName, String bundledResources,
-			boolean gzipFile, String rootdir) {
+			String encoding, String rootdir) {
 		if (LOGGER.isDebugEnabled()) {
 			String msg = "Storing a generated "
-					+ (gzipFile ? "and gzipped" : "")
+					+ (encoding != null ? "and " + encoding + " encoded" : "")
 					+ " bundle with an id of:" + bundleName;
 			LOGGER.debug(msg);
 		}
@@ -538,17 +1089,41 @@ public abstract class AbstractResourceBundleHandler implements
 				bundleName = bundleName.replace('/', File.separatorChar);
 			}
 
-			File store = createNewFile(rootdir + File.separator + bundleName);
+			// The bundle files are replaced and not overwritten, so the
+			// channels opened on the previous content remain valid. The
+			// buffers are mapped on copies of the bundle files, which are
+			// released when the bundle is replaced. The optimized gzipped
+			// files are replaced in the same way.
+			File bundleFile = createNewFile(rootdir + File.separator
+					+ bundleName);
+			File store = createNewFile(bundleFile.getPath() + TEMP_FILE_SUFFIX);
+			GzipBundleOptimizer optimizer = gzipBundleOptimizer;
+			boolean optimizeGzip = optimizer != null
+					&& ContentEncodingUtils.GZIP.equals(encoding);
 
 			GZIPOutputStream gzOut = null;
+			OutputStream out = null;
 			Writer wr = null;
+			byte[] data = null;
+			CRC32 crc = null;
 			try {
-				if (gzipFile) {
+				if (ContentEncodingUtils.GZIP.equals(encoding)) {
+					crc = new CRC32();
 					FileOutputStream fos = new FileOutputStream(store);
-					gzOut = new GZIPOutputStream(fos);
-					byte[] data = bundledResources.toString().getBytes(
+					gzOut = ContentEncodingUtils.createGzipOutputStream(
+							new CheckedOutputStream(fos, crc),
+							gzipCompressionLevel);
+					data = bundledResources.toString().getBytes(
 							charset.name());
 					gzOut.write(data, 0, data.length);
+				} else if (encoding != null) {
+					byte[] encoded = contentEncoders.get(encoding).encode(
+							contentEncodersConfig,
+							bundledResources.getBytes(charset.name()));
+					crc = new CRC32();
+					crc.update(encoded);
+					out = new FileOutputStream(store);
+					out.write(encoded);
 				} else {
 					FileOutputStream fos = new FileOutputStream(store);
 					FileChannel channel = fos.getChannel();
@@ -557,8 +1132,20 @@ public abstract class AbstractResourceBundleHandler implements
 				}
 			} finally {
 				IOUtils.close(gzOut);
+				IOUtils.close(out);
 				IOUtils.close(wr);
 			}
+
+			Object version = new Object();
+			synchronized (storedFilesLock) {
+				replaceFile(store, bundleFile, crc);
+				if (optimizeGzip) {
+					gzipBundleVersions.put(bundleFile.getPath(), version);
+				}
+			}
+			if (optimizeGzip) {
+				optimizeGzipBundle(optimizer, bundleFile, data, version);
+			}
 		} catch (IOException e) {
 			e.printStackTrace();
 			throw new BundlingProcessException(
@@ -566,6 +1153,81 @@ public abstract class AbstractResourceBundleHandler implements
 		}
 	}
 
+	/**
+	 * Replaces atomically a stored bundle file. This method must be called
+	 * with the lock on the stored files.
+	 * 
+	 * @param source
+	 *            the file containing the new content
+	 * @param target
+	 *            the bundle file to replace
+	 * @param crc
+	 *            the checksum of the new content, or null for a text file
+	 * @throws IOException
+	 *             if an IO exception occurs
+	 */
+	private void replaceFile(File source, File target, CRC32 crc)
+			throws IOException {
+		Files.move(source.toPath(), target.toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		releaseMappedBundle(target.getPath());
+		if (crc != null) {
+			bundleChecksums.put(target.getPath(), crc.getValue());
+		}
+	}
+
+	/**
+	 * Submits the optimization of a gzipped bundle file. The optimized
+	 * content replaces the file if it is smaller, and if the bundle has not
+	 * been stored again in the meantime.
+	 * 
+	 * @param optimizer
+	 *            the gzip bundle optimizer
+	 * @param gzipFile
+	 *            the gzipped bundle file
+	 * @param content
+	 *            the bundle content, encoded with the charset
+	 * @param version
+	 *            the version of the gzipped bundle file
+	 */
+	private void optimizeGzipBundle(GzipBundleOptimizer optimizer,
+			final File gzipFile, final byte[] content, final Object version) {
+
+		optimizer.submit(new GzipBundleOptimizer.Task() {
+
+			public void run(GzipBundleOptimizer gzipOptimizer) throws IOException {
+
+				String path = gzipFile.getPath();
+				byte[] optimized = gzipOptimizer.encode(content);
+				File optimizedFile = createNewFile(path + ".opt"
+						+ TEMP_FILE_SUFFIX);
+				OutputStream out = new FileOutputStream(optimizedFile);
+				try {
+					out.write(optimized);
+				} finally {
+					IOUtils.close(out);
+				}
+
+				synchronized (storedFilesLock) {
+					long previousSize = gzipFile.length();
+					if (gzipBundleVersions.get(path) == version
+							&& optimized.length < previousSize) {
+						CRC32 crc = new CRC32();
+						crc.update(optimized);
+						replaceFile(optimizedFile, gzipFile, crc);
+						gzipOptimizer.recordOptimization(previousSize,
+								optimized.length);
+					} else {
+						optimizedFile.delete();
+						gzipOptimizer.recordSkippedBundle();
+					}
+					gzipBundleVersions.remove(path, version);
+				}
+			}
+		});
+	}
+
 	/**
 	 * Creates a directory. If dir is note created for some reason a
 	 * runtimeexception is thrown.
@@ -578,7 +1240,8 @@ public abstract class AbstractResourceBundleHandler implements
 		if (path.indexOf("%20") != -1)
 			path = path.replaceAll("%20", " ");
 		File dir = new File(path);
-		if (!dir.exists() && !dir.mkdirs())
+		// The directory may have been created concurrently by another thread
+		if (!dir.exists() && !dir.mkdirs() && !dir.isDirectory())
 			throw new BundlingProcessException(
 					"Error creating temporary jawr directory with path:"
 							+ dir.getPath());
@@ -614,5 +1277,28 @@ public abstract class AbstractResourceBundleHandler implements
 		return newFile;
 	}
 
-
+	/**
+	 * This class defines the memory mapped copy of a bundle file
+	 */
+	private static class MappedBundle {
+
+		/** The memory mapped copy */
+		private final File file;
+
+		/** The mapped content */
+		private final ByteBuffer buffer;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param file
+		 *            the memory mapped copy
+		 * @param buffer
+		 *            the mapped content
+		 */
+		private MappedBundle(File file, ByteBuffer buffer) {
+			this.file = file;
+			this.buffer = buffer;
+		}
+	}
 }
@@ -0,0 +1,205 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.resource.handler.bundle;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import net.jawr.web.resource.bundle.IOUtils;
+
+/**
+ * This class defines the content of a bundle, as it is written in the
+ * response. The content is read from a byte array, a memory mapped buffer or
+ * a file channel opened on the stored bundle file. The bundle file may be
+ * replaced once the content is retrieved, the content still returns the bytes
+ * of the file which was opened, so its length and its checksum always match
+ * the written bytes.
+ *
+ * The content must be closed once it has been written.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class BundleContent implements Closeable {
+
+	/** The content bytes */
+	private final byte[] bytes;
+
+	/** The memory mapped content */
+	private final ByteBuffer buffer;
+
+	/** The channel on the stored bundle file */
+	private final FileChannel channel;
+
+	/** The length of the content */
+	private final long length;
+
+	/** The checksum of the content */
+	private final String checksum;
+
+	/**
+	 * Constructor
+	 *
+	 * @param bytes
+	 *            the content bytes
+	 * @param checksum
+	 *            the checksum of the content, or null if unknown
+	 */
+	public BundleContent(byte[] bytes, String checksum) {
+		this.bytes = bytes;
+		this.buffer = null;
+		this.channel = null;
+		this.length = bytes.length;
+		this.checksum = checksum;
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param buffer
+	 *            the memory mapped content, which is not modified
+	 * @param checksum
+	 *            the checksum of the content, or null if unknown
+	 */
+	public BundleContent(ByteBuffer buffer, String checksum) {
+		this.bytes = null;
+		this.buffer = buffer.duplicate();
+		this.channel = null;
+		this.length = this.buffer.remaining();
+		this.checksum = checksum;
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param channel
+	 *            the channel on the stored bundle file, which is closed with
+	 *            the content
+	 * @param checksum
+	 *            the checksum of the content, or null if unknown
+	 * @throws IOException
+	 *             if the size of the file can't be read
+	 */
+	public BundleContent(FileChannel channel, String checksum)
+			throws IOException {
+		this.bytes = null;
+		this.buffer = null;
+		this.channel = channel;
+		this.length = channel.size();
+		this.checksum = checksum;
+	}
+
+	/**
+	 * Returns the length of the content
+	 *
+	 * @return the length of the content
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * Returns the checksum of the content
+	 *
+	 * @return the checksum of the content, or null if unknown
+	 */
+	public String getChecksum() {
+		return checksum;
+	}
+
+	/**
+	 * Returns the content as a byte array. The array is shared if the content
+	 * is already held in memory.
+	 *
+	 * @return the content bytes
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	public byte[] toByteArray() throws IOException {
+
+		if (bytes != null) {
+			return bytes;
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream((int) length);
+		writeTo(out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Writes the whole content to the output stream
+	 *
+	 * @param out
+	 *            the output stream
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		writeTo(out, 0, length);
+	}
+
+	/**
+	 * Writes a part of the content to the output stream. Only the requested
+	 * bytes are read from the mapped buffer or from the file.
+	 *
+	 * @param out
+	 *            the output stream
+	 * @param position
+	 *            the position of the first byte to write
+	 * @param count
+	 *            the number of bytes to write
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	public void writeTo(OutputStream out, long position, long count)
+			throws IOException {
+
+		if (bytes != null) {
+			out.write(bytes, (int) position, (int) count);
+		} else if (buffer != null) {
+			ByteBuffer part = buffer.duplicate();
+			part.position(part.position() + (int) position);
+			part.limit(part.position() + (int) count);
+			WritableByteChannel outChannel = Channels.newChannel(out);
+			while (part.hasRemaining()) {
+				outChannel.write(part);
+			}
+		} else {
+			WritableByteChannel outChannel = Channels.newChannel(out);
+			long written = 0;
+			while (written < count) {
+				long transferred = channel.transferTo(position + written,
+						count - written, outChannel);
+				if (transferred <= 0) {
+					throw new EOFException("Unexpected end of file");
+				}
+				written += transferred;
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.Closeable#close()
+	 */
+	public void close() {
+		IOUtils.close(channel);
+	}
+}
@@ -0,0 +1,278 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.resource.handler.bundle;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.jawr.web.config.JawrConfig;
+import net.jawr.web.resource.bundle.encoding.BundleContentEncoder;
+import net.jawr.web.util.DaemonThreadFactory;
+
+/**
+ * This class compresses the gzipped bundles again with a slower encoder,
+ * which produces a smaller output. The bundles are first stored with the
+ * fast gzip compression, so they can be served immediately, and the
+ * optimization runs in a background thread. The optimization runs in the
+ * calling thread when the bundles are processed at build time.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class GzipBundleOptimizer implements GzipBundleOptimizerMBean {
+
+	/** The logger */
+	private static final Logger LOGGER = LoggerFactory
+			.getLogger(GzipBundleOptimizer.class);
+
+	/** The gzip encoder */
+	private final BundleContentEncoder encoder;
+
+	/** The Jawr config passed to the encoder */
+	private final JawrConfig config;
+
+	/** The executor of the optimization, or null if it runs synchronously */
+	private final ExecutorService executor;
+
+	/** The number of bundles waiting to be optimized */
+	private final AtomicInteger pendingBundleCount = new AtomicInteger();
+
+	/** The number of optimized bundles */
+	private final AtomicLong optimizedBundleCount = new AtomicLong();
+
+	/** The number of skipped bundles */
+	private final AtomicLong skippedBundleCount = new AtomicLong();
+
+	/** The size of the gzipped bundles before their optimization */
+	private final AtomicLong originalSize = new AtomicLong();
+
+	/** The size of the optimized gzipped bundles */
+	private final AtomicLong optimizedSize = new AtomicLong();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param encoder
+	 *            the gzip encoder
+	 * @param config
+	 *            the Jawr config
+	 * @param background
+	 *            the flag indicating if the optimization runs in a
+	 *            background thread
+	 */
+	public GzipBundleOptimizer(BundleContentEncoder encoder, JawrConfig config,
+			boolean background) {
+		this.encoder = encoder;
+		this.config = config;
+		if (background) {
+			executor = Executors.newSingleThreadExecutor(new DaemonThreadFactory(
+					"jawr-gzip-optimizer"));
+		} else {
+			executor = null;
+		}
+	}
+
+	/**
+	 * Submits an optimization task
+	 * 
+	 * @param task
+	 *            the task
+	 */
+	public void submit(final Task task) {
+
+		pendingBundleCount.incrementAndGet();
+		Runnable runnable = new Runnable() {
+			public void run() {
+				try {
+					task.run(GzipBundleOptimizer.this);
+				} catch (IOException e) {
+					skippedBundleCount.incrementAndGet();
+					LOGGER.warn("Unable to optimize the gzipped bundle", e);
+				} catch (RuntimeException e) {
+					skippedBundleCount.incrementAndGet();
+					LOGGER.warn("Unable to optimize the gzipped bundle", e);
+				} finally {
+					pendingBundleCount.decrementAndGet();
+				}
+			}
+		};
+
+		if (executor == null) {
+			runnable.run();
+		} else {
+			try {
+				executor.execute(runnable);
+			} catch (RejectedExecutionException e) {
+				// The optimizer has been shut down
+				pendingBundleCount.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Encodes the content of a bundle
+	 * 
+	 * @param content
+	 *            the bundle content
+	 * @return the gzipped content
+	 * @throws IOException
+	 *             if an IO exception occurs
+	 */
+	public byte[] encode(byte[] content) throws IOException {
+		return encoder.encode(config, content);
+	}
+
+	/**
+	 * Records the replacement of a gzipped bundle by its optimized version
+	 * 
+	 * @param previousSize
+	 *            the size of the replaced gzipped bundle
+	 * @param newSize
+	 *            the size of the optimized gzipped bundle
+	 */
+	public void recordOptimization(long previousSize, long newSize) {
+		optimizedBundleCount.incrementAndGet();
+		originalSize.addAndGet(previousSize);
+		optimizedSize.addAndGet(newSize);
+	}
+
+	/**
+	 * Records a gzipped bundle which has not been replaced
+	 */
+	public void recordSkippedBundle() {
+		skippedBundleCount.incrementAndGet();
+	}
+
+	/**
+	 * Stops the optimization of the pending bundles
+	 */
+	public void shutdown() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see net.jawr.web.resource.handler.bundle.GzipBundleOptimizerMBean#
+	 * getPendingBundleCount()
+	 */
+	public int getPendingBundleCount() {
+		return pendingBundleCount.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see net.jawr.web.resource.handler.bundle.GzipBundleOptimizerMBean#
+	 * getOptimizedBundleCount()
+	 */
+	public long getOptimizedBundleCount() {
+		return optimizedBundleCount.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see net.jawr.web.resource.handler.bundle.GzipBundleOptimizerMBean#
+	 * getSkippedBundleCount()
+	 */
+	public long getSkippedBundleCount() {
+		return skippedBundleCount.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * net.jawr.web.resource.handler.bundle.GzipBundleOptimizerMBean#getOriginalSize
+	 * ()
+	 */
+	public long getOriginalSize() {
+		return originalSize.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see net.jawr.web.resource.handler.bundle.GzipBundleOptimizerMBean#
+	 * getOptimizedSize()
+	 */
+	public long getOptimizedSize() {
+		return optimizedSize.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * net.jawr.web.resource.handler.bundle.GzipBundleOptimizerMBean#getSavedBytes
+	 * ()
+	 */
+	public long getSavedBytes() {
+		return originalSize.get() - optimizedSize.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * net.jawr.web.resource.handler.bundle.GzipBundleOptimizerMBean#getSavingRatio
+	 * ()
+	 */
+	public double getSavingRatio() {
+		long original = originalSize.get();
+		return original == 0 ? 0 : (double) (original - optimizedSize.get())
+				/ original;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * net.jawr.web.resource.handler.bundle.GzipBundleOptimizerMBean#resetStatistics
+	 * ()
+	 */
+	public void resetStatistics() {
+		optimizedBundleCount.set(0);
+		skippedBundleCount.set(0);
+		originalSize.set(0);
+		optimizedSize.set(0);
+	}
+
+	/**
+	 * The optimization task of a bundle
+	 * 
+	 * @author Ibrahim Chaehoi
+	 */
+	public interface Task {
+
+		/**
+		 * Optimizes the gzipped bundle
+		 * 
+		 * @param optimizer
+		 *            the optimizer
+		 * @throws IOException
+		 *             if an IO exception occurs
+		 */
+		void run(GzipBundleOptimizer optimizer) throws IOException;
+	}
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.resource.handler.bundle;
+
+/**
+ * The MBean interface of the gzip bundle optimizer, which exposes the byte
+ * savings of the optimized gzipped bundles.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public interface GzipBundleOptimizerMBean {
+
+	/**
+	 * Returns the number of bundles waiting to be optimized
+	 *
+	 * @return the number of bundles waiting to be optimized
+	 */
+	int getPendingBundleCount();
+
+	/**
+	 * Returns the number of gzipped bundles replaced by their optimized
+	 * version
+	 *
+	 * @return the number of optimized bundles
+	 */
+	long getOptimizedBundleCount();
+
+	/**
+	 * Returns the number of gzipped bundles which were not replaced, because
+	 * the optimized version was not smaller or because the bundle has been
+	 * stored again in the meantime
+	 *
+	 * @return the number of skipped bundles
+	 */
+	long getSkippedBundleCount();
+
+	/**
+	 * Returns the size of the gzipped bundles before their optimization
+	 *
+	 * @return the size in bytes
+	 */
+	long getOriginalSize();
+
+	/**
+	 * Returns the size of the optimized gzipped bundles
+	 *
+	 * @return the size in bytes
+	 */
+	long getOptimizedSize();
+
+	/**
+	 * Returns the number of bytes saved by the optimization
+	 *
+	 * @return the number of bytes saved
+	 */
+	long getSavedBytes();
+
+	/**
+	 * Returns the ratio of bytes saved by the optimization, between 0 and 1
+	 *
+	 * @return the ratio of bytes saved
+	 */
+	double getSavingRatio();
+
+	/**
+	 * Resets the statistics
+	 */
+	void resetStatistics();
+
+}
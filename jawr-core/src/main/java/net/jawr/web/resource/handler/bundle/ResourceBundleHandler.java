@@ -17,6 +17,7 @@ import java.io.InputStream;
 import java.io.Reader;
 import java.nio.channels.ReadableByteChannel;
 import java.util.Properties;
+import java.util.Set;
 
 import net.jawr.web.exception.ResourceNotFoundException;
 import net.jawr.web.resource.bundle.JoinableResourceBundleContent;
@@ -37,7 +38,8 @@ public interface ResourceBundleHandler {
 	
 	/**
 	 * Stores a collected group of resources with the specified name. 
-	 * Creates a text version, a gzipped binary version. 
+	 * Creates a text version, a gzipped binary version and a version for each
+	 * content encoder. 
 	 * @param bundleName the bundle name.
 	 * @param bundleResources the bundle resources
 	 */
@@ -58,6 +60,43 @@ public interface ResourceBundleHandler {
 	 */
 	public ReadableByteChannel getResourceBundleChannel(String bundleName) throws ResourceNotFoundException;
 	
+	/**
+	 * Retrieves ReadableByteChannel on the version of a resource bundle 
+	 * encoded with the content coding given in parameter.
+	 * @param bundleName the bundle name
+	 * @param encoding the content coding, like "gzip" or "br"
+	 * @return ReadableByteChannel channel to read the file where the encoded bundle is stored. 
+	 */
+	public ReadableByteChannel getResourceBundleChannel(String bundleName, String encoding) throws ResourceNotFoundException;
+	
+	/**
+	 * Returns the CRC32 checksum of the stored version of a resource bundle 
+	 * encoded with the content coding given in parameter. The checksum changes
+	 * each time the encoded file is replaced, like when the gzipped bundle is optimized.
+	 * @param bundleName the bundle name
+	 * @param encoding the content coding, like "gzip" or "br"
+	 * @return the checksum of the encoded bundle
+	 * @throws ResourceNotFoundException if the encoded bundle is not found
+	 */
+	public long getResourceBundleChecksum(String bundleName, String encoding) throws ResourceNotFoundException;
+	
+	/**
+	 * Returns the content of the stored version of a resource bundle, encoded 
+	 * with the content coding given in parameter. The content is read from the 
+	 * stored file, or from its memory mapping, when it is written.
+	 * @param bundleName the bundle name
+	 * @param encoding the content coding, like "gzip" or "br", or null for the text version
+	 * @return the content of the bundle, which must be closed once written
+	 * @throws ResourceNotFoundException if the bundle is not found
+	 */
+	public BundleContent getResourceBundleContent(String bundleName, String encoding) throws ResourceNotFoundException;
+	
+	/**
+	 * Returns the content codings of the stored bundles, in addition to gzip
+	 * @return the content codings of the stored bundles
+	 */
+	public Set<String> getContentEncodings();
+	
 	/**
 	 * Retrieves the input stream of a resource bundle. 
 	 * @param bundleName the bundle name
@@ -77,6 +116,16 @@ public interface ResourceBundleHandler {
 	 */
 	public Properties getJawrBundleMapping();
 	
+	/**
+	 * Stores again the encoded versions of a bundle from its stored text
+	 * version. This is used once the text version has been rewritten, like by
+	 * a global postprocessor. The gzipped version is also stored again if it
+	 * is optimized, so its optimization is based on the new content.
+	 * @param bundleName the bundle name
+	 * @throws ResourceNotFoundException if the text version of the bundle is not found
+	 */
+	public void storeEncodedBundles(String bundleName) throws ResourceNotFoundException;
+	
 	/**
 	 * Store the bundle mapping.
 	 * @param bundleMapping the bundle mapping to store
@@ -0,0 +1,35 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.resource.watcher;
+
+import java.io.File;
+import java.util.Set;
+
+/**
+ * Interface for a listener to the changes of the files watched by a
+ * {@link ResourceWatcher}.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public interface ResourceChangeListener {
+
+	/**
+	 * To be invoked when files have been created, modified or deleted. The
+	 * events occurring in a short period of time are notified together.
+	 *
+	 * @param changedFiles
+	 *            the changed files
+	 */
+	public void resourcesChanged(Set<File> changedFiles);
+}
@@ -0,0 +1,341 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.resource.watcher;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A threaded component which watches directories using the file system
+ * notifications, and which notifies a listener of the changed files.
+ *
+ * The thread is blocked while no event occurs. The events are debounced : once
+ * an event has been received, the watcher waits until no other event occurs
+ * during the debounce delay, and then notifies all the changed files at once.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class ResourceWatcher extends Thread {
+
+	/** The logger */
+	private static final Logger LOGGER = LoggerFactory.getLogger(ResourceWatcher.class);
+
+	/** The watch service */
+	private final WatchService watchService;
+
+	/** The watched directories, indexed by watch key */
+	private final Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<WatchKey, Path>();
+
+	/** The directories which are watched recursively */
+	private final Set<Path> recursiveDirs = new CopyOnWriteArraySet<Path>();
+
+	/** The directories whose changes are ignored */
+	private final Set<Path> excludedDirs = new CopyOnWriteArraySet<Path>();
+
+	/** The listener */
+	private final ResourceChangeListener listener;
+
+	/** The debounce delay in milliseconds */
+	private final long debounceDelay;
+
+	/** The flag indicating if the watcher is running */
+	private volatile boolean watching;
+
+	/**
+	 * Constructor
+	 *
+	 * @param name
+	 *            the thread name
+	 * @param listener
+	 *            the listener
+	 * @param debounceDelay
+	 *            the debounce delay in milliseconds
+	 * @throws IOException
+	 *             if the watch service can't be created
+	 */
+	public ResourceWatcher(String name, ResourceChangeListener listener, long debounceDelay) throws IOException {
+		super(name);
+		this.listener = listener;
+		this.debounceDelay = debounceDelay;
+		this.watchService = FileSystems.getDefault().newWatchService();
+		this.watching = true;
+		this.setDaemon(true);
+	}
+
+	/**
+	 * Registers a directory to watch
+	 *
+	 * @param dir
+	 *            the directory
+	 * @param recursive
+	 *            the flag indicating if the sub directories must be watched
+	 *            too
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	public void registerDirectory(File dir, boolean recursive) throws IOException {
+
+		Path path = dir.toPath().toAbsolutePath().normalize();
+		if (recursive) {
+			recursiveDirs.add(path);
+			registerTree(path);
+		} else {
+			register(path);
+		}
+	}
+
+	/**
+	 * Stops watching all the registered directories. The excluded directories
+	 * are kept.
+	 */
+	public void unregisterDirectories() {
+
+		for (WatchKey key : watchedDirs.keySet()) {
+			key.cancel();
+		}
+		watchedDirs.clear();
+		recursiveDirs.clear();
+	}
+
+	/**
+	 * Excludes a directory and its sub directories from the notified changes.
+	 * This is used for the directories where Jawr writes itself.
+	 *
+	 * @param dir
+	 *            the directory
+	 */
+	public void excludeDirectory(File dir) {
+		excludedDirs.add(dir.toPath().toAbsolutePath().normalize());
+	}
+
+	/**
+	 * Returns the number of watched directories
+	 *
+	 * @return the number of watched directories
+	 */
+	public int getWatchedDirectoryCount() {
+		return watchedDirs.size();
+	}
+
+	/**
+	 * Registers a directory and its sub directories
+	 *
+	 * @param root
+	 *            the root directory
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	private void registerTree(Path root) throws IOException {
+
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+
+			/*
+			 * (non-Javadoc)
+			 *
+			 * @see java.nio.file.SimpleFileVisitor#preVisitDirectory(java.lang.
+			 * Object, java.nio.file.attribute.BasicFileAttributes)
+			 */
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				if (isExcluded(dir)) {
+					return FileVisitResult.SKIP_SUBTREE;
+				}
+				register(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * Registers a directory to the watch service
+	 *
+	 * @param dir
+	 *            the directory
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	private void register(Path dir) throws IOException {
+
+		WatchKey key = dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+		watchedDirs.put(key, dir);
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Watching directory : " + dir);
+		}
+	}
+
+	/**
+	 * Checks if the path is in an excluded directory
+	 *
+	 * @param path
+	 *            the path
+	 * @return true if the path is in an excluded directory
+	 */
+	private boolean isExcluded(Path path) {
+		for (Path excludedDir : excludedDirs) {
+			if (path.startsWith(excludedDir)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks if the path is in a directory which is watched recursively
+	 *
+	 * @param path
+	 *            the path
+	 * @return true if the path is in a directory which is watched recursively
+	 */
+	private boolean isInRecursiveDir(Path path) {
+		for (Path dir : recursiveDirs) {
+			if (path.startsWith(dir)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Thread#run()
+	 */
+	@Override
+	public void run() {
+
+		try {
+			while (watching) {
+				// Blocks until the first event
+				WatchKey key = watchService.take();
+				Set<File> changedFiles = new LinkedHashSet<File>();
+				processEvents(key, changedFiles);
+
+				// Waits until no event occurs during the debounce delay
+				while ((key = watchService.poll(debounceDelay, TimeUnit.MILLISECONDS)) != null) {
+					processEvents(key, changedFiles);
+				}
+
+				if (watching && !changedFiles.isEmpty()) {
+					notifyListener(changedFiles);
+				}
+			}
+		} catch (InterruptedException e) {
+			if (watching) {
+				LOGGER.error("The resource watcher has been interrupted.");
+			}
+		} catch (ClosedWatchServiceException e) {
+			// The watcher has been stopped
+		}
+	}
+
+	/**
+	 * Processes the events of a watch key
+	 *
+	 * @param key
+	 *            the watch key
+	 * @param changedFiles
+	 *            the set of changed files to update
+	 */
+	private void processEvents(WatchKey key, Set<File> changedFiles) {
+
+		Path dir = watchedDirs.get(key);
+		if (dir != null) {
+			for (WatchEvent<?> event : key.pollEvents()) {
+				if (event.kind() == OVERFLOW) {
+					// Some events have been lost, the whole directory is
+					// considered as changed
+					changedFiles.add(dir.toFile());
+					continue;
+				}
+
+				Path child = dir.resolve((Path) event.context());
+				if (isExcluded(child)) {
+					continue;
+				}
+
+				if (event.kind() == ENTRY_CREATE && Files.isDirectory(child) && isInRecursiveDir(child)) {
+					try {
+						registerTree(child);
+					} catch (IOException e) {
+						LOGGER.warn("Unable to watch the directory : " + child, e);
+					}
+				}
+				changedFiles.add(child.toFile());
+			}
+		}
+
+		if (!key.reset()) {
+			watchedDirs.remove(key);
+		}
+	}
+
+	/**
+	 * Notifies the listener of the changed files
+	 *
+	 * @param changedFiles
+	 *            the changed files
+	 */
+	private void notifyListener(Set<File> changedFiles) {
+
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Changes detected on : " + changedFiles);
+		}
+		try {
+			listener.resourcesChanged(changedFiles);
+		} catch (RuntimeException e) {
+			LOGGER.error("An error occured while handling the resource changes.", e);
+		}
+	}
+
+	/**
+	 * Stops the watcher
+	 */
+	public void stopWatching() {
+
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Stopping the resource watcher");
+		}
+
+		watching = false;
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			LOGGER.warn("Unable to close the watch service", e);
+		}
+	}
+}
@@ -15,10 +15,11 @@ package net.jawr.web.servlet;
 
 import static net.jawr.web.JawrConstant.URL_SEPARATOR;
 
+import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -27,6 +28,11 @@ import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.ObjectName;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
@@ -42,17 +48,18 @@ import net.jawr.web.context.ThreadLocalJawrContext;
 import net.jawr.web.exception.InvalidPathException;
 import net.jawr.web.exception.ResourceNotFoundException;
 import net.jawr.web.resource.BinaryResourcesHandler;
-import net.jawr.web.resource.bundle.CheckSumUtils;
 import net.jawr.web.resource.bundle.IOUtils;
 import net.jawr.web.resource.bundle.factory.PropertiesBundleConstant;
 import net.jawr.web.resource.bundle.factory.util.PathNormalizer;
 import net.jawr.web.resource.bundle.factory.util.PropertiesConfigHelper;
 import net.jawr.web.resource.bundle.generator.GeneratorRegistry;
 import net.jawr.web.resource.bundle.handler.BundleHashcodeType;
+import net.jawr.web.resource.handler.bundle.BundleContent;
 import net.jawr.web.resource.handler.bundle.ResourceBundleHandler;
 import net.jawr.web.resource.handler.reader.ResourceReaderHandler;
 import net.jawr.web.servlet.util.ClientAbortExceptionResolver;
 import net.jawr.web.servlet.util.MIMETypesSupport;
+import net.jawr.web.util.DaemonThreadFactory;
 import net.jawr.web.util.StopWatch;
 
 /**
@@ -87,6 +94,9 @@ public class JawrBinaryResourceRequestHandler extends JawrRequestHandler {
 	/** The bundle mapping */
 	private Properties bundleMapping;
 
+	/** The executor which computes the checksums of the binary resources in background */
+	private transient ExecutorService binaryHashingExecutor;
+
 	/**
 	 * The binary resource MIME map, associating the resource extension to their
 	 * MIME type
@@ -231,6 +241,9 @@ public class JawrBinaryResourceRequestHandler extends JawrRequestHandler {
 	 */
 	private void initMapping(BinaryResourcesHandler binaryRsHandler) {
 
+		// Stop the checksum computation of the previous configuration
+		shutdownBinaryHashingExecutor();
+
 		if (jawrConfig.getUseBundleMapping()
 				&& rsBundleHandler.isExistingMappingFile()) {
 
@@ -247,6 +260,7 @@ public class JawrBinaryResourceRequestHandler extends JawrRequestHandler {
 			// Create a resource handler to read files from the WAR archive or
 			// exploded dir.
 
+			List<String> resourcePaths = new ArrayList<String>();
 			String binaryResourcesDefinition = jawrConfig
 					.getBinaryResourcesDefinition();
 			if (binaryResourcesDefinition != null) {
@@ -262,37 +276,139 @@ public class JawrBinaryResourceRequestHandler extends JawrRequestHandler {
 							.isGeneratedBinaryResource(pathMapping)
 							&& hasBinaryFileExtension(pathMapping)) {
 
-						addBinaryResourcePath(binaryRsHandler, pathMapping);
+						resourcePaths.add(pathMapping);
 					}
 					// path ends in /, the folder is included without subfolders
 					else if (pathMapping.endsWith("/")) {
-						addItemsFromDir(binaryRsHandler, pathMapping, false);
+						addItemsFromDir(binaryRsHandler, resourcePaths,
+								pathMapping, false);
 					}
 					// path ends in /, the folder is included with all
 					// subfolders
 					else if (pathMapping.endsWith("/**")) {
 						addItemsFromDir(
 								binaryRsHandler,
+								resourcePaths,
 								pathMapping.substring(0,
 										pathMapping.lastIndexOf("**")), true);
 					} else if (hasBinaryFileExtension(pathMapping)) {
-						addBinaryResourcePath(binaryRsHandler, pathMapping);
+						resourcePaths.add(pathMapping);
 					} else
 						LOGGER.warn("Wrong mapping ["
 								+ pathMapping
 								+ "] for image bundle. Please check configuration. ");
 				}
 			}
+
+			int threadCount = jawrConfig.getBinaryResourcesHashingThreadCount();
+			if (threadCount > 0 && !resourcePaths.isEmpty()
+					&& !ThreadLocalJawrContext.isBundleProcessingAtBuildTime()) {
+				hashBinaryResourcesInBackground(binaryRsHandler,
+						resourcePaths, threadCount);
+				return;
+			}
+
+			for (String resourcePath : resourcePaths) {
+				addBinaryResourcePath(binaryRsHandler, resourcePath);
+			}
 		}
 
-		// Store the bundle mapping
+		storeBundleMapping();
+
+		if (LOGGER.isDebugEnabled())
+			LOGGER.debug("Finish creation of map for image bundle");
+	}
+
+	/**
+	 * Stores the bundle mapping if it is used and if the mapping file doesn't
+	 * exist yet
+	 */
+	private void storeBundleMapping() {
+
 		if (jawrConfig.getUseBundleMapping()
 				&& !rsBundleHandler.isExistingMappingFile()) {
 			rsBundleHandler.storeJawrBundleMapping(bundleMapping);
 		}
+	}
+
+	/**
+	 * Computes the checksums of the binary resources on a bounded pool of
+	 * threads, so the initialization doesn't wait for them. A resource which
+	 * is requested before its checksum has been computed by the pool is
+	 * handled by the binary resources handler, which computes its checksum
+	 * only once. The bundle mapping is stored once all the checksums have
+	 * been computed.
+	 * 
+	 * @param binRsHandler
+	 *            the binary resources handler
+	 * @param resourcePaths
+	 *            the paths of the binary resources
+	 * @param threadCount
+	 *            the number of threads
+	 */
+	private void hashBinaryResourcesInBackground(
+			final BinaryResourcesHandler binRsHandler,
+			List<String> resourcePaths, int threadCount) {
+
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Computing the checksums of " + resourcePaths.size()
+					+ " binary resources in background using " + threadCount
+					+ " threads");
+		}
 
-		if (LOGGER.isDebugEnabled())
-			LOGGER.debug("Finish creation of map for image bundle");
+		final AtomicInteger remainingTasks = new AtomicInteger(
+				resourcePaths.size());
+		final boolean debugOverriden = ThreadLocalJawrContext
+				.isDebugOverriden();
+		final ObjectName jawrConfigMgrObjectName = ThreadLocalJawrContext
+				.getJawrConfigMgrObjectName();
+
+		ExecutorService executor = Executors.newFixedThreadPool(
+				threadCount, new DaemonThreadFactory("jawr-binary-hashing"));
+		binaryHashingExecutor = executor;
+		for (final String resourcePath : resourcePaths) {
+			executor.execute(new Runnable() {
+				public void run() {
+					ThreadLocalJawrContext.setDebugOverriden(debugOverriden);
+					ThreadLocalJawrContext
+							.setJawrConfigMgrObjectName(jawrConfigMgrObjectName);
+					try {
+						addBinaryResourcePath(binRsHandler, resourcePath);
+					} finally {
+						ThreadLocalJawrContext.reset();
+						if (remainingTasks.decrementAndGet() == 0) {
+							storeBundleMapping();
+							if (LOGGER.isDebugEnabled()) {
+								LOGGER.debug("Finish the computation of the binary resource checksums");
+							}
+						}
+					}
+				}
+			});
+		}
+		executor.shutdown();
+	}
+
+	/**
+	 * Stops the background computation of the binary resource checksums
+	 */
+	private void shutdownBinaryHashingExecutor() {
+
+		if (binaryHashingExecutor != null) {
+			binaryHashingExecutor.shutdownNow();
+			binaryHashingExecutor = null;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see net.jawr.web.servlet.JawrRequestHandler#destroy()
+	 */
+	@Override
+	public void destroy() {
+		shutdownBinaryHashingExecutor();
+		super.destroy();
 	}
 
 	/**
@@ -307,9 +423,7 @@ public class JawrBinaryResourceRequestHandler extends JawrRequestHandler {
 			String resourcePath) {
 
 		try {
-			String resultPath = CheckSumUtils.getCacheBustedUrl(resourcePath,
-					rsReaderHandler, jawrConfig);
-			binRsHandler.addMapping(resourcePath, resultPath);
+			String resultPath = binRsHandler.getCacheBustedUrl(resourcePath);
 			bundleMapping.put(resourcePath, resultPath);
 		} catch (IOException e) {
 			LOGGER.error(
@@ -342,10 +456,13 @@ public class JawrBinaryResourceRequestHandler extends JawrRequestHandler {
 	}
 
 	/**
-	 * Adds all the resources within a path to the image map.
+	 * Adds the paths of all the resources within a path to the list of binary
+	 * resource paths.
 	 * 
 	 * @param binRsHandler
 	 *            the binary resources handler
+	 * @param resourcePaths
+	 *            the list of binary resource paths
 	 * @param dirName
 	 *            the directory name
 	 * @param addSubDirs
@@ -353,7 +470,7 @@ public class JawrBinaryResourceRequestHandler extends JawrRequestHandler {
 	 *            folder below the path is included.
 	 */
 	private void addItemsFromDir(BinaryResourcesHandler binRsHandler,
-			String dirName, boolean addSubDirs) {
+			List<String> resourcePaths, String dirName, boolean addSubDirs) {
 		Set<String> resources = rsReaderHandler.getResourceNames(dirName);
 
 		if (LOGGER.isDebugEnabled()) {
@@ -371,7 +488,7 @@ public class JawrBinaryResourceRequestHandler extends JawrRequestHandler {
 			String resourcePath = PathNormalizer.joinPaths(dirName,
 					resourceName, generatedPath);
 			if (hasBinaryFileExtension(resourceName)) {
-				addBinaryResourcePath(binRsHandler, resourcePath);
+				resourcePaths.add(resourcePath);
 
 				if (LOGGER.isDebugEnabled())
 					LOGGER.debug("Added to item path list:"
@@ -395,7 +512,7 @@ public class JawrBinaryResourceRequestHandler extends JawrRequestHandler {
 		if (addSubDirs) {
 			for (Iterator<String> it = folders.iterator(); it.hasNext();) {
 				String folderName = it.next();
-				addItemsFromDir(binRsHandler,
+				addItemsFromDir(binRsHandler, resourcePaths,
 						PathNormalizer.joinPaths(dirName, folderName), true);
 			}
 		}
@@ -431,12 +548,18 @@ public class JawrBinaryResourceRequestHandler extends JawrRequestHandler {
 
 		// If debug mode is off, check for If-Modified-Since and
 		// If-none-match headers and set response caching headers.
+		String eTag = null;
 		if (!this.jawrConfig.isDebugModeOn()) {
-			// If a browser checks for changes, always respond 'no changes'.
-			if (validBundle
-					&& (null != request.getHeader(IF_MODIFIED_SINCE_HEADER) || null != request
-							.getHeader(IF_NONE_MATCH_HEADER))) {
+
+			eTag = validBundle ? getETag(requestedPath) : null;
+
+			// If a browser checks for changes, respond 'no changes' only if
+			// the validators match the current resource content.
+			if (validBundle && isNotModified(request, eTag)) {
 				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				if (eTag != null) {
+					response.setHeader(ETAG_HEADER, eTag);
+				}
 				if (LOGGER.isDebugEnabled())
 					LOGGER.debug("Returning 'not modified' header. ");
 				return;
@@ -444,14 +567,14 @@ public class JawrBinaryResourceRequestHandler extends JawrRequestHandler {
 
 			if (validBundle) {
 				// Add caching headers
-				setResponseHeaders(response);
+				setResponseHeaders(response, eTag);
 			} else {
 
 				responseHeaderWritten = illegalBundleRequestHandler
 						.writeResponseHeader(requestedPath, request, response);
 				if (!responseHeaderWritten) {
 					// Add caching headers
-					setResponseHeaders(response);
+					setResponseHeaders(response, null);
 				}
 			}
 		}
@@ -466,7 +589,7 @@ public class JawrBinaryResourceRequestHandler extends JawrRequestHandler {
 
 				// Set the content type
 				response.setContentType(getContentType(requestedPath, request));
-				writeContent(filePath, request, response);
+				writeContent(filePath, request, response, eTag);
 
 			} else {
 				if (!responseHeaderWritten) {
@@ -505,6 +628,44 @@ public class JawrBinaryResourceRequestHandler extends JawrRequestHandler {
 		return bundleHashcodeType;
 	}
 
+	/**
+	 * Returns the ETag of the requested binary resource, which is derived from
+	 * the checksum of the content of the resolved resource, whatever the
+	 * checksum defined in the requested path. This method returns null if the
+	 * resource can't be read.
+	 * 
+	 * @param requestedPath
+	 *            the requested path
+	 * @return the ETag of the requested binary resource
+	 */
+	@Override
+	protected String getETag(String requestedPath) {
+
+		String eTag = null;
+		String binaryPath = PathNormalizer
+				.extractBinaryResourceInfo(requestedPath)[0];
+		try {
+			String cacheBustedPath = binaryRsHandler
+					.getCacheBustedUrl(binaryPath);
+			String checksum = PathNormalizer
+					.extractBinaryResourceInfo(cacheBustedPath)[1];
+			if (checksum != null) {
+				eTag = createETag(checksum, false);
+			}
+		} catch (IOException e) {
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("Unable to compute the checksum of '"
+						+ binaryPath + "'", e);
+			}
+		} catch (ResourceNotFoundException e) {
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("Unable to find the resource '" + binaryPath
+						+ "'");
+			}
+		}
+		return eTag;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -616,12 +777,12 @@ public class JawrBinaryResourceRequestHandler extends JawrRequestHandler {
 	 * @see
 	 * net.jawr.web.servlet.JawrRequestHandler#writeContent(java.lang.String,
 	 * javax.servlet.http.HttpServletRequest,
-	 * javax.servlet.http.HttpServletResponse)
+	 * javax.servlet.http.HttpServletResponse, java.lang.String)
 	 */
 	@Override
 	protected void writeContent(String requestedPath,
-			HttpServletRequest request, HttpServletResponse response)
-			throws IOException, ResourceNotFoundException {
+			HttpServletRequest request, HttpServletResponse response,
+			String eTag) throws IOException, ResourceNotFoundException {
 
 		String resourceName = requestedPath;
 		if (!jawrConfig.getGeneratorRegistry().isGeneratedBinaryResource(
@@ -630,12 +791,22 @@ public class JawrBinaryResourceRequestHandler extends JawrRequestHandler {
 			resourceName = URL_SEPARATOR + resourceName;
 		}
 
-		OutputStream os = response.getOutputStream();
 		InputStream is = null;
 
 		try {
 			is = rsReaderHandler.getResourceAsStream(resourceName);
-			IOUtils.copy(is, os);
+			if (is instanceof FileInputStream) {
+				// The file is streamed with its exact length
+				writeBundleContent(new BundleContent(
+						((FileInputStream) is).getChannel(), null), request,
+						response, eTag);
+			} else {
+				// The length of the generated resources and of the resources
+				// retrieved from the servlet context is unknown
+				ByteArrayOutputStream baOs = new ByteArrayOutputStream();
+				IOUtils.copy(is, baOs);
+				writeBytes(baOs.toByteArray(), request, response, eTag);
+			}
 		} catch (EOFException eofex) {
 			LOGGER.debug("Browser cut off response", eofex);
 		} catch (IOException e) {
@@ -14,18 +14,25 @@
 package net.jawr.web.servlet;
 
 import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.io.Serializable;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -37,6 +44,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import net.jawr.web.JawrConstant;
 import net.jawr.web.cache.CacheManagerFactory;
+import net.jawr.web.cache.JawrCacheManager;
 import net.jawr.web.config.ConfigPropertyResolver;
 import net.jawr.web.config.JawrConfig;
 import net.jawr.web.config.jmx.JawrApplicationConfigManager;
@@ -49,7 +57,11 @@ import net.jawr.web.exception.DuplicateBundlePathException;
 import net.jawr.web.exception.ResourceNotFoundException;
 import net.jawr.web.resource.BinaryResourcesHandler;
 import net.jawr.web.resource.FileNameUtils;
+import net.jawr.web.resource.bundle.CompositeResourceBundle;
 import net.jawr.web.resource.bundle.IOUtils;
+import net.jawr.web.resource.bundle.JoinableResourceBundle;
+import net.jawr.web.resource.bundle.JoinableResourceBundleImpl;
+import net.jawr.web.resource.bundle.encoding.ContentEncodingUtils;
 import net.jawr.web.resource.bundle.factory.PropertiesBasedBundlesHandlerFactory;
 import net.jawr.web.resource.bundle.factory.PropsConfigPropertiesSource;
 import net.jawr.web.resource.bundle.factory.util.ClassLoaderResourceUtils;
@@ -60,14 +72,21 @@ import net.jawr.web.resource.bundle.factory.util.PathNormalizer;
 import net.jawr.web.resource.bundle.factory.util.PropsFilePropertiesSource;
 import net.jawr.web.resource.bundle.factory.util.ServletContextAware;
 import net.jawr.web.resource.bundle.generator.GeneratorRegistry;
+import net.jawr.web.resource.bundle.generator.ImportGraphAwareResourceGenerator;
+import net.jawr.web.resource.bundle.generator.ResourceGenerator;
 import net.jawr.web.resource.bundle.handler.BundleHashcodeType;
 import net.jawr.web.resource.bundle.handler.ClientSideHandlerScriptRequestHandler;
 import net.jawr.web.resource.bundle.handler.ResourceBundlesHandler;
-import net.jawr.web.resource.bundle.renderer.BundleRenderer;
+import net.jawr.web.resource.bundle.iterator.BundlePath;
+import net.jawr.web.resource.handler.bundle.BundleContent;
+import net.jawr.web.resource.handler.bundle.GzipBundleOptimizer;
 import net.jawr.web.resource.handler.bundle.ResourceBundleHandler;
 import net.jawr.web.resource.handler.bundle.ServletContextResourceBundleHandler;
 import net.jawr.web.resource.handler.reader.ResourceReaderHandler;
 import net.jawr.web.resource.handler.reader.ServletContextResourceReaderHandler;
+import net.jawr.web.resource.watcher.ResourceChangeListener;
+import net.jawr.web.resource.watcher.ResourceWatcher;
+import net.jawr.web.servlet.util.ByteRange;
 import net.jawr.web.servlet.util.ClientAbortExceptionResolver;
 import net.jawr.web.util.StopWatch;
 import net.jawr.web.util.StringUtils;
@@ -82,7 +101,7 @@ import org.slf4j.LoggerFactory;
  * @author Jordi Hernández Sellés
  * @author Ibrahim Chaehoi
  */
-public class JawrRequestHandler implements ConfigChangeListener, Serializable {
+public class JawrRequestHandler implements ConfigChangeListener, ResourceChangeListener, Serializable {
 
 	/** The serial version UID */
 	private static final long serialVersionUID = 5762937687546882131L;
@@ -100,8 +119,11 @@ public class JawrRequestHandler implements ConfigChangeListener, Serializable {
 	/** The content encoding */
 	private static final String CONTENT_ENCODING = "Content-Encoding";
 
-	/** The gzip encoding */
-	private static final String GZIP = "gzip";
+	/** The vary header parameter name */
+	protected static final String VARY_HEADER = "Vary";
+
+	/** The accept encoding header parameter name */
+	protected static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
 
 	/** The cache control header parameter name */
 	protected static final String CACHE_CONTROL_HEADER = "Cache-Control";
@@ -118,14 +140,26 @@ public class JawrRequestHandler implements ConfigChangeListener, Serializable {
 	/** The If-non-match-since header parameter name */
 	protected static final String IF_NONE_MATCH_HEADER = "If-None-Match";
 
-	/** The last-modified value */
-	protected static final String LAST_MODIFIED_VALUE = "Sun, 06 Nov 2005 12:00:00 GMT";
-
 	/** The ETag header parameter name */
 	protected static final String ETAG_HEADER = "ETag";
 
-	/** The ETag parameter value */
-	protected static final String ETAG_VALUE = "2740050219";
+	/** The Accept-Ranges header parameter name */
+	protected static final String ACCEPT_RANGES_HEADER = "Accept-Ranges";
+
+	/** The Range header parameter name */
+	protected static final String RANGE_HEADER = "Range";
+
+	/** The If-Range header parameter name */
+	protected static final String IF_RANGE_HEADER = "If-Range";
+
+	/** The Content-Length header parameter name */
+	protected static final String CONTENT_LENGTH_HEADER = "Content-Length";
+
+	/** The Content-Range header parameter name */
+	protected static final String CONTENT_RANGE_HEADER = "Content-Range";
+
+	/** The suffix added to the ETag of the gzipped content */
+	protected static final String GZIP_ETAG_SUFFIX = "-gz";
 
 	/** The expires header parameter name */
 	protected static final String EXPIRES_HEADER = "Expires";
@@ -133,6 +167,22 @@ public class JawrRequestHandler implements ConfigChangeListener, Serializable {
 	/** The configuration property name for the reload interval */
 	protected static final String CONFIG_RELOAD_INTERVAL = "jawr.config.reload.interval";
 
+	/**
+	 * The configuration property name for the flag indicating if the file
+	 * system notifications are used instead of the polling, to detect the
+	 * changes. The watcher is disabled by default.
+	 */
+	protected static final String CONFIG_RELOAD_WATCH = JawrConfig.JAWR_CONFIG_RELOAD_WATCH;
+
+	/**
+	 * The configuration property name for the delay in milliseconds during
+	 * which the file system notifications are gathered before reloading
+	 */
+	protected static final String CONFIG_RELOAD_WATCH_DELAY = "jawr.config.reload.watch.delay";
+
+	/** The default delay in milliseconds of the file system notifications */
+	protected static final long DEFAULT_CONFIG_RELOAD_WATCH_DELAY = 500;
+
 	/** The generation parameter */
 	public static final String GENERATION_PARAM = "generationConfigParam";
 
@@ -164,6 +214,28 @@ public class JawrRequestHandler implements ConfigChangeListener, Serializable {
 	/** The Thread which listen the configuration changes */
 	protected ConfigChangeListenerThread configChangeListenerThread;
 
+	/** The watcher of the configuration files and the resource directories */
+	protected transient ResourceWatcher resourceWatcher;
+
+	/** The optimizer of the gzipped bundles */
+	protected transient GzipBundleOptimizer gzipBundleOptimizer;
+
+	/** The watched configuration files */
+	protected Set<File> watchedConfigFiles = new HashSet<File>();
+
+	/** The root directories of the watched resources */
+	protected Set<File> watchedResourceDirs = new HashSet<File>();
+
+	/** The IDs of the bundles using a watched resource, indexed by resource path */
+	protected Map<String, Set<String>> watchedResourceBundles = new HashMap<String, Set<String>>();
+
+	/**
+	 * The directories mapped in the bundle definitions, indexed by resource
+	 * path. The value is the flag indicating if the sub directories are
+	 * mapped too.
+	 */
+	protected Map<String, Boolean> watchedMappedDirs = new HashMap<String, Boolean>();
+
 	/** The generator registry */
 	protected GeneratorRegistry generatorRegistry;
 
@@ -188,6 +260,12 @@ public class JawrRequestHandler implements ConfigChangeListener, Serializable {
 	/** The handler for the illegal bundle request */
 	protected IllegalBundleRequestHandler illegalBundleRequestHandler;
 
+	/**
+	 * The last modification date of the bundles (in milliseconds, truncated to
+	 * the second), which is updated each time the bundles are (re)processed
+	 */
+	protected long lastModified;
+
 	/**
 	 * Reads the properties file and initializes all configuration using the
 	 * ServletConfig object. If applicable, a ConfigChangeListenerThread will be
@@ -290,14 +368,23 @@ public class JawrRequestHandler implements ConfigChangeListener, Serializable {
 		// Initialize the properties reloading checker daemon if specified
 		if (!ThreadLocalJawrContext.isBundleProcessingAtBuildTime()
 				&& null != props.getProperty(CONFIG_RELOAD_INTERVAL)) {
-			int interval = Integer.valueOf(props.getProperty(CONFIG_RELOAD_INTERVAL)).intValue();
-			LOGGER.warn("Jawr started with configuration auto reloading on. "
-					+ "Be aware that a daemon thread will be checking for changes to configuration every " + interval
-					+ " seconds.");
 
-			this.configChangeListenerThread = new ConfigChangeListenerThread(propsSrc, this.overrideProperties, this,
-					interval);
-			configChangeListenerThread.start();
+			boolean watcherStarted = false;
+			if (jawrConfig.isResourceWatchEnabled()) {
+				watcherStarted = initResourceWatcher(propsSrc, props);
+			}
+
+			// The configuration is polled only if it is not watched
+			if (!watcherStarted) {
+				int interval = Integer.valueOf(props.getProperty(CONFIG_RELOAD_INTERVAL)).intValue();
+				LOGGER.warn("Jawr started with configuration auto reloading on. "
+						+ "Be aware that a daemon thread will be checking for changes to configuration every "
+						+ interval + " seconds.");
+
+				this.configChangeListenerThread = new ConfigChangeListenerThread(propsSrc, this.overrideProperties,
+						this, interval);
+				configChangeListenerThread.start();
+			}
 		}
 
 		if (LOGGER.isInfoEnabled()) {
@@ -309,6 +396,256 @@ public class JawrRequestHandler implements ConfigChangeListener, Serializable {
 		ThreadLocalJawrContext.reset();
 	}
 
+	/**
+	 * Initialize the watcher of the configuration files and of the bundle
+	 * resources. The watcher is only started if the configuration files are
+	 * on the file system, otherwise the configuration is polled.
+	 * 
+	 * @param propsSrc
+	 *            the configuration properties source
+	 * @param props
+	 *            the configuration properties
+	 * @return true if the watcher has been started
+	 */
+	private boolean initResourceWatcher(ConfigPropertiesSource propsSrc, Properties props) {
+
+		List<File> configFiles = null;
+		if (propsSrc instanceof PropsFilePropertiesSource) {
+			configFiles = ((PropsFilePropertiesSource) propsSrc).getConfigFiles();
+		}
+		if (configFiles == null || configFiles.isEmpty()) {
+			LOGGER.warn("The Jawr configuration is not read from the file system, it will be polled instead of being watched.");
+			return false;
+		}
+
+		long delay = DEFAULT_CONFIG_RELOAD_WATCH_DELAY;
+		if (null != props.getProperty(CONFIG_RELOAD_WATCH_DELAY)) {
+			delay = Long.parseLong(props.getProperty(CONFIG_RELOAD_WATCH_DELAY).trim());
+		}
+
+		ResourceWatcher watcher = null;
+		try {
+			watcher = new ResourceWatcher("Jawr " + resourceType + " resource watcher", this, delay);
+			watchedConfigFiles.addAll(configFiles);
+
+			// The binary resources are not bundled
+			if (!resourceType.equals(JawrConstant.BINARY_TYPE)) {
+				String baseContextDir = jawrConfig.getProperty(JawrConstant.JAWR_BASECONTEXT_DIRECTORY);
+				if (StringUtils.isNotEmpty(baseContextDir)) {
+					if (baseContextDir.startsWith(JawrConstant.FILE_URI_PREFIX)) {
+						baseContextDir = baseContextDir.substring(JawrConstant.FILE_URI_PREFIX.length());
+					}
+					addWatchedResourceDir(new File(baseContextDir));
+				}
+				String webAppDir = servletContext.getRealPath("/");
+				if (webAppDir != null) {
+					addWatchedResourceDir(new File(webAppDir));
+				}
+			}
+			registerWatchedDirectories(watcher);
+			watcher.start();
+		} catch (IOException e) {
+			LOGGER.warn("Unable to watch the Jawr resources, the configuration will be polled instead.", e);
+			if (watcher != null) {
+				watcher.stopWatching();
+			}
+			watchedConfigFiles.clear();
+			watchedResourceDirs.clear();
+			return false;
+		}
+
+		this.resourceWatcher = watcher;
+		LOGGER.warn("Jawr started with configuration auto reloading on. "
+				+ "Be aware that the configuration files and the bundle resources are watched for changes.");
+
+		return true;
+	}
+
+	/**
+	 * Adds a root directory of the watched resources
+	 * 
+	 * @param dir
+	 *            the resource directory
+	 */
+	private void addWatchedResourceDir(File dir) {
+
+		if (dir.isDirectory()) {
+			watchedResourceDirs.add(dir.getAbsoluteFile());
+		}
+	}
+
+	/**
+	 * Registers the directories to watch. Only the directories of the
+	 * configuration files, of the bundle members, of the resources they
+	 * import, and the directories mapped in the bundle definitions are
+	 * watched.
+	 * 
+	 * @param watcher
+	 *            the resource watcher
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	private void registerWatchedDirectories(ResourceWatcher watcher) throws IOException {
+
+		watcher.unregisterDirectories();
+		watchedResourceBundles.clear();
+		watchedMappedDirs.clear();
+
+		for (File configFile : watchedConfigFiles) {
+			watcher.registerDirectory(configFile.getParentFile(), false);
+		}
+
+		if (bundlesHandler == null || watchedResourceDirs.isEmpty()) {
+			return;
+		}
+
+		List<JoinableResourceBundle> bundles = new ArrayList<JoinableResourceBundle>(
+				bundlesHandler.getContextBundles());
+		bundles.addAll(bundlesHandler.getGlobalBundles());
+		for (JoinableResourceBundle bundle : bundles) {
+			List<JoinableResourceBundle> memberBundles = null;
+			if (bundle instanceof CompositeResourceBundle) {
+				memberBundles = ((CompositeResourceBundle) bundle).getChildBundles();
+			} else {
+				memberBundles = Collections.singletonList(bundle);
+			}
+
+			for (JoinableResourceBundle memberBundle : memberBundles) {
+				if (memberBundle instanceof JoinableResourceBundleImpl
+						&& ((JoinableResourceBundleImpl) memberBundle).getMappings() != null) {
+					for (String mapping : ((JoinableResourceBundleImpl) memberBundle).getMappings()) {
+						if (mapping.endsWith("/**")) {
+							addWatchedMappedDir(watcher, mapping.substring(0, mapping.length() - 2), true);
+						} else if (mapping.endsWith("/")) {
+							addWatchedMappedDir(watcher, mapping, false);
+						}
+					}
+				}
+
+				List<BundlePath> itemPaths = new ArrayList<BundlePath>(memberBundle.getItemPathList());
+				itemPaths.addAll(memberBundle.getItemDebugPathList());
+				for (BundlePath itemPath : itemPaths) {
+					String path = itemPath.getPath();
+					addWatchedResource(watcher, path, bundle.getId());
+
+					// The resources imported by the generated resources
+					ResourceGenerator generator = null;
+					if (generatorRegistry.isPathGenerated(path)) {
+						generator = generatorRegistry.getResourceGenerator(path);
+					}
+					if (generator instanceof ImportGraphAwareResourceGenerator) {
+						Map<String, String> stamps = ((ImportGraphAwareResourceGenerator) generator)
+								.getImportGraphStamps(path);
+						if (stamps != null) {
+							for (String importedPath : stamps.keySet()) {
+								addWatchedResource(watcher, importedPath, bundle.getId());
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Watches a resource used by a bundle
+	 * 
+	 * @param watcher
+	 *            the resource watcher
+	 * @param path
+	 *            the resource path
+	 * @param bundleId
+	 *            the ID of the bundle
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	private void addWatchedResource(ResourceWatcher watcher, String path, String bundleId) throws IOException {
+
+		File file = getResourceFile(path);
+		if (file == null) {
+			return;
+		}
+
+		String resourcePath = getResourcePath(file);
+		Set<String> bundleIds = watchedResourceBundles.get(resourcePath);
+		if (bundleIds == null) {
+			bundleIds = new HashSet<String>();
+			watchedResourceBundles.put(resourcePath, bundleIds);
+		}
+		bundleIds.add(bundleId);
+		watcher.registerDirectory(file.getParentFile(), false);
+	}
+
+	/**
+	 * Watches a directory mapped in a bundle definition, where new resources
+	 * may be added
+	 * 
+	 * @param watcher
+	 *            the resource watcher
+	 * @param dirPath
+	 *            the directory path
+	 * @param recursive
+	 *            the flag indicating if the sub directories are mapped too
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	private void addWatchedMappedDir(ResourceWatcher watcher, String dirPath, boolean recursive) throws IOException {
+
+		File dir = getResourceFile(dirPath);
+		if (dir != null && dir.isDirectory()) {
+			String path = getResourcePath(dir);
+			Boolean alreadyRecursive = watchedMappedDirs.get(path);
+			if (alreadyRecursive == null || !alreadyRecursive && recursive) {
+				watchedMappedDirs.put(path, recursive);
+				watcher.registerDirectory(dir, recursive);
+			}
+		}
+	}
+
+	/**
+	 * Returns the file of a resource, located in one of the root directories
+	 * of the watched resources
+	 * 
+	 * @param path
+	 *            the resource path
+	 * @return the file, or null if the resource is not a file of a root
+	 *         directory
+	 */
+	private File getResourceFile(String path) {
+
+		if (generatorRegistry.isPathGenerated(path) && path.indexOf(GeneratorRegistry.PREFIX_SEPARATOR) != -1) {
+			// The resource is not read from the web application
+			return null;
+		}
+		for (File dir : watchedResourceDirs) {
+			File file = new File(dir, path);
+			if (file.exists()) {
+				return file.getAbsoluteFile();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Initialize the request handler of the client side handler scripts, which
+	 * contain the bundle hashcodes
+	 */
+	private void initClientSideScriptRequestHandler() {
+
+		this.clientSideScriptRequestHandler = new ClientSideHandlerScriptRequestHandler(bundlesHandler, jawrConfig);
+		if (resourceType.equals(JawrConstant.JS_TYPE)) {
+			servletContext.setAttribute(JawrConstant.JS_CLIENTSIDE_HANDLER_CONTEXT_ATTRIBUTE,
+					clientSideScriptRequestHandler);
+		}
+		if (!ThreadLocalJawrContext.isBundleProcessingAtBuildTime()) {
+			try {
+				clientSideScriptRequestHandler.init(servletContext.getContextPath());
+			} catch (RuntimeException e) {
+				LOGGER.warn("Unable to precompute the client side handler scripts", e);
+			}
+		}
+	}
+
 	/**
 	 * Initialize the Jawr context (config, cache manager, application config
 	 * manager...)
@@ -325,21 +662,29 @@ public class JawrRequestHandler implements ConfigChangeListener, Serializable {
 		initializeJawrConfig(props);
 
 		// initialize the cache manager
-		initializeApplicationCacheManager();
+		JawrCacheManager cacheManager = initializeApplicationCacheManager();
 
 		// initialize the Application config manager
 		JawrApplicationConfigManager appConfigMgr = initApplicationConfigManager();
 
 		JmxUtils.initJMXBean(appConfigMgr, servletContext, resourceType,
 				props.getProperty(JawrConstant.JAWR_JMX_MBEAN_PREFIX));
+		JmxUtils.initCacheManagerMBean(cacheManager, servletContext, resourceType,
+				props.getProperty(JawrConstant.JAWR_JMX_MBEAN_PREFIX));
+
+		// The HTTP dates have a precision of one second
+		long now = System.currentTimeMillis();
+		lastModified = now - now % 1000;
 	}
 
 	/**
 	 * Resets the cache manager
+	 * 
+	 * @return the cache manager
 	 */
-	private void initializeApplicationCacheManager() {
+	private JawrCacheManager initializeApplicationCacheManager() {
 
-		CacheManagerFactory.resetCacheManager(jawrConfig, resourceType);
+		return CacheManagerFactory.resetCacheManager(jawrConfig, resourceType);
 	}
 
 	/**
@@ -528,7 +873,10 @@ public class JawrRequestHandler implements ConfigChangeListener, Serializable {
 		else
 			servletContext.setAttribute(JawrConstant.CSS_CONTEXT_ATTRIBUTE, bundlesHandler);
 
-		this.clientSideScriptRequestHandler = new ClientSideHandlerScriptRequestHandler(bundlesHandler, jawrConfig);
+		JmxUtils.initLinkFragmentCacheMBean(bundlesHandler.getLinkFragmentCache(), servletContext, resourceType,
+				props.getProperty(JawrConstant.JAWR_JMX_MBEAN_PREFIX));
+
+		initClientSideScriptRequestHandler();
 
 		if (LOGGER.isDebugEnabled()) {
 			LOGGER.debug("content type set to: " + contentType);
@@ -583,7 +931,7 @@ public class JawrRequestHandler implements ConfigChangeListener, Serializable {
 	 * @return the resource bundle handler
 	 */
 	protected ResourceBundleHandler initResourceBundleHandler() {
-		ResourceBundleHandler rsHandler = null;
+		ServletContextResourceBundleHandler rsHandler = null;
 		if (jawrConfig.getUseBundleMapping() && StringUtils.isNotEmpty(jawrConfig.getJawrWorkingDirectory())) {
 			rsHandler = new ServletContextResourceBundleHandler(servletContext, jawrConfig.getJawrWorkingDirectory(),
 					jawrConfig.getResourceCharset(), jawrConfig.getGeneratorRegistry(), resourceType);
@@ -591,9 +939,34 @@ public class JawrRequestHandler implements ConfigChangeListener, Serializable {
 			rsHandler = new ServletContextResourceBundleHandler(servletContext, jawrConfig.getResourceCharset(),
 					jawrConfig.getGeneratorRegistry(), resourceType);
 		}
+		rsHandler.setUseMemoryMappedBundles(jawrConfig.isUseMemoryMappedBundles());
+		rsHandler.setBundleContentEncoders(jawrConfig.getBundleContentEncoders(), jawrConfig);
+		rsHandler.setGzipCompressionLevel(jawrConfig.getGzipCompressionLevel());
+
+		// The gzipped bundles are optimized in background, except at build
+		// time where the optimized bundles must be stored before the end of
+		// the processing
+		shutdownGzipBundleOptimizer();
+		if (jawrConfig.getGzipOptimizer() != null && !resourceType.equals(JawrConstant.BINARY_TYPE)) {
+			gzipBundleOptimizer = new GzipBundleOptimizer(jawrConfig.getGzipOptimizer(), jawrConfig,
+					!ThreadLocalJawrContext.isBundleProcessingAtBuildTime());
+			rsHandler.setGzipBundleOptimizer(gzipBundleOptimizer);
+			JmxUtils.initGzipBundleOptimizerMBean(gzipBundleOptimizer, servletContext, resourceType,
+					jawrConfig.getProperty(JawrConstant.JAWR_JMX_MBEAN_PREFIX));
+		}
 		return rsHandler;
 	}
 
+	/**
+	 * Stops the optimization of the gzipped bundles
+	 */
+	protected void shutdownGzipBundleOptimizer() {
+		if (gzipBundleOptimizer != null) {
+			gzipBundleOptimizer.shutdown();
+			gzipBundleOptimizer = null;
+		}
+	}
+
 	/**
 	 * Create the Jawr config from the properties
 	 * 
@@ -649,11 +1022,17 @@ public class JawrRequestHandler implements ConfigChangeListener, Serializable {
 	/**
 	 * Handles a resource request.
 	 * <ul>
-	 * <li>If the request contains an If-Modified-Since header, the 304 status
-	 * is set and no data is written to the response</li>
+	 * <li>If the request contains an If-None-Match header matching the ETag of
+	 * the bundle, or an If-Modified-Since header which is not older than the
+	 * last bundle processing, the 304 status is set and no data is written to
+	 * the response</li>
 	 * <li>If the requested path begins with the gzip prefix, a gzipped version
 	 * of the resource is served, with the corresponding content-encoding
 	 * header.</li>
+	 * <li>If the requested path begins with the prefix of another content
+	 * coding, like brotli, this version of the resource is served if the
+	 * Accept-Encoding header allows it. Otherwise, the gzipped version or the
+	 * text version is served.</li>
 	 * <li>Otherwise, the resource is written as text to the response.</li>
 	 * <li>If the resource is not found, the response satus is set to 404 and no
 	 * response is written.</li>
@@ -798,8 +1177,10 @@ public class JawrRequestHandler implements ConfigChangeListener, Serializable {
 			HttpServletResponse response) throws ServletException, IOException {
 
 		boolean processed = false;
-		if (CLIENTSIDE_HANDLER_REQ_PATH.equals(requestedPath)) {
-			this.clientSideScriptRequestHandler.handleClientSideHandlerRequest(request, response);
+		String clientSideHandlerHash = ClientSideHandlerScriptRequestHandler.getRequestedHash(requestedPath);
+		if (CLIENTSIDE_HANDLER_REQ_PATH.equals(requestedPath) || clientSideHandlerHash != null) {
+			this.clientSideScriptRequestHandler.handleClientSideHandlerRequest(request, response,
+					clientSideHandlerHash);
 			processed = true;
 		} else {
 
@@ -864,13 +1245,27 @@ public class JawrRequestHandler implements ConfigChangeListener, Serializable {
 		if (this.jawrConfig.isDebugModeOn() && null != request.getParameter(GENERATION_PARAM))
 			requestedPath = request.getParameter(GENERATION_PARAM);
 
+		// The content coding of a bundle is negotiated if the requested path
+		// contains another prefix than the gzip one
+		String requestedEncoding = ContentEncodingUtils.getContentEncoding(requestedPath, jawrConfig.getContentEncodings());
+		if (requestedEncoding != null && !ContentEncodingUtils.GZIP.equals(requestedEncoding)) {
+			response.setHeader(VARY_HEADER, ACCEPT_ENCODING_HEADER);
+		}
+
 		// If debug mode is off, check for If-Modified-Since and If-none-match
 		// headers and set response caching headers.
+		String eTag = null;
 		if (!this.jawrConfig.isDebugModeOn()) {
-			// If a browser checks for changes, always respond 'no changes'.
-			if (validBundle && (null != request.getHeader(IF_MODIFIED_SINCE_HEADER)
-					|| null != request.getHeader(IF_NONE_MATCH_HEADER))) {
+
+			eTag = validBundle ? getETag(requestedPath, getContentEncoding(requestedPath, request)) : null;
+
+			// If a browser checks for changes, respond 'no changes' only if
+			// the validators match the current bundle content.
+			if (validBundle && isNotModified(request, eTag)) {
 				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				if (eTag != null) {
+					response.setHeader(ETAG_HEADER, eTag);
+				}
 				if (LOGGER.isDebugEnabled())
 					LOGGER.debug("Returning 'not modified' header. ");
 				return;
@@ -878,13 +1273,13 @@ public class JawrRequestHandler implements ConfigChangeListener, Serializable {
 
 			if (validBundle) {
 				// Add caching headers
-				setResponseHeaders(response);
+				setResponseHeaders(response, eTag);
 			} else {
 
 				writeResponseHeader = illegalBundleRequestHandler.writeResponseHeader(requestedPath, request, response);
 				if (!writeResponseHeader) {
 					// Add caching headers
-					setResponseHeaders(response);
+					setResponseHeaders(response, null);
 				}
 			}
 		}
@@ -895,7 +1290,7 @@ public class JawrRequestHandler implements ConfigChangeListener, Serializable {
 				// By setting content type, the response writer will use
 				// appropriate encoding
 				response.setContentType(getContentType(requestedPath, request));
-				writeContent(requestedPath, request, response);
+				writeContent(requestedPath, request, response, eTag);
 				if (LOGGER.isDebugEnabled())
 					LOGGER.debug("request succesfully attended");
 			} else {
@@ -960,17 +1355,58 @@ public class JawrRequestHandler implements ConfigChangeListener, Serializable {
 	protected void writeContent(String requestedPath, HttpServletRequest request, HttpServletResponse response)
 			throws IOException, ResourceNotFoundException {
 
-		// Send gzipped resource if user agent supports it.
-		int idx = requestedPath.indexOf(BundleRenderer.GZIP_PATH_PREFIX);
-		if (idx != -1) {
+		writeContent(requestedPath, request, response, null);
+	}
 
-			requestedPath = JawrConstant.URL_SEPARATOR
-					+ requestedPath.substring(idx + BundleRenderer.GZIP_PATH_PREFIX.length(), requestedPath.length());
-			if (isValidRequestedPath(requestedPath)) {
-				response.setHeader(CONTENT_ENCODING, GZIP);
-				bundlesHandler.streamBundleTo(requestedPath, response.getOutputStream());
+	/**
+	 * Writes the content to the ouput stream. If the request contains a Range
+	 * header, only the requested range is written.
+	 * 
+	 * @param requestedPath
+	 *            the requested path
+	 * @param request
+	 *            the request
+	 * @param response
+	 *            the response
+	 * @param eTag
+	 *            the ETag of the served content, or null if unknown
+	 * @throws IOException
+	 *             if an IOException occurs
+	 * @throws ResourceNotFoundException
+	 *             if the resource is not found
+	 */
+	protected void writeContent(String requestedPath, HttpServletRequest request, HttpServletResponse response,
+			String eTag) throws IOException, ResourceNotFoundException {
+
+		// Send encoded resource if user agent supports it.
+		String requestedEncoding = ContentEncodingUtils.getContentEncoding(requestedPath, jawrConfig.getContentEncodings());
+		if (requestedEncoding != null) {
+
+			String encoding = getContentEncoding(requestedPath, request);
+			String bundlePath = ContentEncodingUtils.removeContentEncodingPrefix(requestedPath, requestedEncoding);
+			if (isValidRequestedPath(bundlePath)) {
+				BundleContent content = bundlesHandler.getBundleContent(bundlePath, encoding);
+				try {
+					if (encoding != null) {
+						response.setHeader(CONTENT_ENCODING, encoding);
+						if (eTag != null) {
+							// The stored file may have been replaced since the
+							// ETag has been computed, so the ETag and the
+							// If-Range header are checked against the written
+							// bytes
+							String contentETag = getETag(requestedPath, encoding, content.getChecksum());
+							if (contentETag != null && !contentETag.equals(eTag)) {
+								eTag = contentETag;
+								response.setHeader(ETAG_HEADER, eTag);
+							}
+						}
+					}
+					writeBundleContent(content, request, response, eTag);
+				} finally {
+					content.close();
+				}
 			} else {
-				throw new ResourceNotFoundException(requestedPath);
+				throw new ResourceNotFoundException(bundlePath);
 			}
 
 		} else {
@@ -991,8 +1427,14 @@ public class JawrRequestHandler implements ConfigChangeListener, Serializable {
 			} else {
 
 				if (isValidRequestedPath(requestedPath)) {
-					Writer out = response.getWriter();
-					bundlesHandler.writeBundleTo(requestedPath, out);
+					// The content is already encoded with the charset of the
+					// content type
+					BundleContent content = bundlesHandler.getBundleContent(requestedPath, null);
+					try {
+						writeBundleContent(content, request, response, eTag);
+					} finally {
+						content.close();
+					}
 				} else {
 					throw new ResourceNotFoundException(requestedPath);
 				}
@@ -1000,6 +1442,166 @@ public class JawrRequestHandler implements ConfigChangeListener, Serializable {
 		}
 	}
 
+	/**
+	 * Writes the content in the response with its exact length. If the
+	 * request contains a valid Range header, only the requested range is
+	 * written with the partial content status.
+	 * 
+	 * @param content
+	 *            the content
+	 * @param request
+	 *            the request
+	 * @param response
+	 *            the response
+	 * @param eTag
+	 *            the ETag of the content, or null if unknown
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	protected void writeBytes(byte[] content, HttpServletRequest request, HttpServletResponse response, String eTag)
+			throws IOException {
+
+		writeBundleContent(new BundleContent(content, null), request, response, eTag);
+	}
+
+	/**
+	 * Writes the content in the response with its exact length. If the
+	 * request contains a valid Range header, only the requested range is
+	 * read and written with the partial content status.
+	 * 
+	 * @param content
+	 *            the content
+	 * @param request
+	 *            the request
+	 * @param response
+	 *            the response
+	 * @param eTag
+	 *            the ETag of the content, or null if unknown
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	protected void writeBundleContent(BundleContent content, HttpServletRequest request,
+			HttpServletResponse response, String eTag) throws IOException {
+
+		long length = content.getLength();
+		ByteRange range = getRequestedRange(request, length, eTag);
+		if (range == null) {
+			setContentLength(response, length);
+			content.writeTo(response.getOutputStream());
+		} else if (setRangeHeaders(response, range, length)) {
+			content.writeTo(response.getOutputStream(), range.getFirst(), range.getLength());
+		}
+	}
+
+	/**
+	 * Returns the byte range requested with the Range header, or null if the
+	 * full content must be served. The Range header is ignored in debug mode,
+	 * or if the If-Range header doesn't match the current content.
+	 * 
+	 * @param request
+	 *            the request, or null if not available
+	 * @param contentLength
+	 *            the length of the full content
+	 * @param eTag
+	 *            the ETag of the content, or null if unknown
+	 * @return the requested byte range, or null
+	 */
+	protected ByteRange getRequestedRange(HttpServletRequest request, long contentLength, String eTag) {
+
+		ByteRange range = null;
+		if (request != null && !jawrConfig.isDebugModeOn()) {
+			String rangeHeader = request.getHeader(RANGE_HEADER);
+			if (rangeHeader != null && isRangeApplicable(request, eTag)) {
+				range = ByteRange.parse(rangeHeader, contentLength);
+			}
+		}
+		return range;
+	}
+
+	/**
+	 * Checks if the If-Range header of the request matches the current
+	 * content. As defined in the HTTP specification, an entity tag must match
+	 * with the strong comparison, and a date must be the exact last
+	 * modification date.
+	 * 
+	 * @param request
+	 *            the request
+	 * @param eTag
+	 *            the ETag of the content, or null if unknown
+	 * @return true if the range can be served
+	 */
+	protected boolean isRangeApplicable(HttpServletRequest request, String eTag) {
+
+		String ifRange = request.getHeader(IF_RANGE_HEADER);
+		if (ifRange == null) {
+			return true;
+		}
+
+		ifRange = ifRange.trim();
+		if (ifRange.startsWith("W/")) {
+			return false;
+		}
+		if (ifRange.startsWith("\"")) {
+			return ifRange.equals(eTag);
+		}
+
+		long ifRangeDate = -1;
+		try {
+			ifRangeDate = request.getDateHeader(IF_RANGE_HEADER);
+		} catch (IllegalArgumentException e) {
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("Invalid If-Range header : " + ifRange);
+			}
+		}
+		// The HTTP dates have a precision of one second
+		return ifRangeDate != -1 && lastModified / 1000 == ifRangeDate / 1000;
+	}
+
+	/**
+	 * Sets the status and the headers of a response to a range request.
+	 * 
+	 * @param response
+	 *            the response
+	 * @param range
+	 *            the requested range
+	 * @param contentLength
+	 *            the length of the full content
+	 * @return true if the range must be written, false if it can't be
+	 *         satisfied
+	 */
+	protected boolean setRangeHeaders(HttpServletResponse response, ByteRange range, long contentLength) {
+
+		response.setHeader(CONTENT_RANGE_HEADER, range.getContentRange(contentLength));
+		if (range == ByteRange.UNSATISFIABLE) {
+			response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+			response.setContentLength(0);
+			return false;
+		}
+
+		response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+		setContentLength(response, range.getLength());
+		return true;
+	}
+
+	/**
+	 * Sets the Content-Length header of the response. As the servlet API
+	 * only accepts an int length, the lengths which don't fit in an int are
+	 * set as a header value.
+	 * 
+	 * @param response
+	 *            the response
+	 * @param length
+	 *            the content length
+	 */
+	protected void setContentLength(HttpServletResponse response, long length) {
+
+		if (length <= Integer.MAX_VALUE) {
+			response.setContentLength((int) length);
+		} else {
+			response.setHeader(CONTENT_LENGTH_HEADER, Long.toString(length));
+		}
+	}
+
 	/**
 	 * Handle the generated CSS content in debug mode.
 	 * 
@@ -1115,18 +1717,255 @@ public class JawrRequestHandler implements ConfigChangeListener, Serializable {
 		return finalUrl;
 	}
 
+	/**
+	 * Returns the content coding used to serve the requested path, or null if
+	 * the text version must be served. The gzipped version is always served
+	 * for the gzip prefix. For the prefix of another content coding, its
+	 * version is served if the content coding is accepted by the request and
+	 * if the bundle has been stored with it, otherwise the gzipped version is
+	 * served if gzip is accepted.
+	 * 
+	 * @param requestedPath
+	 *            the requested path
+	 * @param request
+	 *            the request
+	 * @return the content coding
+	 */
+	protected String getContentEncoding(String requestedPath, HttpServletRequest request) {
+
+		String encoding = ContentEncodingUtils.getContentEncoding(requestedPath, jawrConfig.getContentEncodings());
+		if (encoding != null && !ContentEncodingUtils.GZIP.equals(encoding)) {
+			String bundlePath = ContentEncodingUtils.removeContentEncodingPrefix(requestedPath, encoding);
+			if (!RendererRequestUtils.isContentEncodingAccepted(request, encoding)
+					|| !isStoredContentEncoding(encoding) || bundlesHandler.isLiveProcessedBundle(bundlePath)) {
+				if (RendererRequestUtils.isContentEncodingAccepted(request, ContentEncodingUtils.GZIP)) {
+					encoding = ContentEncodingUtils.GZIP;
+				} else {
+					encoding = null;
+				}
+			}
+		}
+		return encoding;
+	}
+
+	/**
+	 * Checks if the bundles are stored with the content coding given in
+	 * parameter
+	 * 
+	 * @param encoding
+	 *            the content coding
+	 * @return true if the bundles are stored with the content coding
+	 */
+	private boolean isStoredContentEncoding(String encoding) {
+		return jawrConfig.getContentEncodings().contains(encoding);
+	}
+
+	/**
+	 * Returns the strong ETag of the requested bundle. The ETag is derived from
+	 * the hashcode of the bundle variant content, so it changes as soon as the
+	 * content of the bundle changes. This method returns null if the bundle or
+	 * its hashcode can't be found.
+	 * 
+	 * @param requestedPath
+	 *            the requested path
+	 * @return the ETag of the requested bundle
+	 */
+	protected String getETag(String requestedPath) {
+
+		return getETag(requestedPath,
+				ContentEncodingUtils.getContentEncoding(requestedPath, jawrConfig.getContentEncodings()));
+	}
+
+	/**
+	 * Returns the strong ETag of the requested bundle, served with the content
+	 * coding given in parameter. The ETag of an encoded bundle also contains
+	 * the checksum of the stored encoded bytes, which may change while the
+	 * bundle content stays the same. This method returns null if the bundle or
+	 * its hashcode can't be found.
+	 * 
+	 * @param requestedPath
+	 *            the requested path
+	 * @param encoding
+	 *            the content coding of the served bundle, or null for the
+	 *            text version
+	 * @return the ETag of the requested bundle
+	 */
+	protected String getETag(String requestedPath, String encoding) {
+
+		String checksum = null;
+		if (encoding != null) {
+			try {
+				checksum = bundlesHandler.getBundleChecksum(getEncodedBundlePath(requestedPath), encoding);
+			} catch (ResourceNotFoundException e) {
+				return null;
+			}
+		}
+		return getETag(requestedPath, encoding, checksum);
+	}
+
+	/**
+	 * Returns the strong ETag of the requested bundle, served with the content
+	 * coding and the checksum given in parameter. This method returns null if
+	 * the bundle or its hashcode can't be found.
+	 * 
+	 * @param requestedPath
+	 *            the requested path
+	 * @param encoding
+	 *            the content coding of the served bundle, or null for the
+	 *            text version
+	 * @param checksum
+	 *            the checksum of the encoded bytes, or null if unknown
+	 * @return the ETag of the requested bundle
+	 */
+	protected String getETag(String requestedPath, String encoding, String checksum) {
+
+		String eTag = null;
+		String[] pathInfos = PathNormalizer.extractBundleInfoFromPath(requestedPath, jawrConfig.getContentEncodings());
+		if (pathInfos != null) {
+			JoinableResourceBundle bundle = bundlesHandler.resolveBundleForPath(pathInfos[1]);
+			if (bundle != null) {
+				String hashcode = bundle.getBundleDataHashCode(pathInfos[2]);
+				if (hashcode != null) {
+					eTag = createETag(checksum == null ? hashcode : hashcode + '-' + checksum, encoding);
+				}
+			}
+		}
+		return eTag;
+	}
+
+	/**
+	 * Returns the bundle path of an encoded bundle request, without the
+	 * content coding prefix
+	 * 
+	 * @param requestedPath
+	 *            the requested path
+	 * @return the bundle path
+	 */
+	private String getEncodedBundlePath(String requestedPath) {
+
+		String requestedEncoding = ContentEncodingUtils.getContentEncoding(requestedPath,
+				jawrConfig.getContentEncodings());
+		if (requestedEncoding == null) {
+			return requestedPath;
+		}
+		return ContentEncodingUtils.removeContentEncodingPrefix(requestedPath, requestedEncoding);
+	}
+
+	/**
+	 * Creates a strong ETag from a content hashcode
+	 * 
+	 * @param hashcode
+	 *            the content hashcode
+	 * @param gzipped
+	 *            the flag indicating if the content is gzipped
+	 * @return the ETag
+	 */
+	protected String createETag(String hashcode, boolean gzipped) {
+		return createETag(hashcode, gzipped ? ContentEncodingUtils.GZIP : null);
+	}
+
+	/**
+	 * Creates a strong ETag from a content hashcode and the content coding
+	 * 
+	 * @param hashcode
+	 *            the content hashcode
+	 * @param encoding
+	 *            the content coding, or null if the content is not encoded
+	 * @return the ETag
+	 */
+	protected String createETag(String hashcode, String encoding) {
+		StringBuilder eTag = new StringBuilder();
+		eTag.append('"').append(hashcode);
+		if (ContentEncodingUtils.GZIP.equals(encoding)) {
+			eTag.append(GZIP_ETAG_SUFFIX);
+		} else if (encoding != null) {
+			eTag.append('-').append(encoding);
+		}
+		eTag.append('"');
+		return eTag.toString();
+	}
+
+	/**
+	 * Checks if the client copy of the resource is still valid, according to
+	 * the If-None-Match and If-Modified-Since headers of the request. As
+	 * defined in the HTTP specification, the If-Modified-Since header is
+	 * ignored if the request contains an If-None-Match header.
+	 * 
+	 * @param request
+	 *            the request
+	 * @param eTag
+	 *            the current ETag of the resource, or null if unknown
+	 * @return true if the resource has not been modified
+	 */
+	protected boolean isNotModified(HttpServletRequest request, String eTag) {
+
+		boolean notModified = false;
+		String ifNoneMatch = request.getHeader(IF_NONE_MATCH_HEADER);
+		if (ifNoneMatch != null) {
+			notModified = eTag != null && matchETag(ifNoneMatch, eTag);
+		} else {
+			long ifModifiedSince = -1;
+			try {
+				ifModifiedSince = request.getDateHeader(IF_MODIFIED_SINCE_HEADER);
+			} catch (IllegalArgumentException e) {
+				if (LOGGER.isDebugEnabled()) {
+					LOGGER.debug("Invalid If-Modified-Since header : " + request.getHeader(IF_MODIFIED_SINCE_HEADER));
+				}
+			}
+			notModified = ifModifiedSince != -1 && lastModified <= ifModifiedSince;
+		}
+
+		return notModified;
+	}
+
+	/**
+	 * Checks if the ETag matches one of the entity tags defined in the
+	 * If-None-Match header value. The weak comparison is used, as required by
+	 * the HTTP specification for this header.
+	 * 
+	 * @param ifNoneMatch
+	 *            the If-None-Match header value
+	 * @param eTag
+	 *            the ETag
+	 * @return true if the ETag matches
+	 */
+	private boolean matchETag(String ifNoneMatch, String eTag) {
+
+		boolean match = false;
+		String value = ifNoneMatch.trim();
+		if (value.equals("*")) {
+			match = true;
+		} else {
+			String[] entityTags = value.split(",");
+			for (int i = 0; i < entityTags.length && !match; i++) {
+				String entityTag = entityTags[i].trim();
+				if (entityTag.startsWith("W/")) {
+					entityTag = entityTag.substring(2);
+				}
+				match = entityTag.equals(eTag);
+			}
+		}
+
+		return match;
+	}
+
 	/**
 	 * Adds aggresive caching headers to the response in order to prevent
 	 * browsers requesting the same file twice.
 	 * 
 	 * @param resp
 	 *            the response
+	 * @param eTag
+	 *            the ETag of the resource, or null if unknown
 	 */
-	protected void setResponseHeaders(HttpServletResponse resp) {
+	protected void setResponseHeaders(HttpServletResponse resp, String eTag) {
 		// Force resource caching as best as possible
 		resp.setHeader(CACHE_CONTROL_HEADER, CACHE_CONTROL_VALUE);
-		resp.setHeader(LAST_MODIFIED_HEADER, LAST_MODIFIED_VALUE);
-		resp.setHeader(ETAG_HEADER, ETAG_VALUE);
+		resp.setDateHeader(LAST_MODIFIED_HEADER, lastModified);
+		if (eTag != null) {
+			resp.setHeader(ETAG_HEADER, eTag);
+		}
+		resp.setHeader(ACCEPT_RANGES_HEADER, ByteRange.BYTES_UNIT);
 		Calendar cal = Calendar.getInstance();
 		cal.roll(Calendar.YEAR, 10);
 		resp.setDateHeader(EXPIRES_HEADER, cal.getTimeInMillis());
@@ -1141,6 +1980,10 @@ public class JawrRequestHandler implements ConfigChangeListener, Serializable {
 		if (null != this.configChangeListenerThread) {
 			configChangeListenerThread.stopPolling();
 		}
+		if (null != this.resourceWatcher) {
+			resourceWatcher.stopWatching();
+		}
+		shutdownGzipBundleOptimizer();
 		ThreadLocalJawrContext.reset();
 	}
 
@@ -1167,6 +2010,9 @@ public class JawrRequestHandler implements ConfigChangeListener, Serializable {
 			// clears resource bundle cache for the refresh
 			ResourceBundle.clearCache();
 			initializeJawrContext(props);
+			if (resourceWatcher != null) {
+				registerWatchedDirectories(resourceWatcher);
+			}
 		} catch (Exception e) {
 			throw new BundlingProcessException("Error reloading Jawr config: " + e.getMessage(), e);
 		} finally {
@@ -1179,4 +2025,128 @@ public class JawrRequestHandler implements ConfigChangeListener, Serializable {
 			LOGGER.debug("Jawr configuration succesfully reloaded. ");
 		}
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see net.jawr.web.resource.watcher.ResourceChangeListener#
+	 * resourcesChanged(java.util.Set)
+	 */
+	public synchronized void resourcesChanged(Set<File> changedFiles) {
+
+		boolean reload = false;
+		for (File file : changedFiles) {
+			if (watchedConfigFiles.contains(file.getAbsoluteFile())) {
+				reload = propertiesSource.configChanged();
+				break;
+			}
+		}
+
+		Set<String> modifiedBundles = new TreeSet<String>();
+		if (!reload && bundlesHandler != null) {
+			for (File file : changedFiles) {
+				String path = getResourcePath(file);
+				if (path == null) {
+					continue;
+				}
+				Set<String> bundleIds = watchedResourceBundles.get(path);
+				if ((bundleIds == null || !file.exists()) && isInMappedDir(path)) {
+					// The bundle definitions must be resolved again
+					if (LOGGER.isDebugEnabled()) {
+						LOGGER.debug("The resource '" + path + "' has been added to or removed from a mapped directory.");
+					}
+					reload = true;
+					break;
+				}
+				if (bundleIds != null) {
+					modifiedBundles.addAll(bundleIds);
+				}
+			}
+		}
+
+		if (reload) {
+			configChanged(propertiesSource.getConfigProperties());
+		} else if (!modifiedBundles.isEmpty()) {
+			rebuildBundles(modifiedBundles);
+		}
+	}
+
+	/**
+	 * Checks if a resource is located in a directory mapped in a bundle
+	 * definition
+	 * 
+	 * @param path
+	 *            the resource path
+	 * @return true if the resource is located in a mapped directory
+	 */
+	private boolean isInMappedDir(String path) {
+
+		for (Map.Entry<String, Boolean> entry : watchedMappedDirs.entrySet()) {
+			String dirPath = entry.getKey() + "/";
+			if (path.startsWith(dirPath)
+					&& (entry.getValue().booleanValue() || path.indexOf('/', dirPath.length()) == -1)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Processes again the bundles whose resources have changed, without
+	 * reloading the configuration
+	 * 
+	 * @param bundleIds
+	 *            the IDs of the bundles
+	 */
+	protected void rebuildBundles(Set<String> bundleIds) {
+
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("The resources of the bundles " + bundleIds + " have been modified.");
+		}
+		try {
+			// Initialize the Thread local for the Jawr context
+			ThreadLocalJawrContext.setJawrConfigMgrObjectName(JmxUtils.getMBeanObjectName(servletContext, resourceType,
+					jawrConfig.getProperty(JawrConstant.JAWR_JMX_MBEAN_PREFIX)));
+
+			bundlesHandler.rebuildBundles(bundleIds);
+
+			// The client side handler scripts contain the bundle hashcodes
+			initClientSideScriptRequestHandler();
+
+			long now = System.currentTimeMillis();
+			lastModified = now - now % 1000;
+
+			// The imported resources may have changed
+			if (resourceWatcher != null) {
+				registerWatchedDirectories(resourceWatcher);
+			}
+		} catch (IOException e) {
+			LOGGER.warn("Unable to watch the resources of the bundles " + bundleIds, e);
+		} finally {
+
+			// Reset the Thread local for the Jawr context
+			ThreadLocalJawrContext.reset();
+		}
+	}
+
+	/**
+	 * Returns the resource path of a file located in one of the watched
+	 * resource directories
+	 * 
+	 * @param file
+	 *            the file
+	 * @return the resource path, or null if the file is not in a watched
+	 *         resource directory
+	 */
+	protected String getResourcePath(File file) {
+
+		String filePath = file.getAbsolutePath();
+		for (File dir : watchedResourceDirs) {
+			String dirPath = dir.getPath();
+			if (filePath.startsWith(dirPath + File.separator)) {
+				return filePath.substring(dirPath.length()).replace(File.separatorChar, '/');
+			}
+		}
+		return null;
+	}
 }
@@ -24,6 +24,8 @@ import net.jawr.web.JawrConstant;
 import net.jawr.web.config.JawrConfig;
 import net.jawr.web.config.jmx.JawrApplicationConfigManager;
 import net.jawr.web.context.ThreadLocalJawrContext;
+import net.jawr.web.resource.bundle.encoding.BundleContentEncoder;
+import net.jawr.web.resource.bundle.encoding.ContentEncodingUtils;
 import net.jawr.web.resource.bundle.factory.util.PathNormalizer;
 import net.jawr.web.resource.bundle.renderer.BundleRenderer;
 import net.jawr.web.resource.bundle.renderer.BundleRendererContext;
@@ -49,6 +51,9 @@ public class RendererRequestUtils {
 	/** The IE user agent pattern */
 	private static Pattern IE_USER_AGENT_PATTERN = Pattern.compile("MSIE (\\d+)");
 	
+	/** The pattern of the parameters of an Accept-Encoding element with a quality value of 0 */
+	private static final Pattern ZERO_QUALITY_PATTERN = Pattern.compile(";\\s*q\\s*=\\s*0(\\.0{0,3})?\\s*$");
+	
 	/** The attribute name of the exception in the request when a dispatch error happens */
 	private static final String ERROR_EXCEPTION = "javax.servlet.error.exception";
 	
@@ -105,7 +110,7 @@ public class RendererRequestUtils {
 		// If gzip is completely off, return false.
 		if (!jawrConfig.isGzipResourcesModeOn())
 			rets = false;
-		else if (req.getHeader("Accept-Encoding") != null && req.getHeader("Accept-Encoding").indexOf("gzip") != -1) {
+		else if (isContentEncodingAccepted(req, ContentEncodingUtils.GZIP)) {
 
 			// If gzip for IE6 or less is off, the user agent is checked to avoid compression.
 			if (!jawrConfig.isGzipResourcesForIESixOn() && isIE6orLess(req)) {
@@ -120,6 +125,72 @@ public class RendererRequestUtils {
 		return rets;
 	}
 
+	/**
+	 * Returns the preferred content coding of the bundles for the current
+	 * request. The encoders of the configuration are checked in order, and
+	 * gzip is used if none of their content coding is accepted. This method
+	 * returns null if the request is not gzippable.
+	 * 
+	 * @param req
+	 *            the request
+	 * @param jawrConfig
+	 *            the Jawr config
+	 * @return the preferred content coding, or null
+	 */
+	public static String getPreferredContentEncoding(HttpServletRequest req, JawrConfig jawrConfig) {
+
+		String encoding = null;
+		if (isRequestGzippable(req, jawrConfig)) {
+			encoding = ContentEncodingUtils.GZIP;
+			for (BundleContentEncoder encoder : jawrConfig.getBundleContentEncoders()) {
+				if (isContentEncodingAccepted(req, encoder.getContentEncoding())) {
+					encoding = encoder.getContentEncoding();
+					break;
+				}
+			}
+		}
+		return encoding;
+	}
+
+	/**
+	 * Checks if the content coding is accepted by the Accept-Encoding header
+	 * of the request. A content coding is accepted if it is listed, or if the
+	 * wildcard is listed, with a quality value which is not 0.
+	 * 
+	 * @param req
+	 *            the request
+	 * @param encoding
+	 *            the content coding
+	 * @return true if the content coding is accepted
+	 */
+	public static boolean isContentEncodingAccepted(HttpServletRequest req, String encoding) {
+
+		String acceptEncoding = req.getHeader("Accept-Encoding");
+		if (acceptEncoding == null) {
+			return false;
+		}
+
+		boolean accepted = false;
+		for (String token : acceptEncoding.split(",")) {
+			String coding = token;
+			boolean zeroQuality = false;
+			int paramIdx = token.indexOf(';');
+			if (paramIdx != -1) {
+				coding = token.substring(0, paramIdx);
+				Matcher matcher = ZERO_QUALITY_PATTERN.matcher(token.substring(paramIdx));
+				zeroQuality = matcher.find();
+			}
+			coding = coding.trim();
+			if (coding.equalsIgnoreCase(encoding)) {
+				// An explicit quality value prevails over the wildcard
+				return !zeroQuality;
+			} else if (coding.equals("*")) {
+				accepted = !zeroQuality;
+			}
+		}
+		return accepted;
+	}
+
 	/**
 	 * Checks if the user agent is IE
 	 * @param req the request
@@ -0,0 +1,162 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.servlet.util;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class defines a byte range requested with the Range header.
+ *
+ * Only the single byte ranges are supported. The requests with several
+ * ranges or with an invalid Range header are served with the full content,
+ * as allowed by the HTTP specification.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public final class ByteRange {
+
+	/** The bytes range unit */
+	public static final String BYTES_UNIT = "bytes";
+
+	/** The range returned when the requested range can't be satisfied */
+	public static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+	/** The pattern of a single byte range */
+	private static final Pattern SINGLE_BYTE_RANGE_PATTERN = Pattern
+			.compile("^\\s*bytes\\s*=\\s*(\\d*)\\s*-\\s*(\\d*)\\s*$", Pattern.CASE_INSENSITIVE);
+
+	/** The position of the first byte */
+	private final long first;
+
+	/** The position of the last byte, inclusive */
+	private final long last;
+
+	/**
+	 * Constructor
+	 *
+	 * @param first
+	 *            the position of the first byte
+	 * @param last
+	 *            the position of the last byte, inclusive
+	 */
+	public ByteRange(long first, long last) {
+		this.first = first;
+		this.last = last;
+	}
+
+	/**
+	 * Returns the position of the first byte
+	 *
+	 * @return the position of the first byte
+	 */
+	public long getFirst() {
+		return first;
+	}
+
+	/**
+	 * Returns the position of the last byte, inclusive
+	 *
+	 * @return the position of the last byte
+	 */
+	public long getLast() {
+		return last;
+	}
+
+	/**
+	 * Returns the number of bytes of the range
+	 *
+	 * @return the number of bytes of the range
+	 */
+	public long getLength() {
+		return last - first + 1;
+	}
+
+	/**
+	 * Returns the value of the Content-Range header for this range
+	 *
+	 * @param contentLength
+	 *            the length of the full content
+	 * @return the value of the Content-Range header
+	 */
+	public String getContentRange(long contentLength) {
+		if (this == UNSATISFIABLE) {
+			return BYTES_UNIT + " */" + contentLength;
+		}
+		return BYTES_UNIT + " " + first + "-" + last + "/" + contentLength;
+	}
+
+	/**
+	 * Parses the value of a Range header. This method returns null if the
+	 * header must be ignored, which is the case if it is null, invalid or if
+	 * it defines several ranges. It returns {@link #UNSATISFIABLE} if the
+	 * range doesn't overlap the content.
+	 *
+	 * @param rangeHeader
+	 *            the value of the Range header
+	 * @param contentLength
+	 *            the length of the full content
+	 * @return the requested byte range, or null
+	 */
+	public static ByteRange parse(String rangeHeader, long contentLength) {
+
+		if (rangeHeader == null) {
+			return null;
+		}
+
+		Matcher matcher = SINGLE_BYTE_RANGE_PATTERN.matcher(rangeHeader);
+		if (!matcher.matches()) {
+			return null;
+		}
+
+		String firstPos = matcher.group(1);
+		String lastPos = matcher.group(2);
+		ByteRange range = null;
+		try {
+			if (firstPos.length() == 0) {
+				if (lastPos.length() == 0) {
+					return null;
+				}
+
+				// Suffix range, which defines the number of bytes to return
+				long suffixLength = Long.parseLong(lastPos);
+				if (suffixLength == 0 || contentLength == 0) {
+					range = UNSATISFIABLE;
+				} else {
+					range = new ByteRange(Math.max(0, contentLength - suffixLength), contentLength - 1);
+				}
+			} else {
+				long first = Long.parseLong(firstPos);
+				long last = contentLength - 1;
+				if (lastPos.length() > 0) {
+					long requestedLast = Long.parseLong(lastPos);
+					if (requestedLast < first) {
+						return null;
+					}
+					last = Math.min(requestedLast, last);
+				}
+				if (first >= contentLength) {
+					range = UNSATISFIABLE;
+				} else {
+					range = new ByteRange(first, last);
+				}
+			}
+		} catch (NumberFormatException e) {
+			// The position is too large to be valid
+			range = null;
+		}
+
+		return range;
+	}
+}
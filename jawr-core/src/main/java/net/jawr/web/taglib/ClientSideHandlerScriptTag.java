@@ -0,0 +1,59 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.taglib;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.jsp.JspException;
+import javax.servlet.jsp.tagext.TagSupport;
+
+import net.jawr.web.JawrConstant;
+import net.jawr.web.resource.bundle.handler.ClientSideHandlerScriptRequestHandler;
+
+/**
+ * This class defines the tag which renders the script tag of the client side
+ * handler script (jawr_loader.js). The script is referenced through its
+ * hash-versioned URL, so it is cached by the browsers without revalidation.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class ClientSideHandlerScriptTag extends TagSupport {
+
+	/** The serial version UID */
+	private static final long serialVersionUID = -2402938216391473471L;
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.servlet.jsp.tagext.TagSupport#doStartTag()
+	 */
+	public int doStartTag() throws JspException {
+
+		ClientSideHandlerScriptRequestHandler handler = (ClientSideHandlerScriptRequestHandler) pageContext
+				.getServletContext().getAttribute(JawrConstant.JS_CLIENTSIDE_HANDLER_CONTEXT_ATTRIBUTE);
+		if (null == handler)
+			throw new IllegalStateException(
+					"ClientSideHandlerScriptRequestHandler not present in servlet context. Initialization of Jawr either failed or never occurred.");
+
+		HttpServletRequest request = (HttpServletRequest) pageContext.getRequest();
+		try {
+			pageContext.getOut().print(handler.getClientSideHandlerScriptTag(request));
+		} catch (IOException e) {
+			throw new JspException(e);
+		}
+
+		return SKIP_BODY;
+	}
+}
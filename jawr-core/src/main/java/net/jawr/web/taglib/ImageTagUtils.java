@@ -28,7 +28,6 @@ import net.jawr.web.exception.JawrLinkRenderingException;
 import net.jawr.web.exception.ResourceNotFoundException;
 import net.jawr.web.resource.BinaryResourcesHandler;
 import net.jawr.web.resource.FileNameUtils;
-import net.jawr.web.resource.bundle.CheckSumUtils;
 import net.jawr.web.resource.bundle.IOUtils;
 import net.jawr.web.resource.bundle.factory.util.PathNormalizer;
 import net.jawr.web.servlet.RendererRequestUtils;
@@ -111,21 +110,17 @@ public final class ImageTagUtils {
 
 		imgSrc = getFullImagePath(imgSrc, binaryRsHandler, request);
 
-		String newUrl = (String) binaryRsHandler.getCacheUrl(imgSrc);
+		String newUrl = null;
 
 		JawrConfig jawrConfig = binaryRsHandler.getConfig();
-		if (newUrl == null) {
-			try {
-				newUrl = CheckSumUtils.getCacheBustedUrl(imgSrc,
-						binaryRsHandler.getRsReaderHandler(), jawrConfig);
-				binaryRsHandler.addMapping(imgSrc, newUrl);
-			} catch (IOException e) {
-				LOGGER.info("Unable to create the checksum for the image '"
-						+ imgSrc + "' while generating image tag.");
-			} catch (ResourceNotFoundException e) {
-				LOGGER.info("Unable to find the image '" + imgSrc
-						+ "' while generating image tag.");
-			}
+		try {
+			newUrl = binaryRsHandler.getCacheBustedUrl(imgSrc);
+		} catch (IOException e) {
+			LOGGER.info("Unable to create the checksum for the image '"
+					+ imgSrc + "' while generating image tag.");
+		} catch (ResourceNotFoundException e) {
+			LOGGER.info("Unable to find the image '" + imgSrc
+					+ "' while generating image tag.");
 		}
 
 		if (newUrl == null) {
@@ -0,0 +1,122 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * This class defines a readable byte channel over a byte buffer. The content
+ * of the buffer is shared, only the position and the limit are owned by the
+ * channel, so the same buffer can be read concurrently by several channels.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class ByteBufferChannel implements ReadableByteChannel {
+
+	/** The buffer */
+	private final ByteBuffer buffer;
+
+	/** The flag indicating if the channel is open */
+	private boolean open = true;
+
+	/**
+	 * Constructor
+	 *
+	 * @param buffer
+	 *            the buffer to read, which is not modified by the channel
+	 */
+	public ByteBufferChannel(ByteBuffer buffer) {
+		this.buffer = buffer.duplicate();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.nio.channels.ReadableByteChannel#read(java.nio.ByteBuffer)
+	 */
+	public int read(ByteBuffer dst) throws IOException {
+
+		checkOpen();
+		if (!buffer.hasRemaining()) {
+			return -1;
+		}
+
+		int length = Math.min(dst.remaining(), buffer.remaining());
+		ByteBuffer slice = buffer.duplicate();
+		slice.limit(slice.position() + length);
+		dst.put(slice);
+		buffer.position(buffer.position() + length);
+		return length;
+	}
+
+	/**
+	 * Writes the remaining content of the buffer to the channel, without
+	 * intermediate copy
+	 *
+	 * @param outChannel
+	 *            the channel to write to
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	public void transferTo(WritableByteChannel outChannel) throws IOException {
+
+		checkOpen();
+		while (buffer.hasRemaining()) {
+			outChannel.write(buffer);
+		}
+	}
+
+	/**
+	 * Returns the number of bytes remaining in the channel
+	 *
+	 * @return the number of bytes remaining
+	 */
+	public int remaining() {
+		return buffer.remaining();
+	}
+
+	/**
+	 * Checks that the channel is open
+	 *
+	 * @throws ClosedChannelException
+	 *             if the channel is closed
+	 */
+	private void checkOpen() throws ClosedChannelException {
+		if (!open) {
+			throw new ClosedChannelException();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.nio.channels.Channel#isOpen()
+	 */
+	public boolean isOpen() {
+		return open;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.nio.channels.Channel#close()
+	 */
+	public void close() {
+		open = false;
+	}
+}
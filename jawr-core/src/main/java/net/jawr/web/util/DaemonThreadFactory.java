@@ -0,0 +1,54 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class defines a thread factory which creates named daemon threads, so
+ * the threads created by Jawr never prevent the JVM from shutting down.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+
+	/** The prefix of the thread names */
+	private final String namePrefix;
+
+	/** The number of threads created */
+	private final AtomicInteger threadCount = new AtomicInteger();
+
+	/**
+	 * Constructor
+	 *
+	 * @param namePrefix
+	 *            the prefix of the thread names
+	 */
+	public DaemonThreadFactory(String namePrefix) {
+		this.namePrefix = namePrefix;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+	 */
+	@Override
+	public Thread newThread(Runnable r) {
+		Thread thread = new Thread(r, namePrefix + "-" + threadCount.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	}
+}
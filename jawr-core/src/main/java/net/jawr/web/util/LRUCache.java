@@ -0,0 +1,124 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class defines a thread safe cache, bounded by a maximum number of
+ * entries. When the limit is reached, the least recently used entry is
+ * evicted.
+ *
+ * @param <K>
+ *            the type of the keys
+ * @param <V>
+ *            the type of the values
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class LRUCache<K, V> {
+
+	/** The default load factor of the underlying map */
+	private static final float LOAD_FACTOR = 0.75f;
+
+	/** The maximum number of entries */
+	private final int maxEntries;
+
+	/** The underlying map in access order */
+	private final Map<K, V> map;
+
+	/**
+	 * Constructor
+	 *
+	 * @param maxEntries
+	 *            the maximum number of entries
+	 */
+	public LRUCache(final int maxEntries) {
+
+		if (maxEntries <= 0) {
+			throw new IllegalArgumentException("The maximum number of entries must be positive : " + maxEntries);
+		}
+		this.maxEntries = maxEntries;
+		this.map = new LinkedHashMap<K, V>(Math.min(maxEntries, 16), LOAD_FACTOR, true) {
+
+			private static final long serialVersionUID = 6447307125371335498L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+				return size() > LRUCache.this.maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Returns the value associated to the key
+	 *
+	 * @param key
+	 *            the key
+	 * @return the value or null if it is not in the cache
+	 */
+	public synchronized V get(K key) {
+		return map.get(key);
+	}
+
+	/**
+	 * Puts a value in the cache
+	 *
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value
+	 * @return the previous value associated to the key
+	 */
+	public synchronized V put(K key, V value) {
+		return map.put(key, value);
+	}
+
+	/**
+	 * Removes a value from the cache
+	 *
+	 * @param key
+	 *            the key
+	 * @return the removed value
+	 */
+	public synchronized V remove(K key) {
+		return map.remove(key);
+	}
+
+	/**
+	 * Clears the cache
+	 */
+	public synchronized void clear() {
+		map.clear();
+	}
+
+	/**
+	 * Returns the number of entries in the cache
+	 *
+	 * @return the number of entries in the cache
+	 */
+	public synchronized int size() {
+		return map.size();
+	}
+
+	/**
+	 * Returns the maximum number of entries
+	 *
+	 * @return the maximum number of entries
+	 */
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+}
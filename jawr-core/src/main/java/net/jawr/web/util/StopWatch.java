@@ -86,6 +86,13 @@ public class StopWatch {
 		this.id = id;
 	}
 
+	/**
+	 * Return the id of this stop watch, as specified on construction.
+	 */
+	public String getId() {
+		return this.id;
+	}
+
 
 	/**
 	 * Determine whether the TaskInfo array is built over time. Set this to
@@ -142,6 +149,21 @@ public class StopWatch {
 		this.currentTaskName = null;
 	}
 
+	/**
+	 * Records a task which has been timed outside of this stop watch, for
+	 * example in another thread. As such tasks may overlap, their time is not
+	 * added to the total time.
+	 * @param taskName the name of the task
+	 * @param timeMillis the time of the task in milliseconds
+	 */
+	public void addTaskInfo(String taskName, long timeMillis) {
+		TaskInfo taskInfo = new TaskInfo(taskName, timeMillis);
+		if (this.keepTaskList) {
+			this.taskList.add(taskInfo);
+		}
+		++this.taskCount;
+	}
+
 	/**
 	 * Return whether the stop watch is currently running.
 	 */
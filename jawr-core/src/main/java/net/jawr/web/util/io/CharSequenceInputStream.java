@@ -0,0 +1,137 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.util.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * This class defines an input stream, which reads the bytes of a character
+ * sequence encoded with a charset. The characters are encoded by chunks, so
+ * the byte array of the whole sequence is never created. The malformed and
+ * unmappable characters are replaced, as in {@link String#getBytes(Charset)}.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class CharSequenceInputStream extends InputStream {
+
+	/** The size of the encoded byte buffer */
+	private static final int BUFFER_SIZE = 8192;
+
+	/** The encoder */
+	private final CharsetEncoder encoder;
+
+	/** The characters to encode */
+	private final CharBuffer input;
+
+	/** The encoded bytes, which have not been read yet */
+	private final ByteBuffer buffer;
+
+	/** The flag indicating if all the bytes have been encoded */
+	private boolean endOfInput;
+
+	/**
+	 * Constructor
+	 *
+	 * @param content
+	 *            the character sequence
+	 * @param charset
+	 *            the charset
+	 */
+	public CharSequenceInputStream(CharSequence content, Charset charset) {
+
+		this.encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.input = CharBuffer.wrap(content);
+		this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		this.buffer.flip();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.InputStream#read()
+	 */
+	@Override
+	public int read() throws IOException {
+
+		if (!fillBuffer()) {
+			return -1;
+		}
+		return buffer.get() & 0xFF;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.InputStream#read(byte[], int, int)
+	 */
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+
+		if (len == 0) {
+			return 0;
+		}
+		if (!fillBuffer()) {
+			return -1;
+		}
+		int count = Math.min(len, buffer.remaining());
+		buffer.get(b, off, count);
+		return count;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.InputStream#available()
+	 */
+	@Override
+	public int available() throws IOException {
+		return buffer.remaining();
+	}
+
+	/**
+	 * Encodes the next characters, if all the encoded bytes have been read
+	 *
+	 * @return false if the end of the stream has been reached
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	private boolean fillBuffer() throws IOException {
+
+		while (!buffer.hasRemaining()) {
+			if (endOfInput) {
+				return false;
+			}
+			buffer.clear();
+			if (input.hasRemaining()) {
+				CoderResult result = encoder.encode(input, buffer, true);
+				if (result.isError()) {
+					result.throwException();
+				}
+			} else {
+				encoder.flush(buffer);
+				endOfInput = true;
+			}
+			buffer.flip();
+		}
+		return true;
+	}
+}
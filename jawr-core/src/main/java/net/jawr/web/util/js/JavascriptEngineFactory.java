@@ -0,0 +1,31 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.util.js;
+
+/**
+ * This interface defines the factory of the Javascript engines managed by a
+ * {@link JavascriptEnginePool}. The engine returned must have all its scripts
+ * already evaluated, so it is ready to be used.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public interface JavascriptEngineFactory {
+
+	/**
+	 * Creates a new initialized Javascript engine
+	 *
+	 * @return the new Javascript engine
+	 */
+	JavascriptEngine createEngine();
+}
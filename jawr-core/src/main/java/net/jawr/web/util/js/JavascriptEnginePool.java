@@ -0,0 +1,208 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.util.js;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.jawr.web.exception.BundlingProcessException;
+
+/**
+ * This class defines a pool of Javascript engines. A Javascript engine is not
+ * thread safe, so a thread must borrow an engine from the pool, use it and
+ * return it to the pool.
+ *
+ * The engines are created by the {@link JavascriptEngineFactory} when needed,
+ * up to the size of the pool. If all the engines are in use, the thread waits
+ * until an engine is returned.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class JavascriptEnginePool {
+
+	/** The logger */
+	private static final Logger LOGGER = LoggerFactory.getLogger(JavascriptEnginePool.class);
+
+	/** The name of the pool */
+	private final String name;
+
+	/** The maximum number of engines */
+	private final int size;
+
+	/** The engine factory */
+	private final JavascriptEngineFactory factory;
+
+	/** The idle engines */
+	private final BlockingQueue<JavascriptEngine> idleEngines;
+
+	/** The number of engines created */
+	private final AtomicInteger createdCount = new AtomicInteger();
+
+	/**
+	 * Constructor
+	 *
+	 * @param name
+	 *            the name of the pool
+	 * @param size
+	 *            the maximum number of engines
+	 * @param factory
+	 *            the engine factory
+	 */
+	public JavascriptEnginePool(String name, int size, JavascriptEngineFactory factory) {
+
+		if (size <= 0) {
+			throw new IllegalArgumentException("The size of the Javascript engine pool '" + name
+					+ "' must be positive : " + size);
+		}
+		this.name = name;
+		this.size = size;
+		this.factory = factory;
+		this.idleEngines = new LinkedBlockingQueue<JavascriptEngine>(size);
+	}
+
+	/**
+	 * Creates the engines of the pool, until the number of engines created
+	 * reaches the count passed in parameter
+	 *
+	 * @param count
+	 *            the number of engines which must be available
+	 */
+	public void warmUp(int count) {
+
+		int nbEngines = Math.min(count, size);
+		while (reserveEngineCreation(nbEngines)) {
+			idleEngines.offer(createEngine());
+		}
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Javascript engine pool '" + name + "' warmed up with " + createdCount.get() + " engine(s)");
+		}
+	}
+
+	/**
+	 * Borrows an engine from the pool. The engine must be returned to the pool
+	 * using {@link #returnEngine(JavascriptEngine)} once it is not used
+	 * anymore.
+	 *
+	 * @return the engine
+	 */
+	public JavascriptEngine borrowEngine() {
+
+		JavascriptEngine engine = idleEngines.poll();
+		if (engine == null) {
+			if (reserveEngineCreation(size)) {
+				engine = createEngine();
+			} else {
+				try {
+					engine = idleEngines.take();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new BundlingProcessException(
+							"Interrupted while waiting for an engine of the Javascript engine pool '" + name + "'", e);
+				}
+			}
+		}
+		return engine;
+	}
+
+	/**
+	 * Returns an engine to the pool
+	 *
+	 * @param engine
+	 *            the engine
+	 */
+	public void returnEngine(JavascriptEngine engine) {
+		if (engine != null) {
+			idleEngines.offer(engine);
+		}
+	}
+
+	/**
+	 * Reserves the creation of an engine if the number of engines created is
+	 * lower than the limit
+	 *
+	 * @param limit
+	 *            the limit
+	 * @return true if an engine can be created
+	 */
+	private boolean reserveEngineCreation(int limit) {
+
+		int count = createdCount.get();
+		while (count < limit) {
+			if (createdCount.compareAndSet(count, count + 1)) {
+				return true;
+			}
+			count = createdCount.get();
+		}
+		return false;
+	}
+
+	/**
+	 * Creates an engine. If the creation fails, the reservation is released.
+	 *
+	 * @return the engine
+	 */
+	private JavascriptEngine createEngine() {
+
+		boolean created = false;
+		try {
+			JavascriptEngine engine = factory.createEngine();
+			created = true;
+			return engine;
+		} finally {
+			if (!created) {
+				createdCount.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Returns the name of the pool
+	 *
+	 * @return the name of the pool
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the maximum number of engines
+	 *
+	 * @return the maximum number of engines
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of engines created
+	 *
+	 * @return the number of engines created
+	 */
+	public int getCreatedCount() {
+		return createdCount.get();
+	}
+
+	/**
+	 * Returns the number of idle engines
+	 *
+	 * @return the number of idle engines
+	 */
+	public int getIdleCount() {
+		return idleEngines.size();
+	}
+}
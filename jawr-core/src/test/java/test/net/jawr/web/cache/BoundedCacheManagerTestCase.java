@@ -0,0 +1,171 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package test.net.jawr.web.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import net.jawr.web.cache.BoundedCacheManager;
+import net.jawr.web.cache.CacheManagerFactory;
+import net.jawr.web.cache.JawrCacheManager;
+import net.jawr.web.config.JawrConfig;
+import test.net.jawr.web.servlet.mock.MockServletContext;
+
+/**
+ * Test case for the bounded cache manager
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class BoundedCacheManagerTestCase {
+
+	private BoundedCacheManager createCacheManager(long maxBytes, String textWeight) {
+
+		Properties props = new Properties();
+		props.setProperty(BoundedCacheManager.JAWR_CACHE_MANAGER_MAX_BYTES, String.valueOf(maxBytes));
+		if (textWeight != null) {
+			props.setProperty(BoundedCacheManager.JAWR_CACHE_MANAGER_WEIGHT_PREFIX + "text", textWeight);
+		}
+		return new BoundedCacheManager(new JawrConfig("js", props));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEntriesAreEvicted() {
+
+		BoundedCacheManager cacheManager = createCacheManager(3000, null);
+		cacheManager.put("ZIP.a", new byte[900]);
+		cacheManager.put("ZIP.b", new byte[900]);
+		cacheManager.put("ZIP.c", new byte[900]);
+
+		// Access a, so that b is the least recently used entry
+		assertNotNull(cacheManager.get("ZIP.a"));
+		cacheManager.put("ZIP.d", new byte[900]);
+
+		assertNull(cacheManager.get("ZIP.b"));
+		assertNotNull(cacheManager.get("ZIP.a"));
+		assertNotNull(cacheManager.get("ZIP.c"));
+		assertNotNull(cacheManager.get("ZIP.d"));
+
+		assertEquals(3, cacheManager.getEntryCount());
+		assertEquals(1, cacheManager.getEvictionCount());
+		assertTrue(cacheManager.getCurrentBytes() <= cacheManager.getMaxBytes());
+		assertEquals(4, cacheManager.getHitCount());
+		assertEquals(1, cacheManager.getMissCount());
+		assertEquals(0.8, cacheManager.getHitRatio(), 0.0001);
+	}
+
+	@Test
+	public void testPrefixWeight() {
+
+		BoundedCacheManager cacheManager = createCacheManager(10000, "2");
+		cacheManager.put("ZIP.a", new byte[1000]);
+		long zipSize = cacheManager.getCurrentBytes();
+		cacheManager.remove("ZIP.a");
+		assertEquals(0, cacheManager.getCurrentBytes());
+
+		// A string of 500 chars takes 1000 bytes, and is weighted twice
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 500; i++) {
+			text.append('a');
+		}
+		cacheManager.put("TEXT.a", text.toString());
+		long textSize = cacheManager.getCurrentBytes();
+		assertEquals(2 * (zipSize + 2), textSize);
+	}
+
+	@Test
+	public void testEntryBiggerThanTheCacheIsRejected() {
+
+		BoundedCacheManager cacheManager = createCacheManager(1000, null);
+		cacheManager.put("ZIP.a", new byte[100]);
+		cacheManager.put("ZIP.b", new byte[2000]);
+
+		assertNull(cacheManager.get("ZIP.b"));
+		assertNotNull(cacheManager.get("ZIP.a"));
+		assertEquals(1, cacheManager.getRejectionCount());
+		assertEquals(0, cacheManager.getEvictionCount());
+
+		cacheManager.resetStatistics();
+		assertEquals(0, cacheManager.getRejectionCount());
+		assertEquals(0, cacheManager.getHitCount());
+
+		cacheManager.clear();
+		assertEquals(0, cacheManager.getEntryCount());
+		assertEquals(0, cacheManager.getCurrentBytes());
+	}
+
+	@Test
+	public void testConcurrentAccess() throws Exception {
+
+		final BoundedCacheManager cacheManager = createCacheManager(10000, null);
+		int threadCount = 8;
+		final CountDownLatch startLatch = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try {
+			List<Future<?>> results = new ArrayList<Future<?>>();
+			for (int i = 0; i < threadCount; i++) {
+				final int threadIdx = i;
+				results.add(executor.submit(new Callable<Void>() {
+					public Void call() throws Exception {
+						startLatch.await();
+						for (int j = 0; j < 1000; j++) {
+							String key = "ZIP." + (10 + (threadIdx + j) % 20);
+							if (cacheManager.get(key) == null) {
+								cacheManager.put(key, new byte[900]);
+							}
+						}
+						return null;
+					}
+				}));
+			}
+			startLatch.countDown();
+			for (Future<?> result : results) {
+				result.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		// Each entry takes 64 + 12 + 900 bytes, so at most 10 entries are kept
+		assertTrue(cacheManager.getCurrentBytes() <= cacheManager.getMaxBytes());
+		assertTrue(cacheManager.getEntryCount() <= 10);
+		assertEquals(976L * cacheManager.getEntryCount(), cacheManager.getCurrentBytes());
+		assertEquals(threadCount * 1000, cacheManager.getHitCount() + cacheManager.getMissCount());
+	}
+
+	@Test
+	public void testSelectionByAlias() {
+
+		Properties props = new Properties();
+		props.setProperty(CacheManagerFactory.JAWR_CACHE_MANAGER, CacheManagerFactory.BOUNDED_CACHE_MANAGER_ALIAS);
+		JawrConfig config = new JawrConfig("js", props);
+		config.setContext(new MockServletContext());
+
+		JawrCacheManager cacheManager = CacheManagerFactory.resetCacheManager(config, "js");
+		assertTrue(cacheManager instanceof BoundedCacheManager);
+		assertEquals(BoundedCacheManager.DEFAULT_MAX_BYTES, ((BoundedCacheManager) cacheManager).getMaxBytes());
+	}
+}
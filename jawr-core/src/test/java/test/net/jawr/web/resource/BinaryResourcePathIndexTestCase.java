@@ -0,0 +1,87 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package test.net.jawr.web.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import net.jawr.web.resource.BinaryResourcePathIndex;
+
+/**
+ * Test case for the binary resource path index
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class BinaryResourcePathIndexTestCase {
+
+	@Test
+	public void testLookups() {
+
+		BinaryResourcePathIndex index = new BinaryResourcePathIndex();
+		index.put("/img/logo.png", "/cb1234/img/logo.png");
+		index.put("/img/bg.png", "/cb5678/img/bg.png");
+
+		assertEquals(2, index.size());
+		assertEquals("/cb1234/img/logo.png", index.getCacheUrl("/img/logo.png"));
+		assertEquals("/img/bg.png", index.getBinaryUrl("/cb5678/img/bg.png"));
+		assertTrue(index.containsCacheUrl("/cb1234/img/logo.png"));
+		assertFalse(index.containsCacheUrl("/img/logo.png"));
+		assertNull(index.getCacheUrl("/img/unknown.png"));
+
+		assertEquals(2, index.getLookupCount());
+		assertEquals(1, index.getLookupHitCount());
+		assertEquals(3, index.getReverseLookupCount());
+		assertEquals(2, index.getReverseLookupHitCount());
+
+		index.resetStatistics();
+		assertEquals(0, index.getLookupCount());
+		assertEquals(0, index.getReverseLookupCount());
+	}
+
+	@Test
+	public void testRemappingKeepsIndexConsistent() {
+
+		BinaryResourcePathIndex index = new BinaryResourcePathIndex();
+		index.put("/img/logo.png", "/cb1234/img/logo.png");
+		index.put("/img/logo.png", "/cb9999/img/logo.png");
+
+		assertEquals(1, index.size());
+		assertEquals("/cb9999/img/logo.png", index.getCacheUrl("/img/logo.png"));
+		assertEquals("/img/logo.png", index.getBinaryUrl("/cb9999/img/logo.png"));
+		assertFalse(index.containsCacheUrl("/cb1234/img/logo.png"));
+	}
+
+	@Test
+	public void testClear() {
+
+		BinaryResourcePathIndex index = new BinaryResourcePathIndex();
+		index.put("/img/logo.png", "/cb1234/img/logo.png");
+		index.clear();
+
+		assertEquals(0, index.size());
+		assertTrue(index.asMap().isEmpty());
+		assertFalse(index.containsCacheUrl("/cb1234/img/logo.png"));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testMapViewIsUnmodifiable() {
+
+		BinaryResourcePathIndex index = new BinaryResourcePathIndex();
+		index.asMap().put("/img/logo.png", "/cb1234/img/logo.png");
+	}
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package test.net.jawr.web.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import net.jawr.web.JawrConstant;
+import net.jawr.web.config.JawrConfig;
+import net.jawr.web.exception.ResourceNotFoundException;
+import net.jawr.web.resource.BinaryResourcesHandler;
+import net.jawr.web.resource.bundle.factory.util.PathNormalizer;
+import net.jawr.web.resource.bundle.generator.GeneratorRegistry;
+import net.jawr.web.resource.bundle.handler.BundleHashcodeType;
+import net.jawr.web.resource.handler.reader.ResourceReaderHandler;
+
+/**
+ * Test case for the binary resources handler
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class BinaryResourcesHandlerTestCase {
+
+	@Test
+	public void testConcurrentCacheBustedUrlComputation() throws Exception {
+
+		final AtomicInteger readCount = new AtomicInteger();
+		ResourceReaderHandler rsReader = mock(ResourceReaderHandler.class);
+		when(rsReader.getResourceAsStream("/img/logo.png")).thenAnswer(
+				new Answer<InputStream>() {
+					public InputStream answer(InvocationOnMock invocation)
+							throws Throwable {
+						readCount.incrementAndGet();
+						Thread.sleep(200);
+						return new ByteArrayInputStream("logo".getBytes());
+					}
+				});
+
+		final BinaryResourcesHandler binaryRsHandler = new BinaryResourcesHandler(
+				createConfig(), rsReader, null);
+
+		int threadCount = 8;
+		final CountDownLatch startLatch = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try {
+			List<Future<String>> results = new ArrayList<Future<String>>();
+			for (int i = 0; i < threadCount; i++) {
+				results.add(executor.submit(new Callable<String>() {
+					public String call() throws Exception {
+						startLatch.await();
+						return binaryRsHandler.getCacheBustedUrl("/img/logo.png");
+					}
+				}));
+			}
+			startLatch.countDown();
+
+			String cacheUrl = results.get(0).get();
+			assertTrue(cacheUrl.startsWith(JawrConstant.CACHE_BUSTER_PREFIX));
+			for (Future<String> result : results) {
+				assertEquals(cacheUrl, result.get());
+			}
+			assertEquals(1, readCount.get());
+			assertEquals(cacheUrl, binaryRsHandler.getCacheUrl("/img/logo.png"));
+			assertEquals("/img/logo.png", binaryRsHandler.getBinaryUrl(cacheUrl));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testCacheBustedUrlOfMissingResource() throws Exception {
+
+		ResourceReaderHandler rsReader = mock(ResourceReaderHandler.class);
+		BinaryResourcesHandler binaryRsHandler = new BinaryResourcesHandler(
+				createConfig(), rsReader, null);
+		try {
+			binaryRsHandler.getCacheBustedUrl("/img/unknown.png");
+			fail("A ResourceNotFoundException should have been thrown");
+		} catch (ResourceNotFoundException e) {
+			// Expected
+		}
+		assertEquals(0, binaryRsHandler.getBinaryPathIndex().size());
+	}
+
+	@Test
+	public void testHashcodeCheckedAgainWhenResourceChanged() throws Exception {
+
+		final AtomicReference<String> content = new AtomicReference<String>("logo");
+		ResourceReaderHandler rsReader = mock(ResourceReaderHandler.class);
+		when(rsReader.getResourceAsStream("/img/logo.png")).thenAnswer(
+				new Answer<InputStream>() {
+					public InputStream answer(InvocationOnMock invocation)
+							throws Throwable {
+						return new ByteArrayInputStream(content.get().getBytes());
+					}
+				});
+
+		BinaryResourcesHandler binaryRsHandler = new BinaryResourcesHandler(
+				createConfig(), rsReader, null);
+		String oldCacheUrl = binaryRsHandler.getCacheBustedUrl("/img/logo.png");
+
+		content.set("new logo");
+		String newCacheUrl = new BinaryResourcesHandler(createConfig(), rsReader, null)
+				.getCacheBustedUrl("/img/logo.png");
+		assertTrue(!oldCacheUrl.equals(newCacheUrl));
+
+		assertEquals(BundleHashcodeType.VALID_HASHCODE, binaryRsHandler.getBundleHashcodeType(newCacheUrl));
+		assertEquals(newCacheUrl, binaryRsHandler.getCacheUrl("/img/logo.png"));
+		assertEquals(BundleHashcodeType.INVALID_HASHCODE, binaryRsHandler.getBundleHashcodeType(oldCacheUrl));
+		String unknownCacheUrl = newCacheUrl.replace(PathNormalizer.extractBinaryResourceInfo(newCacheUrl)[1],
+				JawrConstant.CACHE_BUSTER_PREFIX + "1234");
+		assertEquals(BundleHashcodeType.INVALID_HASHCODE, binaryRsHandler.getBundleHashcodeType(unknownCacheUrl));
+		assertEquals(newCacheUrl, binaryRsHandler.getCacheUrl("/img/logo.png"));
+	}
+
+	@Test
+	public void testClearDiscardsComputationInProgress() throws Exception {
+
+		final CountDownLatch readStarted = new CountDownLatch(1);
+		final CountDownLatch clearDone = new CountDownLatch(1);
+		ResourceReaderHandler rsReader = mock(ResourceReaderHandler.class);
+		when(rsReader.getResourceAsStream("/img/logo.png")).thenAnswer(
+				new Answer<InputStream>() {
+					public InputStream answer(InvocationOnMock invocation)
+							throws Throwable {
+						readStarted.countDown();
+						clearDone.await();
+						return new ByteArrayInputStream("logo".getBytes());
+					}
+				});
+
+		final BinaryResourcesHandler binaryRsHandler = new BinaryResourcesHandler(
+				createConfig(), rsReader, null);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<String> result = executor.submit(new Callable<String>() {
+				public String call() throws Exception {
+					return binaryRsHandler.getCacheBustedUrl("/img/logo.png");
+				}
+			});
+			readStarted.await();
+			binaryRsHandler.clear();
+			clearDone.countDown();
+
+			assertTrue(result.get().startsWith(JawrConstant.CACHE_BUSTER_PREFIX));
+			assertEquals(0, binaryRsHandler.getBinaryPathIndex().size());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private JawrConfig createConfig() {
+		JawrConfig config = new JawrConfig(JawrConstant.BINARY_TYPE,
+				new Properties());
+		GeneratorRegistry generatorRegistry = new GeneratorRegistry(
+				JawrConstant.BINARY_TYPE);
+		generatorRegistry.setConfig(config);
+		config.setGeneratorRegistry(generatorRegistry);
+		return config;
+	}
+}
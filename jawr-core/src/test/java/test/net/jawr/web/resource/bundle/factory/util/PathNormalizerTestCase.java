@@ -3,6 +3,7 @@ package test.net.jawr.web.resource.bundle.factory.util;
 import static org.junit.Assert.assertEquals;
 
 import java.util.Arrays;
+import java.util.List;
 
 import net.jawr.web.resource.bundle.factory.util.PathNormalizer;
 import net.jawr.web.resource.bundle.renderer.BundleRenderer;
@@ -110,6 +111,26 @@ public class PathNormalizerTestCase {
 		pathInfos = PathNormalizer.extractBundleInfoFromPath(BundleRenderer.GZIP_PATH_PREFIX+"1576054120.en_US@summer/fwk/core/component.css");
 		assertEquals(Arrays.asList(null, "/fwk/core/component.css","en_US@summer", "1576054120"), Arrays.asList(pathInfos));
 		
+		List<String> encodings = Arrays.asList("br", "zstd");
+		pathInfos = PathNormalizer.extractBundleInfoFromPath("/br_1542603560/js/bundle/msg.js", encodings);
+		assertEquals(Arrays.asList(null, "/js/bundle/msg.js",null, "1542603560"), Arrays.asList(pathInfos));
+		
+		pathInfos = PathNormalizer.extractBundleInfoFromPath("/zstd_1576054120.en_US@summer/fwk/core/component.css", encodings);
+		assertEquals(Arrays.asList(null, "/fwk/core/component.css","en_US@summer", "1576054120"), Arrays.asList(pathInfos));
+		
+	}
+	
+	@Test
+	public void testExtractBundleInfoFromPathWithEncodingLikeName(){
+		
+		// The encoding prefix is only recognized for the configured encoders
+		String[] pathInfos = PathNormalizer.extractBundleInfoFromPath("/br_1542603560/js/bundle/msg.js");
+		assertEquals(Arrays.asList(null, "/js/bundle/msg.js",null, "br_1542603560"), Arrays.asList(pathInfos));
+		
+		// A resource name starting like an encoding prefix is not an encoded bundle
+		List<String> encodings = Arrays.asList("br");
+		pathInfos = PathNormalizer.extractBundleInfoFromPath("/1542603560/js/br_widgets.js", encodings);
+		assertEquals(Arrays.asList(null, "/js/br_widgets.js",null, "1542603560"), Arrays.asList(pathInfos));
 	}
 	
 	@Test
@@ -8,6 +8,7 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import javax.servlet.ServletContext;
@@ -172,6 +173,81 @@ public class LessCssGeneratorTestCase {
 		Assert.assertEquals(FileUtils.readClassPathFile("generator/css/less/expected_import.css"), writer.getBuffer().toString());
 	}
 	
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testLessCssCompilationCacheInDebugMode() throws Exception{
+		
+		config.setDebugModeOn(true);
+		ctx = new GeneratorContext(config, "/root.less");
+		ctx.setResourceReaderHandler(rsReaderHandler);
+		
+		final String[] varsContent = new String[]{ "@color: red;" };
+		initRsReaderHandlerWithContent("/root.less", "@import \"vars.less\";\n.title { color: @color; }");
+		Mockito.doAnswer(new Answer<Reader>() {
+
+			@Override
+			public Reader answer(InvocationOnMock invocation) throws Throwable {
+				return new StringReader(varsContent[0]);
+			}
+		}).when(rsReaderHandler).getResource(Matchers.eq("/vars.less"), Matchers.anyBoolean(), (List<Class<?>>) Matchers.any());
+		
+		ctx.setProcessingBundle(false);
+		String result = IOUtils.toString(generator.createResource(ctx));
+		Assert.assertTrue(result.contains("red"));
+		
+		// The imported resource is only read to check its stamp
+		Assert.assertEquals(result, IOUtils.toString(generator.createResource(ctx)));
+		Mockito.verify(rsReaderHandler, Mockito.times(3)).getResource(Matchers.eq("/vars.less"), Matchers.anyBoolean(), (List<Class<?>>) Matchers.any());
+		
+		// A change in the imported resource invalidates the compiled content
+		varsContent[0] = "@color: blue;";
+		result = IOUtils.toString(generator.createResource(ctx));
+		Assert.assertTrue(result.contains("blue"));
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testLessCssImportGraphRecordedForIncrementalProcessing() throws Exception{
+		
+		config.setDebugModeOn(false);
+		config.setIncrementalBundleProcessing(true);
+		ctx = new GeneratorContext(config, "/root.less");
+		ctx.setResourceReaderHandler(rsReaderHandler);
+		
+		final String[] varsContent = new String[]{ "@color: red;" };
+		initRsReaderHandlerWithContent("/root.less", "@import \"vars.less\";\n.title { color: @color; }");
+		Mockito.doAnswer(new Answer<Reader>() {
+
+			@Override
+			public Reader answer(InvocationOnMock invocation) throws Throwable {
+				return new StringReader(varsContent[0]);
+			}
+		}).when(rsReaderHandler).getResource(Matchers.eq("/vars.less"), Matchers.anyBoolean(), (List<Class<?>>) Matchers.any());
+		
+		ctx.setProcessingBundle(true);
+		Assert.assertNull(generator.getImportGraphStamps("/root.less"));
+		IOUtils.toString(generator.createResource(ctx));
+		Map<String, String> stamps = generator.getImportGraphStamps("/root.less");
+		Assert.assertTrue(stamps.containsKey("/root.less"));
+		Assert.assertTrue(stamps.containsKey("/vars.less"));
+		Assert.assertTrue(generator.isImportGraphUpToDate(stamps, ctx));
+		
+		// A change in the imported resource is detected without compiling the root resource
+		varsContent[0] = "@color: blue;";
+		Assert.assertFalse(generator.isImportGraphUpToDate(stamps, ctx));
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void initRsReaderHandlerWithContent(String resourceName, final String lessContent) throws Exception{
+		Mockito.doAnswer(new Answer<Reader>() {
+
+			@Override
+			public Reader answer(InvocationOnMock invocation) throws Throwable {
+				return new StringReader(lessContent);
+			}
+		}).when(rsReaderHandler).getResource(Matchers.eq(resourceName), Matchers.anyBoolean(), (List<Class<?>>) Matchers.any());
+	}
+	
 	@SuppressWarnings("unchecked")
 	private void initRsReaderHandler(String resourceName, String resourcePath) throws Exception{
 		final String lessContent = FileUtils.readClassPathFile(resourcePath);
@@ -1,24 +1,34 @@
 package test.net.jawr.web.resource.bundle.global.postprocessor.google.closure;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 
 import javax.servlet.ServletContext;
 
 import net.jawr.web.JawrConstant;
 import net.jawr.web.config.JawrConfig;
 import net.jawr.web.exception.ResourceNotFoundException;
+import net.jawr.web.resource.bundle.IOUtils;
 import net.jawr.web.resource.bundle.InclusionPattern;
 import net.jawr.web.resource.bundle.JoinableResourceBundle;
 import net.jawr.web.resource.bundle.factory.global.postprocessor.GlobalPostProcessingContext;
@@ -30,7 +40,9 @@ import net.jawr.web.resource.bundle.variant.VariantSet;
 import net.jawr.web.resource.handler.reader.ResourceReaderHandler;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Matchers;
 import org.mockito.Mock;
@@ -45,6 +57,9 @@ import test.net.jawr.web.servlet.mock.MockServletContext;
 @RunWith(MockitoJUnitRunner.class)
 public class ClosureGlobalPostProcessorTestCase {
 
+	/** The pattern of a declaration of functions or variables */
+	private static final Pattern TOP_LEVEL_DECLARATION_PATTERN = Pattern.compile("\\b(function|var)\\s+([\\w$]+)");
+
 	@Mock
 	private JoinableResourceBundle bundle01;
 	
@@ -66,6 +81,9 @@ public class ClosureGlobalPostProcessorTestCase {
 	@Mock
 	private ResourceBundlesHandler rsBundlesHandler;
 	
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+	
 	private String bundleDirPath;
 	
 	private JawrConfig config;
@@ -121,7 +139,12 @@ public class ClosureGlobalPostProcessorTestCase {
 		when(rsBundlesHandler.getBundleTextDirPath()).thenReturn(srcDir);
 		when(rsBundlesHandler.getBundleZipDirPath()).thenReturn(srcZipDir);
 		when(rsHandler.getWorkingDirectory()).thenReturn(FileUtils.getClasspathRootDir()+"/global/postprocessor/google/closure/work/");
-		when(rsHandler.getResource("extern.js")).thenReturn(new StringReader(FileUtils.readClassPathFile("global/postprocessor/google/closure/externs/extern.js")));
+		// The externs are read by each compiler
+		when(rsHandler.getResource("extern.js")).thenAnswer(new Answer<StringReader>() {
+			public StringReader answer(InvocationOnMock invocation) throws Throwable {
+				return new StringReader(FileUtils.readClassPathFile("global/postprocessor/google/closure/externs/extern.js"));
+			}
+		});
 		
 		processor = new ClosureGlobalPostProcessor();
 	}
@@ -285,6 +308,168 @@ public class ClosureGlobalPostProcessorTestCase {
 		compareResult("msgBundle@fr", false);
 	}
 
+	@Test
+	public void testParallelPostProcessing() throws ResourceNotFoundException, Exception{
+		
+		// Work on a copy of the bundles, as the compiled bundles replace them
+		File textDir = tempFolder.newFolder("text");
+		File zipDir = tempFolder.newFolder("gzip");
+		net.jawr.web.util.FileUtils.copyDirectory(new File(srcDir), textDir);
+		when(rsBundlesHandler.getBundleTextDirPath()).thenReturn(textDir.getPath());
+		when(rsBundlesHandler.getBundleZipDirPath()).thenReturn(zipDir.getPath());
+		when(rsHandler.getWorkingDirectory()).thenReturn(tempFolder.getRoot().getPath());
+		
+		Properties props = new Properties();
+		props.put("jawr.js.closure.modules", "bundle01:bundle02,msgBundle");
+		props.put("jawr.js.closure.externs", "extern.js");
+		props.put("jawr.js.closure.parallel", "true");
+		initProcessingContext(props);
+		
+		final List<String[]> moduleGroups = new ArrayList<String[]>();
+		processor = new ClosureGlobalPostProcessor() {
+			@Override
+			protected List<String[]> getIndependentModuleGroupArgs(String[] args) {
+				moduleGroups.addAll(super.getIndependentModuleGroupArgs(args));
+				return moduleGroups;
+			}
+		};
+		
+		List<JoinableResourceBundle> bundles = new ArrayList<JoinableResourceBundle>();
+		bundles.add(bundle01);
+		bundles.add(bundle02);
+		bundles.add(bundle03);
+		bundles.add(msgBundle);
+		processor.processBundles(ctx, bundles);
+		
+		// bundle03 is compiled apart from the other modules
+		assertEquals(2, moduleGroups.size());
+		for (String bundle : Arrays.asList("bundle01", "bundle02", "bundle03", "msgBundle", "msgBundle@en", "msgBundle@fr")) {
+			String expected = FileUtils.readClassPathFile("global/postprocessor/google/closure/expectedResult/"+bundle+"_whitespace_compression.js");
+			assertEquals(expected, FileUtils.readFile(textDir.getPath()+"/myBundle/"+bundle+".js"));
+			
+			GZIPInputStream gzIn = new GZIPInputStream(new FileInputStream(new File(zipDir, "myBundle/"+bundle+".js")));
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			IOUtils.copy(gzIn, bos, true);
+			assertEquals(expected, new String(bos.toByteArray(), "UTF-8"));
+		}
+		
+		// Nothing goes through the closure working directories
+		assertFalse(new File(tempFolder.getRoot(), ClosureGlobalPostProcessor.GOOGLE_CLOSURE_TEMP_DIR).exists());
+		assertFalse(new File(tempFolder.getRoot(), ClosureGlobalPostProcessor.GOOGLE_CLOSURE_RESULT_TEXT_DIR).exists());
+		assertFalse(new File(textDir, "JAWR_ROOT_MODULE.js").exists());
+	}
+
+	@Test
+	public void testParallelPostProcessingWithAdvancedOptimizations() throws ResourceNotFoundException, Exception{
+		
+		File textDir = tempFolder.newFolder("text");
+		File zipDir = tempFolder.newFolder("gzip");
+		net.jawr.web.util.FileUtils.copyDirectory(new File(srcDir), textDir);
+		when(rsBundlesHandler.getBundleTextDirPath()).thenReturn(textDir.getPath());
+		when(rsBundlesHandler.getBundleZipDirPath()).thenReturn(zipDir.getPath());
+		when(rsHandler.getWorkingDirectory()).thenReturn(tempFolder.getRoot().getPath());
+		
+		Properties props = new Properties();
+		props.put("jawr.js.closure.modules", "bundle01:bundle02");
+		props.put("jawr.js.closure.externs", "extern.js");
+		props.put("jawr.js.closure.compilation_level", "ADVANCED_OPTIMIZATIONS");
+		props.put("jawr.js.closure.parallel", "true");
+		initProcessingContext(props);
+		
+		final List<String[]> moduleGroups = new ArrayList<String[]>();
+		processor = new ClosureGlobalPostProcessor() {
+			@Override
+			protected List<String[]> isolateModuleGroups(String[] args, List<String[]> moduleGroupArgs) {
+				moduleGroups.addAll(super.isolateModuleGroups(args, moduleGroupArgs));
+				return moduleGroups;
+			}
+		};
+		
+		List<JoinableResourceBundle> bundles = new ArrayList<JoinableResourceBundle>();
+		bundles.add(bundle01);
+		bundles.add(bundle02);
+		bundles.add(bundle03);
+		processor.processBundles(ctx, bundles);
+		
+		// bundle03 is compiled apart from the other modules, with its own rename prefix
+		assertEquals(2, moduleGroups.size());
+		assertFalse(moduleGroups.get(0)[1].equals(moduleGroups.get(1)[1]));
+		
+		// The top level names of the two groups don't collide
+		Set<String> firstGroupNames = getTopLevelNames(FileUtils.readFile(textDir.getPath()+"/myBundle/bundle01.js"));
+		firstGroupNames.addAll(getTopLevelNames(FileUtils.readFile(textDir.getPath()+"/myBundle/bundle02.js")));
+		Set<String> secondGroupNames = getTopLevelNames(FileUtils.readFile(textDir.getPath()+"/myBundle/bundle03.js"));
+		for (String name : secondGroupNames) {
+			assertFalse("The global '"+name+"' is defined by both groups", firstGroupNames.contains(name));
+		}
+	}
+	
+	@Test
+	public void testParallelPostProcessingWithAdvancedOptimizationsAndRenamePrefix() throws ResourceNotFoundException, Exception{
+		
+		File textDir = tempFolder.newFolder("text");
+		File zipDir = tempFolder.newFolder("gzip");
+		net.jawr.web.util.FileUtils.copyDirectory(new File(srcDir), textDir);
+		when(rsBundlesHandler.getBundleTextDirPath()).thenReturn(textDir.getPath());
+		when(rsBundlesHandler.getBundleZipDirPath()).thenReturn(zipDir.getPath());
+		when(rsHandler.getWorkingDirectory()).thenReturn(tempFolder.getRoot().getPath());
+		
+		Properties props = new Properties();
+		props.put("jawr.js.closure.modules", "bundle01:bundle02");
+		props.put("jawr.js.closure.externs", "extern.js");
+		props.put("jawr.js.closure.compilation_level", "ADVANCED_OPTIMIZATIONS");
+		props.put("jawr.js.closure.rename_prefix", "app_");
+		props.put("jawr.js.closure.parallel", "true");
+		initProcessingContext(props);
+		
+		final List<String[]> moduleGroups = new ArrayList<String[]>();
+		processor = new ClosureGlobalPostProcessor() {
+			@Override
+			protected List<String[]> isolateModuleGroups(String[] args, List<String[]> moduleGroupArgs) {
+				moduleGroups.addAll(super.isolateModuleGroups(args, moduleGroupArgs));
+				return moduleGroups;
+			}
+		};
+		
+		List<JoinableResourceBundle> bundles = new ArrayList<JoinableResourceBundle>();
+		bundles.add(bundle01);
+		bundles.add(bundle02);
+		bundles.add(bundle03);
+		processor.processBundles(ctx, bundles);
+		
+		// The groups can't be isolated, so all the modules are compiled together
+		assertEquals(1, moduleGroups.size());
+	}
+	
+	/**
+	 * Returns the names of the functions and variables declared at the top
+	 * level of a compiled script
+	 */
+	private Set<String> getTopLevelNames(String script) {
+		
+		Set<String> names = new HashSet<String>();
+		int depth = 0;
+		Matcher matcher = TOP_LEVEL_DECLARATION_PATTERN.matcher(script);
+		int pos = 0;
+		while (matcher.find()) {
+			for (int i = pos; i < matcher.start(); i++) {
+				char c = script.charAt(i);
+				if (c == '{' || c == '(') {
+					depth++;
+				} else if (c == '}' || c == ')') {
+					depth--;
+				}
+			}
+			pos = matcher.start();
+			if (depth == 0) {
+				for (String name : matcher.group(2).split(",")) {
+					names.add(name.split("=")[0].trim());
+				}
+			}
+		}
+		return names;
+	}
+
 	private void compareResult(String bundle) throws Exception {
 		compareResult(bundle, true);
 	}
@@ -0,0 +1,104 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package test.net.jawr.web.resource.bundle.global.preprocessor.css.smartsprites;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.jawr.web.resource.bundle.global.preprocessor.css.smartsprites.SmartSpritesBuildManifest;
+import net.jawr.web.resource.bundle.global.preprocessor.css.smartsprites.SmartSpritesBuildManifest.SpriteGroup;
+
+/**
+ * Test case for the manifest of the SmartSprites generation
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class SmartSpritesBuildManifestTestCase {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private static Set<String> set(String... values) {
+		return new TreeSet<String>(Arrays.asList(values));
+	}
+
+	@Test
+	public void testGetSpriteIds() {
+
+		String css = "/** sprite: mysprite; sprite-image: url('../img/mysprite.png'); sprite-layout: vertical */\n"
+				+ ".a { background-image: url(../img/a.png); /** sprite-ref: mysprite; */ }\n"
+				+ ".b { background-image: url(../img/b.png); /** sprite-ref: other; sprite-margin-left: 2px */ }\n"
+				+ ".c { background-image: url(../img/c.png); /** sprite-ref : mysprite */ }";
+		assertEquals(set("mysprite", "other"), SmartSpritesBuildManifest.getSpriteIds(css));
+		assertTrue(SmartSpritesBuildManifest.getSpriteIds(".a { color: red; }").isEmpty());
+	}
+
+	@Test
+	public void testGroupCssPaths() {
+
+		Map<String, Set<String>> spriteIds = new HashMap<String, Set<String>>();
+		spriteIds.put("/css/a.css", set("sprite1"));
+		spriteIds.put("/css/b.css", set("sprite2"));
+		spriteIds.put("/css/c.css", set("sprite1", "sprite2"));
+		spriteIds.put("/css/d.css", set("sprite3"));
+		spriteIds.put("/css/e.css", set());
+
+		List<SortedSet<String>> groups = SmartSpritesBuildManifest.groupCssPaths(spriteIds);
+		assertEquals(2, groups.size());
+		assertTrue(groups.contains(set("/css/a.css", "/css/b.css", "/css/c.css")));
+		assertTrue(groups.contains(set("/css/d.css")));
+	}
+
+	@Test
+	public void testStoreAndLoad() throws Exception {
+
+		File manifestFile = new File(tempFolder.getRoot(), "smartsprites.manifest");
+		SmartSpritesBuildManifest manifest = new SmartSpritesBuildManifest(manifestFile);
+		assertFalse(manifest.load());
+
+		manifest.putGroup("key1", new SpriteGroup("fingerprint1", set("/img/a.png", "/img/b.png"),
+				set("/css/a.css", "/img/sprite.png")));
+		manifest.putGroup("key2", new SpriteGroup("fingerprint2", new HashSet<String>(), set("/css/b.css")));
+		manifest.store();
+
+		manifest = new SmartSpritesBuildManifest(manifestFile);
+		assertTrue(manifest.load());
+		assertEquals(set("key1", "key2"), manifest.getGroupKeys());
+		SpriteGroup group = manifest.getGroup("key1");
+		assertEquals("fingerprint1", group.getFingerprint());
+		assertEquals(set("/img/a.png", "/img/b.png"), group.getImagePaths());
+		assertEquals(set("/css/a.css", "/img/sprite.png"), group.getGeneratedFiles());
+		assertTrue(manifest.getGroup("key2").getImagePaths().isEmpty());
+
+		manifest.clear();
+		assertFalse(manifestFile.exists());
+		assertNull(manifest.getGroup("key1"));
+	}
+}
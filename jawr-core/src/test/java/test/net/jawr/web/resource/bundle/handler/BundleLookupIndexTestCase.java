@@ -0,0 +1,99 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package test.net.jawr.web.resource.bundle.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.jawr.web.resource.bundle.JoinableResourceBundle;
+import net.jawr.web.resource.bundle.handler.BundleLookupIndex;
+import net.jawr.web.resource.bundle.iterator.BundlePath;
+
+/**
+ * Test case for the bundle lookup index
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class BundleLookupIndexTestCase {
+
+	private static JoinableResourceBundle createBundle(String id, List<String> paths, List<String> debugPaths) {
+
+		JoinableResourceBundle bundle = mock(JoinableResourceBundle.class);
+		when(bundle.getId()).thenReturn(id);
+		when(bundle.getItemPathList()).thenReturn(toBundlePaths(paths));
+		when(bundle.getItemDebugPathList()).thenReturn(toBundlePaths(debugPaths));
+		return bundle;
+	}
+
+	private static List<BundlePath> toBundlePaths(List<String> paths) {
+
+		List<BundlePath> bundlePaths = new ArrayList<BundlePath>();
+		for (String path : paths) {
+			bundlePaths.add(new BundlePath(null, path));
+		}
+		return bundlePaths;
+	}
+
+	@Test
+	public void testLookupByIdAndItemPath() {
+
+		JoinableResourceBundle lib = createBundle("/bundles/lib.js", Arrays.asList("/js/lib/a.js", "/js/lib/b.js"),
+				Collections.<String> emptyList());
+		JoinableResourceBundle app = createBundle("/bundles/app.js", Arrays.asList("/js/app/main.js"),
+				Arrays.asList("/js/app/debug.js"));
+		BundleLookupIndex index = new BundleLookupIndex(Arrays.asList(lib, app));
+
+		assertSame(lib, index.getBundle("/bundles/lib.js"));
+		assertSame(lib, index.getBundle("/js/lib/b.js"));
+		assertSame(app, index.getBundle("/bundles/app.js"));
+		assertSame(app, index.getBundle("/js/app/main.js"));
+		assertSame(app, index.getBundle("/js/app/debug.js"));
+		assertEquals(6, index.size());
+	}
+
+	@Test
+	public void testFirstMatchingBundleWins() {
+
+		JoinableResourceBundle first = createBundle("/bundles/first.js", Arrays.asList("/js/common.js"),
+				Collections.<String> emptyList());
+		JoinableResourceBundle second = createBundle("/bundles/second.js",
+				Arrays.asList("/js/common.js", "/bundles/first.js"), Collections.<String> emptyList());
+		BundleLookupIndex index = new BundleLookupIndex(Arrays.asList(first, second));
+
+		assertSame(first, index.getBundle("/js/common.js"));
+		assertSame(first, index.getBundle("/bundles/first.js"));
+	}
+
+	@Test
+	public void testUnknownPath() {
+
+		JoinableResourceBundle lib = createBundle("/bundles/lib.js", Arrays.asList("/js/lib/a.js"),
+				Collections.<String> emptyList());
+		BundleLookupIndex index = new BundleLookupIndex(Arrays.asList(lib));
+
+		assertNull(index.getBundle("/js/lib/"));
+		assertNull(index.getBundle("/js/lib/a.js.map"));
+		assertNull(new BundleLookupIndex(Collections.<JoinableResourceBundle> emptyList()).getBundle("/js/lib/a.js"));
+	}
+}
@@ -0,0 +1,401 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package test.net.jawr.web.resource.bundle.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.jawr.web.JawrConstant;
+import net.jawr.web.config.JawrConfig;
+import net.jawr.web.resource.bundle.IOUtils;
+import net.jawr.web.resource.bundle.JoinableResourceBundle;
+import net.jawr.web.resource.bundle.generator.GeneratorRegistry;
+import net.jawr.web.resource.bundle.handler.ClientSideHandlerGenerator;
+import net.jawr.web.resource.bundle.handler.ClientSideHandlerScriptRequestHandler;
+import net.jawr.web.resource.bundle.handler.ResourceBundlesHandler;
+import net.jawr.web.servlet.JawrRequestHandler;
+import test.net.jawr.web.servlet.mock.MockServletContext;
+
+/**
+ * Test case for the request handler of the client side handler script
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class ClientSideHandlerScriptRequestHandlerTestCase {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final String CONTEXT_PATH = "/ctx";
+
+	private JawrConfig config;
+
+	private MockServletContext servletContext;
+
+	private ResourceBundlesHandler rsHandler;
+
+	private CountingClientSideHandlerGenerator generator;
+
+	@Before
+	public void setUp() {
+
+		servletContext = new MockServletContext();
+		config = createConfig(JawrConstant.JS_TYPE);
+		config.setGzipResourcesModeOn(true);
+
+		generator = new CountingClientSideHandlerGenerator();
+		rsHandler = createBundlesHandler(config);
+		when(rsHandler.getClientSideHandler()).thenReturn(generator);
+	}
+
+	@Test
+	public void testGetRequestedHash() {
+
+		assertEquals("12345", ClientSideHandlerScriptRequestHandler.getRequestedHash("/jawr_loader.12345.js"));
+		assertEquals("N1a2b3", ClientSideHandlerScriptRequestHandler.getRequestedHash("/jawr_loader.N1a2b3.js"));
+		assertNull(ClientSideHandlerScriptRequestHandler.getRequestedHash(JawrRequestHandler.CLIENTSIDE_HANDLER_REQ_PATH));
+		assertNull(ClientSideHandlerScriptRequestHandler.getRequestedHash("/jawr_loader..js"));
+		assertNull(ClientSideHandlerScriptRequestHandler.getRequestedHash("/jawr_loader.123.456.js"));
+		assertNull(ClientSideHandlerScriptRequestHandler.getRequestedHash("/jawr_loader.123/456.js"));
+		assertNull(ClientSideHandlerScriptRequestHandler.getRequestedHash("/js/jawr_loader.12345.js"));
+		assertNull(ClientSideHandlerScriptRequestHandler.getRequestedHash(null));
+	}
+
+	@Test
+	public void testScriptPathRoutedToItsHash() {
+
+		ClientSideHandlerScriptRequestHandler handler = new ClientSideHandlerScriptRequestHandler(rsHandler, config);
+		String path = handler.getClientSideHandlerScriptPath(createRequest(null, null));
+		String hash = ClientSideHandlerScriptRequestHandler.getRequestedHash(path);
+
+		assertEquals(config.getBundleHashcodeGenerator().generateHashCode(config, generator.getLastScript()), hash);
+		assertEquals("/jawr_loader." + hash + ".js", path);
+	}
+
+	@Test
+	public void testLongLivedHeadersOnlyForMatchingHash() {
+
+		ClientSideHandlerScriptRequestHandler handler = new ClientSideHandlerScriptRequestHandler(rsHandler, config);
+		String hash = ClientSideHandlerScriptRequestHandler
+				.getRequestedHash(handler.getClientSideHandlerScriptPath(createRequest(null, null)));
+
+		HttpServletResponse response = createResponse(new ByteArrayServletOutputStream());
+		handler.handleClientSideHandlerRequest(createRequest(null, null), response, hash);
+		verify(response).setHeader(eq("Cache-Control"), anyString());
+		verify(response).setDateHeader(eq("Expires"), anyLong());
+
+		response = createResponse(new ByteArrayServletOutputStream());
+		handler.handleClientSideHandlerRequest(createRequest(null, null), response, "outdated");
+		verify(response, never()).setHeader(eq("Cache-Control"), anyString());
+		verify(response, never()).setDateHeader(eq("Expires"), anyLong());
+
+		response = createResponse(new ByteArrayServletOutputStream());
+		handler.handleClientSideHandlerRequest(createRequest(null, null), response);
+		verify(response, never()).setHeader(eq("Cache-Control"), anyString());
+		verify(response, never()).setDateHeader(eq("Expires"), anyLong());
+	}
+
+	@Test
+	public void testNotModifiedWithMatchingETag() throws Exception {
+
+		ClientSideHandlerScriptRequestHandler handler = new ClientSideHandlerScriptRequestHandler(rsHandler, config);
+		String hash = ClientSideHandlerScriptRequestHandler
+				.getRequestedHash(handler.getClientSideHandlerScriptPath(createRequest(null, null)));
+		String eTag = "\"" + hash + "\"";
+
+		HttpServletResponse response = createResponse(new ByteArrayServletOutputStream());
+		handler.handleClientSideHandlerRequest(createRequest(null, null), response);
+		verify(response).setHeader("ETag", eTag);
+		verify(response, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+
+		response = createResponse(new ByteArrayServletOutputStream());
+		handler.handleClientSideHandlerRequest(createRequest(null, "\"other\", W/" + eTag), response);
+		verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+		verify(response).setHeader("ETag", eTag);
+		verify(response, never()).getOutputStream();
+
+		response = createResponse(new ByteArrayServletOutputStream());
+		handler.handleClientSideHandlerRequest(createRequest(null, "\"other\""), response);
+		verify(response, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+		verify(response).getOutputStream();
+	}
+
+	@Test
+	public void testGzippedScript() throws Exception {
+
+		ClientSideHandlerScriptRequestHandler handler = new ClientSideHandlerScriptRequestHandler(rsHandler, config);
+		ByteArrayServletOutputStream out = new ByteArrayServletOutputStream();
+		HttpServletResponse response = createResponse(out);
+		handler.handleClientSideHandlerRequest(createRequest("gzip, deflate", null), response);
+
+		byte[] data = out.toByteArray();
+		String hash = config.getBundleHashcodeGenerator().generateHashCode(config, generator.getLastScript());
+		verify(response).setHeader("Content-Encoding", "gzip");
+		verify(response).setHeader("Vary", "Accept-Encoding");
+		verify(response).setHeader("ETag", "\"" + hash + "-gz\"");
+		verify(response).setContentLength(data.length);
+		assertTrue(generator.isLastGzip());
+		assertEquals(generator.getLastScript(), gunzip(data));
+
+		// The script is not gzipped if the request doesn't accept it
+		out = new ByteArrayServletOutputStream();
+		response = createResponse(out);
+		handler.handleClientSideHandlerRequest(createRequest(null, null), response);
+		verify(response, never()).setHeader(eq("Content-Encoding"), anyString());
+		verify(response).setContentLength(out.toByteArray().length);
+		assertEquals(generator.getLastScript(), new String(out.toByteArray(), UTF8));
+	}
+
+	@Test
+	public void testCacheSizeBound() {
+
+		config.setClientSideHandlerCacheSize(2);
+		ClientSideHandlerScriptRequestHandler handler = new ClientSideHandlerScriptRequestHandler(rsHandler, config);
+		handler.getClientSideHandlerScriptPath(createRequest(null, null));
+		handler.getClientSideHandlerScriptPath(createRequest("gzip", null));
+		handler.getClientSideHandlerScriptPath(createRequest(null, null));
+		handler.getClientSideHandlerScriptPath(createRequest("gzip", null));
+		assertEquals(2, generator.getCount());
+
+		config.setClientSideHandlerCacheSize(1);
+		generator = new CountingClientSideHandlerGenerator();
+		when(rsHandler.getClientSideHandler()).thenReturn(generator);
+		handler = new ClientSideHandlerScriptRequestHandler(rsHandler, config);
+		handler.getClientSideHandlerScriptPath(createRequest(null, null));
+		handler.getClientSideHandlerScriptPath(createRequest("gzip", null));
+		handler.getClientSideHandlerScriptPath(createRequest(null, null));
+		assertEquals(3, generator.getCount());
+	}
+
+	@Test
+	public void testInitPrecomputesScripts() {
+
+		ClientSideHandlerScriptRequestHandler handler = new ClientSideHandlerScriptRequestHandler(rsHandler, config);
+		handler.init(CONTEXT_PATH);
+		assertEquals(2, generator.getCount());
+
+		// The precomputed scripts are served without being generated again
+		handler.handleClientSideHandlerRequest(createRequest(null, null),
+				createResponse(new ByteArrayServletOutputStream()));
+		handler.handleClientSideHandlerRequest(createRequest("gzip", null),
+				createResponse(new ByteArrayServletOutputStream()));
+		assertEquals(2, generator.getCount());
+	}
+
+	@Test
+	public void testInitLimitedByCacheSize() {
+
+		config.setClientSideHandlerCacheSize(1);
+		ClientSideHandlerScriptRequestHandler handler = new ClientSideHandlerScriptRequestHandler(rsHandler, config);
+		handler.init(CONTEXT_PATH);
+		assertEquals(1, generator.getCount());
+	}
+
+	@Test
+	public void testNoPrecomputeInDebugMode() {
+
+		config.setDebugModeOn(true);
+		ClientSideHandlerScriptRequestHandler handler = new ClientSideHandlerScriptRequestHandler(rsHandler, config);
+		handler.init(CONTEXT_PATH);
+		assertEquals(0, generator.getCount());
+	}
+
+	@Test
+	public void testScriptRegeneratedAfterCssHandlerReload() {
+
+		servletContext.setAttribute(JawrConstant.CSS_CONTEXT_ATTRIBUTE,
+				createBundlesHandler(createConfig(JawrConstant.CSS_TYPE)));
+		ClientSideHandlerScriptRequestHandler handler = new ClientSideHandlerScriptRequestHandler(rsHandler, config);
+		String path = handler.getClientSideHandlerScriptPath(createRequest(null, null));
+		assertEquals(path, handler.getClientSideHandlerScriptPath(createRequest(null, null)));
+		assertEquals(1, generator.getCount());
+
+		// The CSS bundles handler is replaced when the CSS bundles are reloaded
+		servletContext.setAttribute(JawrConstant.CSS_CONTEXT_ATTRIBUTE,
+				createBundlesHandler(createConfig(JawrConstant.CSS_TYPE)));
+		String newPath = handler.getClientSideHandlerScriptPath(createRequest(null, null));
+		assertEquals(2, generator.getCount());
+		assertTrue(!path.equals(newPath));
+		assertEquals(newPath, handler.getClientSideHandlerScriptPath(createRequest(null, null)));
+		assertEquals(2, generator.getCount());
+	}
+
+	@Test
+	public void testScriptTagReferencesVersionedUrl() {
+
+		ClientSideHandlerScriptRequestHandler handler = new ClientSideHandlerScriptRequestHandler(rsHandler, config);
+		String path = handler.getClientSideHandlerScriptPath(createRequest(null, null));
+
+		assertEquals(CONTEXT_PATH + path, handler.getClientSideHandlerScriptUrl(createRequest(null, null)));
+		assertEquals("<script type=\"text/javascript\" src=\"" + CONTEXT_PATH + path + "\" ></script>",
+				handler.getClientSideHandlerScriptTag(createRequest(null, null)));
+
+		config.setServletMapping("jsJawrPath");
+		assertEquals(CONTEXT_PATH + "/jsJawrPath" + path, handler.getClientSideHandlerScriptUrl(createRequest(null, null)));
+	}
+
+	@Test
+	public void testScriptUrlWithContextPathOverride() {
+
+		config.setContextPathOverride("http://cdn.mycompany.com/");
+		config.setContextPathSslOverride("https://cdn.mycompany.com/");
+		ClientSideHandlerScriptRequestHandler handler = new ClientSideHandlerScriptRequestHandler(rsHandler, config);
+		String path = handler.getClientSideHandlerScriptPath(createRequest(null, null));
+
+		assertEquals("http://cdn.mycompany.com" + path, handler.getClientSideHandlerScriptUrl(createRequest(null, null)));
+
+		HttpServletRequest secureRequest = createRequest(null, null);
+		when(secureRequest.isSecure()).thenReturn(true);
+		assertEquals("https://cdn.mycompany.com" + path, handler.getClientSideHandlerScriptUrl(secureRequest));
+	}
+
+	private JawrConfig createConfig(String resourceType) {
+
+		JawrConfig jawrConfig = new JawrConfig(resourceType, new Properties());
+		jawrConfig.setCharsetName("UTF-8");
+		jawrConfig.setContext(servletContext);
+		GeneratorRegistry generatorRegistry = new GeneratorRegistry(resourceType);
+		generatorRegistry.setConfig(jawrConfig);
+		jawrConfig.setGeneratorRegistry(generatorRegistry);
+		return jawrConfig;
+	}
+
+	private ResourceBundlesHandler createBundlesHandler(JawrConfig jawrConfig) {
+
+		ResourceBundlesHandler bundlesHandler = mock(ResourceBundlesHandler.class);
+		when(bundlesHandler.getConfig()).thenReturn(jawrConfig);
+		when(bundlesHandler.getGlobalBundles()).thenReturn(Collections.<JoinableResourceBundle> emptyList());
+		when(bundlesHandler.getContextBundles()).thenReturn(Collections.<JoinableResourceBundle> emptyList());
+		return bundlesHandler;
+	}
+
+	private HttpServletRequest createRequest(String acceptEncoding, String ifNoneMatch) {
+
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		when(request.getContextPath()).thenReturn(CONTEXT_PATH);
+		when(request.getHeader("Accept-Encoding")).thenReturn(acceptEncoding);
+		when(request.getHeader("If-None-Match")).thenReturn(ifNoneMatch);
+		when(request.getDateHeader("If-Modified-Since")).thenReturn(-1L);
+		return request;
+	}
+
+	private HttpServletResponse createResponse(ServletOutputStream out) {
+
+		HttpServletResponse response = mock(HttpServletResponse.class);
+		try {
+			when(response.getOutputStream()).thenReturn(out);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return response;
+	}
+
+	private String gunzip(byte[] data) throws IOException {
+
+		GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data));
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		IOUtils.copy(in, result);
+		return new String(result.toByteArray(), UTF8);
+	}
+
+	/**
+	 * Servlet output stream which keeps the written bytes
+	 */
+	private static class ByteArrayServletOutputStream extends ServletOutputStream {
+
+		private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+		}
+
+		public byte[] toByteArray() {
+			return out.toByteArray();
+		}
+	}
+
+	/**
+	 * Client side handler generator which counts the generated scripts. Each
+	 * generated script is different, so its hash changes.
+	 */
+	private static class CountingClientSideHandlerGenerator implements ClientSideHandlerGenerator {
+
+		private int count;
+
+		private String lastScript;
+
+		private boolean lastGzip;
+
+		@Override
+		public void init(JawrConfig config, List<JoinableResourceBundle> globalBundles,
+				List<JoinableResourceBundle> contextBundles) {
+		}
+
+		@Override
+		public StringBuffer getClientSideHandlerScript(HttpServletRequest request) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public synchronized StringBuffer getClientSideHandlerScript(String contextPath, Map<String, String> variants,
+				Map<String, String> cssVariants, boolean secure, boolean useGzip) {
+			count++;
+			lastGzip = useGzip;
+			lastScript = "var handler" + count + " = '" + contextPath + "';";
+			return new StringBuffer(lastScript);
+		}
+
+		@Override
+		public StringBuffer getClientSideBundles(Map<String, String> variantMap, boolean useGzip) {
+			return new StringBuffer();
+		}
+
+		public synchronized int getCount() {
+			return count;
+		}
+
+		public synchronized String getLastScript() {
+			return lastScript;
+		}
+
+		public synchronized boolean isLastGzip() {
+			return lastGzip;
+		}
+	}
+}
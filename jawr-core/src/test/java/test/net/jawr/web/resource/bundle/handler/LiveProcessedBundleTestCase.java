@@ -0,0 +1,88 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package test.net.jawr.web.resource.bundle.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+import net.jawr.web.JawrConstant;
+import net.jawr.web.resource.bundle.handler.LiveProcessedBundle;
+import net.jawr.web.resource.bundle.IOUtils;
+
+/**
+ * Test case for the live processed bundle
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class LiveProcessedBundleTestCase {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final String CONTENT = "var a='" + JawrConstant.JAWR_BUNDLE_PATH_PLACEHOLDER + "';var b='"
+			+ JawrConstant.JAWR_BUNDLE_PATH_PLACEHOLDER + "';";
+
+	@Test
+	public void testWriteReplacesPlaceholders() throws Exception {
+
+		LiveProcessedBundle bundle = new LiveProcessedBundle(CONTENT, UTF_8, 2);
+		StringWriter writer = new StringWriter();
+		bundle.writeTo(writer, "/app/js/bundle.js");
+		assertEquals("var a='/app/js/bundle.js';var b='/app/js/bundle.js';", writer.toString());
+
+		writer = new StringWriter();
+		bundle.writeTo(writer, null);
+		assertEquals(CONTENT, writer.toString());
+	}
+
+	@Test
+	public void testGzippedContentIsCachedPerUrl() throws Exception {
+
+		LiveProcessedBundle bundle = new LiveProcessedBundle(CONTENT, UTF_8, 2);
+		byte[] data = bundle.getGzippedContent("/a.js");
+		assertSame(data, bundle.getGzippedContent("/a.js"));
+		assertEquals("var a='/a.js';var b='/a.js';", gunzip(data));
+
+		bundle.getGzippedContent("/b.js");
+		bundle.getGzippedContent("/c.js");
+		assertEquals(2, bundle.getCachedUrlCount());
+	}
+
+	@Test
+	public void testGzippedContentNotCachedWithoutCacheSize() throws Exception {
+
+		LiveProcessedBundle bundle = new LiveProcessedBundle(CONTENT, UTF_8, 0);
+		assertEquals("var a='/a.js';var b='/a.js';", gunzip(bundle.getGzippedContent("/a.js")));
+		assertEquals(0, bundle.getCachedUrlCount());
+
+		bundle = new LiveProcessedBundle(CONTENT, UTF_8, -1);
+		assertEquals("var a='/a.js';var b='/a.js';", gunzip(bundle.getGzippedContent("/a.js")));
+		assertEquals(0, bundle.getCachedUrlCount());
+	}
+
+	private String gunzip(byte[] data) throws Exception {
+		Reader rd = new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(data)), UTF_8);
+		StringWriter writer = new StringWriter();
+		IOUtils.copy(rd, writer, true);
+		return writer.toString();
+	}
+}
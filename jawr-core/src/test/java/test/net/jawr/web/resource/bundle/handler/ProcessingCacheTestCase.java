@@ -0,0 +1,124 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package test.net.jawr.web.resource.bundle.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.jawr.web.resource.bundle.handler.ProcessingCache;
+import net.jawr.web.resource.bundle.handler.ProcessingCache.ProcessedContent;
+import net.jawr.web.resource.bundle.variant.VariantSet;
+
+/**
+ * Test case for the persistent processing cache
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class ProcessingCacheTestCase {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private static ProcessedContent createContent(String content) {
+		return new ProcessedContent(content, Collections.<String, VariantSet> emptyMap());
+	}
+
+	@Test
+	public void testStoredContentIsAvailableAfterRestart() throws Exception {
+
+		File cacheDir = tempFolder.newFolder("cache");
+		Map<String, VariantSet> variants = new HashMap<String, VariantSet>();
+		variants.put("browser", new VariantSet("browser", "", new String[] { "", "ie6", "ie7" }));
+		new ProcessingCache(cacheDir, 1024 * 1024).put("key1", new ProcessedContent("var a = 'é';", variants));
+
+		ProcessingCache cache = new ProcessingCache(cacheDir, 1024 * 1024);
+		ProcessedContent content = cache.get("key1");
+		assertNotNull(content);
+		assertEquals("var a = 'é';", content.getContent());
+		assertEquals(variants, content.getPostProcessVariants());
+		assertEquals("", content.getPostProcessVariants().get("browser").getDefaultVariant());
+		assertNull(cache.get("key2"));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertTrue(cache.getSize() > 0);
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEntriesAreEvicted() throws Exception {
+
+		File cacheDir = tempFolder.newFolder("cache");
+		StringBuilder data = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			data.append('a');
+		}
+		ProcessingCache cache = new ProcessingCache(cacheDir, 2500);
+		cache.put("key1", createContent(data.toString()));
+		cache.put("key2", createContent(data.toString()));
+		new File(cacheDir, "key1" + ProcessingCache.ENTRY_FILE_SUFFIX).setLastModified(System.currentTimeMillis() - 20000);
+		new File(cacheDir, "key2" + ProcessingCache.ENTRY_FILE_SUFFIX).setLastModified(System.currentTimeMillis() - 10000);
+
+		// The access to the first entry makes the second one the least
+		// recently used
+		assertNotNull(cache.get("key1"));
+		cache.put("key3", createContent(data.toString()));
+
+		assertNotNull(cache.get("key1"));
+		assertNull(cache.get("key2"));
+		assertNotNull(cache.get("key3"));
+		assertTrue(cache.getSize() <= 2500);
+	}
+
+	@Test
+	public void testInvalidEntryIsIgnored() throws Exception {
+
+		File cacheDir = tempFolder.newFolder("cache");
+		File entryFile = new File(cacheDir, "key1" + ProcessingCache.ENTRY_FILE_SUFFIX);
+		FileOutputStream out = new FileOutputStream(entryFile);
+		out.write("invalid entry".getBytes("UTF-8"));
+		out.close();
+
+		ProcessingCache cache = new ProcessingCache(cacheDir, 1024 * 1024);
+		assertNull(cache.get("key1"));
+		assertFalse(entryFile.exists());
+	}
+
+	@Test
+	public void testSeedFromBuildCache() throws Exception {
+
+		File buildCacheDir = tempFolder.newFolder("build");
+		ProcessingCache buildCache = new ProcessingCache(buildCacheDir, 1024 * 1024);
+		buildCache.put("key1", createContent("content1"));
+		buildCache.put("key2", createContent("content2"));
+
+		ProcessingCache cache = new ProcessingCache(tempFolder.newFolder("cache"), 1024 * 1024);
+		cache.put("key2", createContent("local content2"));
+		assertEquals(1, ProcessingCache.seed(buildCacheDir, cache));
+
+		assertEquals("content1", cache.get("key1").getContent());
+		assertEquals("local content2", cache.get("key2").getContent());
+	}
+}
@@ -1,17 +1,33 @@
 package test.net.jawr.web.resource.bundle.handler;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
 
+import org.mockito.Mockito;
+
+import net.jawr.web.cache.CacheManagerFactory;
 import net.jawr.web.config.JawrConfig;
 import net.jawr.web.exception.ResourceNotFoundException;
 import net.jawr.web.resource.bundle.JoinableResourceBundle;
+import net.jawr.web.resource.bundle.JoinableResourceBundleContent;
 import net.jawr.web.resource.bundle.generator.GeneratorRegistry;
+import net.jawr.web.resource.bundle.handler.CachedResourceBundlesHandler;
+import net.jawr.web.resource.bundle.handler.ProcessingCache;
+import net.jawr.web.resource.bundle.handler.ProcessingCache.ProcessedContent;
 import net.jawr.web.resource.bundle.handler.ResourceBundlesHandler;
 import net.jawr.web.resource.bundle.iterator.ResourceBundlePathsIterator;
+import net.jawr.web.resource.bundle.variant.VariantSet;
 import net.jawr.web.resource.handler.bundle.ResourceBundleHandler;
 import net.jawr.web.resource.handler.reader.ResourceReaderHandler;
+import test.net.jawr.web.FileUtils;
 import test.net.jawr.web.resource.bundle.PredefinedBundlesHandlerUtil;
 import test.net.jawr.web.servlet.mock.MockServletContext;
 
@@ -117,6 +133,226 @@ public class ResourceBundlesHandlerImplTest  extends  ResourceHandlerBasedTest {
 		assertTrue("Nothing was written to the file", writer.getBuffer().length() > 0);
 	}
 
+	public void testGetBundleTextBytes() throws Exception {
+
+		StringWriter writer = new StringWriter();
+		simpleHandler.writeBundleTo("/dummy/js/one.js", writer);
+		byte[] expected = writer.toString().getBytes("UTF-8");
+		assertTrue(Arrays.equals(expected, simpleHandler.getBundleTextBytes("/dummy/js/one.js")));
+
+		// The cached handler keeps the encoded text
+		ResourceBundlesHandler cachedHandler = new CachedResourceBundlesHandler(simpleHandler);
+		byte[] cachedText = cachedHandler.getBundleTextBytes("/dummy/js/one.js");
+		assertTrue(Arrays.equals(expected, cachedText));
+		assertSame(cachedText, cachedHandler.getBundleTextBytes("/dummy/js/one.js"));
+
+		writer = new StringWriter();
+		cachedHandler.writeBundleTo("/dummy/js/one.js", writer);
+		assertEquals(new String(expected, "UTF-8"), writer.toString());
+
+		// The text bytes are streamed without being decoded through a writer
+		CacheManagerFactory.resetCacheManager(simpleHandler.getConfig(), "js");
+		ResourceBundlesHandler spiedHandler = Mockito.spy(simpleHandler);
+		cachedHandler = new CachedResourceBundlesHandler(spiedHandler);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		cachedHandler.streamBundleTo("/dummy/js/one.js", null, out);
+		assertTrue(Arrays.equals(expected, out.toByteArray()));
+		Mockito.verify(spiedHandler, Mockito.never()).writeBundleTo(Mockito.anyString(), Mockito.any(Writer.class));
+	}
+
+	public void testParallelProcessingMatchesSequentialProcessing() throws Exception {
+
+		Charset charsetUtf = Charset.forName("UTF-8");
+		JawrConfig config = new JawrConfig("js", new Properties());
+		config.setCharsetName("UTF-8");
+		config.setDebugModeOn(false);
+		config.setGzipResourcesModeOn(false);
+		config.setBundleProcessingThreadCount(4);
+		GeneratorRegistry generatorRegistry = new GeneratorRegistry();
+		config.setGeneratorRegistry(generatorRegistry);
+		generatorRegistry.setConfig(config);
+		config.setContext(new MockServletContext());
+
+		ResourceBundlesHandler parallelHandler = PredefinedBundlesHandlerUtil.buildSimpleBundles(
+				createResourceReaderHandler(ROOT_SIMPLE_FOLDER, "js", charsetUtf),
+				createResourceBundleHandler(ROOT_SIMPLE_FOLDER, charsetUtf), "/js", "js", config);
+
+		List<JoinableResourceBundle> expectedBundles = new ArrayList<JoinableResourceBundle>(simpleHandler.getGlobalBundles());
+		expectedBundles.addAll(simpleHandler.getContextBundles());
+		assertTrue(expectedBundles.size() > 1);
+		for (JoinableResourceBundle expected : expectedBundles) {
+			JoinableResourceBundle bundle = parallelHandler.resolveBundleForPath(expected.getId());
+			assertEquals(expected.getBundleDataHashCode(null), bundle.getBundleDataHashCode(null));
+		}
+	}
+
+	public void testIncrementalProcessingReusesUnchangedBundles() throws Exception {
+
+		Charset charsetUtf = Charset.forName("UTF-8");
+		MockServletContext context = new MockServletContext();
+		ResourceBundleHandler bundleHandler = createResourceBundleHandler(ROOT_SIMPLE_FOLDER, charsetUtf);
+
+		ResourceBundlesHandler firstHandler = buildIncrementalSimpleBundles(context, bundleHandler, true);
+		String hashcode = firstHandler.resolveBundleForPath("/global.js").getBundleDataHashCode(null);
+
+		// Alter the stored bundle to check that the bundle is not processed again
+		bundleHandler.storeBundle("/global.js", new JoinableResourceBundleContent(new StringBuffer("/* unchanged bundle */")));
+
+		ResourceBundlesHandler secondHandler = buildIncrementalSimpleBundles(context, bundleHandler, true);
+		assertEquals(hashcode, secondHandler.resolveBundleForPath("/global.js").getBundleDataHashCode(null));
+		StringWriter writer = new StringWriter();
+		secondHandler.writeBundleTo("/dummy/global.js", writer);
+		assertEquals("/* unchanged bundle */", writer.toString());
+
+		ResourceBundlesHandler fullHandler = buildIncrementalSimpleBundles(context, bundleHandler, false);
+		writer = new StringWriter();
+		fullHandler.writeBundleTo("/dummy/global.js", writer);
+		assertFalse("/* unchanged bundle */".equals(writer.toString()));
+	}
+
+	public void testRebuildBundlesProcessesOnlyTheGivenBundles() throws Exception {
+
+		Charset charsetUtf = Charset.forName("UTF-8");
+		MockServletContext context = new MockServletContext();
+		ResourceBundleHandler bundleHandler = createResourceBundleHandler(ROOT_SIMPLE_FOLDER, charsetUtf);
+
+		ResourceBundlesHandler handler = buildIncrementalSimpleBundles(context, bundleHandler, false);
+		StringWriter writer = new StringWriter();
+		handler.writeBundleTo("/dummy/global.js", writer);
+		String processedContent = writer.toString();
+
+		// Alter the stored bundles to check which bundles are processed again
+		bundleHandler.storeBundle("/global.js", new JoinableResourceBundleContent(new StringBuffer("/* altered bundle */")));
+		bundleHandler.storeBundle("/library.js", new JoinableResourceBundleContent(new StringBuffer("/* altered bundle */")));
+
+		handler.rebuildBundles(Collections.singleton("/global.js"));
+
+		writer = new StringWriter();
+		handler.writeBundleTo("/dummy/global.js", writer);
+		assertEquals(processedContent, writer.toString());
+		writer = new StringWriter();
+		handler.writeBundleTo("/dummy/library.js", writer);
+		assertEquals("/* altered bundle */", writer.toString());
+	}
+
+	public void testProcessingCacheReusesProcessedContent() throws Exception {
+
+		File cacheDir = File.createTempFile("jawrProcessingCache", "");
+		cacheDir.delete();
+		try {
+			Charset charsetUtf = Charset.forName("UTF-8");
+			MockServletContext context = new MockServletContext();
+			ResourceBundleHandler bundleHandler = createResourceBundleHandler(ROOT_SIMPLE_FOLDER, charsetUtf);
+
+			ResourceBundlesHandler firstHandler = buildSimpleBundles(context, bundleHandler, false, cacheDir);
+			StringWriter writer = new StringWriter();
+			firstHandler.writeBundleTo("/dummy/global.js", writer);
+			String processedContent = writer.toString();
+
+			// Alter the cached contents to check that the bundles are not
+			// processed again
+			ProcessingCache cache = new ProcessingCache(cacheDir, 1024 * 1024);
+			File[] entryFiles = cacheDir.listFiles();
+			assertTrue(entryFiles.length > 0);
+			for (File entryFile : entryFiles) {
+				String key = entryFile.getName().replace(ProcessingCache.ENTRY_FILE_SUFFIX, "");
+				String content = cache.get(key).getContent();
+				if (content.equals(processedContent)) {
+					cache.put(key, new ProcessedContent("/* cached bundle */",
+							Collections.<String, VariantSet> emptyMap()));
+				}
+			}
+
+			ResourceBundlesHandler secondHandler = buildSimpleBundles(context, bundleHandler, false, cacheDir);
+			writer = new StringWriter();
+			secondHandler.writeBundleTo("/dummy/global.js", writer);
+			assertEquals("/* cached bundle */", writer.toString());
+		} finally {
+			FileUtils.deleteDirectory(cacheDir);
+		}
+	}
+
+	public void testProcessingCacheKeyIgnoresUnrelatedProperties() throws Exception {
+
+		File cacheDir = File.createTempFile("jawrProcessingCache", "");
+		cacheDir.delete();
+		try {
+			Charset charsetUtf = Charset.forName("UTF-8");
+			MockServletContext context = new MockServletContext();
+			ResourceBundleHandler bundleHandler = createResourceBundleHandler(ROOT_SIMPLE_FOLDER, charsetUtf);
+
+			ResourceBundlesHandler firstHandler = buildSimpleBundles(context, bundleHandler, false, cacheDir);
+			StringWriter writer = new StringWriter();
+			firstHandler.writeBundleTo("/dummy/global.js", writer);
+			String processedContent = writer.toString();
+
+			ProcessingCache cache = new ProcessingCache(cacheDir, 1024 * 1024);
+			for (File entryFile : cacheDir.listFiles()) {
+				String key = entryFile.getName().replace(ProcessingCache.ENTRY_FILE_SUFFIX, "");
+				if (cache.get(key).getContent().equals(processedContent)) {
+					cache.put(key, new ProcessedContent("/* cached bundle */",
+							Collections.<String, VariantSet> emptyMap()));
+				}
+			}
+
+			// The properties which don't change the processed content
+			Properties props = new Properties();
+			props.put("jawr.config.reload.interval", "5");
+			props.put("jawr.gzip.on", "false");
+			props.put("jawr.strict.mode", "true");
+			props.put("jawr.css.bundle.style.id", "/style.css");
+			props.put("jawr.js.bundle.other.id", "/other.js");
+			props.put("custom.property", "value");
+			ResourceBundlesHandler secondHandler = buildSimpleBundles(context, bundleHandler, false, cacheDir, props);
+			writer = new StringWriter();
+			secondHandler.writeBundleTo("/dummy/global.js", writer);
+			assertEquals("/* cached bundle */", writer.toString());
+
+			// A post processor option changes the key
+			props.put("jawr.js.closure.compilation_level", "WHITESPACE_ONLY");
+			ResourceBundlesHandler thirdHandler = buildSimpleBundles(context, bundleHandler, false, cacheDir, props);
+			writer = new StringWriter();
+			thirdHandler.writeBundleTo("/dummy/global.js", writer);
+			assertEquals(processedContent, writer.toString());
+		} finally {
+			FileUtils.deleteDirectory(cacheDir);
+		}
+	}
+
+	private ResourceBundlesHandler buildIncrementalSimpleBundles(MockServletContext context,
+			ResourceBundleHandler bundleHandler, boolean incremental) throws Exception {
+		return buildSimpleBundles(context, bundleHandler, incremental, null);
+	}
+
+	private ResourceBundlesHandler buildSimpleBundles(MockServletContext context,
+			ResourceBundleHandler bundleHandler, boolean incremental, File processingCacheDir) throws Exception {
+		return buildSimpleBundles(context, bundleHandler, incremental, processingCacheDir, new Properties());
+	}
+
+	private ResourceBundlesHandler buildSimpleBundles(MockServletContext context,
+			ResourceBundleHandler bundleHandler, boolean incremental, File processingCacheDir, Properties props)
+					throws Exception {
+
+		JawrConfig config = new JawrConfig("js", props);
+		config.setCharsetName("UTF-8");
+		config.setDebugModeOn(false);
+		config.setGzipResourcesModeOn(false);
+		config.setIncrementalBundleProcessing(incremental);
+		if (processingCacheDir != null) {
+			config.setUseProcessingCache(true);
+			config.setProcessingCacheDirectory(processingCacheDir.getAbsolutePath());
+		}
+		GeneratorRegistry generatorRegistry = new GeneratorRegistry();
+		config.setGeneratorRegistry(generatorRegistry);
+		generatorRegistry.setConfig(config);
+		config.setContext(context);
+		CacheManagerFactory.resetCacheManager(config, "js");
+
+		return PredefinedBundlesHandlerUtil.buildSimpleBundles(
+				createResourceReaderHandler(ROOT_SIMPLE_FOLDER, "js", Charset.forName("UTF-8")), bundleHandler,
+				"/js", "js", config);
+	}
+
 	public void testResolveCollectionForPath() {
 		assertEquals("Get script by id failed","/script.js", defaultHandler.resolveBundleForPath("/script.js").getId());
 		assertEquals("Get script by script name failed","/script.js", defaultHandler.resolveBundleForPath("/js/script1.js").getId());
@@ -71,6 +71,7 @@ public class AutoPrefixerTest {
 		when(config.getContext()).thenReturn(context);
 
 		when(config.getJavascriptEngineName(Matchers.anyString())).thenReturn(jsEngineName);
+		when(config.getJavascriptEnginePoolSize()).thenReturn(JawrConstant.DEFAULT_JS_ENGINE_POOL_SIZE);
 		when(config.getProperty(AUTOPREFIXER_SCRIPT_OPTIONS, AUTOPREFIXER_DEFAULT_OPTIONS))
 				.thenReturn(AUTOPREFIXER_DEFAULT_OPTIONS);
 		when(config.getProperty(AUTOPREFIXER_SCRIPT_LOCATION, AUTOPREFIXER_SCRIPT_DEFAULT_LOCATION))
@@ -4,12 +4,14 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.when;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 import java.util.Properties;
 
 import net.jawr.web.config.JawrConfig;
 import net.jawr.web.resource.bundle.JoinableResourceBundle;
+import net.jawr.web.resource.bundle.postprocess.AbstractChainedResourceBundlePostProcessor;
 import net.jawr.web.resource.bundle.postprocess.BundleProcessingStatus;
 import net.jawr.web.resource.bundle.postprocess.impl.JSMinPostProcessor;
 
@@ -137,5 +139,40 @@ public class JSMinPostProcessorTest {
 		// Not really testing JSMin, that is supposed to work. 
 		assertEquals("function test(mStyle){return/(url\\s*\\(.*?){3}/.test(mStyle.background);}", ret.toString());
 	}
-	
+
+	@Test
+	public void testStreamingPostProcessBundle() {
+		String script = "//comment\r\n        \talert('áéñí');\r\nvar a = 1;\r\n";
+		JawrConfig config = new JawrConfig("js", new Properties());
+		config.setCharsetName("UTF-8");
+		JSMinPostProcessor processor = new JSMinPostProcessor();
+		BundleProcessingStatus status = new BundleProcessingStatus(BundleProcessingStatus.BUNDLE_PROCESSING_TYPE, bundle,null,config);
+
+		StringBuilder ret = new StringBuilder();
+		processor.postProcessBundle(status, new StringBuilder(script), ret);
+
+		assertEquals(processor.postProcessBundle(status, new StringBuffer(script)).toString(), ret.toString());
+		assertEquals("alert('áéñí');var a=1;", ret.toString());
+	}
+
+	@Test
+	public void testStreamingPostProcessBundleWithLegacyNextProcessor() {
+		String script = "function test() { return 'a'; }";
+		JawrConfig config = new JawrConfig("js", new Properties());
+		config.setCharsetName("UTF-8");
+		JSMinPostProcessor processor = new JSMinPostProcessor();
+		processor.addNextProcessor(new AbstractChainedResourceBundlePostProcessor("upperCase") {
+
+			@Override
+			protected StringBuffer doPostProcessBundle(BundleProcessingStatus status, StringBuffer bundleData)
+					throws IOException {
+				return new StringBuffer(bundleData.toString().toUpperCase());
+			}
+		});
+		BundleProcessingStatus status = new BundleProcessingStatus(BundleProcessingStatus.BUNDLE_PROCESSING_TYPE, bundle,null,config);
+
+		StringBuilder ret = new StringBuilder();
+		processor.postProcessBundle(status, script, ret);
+		assertEquals("FUNCTION TEST(){RETURN'A';}", ret.toString());
+	}
 }
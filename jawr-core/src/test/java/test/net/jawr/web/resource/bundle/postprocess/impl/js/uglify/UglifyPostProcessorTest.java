@@ -69,6 +69,7 @@ public class UglifyPostProcessorTest {
 				JawrConstant.DEFAULT_JS_ENGINE);
 		when(config.getJavascriptEngineName(Matchers.anyString())).thenReturn(
 				JawrConstant.DEFAULT_JS_ENGINE);
+		when(config.getJavascriptEnginePoolSize()).thenReturn(JawrConstant.DEFAULT_JS_ENGINE_POOL_SIZE);
 		when(config.getContext()).thenReturn(context);
 		when(config.getConfigProperties()).thenReturn(new Properties());
 		when(bundle.getId()).thenReturn("/myJsBundle.js");
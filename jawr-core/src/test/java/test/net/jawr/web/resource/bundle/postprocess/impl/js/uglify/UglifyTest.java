@@ -78,6 +78,7 @@ public class UglifyTest {
 		when(config.getContext()).thenReturn(context);
 		when(config.getJavascriptEngineName(Matchers.anyString())).thenReturn(
 				JawrConstant.DEFAULT_JS_ENGINE);
+		when(config.getJavascriptEnginePoolSize()).thenReturn(JawrConstant.DEFAULT_JS_ENGINE_POOL_SIZE);
 		when(context.getResourceAsStream(anyString())).thenReturn(null);
 	}
 
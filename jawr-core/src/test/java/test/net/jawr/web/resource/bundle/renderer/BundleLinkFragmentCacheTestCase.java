@@ -0,0 +1,78 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package test.net.jawr.web.resource.bundle.renderer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import net.jawr.web.resource.bundle.renderer.BundleLinkFragmentCache;
+import net.jawr.web.resource.bundle.renderer.BundleLinkFragmentCache.BundleLinkFragment;
+import net.jawr.web.resource.bundle.renderer.BundleRendererContext;
+
+/**
+ * Test case for the cache of the rendered link fragments
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class BundleLinkFragmentCacheTestCase {
+
+	private static final String RENDERER = "renderer";
+
+	@Test
+	public void testLeastRecentlyUsedFragmentEvicted() {
+
+		BundleLinkFragmentCache cache = new BundleLinkFragmentCache(2);
+		BundleLinkFragment first = createFragment("first");
+		BundleLinkFragment second = createFragment("second");
+		cache.put("first", first);
+		cache.put("second", second);
+
+		// The first fragment is used, so the second one is the least recently
+		// used
+		assertSame(first, cache.get("first", RENDERER));
+		cache.put("third", createFragment("third"));
+
+		assertEquals(2, cache.getEntryCount());
+		assertEquals(2, cache.getMaxEntries());
+		assertSame(first, cache.get("first", RENDERER));
+		assertNull(cache.get("second", RENDERER));
+		assertNotNull(cache.get("third", RENDERER));
+	}
+
+	@Test
+	public void testNewFragmentsCachedWhenFull() {
+
+		BundleLinkFragmentCache cache = new BundleLinkFragmentCache(1);
+		cache.put("first", createFragment("first"));
+		cache.put("second", createFragment("second"));
+
+		assertEquals(1, cache.getEntryCount());
+		assertNull(cache.get("first", RENDERER));
+		assertNotNull(cache.get("second", RENDERER));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	private BundleLinkFragment createFragment(String content) {
+
+		BundleRendererContext ctx = new BundleRendererContext("/ctx", null, false, false);
+		return new BundleLinkFragment(content, Collections.<String> emptySet(), null, ctx);
+	}
+}
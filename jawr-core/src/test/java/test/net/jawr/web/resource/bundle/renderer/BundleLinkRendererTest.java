@@ -21,6 +21,7 @@ import net.jawr.web.config.JawrConfig;
 import net.jawr.web.exception.BundleDependencyException;
 import net.jawr.web.exception.DuplicateBundlePathException;
 import net.jawr.web.resource.bundle.handler.ResourceBundlesHandler;
+import net.jawr.web.resource.bundle.renderer.BundleLinkFragmentCache;
 import net.jawr.web.resource.bundle.renderer.BundleRenderer;
 import net.jawr.web.resource.bundle.renderer.BundleRendererContext;
 import net.jawr.web.resource.bundle.renderer.CSSHTMLBundleLinkRenderer;
@@ -1563,4 +1564,52 @@ public class BundleLinkRendererTest extends ResourceHandlerBasedTest {
 
 	}
 
+	@Test
+	public void testWriteJSBundleLinksFromFragmentCache() {
+		jawrConfig.setDebugModeOn(false);
+		BundleLinkFragmentCache fragmentCache = jsHandler.getLinkFragmentCache();
+		assertNotNull(fragmentCache);
+		fragmentCache.resetStatistics();
+
+		BundleRendererContext firstCtx = new BundleRendererContext(JS_CTX_PATH,
+				null, true, false);
+		String firstResult = renderToString(jsRenderer, "/js/one/one2.js",
+				firstCtx);
+		assertEquals(0, fragmentCache.getHitCount());
+		assertEquals(1, fragmentCache.getMissCount());
+
+		// The same rendering for another page is served from the cache, and
+		// updates the context in the same way
+		BundleRendererContext secondCtx = new BundleRendererContext(
+				JS_CTX_PATH, null, true, false);
+		String secondResult = renderToString(jsRenderer, "/js/one/one2.js",
+				secondCtx);
+		assertEquals(firstResult, secondResult);
+		assertEquals(1, fragmentCache.getHitCount());
+		assertEquals(firstCtx.getIncludedBundles(),
+				secondCtx.getIncludedBundles());
+		assertTrue(secondCtx.isGlobalBundleAdded());
+		assertEquals(0.5, fragmentCache.getRendererHitRatio(
+				JavascriptHTMLBundleLinkRenderer.class.getSimpleName()), 0.0001);
+
+		// The bundles already included are part of the key
+		String result = renderToString(jsRenderer, "/js/one/one2.js", secondCtx);
+		assertTrue("Tags were repeated", StringUtils.isEmpty(result));
+		assertEquals(2, fragmentCache.getMissCount());
+
+		// A renderer with other attributes doesn't use the same fragments
+		JavascriptHTMLBundleLinkRenderer asyncRenderer = new JavascriptHTMLBundleLinkRenderer();
+		asyncRenderer.init(jsHandler, true, true, false);
+		String asyncResult = renderToString(asyncRenderer, "/js/one/one2.js",
+				new BundleRendererContext(JS_CTX_PATH, null, true, false));
+		assertFalse(firstResult.equals(asyncResult));
+		assertEquals(3, fragmentCache.getMissCount());
+
+		// Nothing is cached in debug mode
+		jawrConfig.setDebugModeOn(true);
+		renderToString(jsRenderer, "/js/one/one2.js",
+				new BundleRendererContext(JS_CTX_PATH, null, true, false));
+		assertEquals(4, fragmentCache.getHitCount() + fragmentCache.getMissCount());
+	}
+
 }
@@ -19,6 +19,7 @@ import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringReader;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.channels.Channels;
 import java.nio.channels.WritableByteChannel;
@@ -33,17 +34,22 @@ import javax.servlet.http.HttpServletRequest;
 import net.jawr.web.JawrConstant;
 import net.jawr.web.config.JawrConfig;
 import net.jawr.web.exception.BundleDependencyException;
+import net.jawr.web.exception.BundlingProcessException;
 import net.jawr.web.exception.DuplicateBundlePathException;
+import net.jawr.web.exception.ResourceNotFoundException;
+import net.jawr.web.resource.bundle.JoinableResourceBundleContent;
 import net.jawr.web.resource.bundle.generator.GeneratorRegistry;
 import net.jawr.web.resource.bundle.handler.ResourceBundlesHandler;
 import net.jawr.web.resource.bundle.renderer.BundleRenderer;
 import net.jawr.web.resource.bundle.renderer.BundleRendererContext;
 import net.jawr.web.resource.bundle.renderer.CSSHTMLBundleLinkRenderer;
+import net.jawr.web.resource.bundle.variant.VariantUtils;
 import net.jawr.web.resource.handler.bundle.ResourceBundleHandler;
 import net.jawr.web.resource.handler.reader.ResourceReaderHandler;
 
 import org.mockito.Mockito;
 
+import test.net.jawr.web.FileUtils;
 import test.net.jawr.web.resource.bundle.PredefinedBundlesHandlerUtil;
 import test.net.jawr.web.resource.bundle.handler.ResourceHandlerBasedTest;
 import test.net.jawr.web.servlet.mock.MockServletContext;
@@ -56,6 +62,7 @@ import test.net.jawr.web.servlet.mock.MockServletContext;
 public class CssBundleLinkRendererTestCase extends ResourceHandlerBasedTest {
 
 	private static final String ROOT_TESTDIR = "/bundleLinkRenderer/";
+	private static final String LAZY_ROOT_TESTDIR = "/bundleLinkRendererLazy/";
 	private static final String CSS_BASEDIR = "css/";
 	private static final String CSS_CTX_PATH = "/ctxPathCss";
 	
@@ -81,6 +88,14 @@ public class CssBundleLinkRendererTestCase extends ResourceHandlerBasedTest {
 	public CSSHTMLBundleLinkRenderer getCssBundleLinkRenderer(Properties props, boolean debugOn, boolean useRandomParam, String media, 
 				boolean alternate, boolean displayAlternateStyles, String title){
 		
+		return getCssBundleLinkRenderer(props, createResourceBundleHandler(ROOT_TESTDIR, Charset.forName("UTF-8")),
+				debugOn, useRandomParam, media, alternate, displayAlternateStyles, title);
+	}
+	
+	public CSSHTMLBundleLinkRenderer getCssBundleLinkRenderer(Properties props, ResourceBundleHandler rsBundleHandler,
+				boolean debugOn, boolean useRandomParam, String media, 
+				boolean alternate, boolean displayAlternateStyles, String title){
+		
 		Charset charsetUtf = Charset.forName("UTF-8"); 
 		
 		props.setProperty("jawr.css.skin.default.root.dirs", "/css/themes/default");
@@ -94,7 +109,6 @@ public class CssBundleLinkRendererTestCase extends ResourceHandlerBasedTest {
 	    jawrConfig.setGeneratorRegistry(generatorRegistry);
 	    
 	    ResourceReaderHandler rsHandler = createResourceReaderHandler(ROOT_TESTDIR,"css",charsetUtf,jawrConfig);
-	    ResourceBundleHandler rsBundleHandler = createResourceBundleHandler(ROOT_TESTDIR,charsetUtf);
 	    
 	    ResourceBundlesHandler cssHandler = null;
 	    try {
@@ -376,6 +390,69 @@ public class CssBundleLinkRendererTestCase extends ResourceHandlerBasedTest {
 	}
 	
 	
+	public void testWriteCSSBundleWithLazyVariantLinks() throws Exception
+	{
+		Map<String, String> variants = new HashMap<String, String>();
+		variants.put(JawrConstant.SKIN_VARIANT_TYPE, "winter");
+		
+		CSSHTMLBundleLinkRenderer renderer = getCssBundleLinkRenderer(false, false, null, false, false, null);
+		String expected = renderToString(renderer,"/theme.css", new BundleRendererContext(CSS_CTX_PATH, variants, false, false));
+		
+		FileUtils.deleteDirectory(FileUtils.getClasspathRootDir() + LAZY_ROOT_TESTDIR);
+		ResourceBundleHandler rsBundleHandler = createResourceBundleHandler(LAZY_ROOT_TESTDIR, Charset.forName("UTF-8"));
+		Properties props = new Properties();
+		props.setProperty(JawrConfig.JAWR_LAZY_VARIANT_PROCESSING, "true");
+		renderer = getCssBundleLinkRenderer(props, rsBundleHandler, false, false, null, false, false, null);
+		
+		// Only the default variant is processed at startup
+		String winterBundle = VariantUtils.getVariantBundleName("/theme.css", "winter", false);
+		assertTrue(isStoredBundle(rsBundleHandler, "/theme.css"));
+		assertFalse(isStoredBundle(rsBundleHandler, winterBundle));
+		
+		String result = renderToString(renderer,"/theme.css", new BundleRendererContext(CSS_CTX_PATH, variants, false, false));
+		assertEquals(expected, result);
+		assertTrue(isStoredBundle(rsBundleHandler, winterBundle));
+		assertFalse(isStoredBundle(rsBundleHandler, VariantUtils.getVariantBundleName("/theme.css", "summer", false)));
+	}
+	
+	public void testLazyVariantProcessedAgainAfterFailure() throws Exception
+	{
+		Map<String, String> variants = new HashMap<String, String>();
+		variants.put(JawrConstant.SKIN_VARIANT_TYPE, "winter");
+		
+		FileUtils.deleteDirectory(FileUtils.getClasspathRootDir() + LAZY_ROOT_TESTDIR);
+		ResourceBundleHandler rsBundleHandler = Mockito.spy(createResourceBundleHandler(LAZY_ROOT_TESTDIR, Charset.forName("UTF-8")));
+		Properties props = new Properties();
+		props.setProperty(JawrConfig.JAWR_LAZY_VARIANT_PROCESSING, "true");
+		CSSHTMLBundleLinkRenderer renderer = getCssBundleLinkRenderer(props, rsBundleHandler, false, false, null, false, false, null);
+		
+		String winterBundle = VariantUtils.getVariantBundleName("/theme.css", "winter", false);
+		Mockito.doThrow(new BundlingProcessException("Unable to store the bundle")).doCallRealMethod()
+			.when(rsBundleHandler).storeBundle(Mockito.eq(winterBundle), Mockito.any(JoinableResourceBundleContent.class));
+		try {
+			renderer.renderBundleLinks("/theme.css", new BundleRendererContext(CSS_CTX_PATH, variants, false, false), 
+					new StringWriter());
+			fail("The processing of the variant should have failed");
+		} catch (BundlingProcessException e) {
+			// Expected
+		}
+		assertFalse(isStoredBundle(rsBundleHandler, winterBundle));
+		
+		// The failed processing is not kept
+		String result = renderToString(renderer,"/theme.css", new BundleRendererContext(CSS_CTX_PATH, variants, false, false));
+		assertTrue(result.length() > 0);
+		assertTrue(isStoredBundle(rsBundleHandler, winterBundle));
+	}
+	
+	private boolean isStoredBundle(ResourceBundleHandler rsBundleHandler, String bundleName) throws IOException {
+		try {
+			rsBundleHandler.getResourceBundleReader(bundleName).close();
+			return true;
+		} catch (ResourceNotFoundException e) {
+			return false;
+		}
+	}
+	
 	public void testDebugWriteCSSBundleWithVariantLinks()
 	{
 		CSSHTMLBundleLinkRenderer renderer = getCssBundleLinkRenderer(true, false, null, false, true, null);
@@ -0,0 +1,119 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package test.net.jawr.web.resource.handler.bundle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.jawr.web.JawrConstant;
+import net.jawr.web.resource.bundle.generator.GeneratorRegistry;
+import net.jawr.web.resource.handler.bundle.BundleContent;
+import net.jawr.web.resource.handler.bundle.ServletContextResourceBundleHandler;
+import test.net.jawr.web.servlet.mock.MockServletContext;
+
+/**
+ * Test case for the content of the stored bundles
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class BundleContentTestCase {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private ServletContextResourceBundleHandler handler;
+
+	@Before
+	public void setUp() throws Exception {
+
+		MockServletContext ctx = new MockServletContext(tempFolder.getRoot().getPath(),
+				tempFolder.newFolder("temp").getPath());
+		handler = new ServletContextResourceBundleHandler(ctx, UTF8, new GeneratorRegistry(), JawrConstant.JS_TYPE);
+	}
+
+	@Test
+	public void testWriteRangeFromFile() throws Exception {
+
+		handler.storeBundle("/js/bundle.js", new StringBuffer("0123456789"));
+		BundleContent content = handler.getResourceBundleContent("/js/bundle.js", null);
+		try {
+			assertEquals(10, content.getLength());
+			assertEquals("0123456789", write(content, 0, 10));
+			assertEquals("345", write(content, 3, 3));
+		} finally {
+			content.close();
+		}
+	}
+
+	@Test
+	public void testWriteRangeFromMappedFile() throws Exception {
+
+		handler.setUseMemoryMappedBundles(true);
+		handler.storeBundle("/js/bundle.js", new StringBuffer("0123456789"));
+		BundleContent content = handler.getResourceBundleContent("/js/bundle.js", null);
+		try {
+			assertEquals(10, content.getLength());
+			assertEquals("789", write(content, 7, 3));
+			assertEquals("0123456789", write(content, 0, 10));
+		} finally {
+			content.close();
+		}
+	}
+
+	@Test
+	public void testWriteRangeFromBytes() throws Exception {
+
+		BundleContent content = new BundleContent("0123456789".getBytes(UTF8), null);
+		assertEquals(10, content.getLength());
+		assertEquals("12", write(content, 1, 2));
+	}
+
+	@Test
+	public void testContentKeptWhenBundleIsStoredAgain() throws Exception {
+
+		handler.storeBundle("/js/bundle.js", new StringBuffer("var a = 1;"));
+		BundleContent content = handler.getResourceBundleContent("/js/bundle.js", "gzip");
+		try {
+			handler.storeBundle("/js/bundle.js", new StringBuffer("var bundle = 'replaced';"));
+			BundleContent newContent = handler.getResourceBundleContent("/js/bundle.js", "gzip");
+			newContent.close();
+			assertTrue(!content.getChecksum().equals(newContent.getChecksum()));
+
+			// The content still returns the bytes matching its checksum
+			assertEquals(Long.toHexString(handler.getResourceBundleChecksum("/js/bundle.js", "gzip")),
+					newContent.getChecksum());
+			assertEquals(content.getLength(), content.toByteArray().length);
+			assertTrue(content.getLength() != newContent.getLength());
+		} finally {
+			content.close();
+		}
+	}
+
+	private String write(BundleContent content, long position, long count) throws Exception {
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		content.writeTo(out, position, count);
+		return new String(out.toByteArray(), UTF8);
+	}
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package test.net.jawr.web.resource.handler.bundle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.jawr.web.JawrConstant;
+import net.jawr.web.config.JawrConfig;
+import net.jawr.web.exception.ResourceNotFoundException;
+import net.jawr.web.resource.bundle.IOUtils;
+import net.jawr.web.resource.bundle.encoding.BundleContentEncoder;
+import net.jawr.web.resource.bundle.generator.GeneratorRegistry;
+import net.jawr.web.resource.handler.bundle.ServletContextResourceBundleHandler;
+import test.net.jawr.web.servlet.mock.MockServletContext;
+
+/**
+ * Test case for the storage of the bundles encoded with the bundle content
+ * encoders
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class EncodedBundleHandlerTestCase {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private ServletContextResourceBundleHandler handler;
+
+	@Before
+	public void setUp() throws Exception {
+
+		MockServletContext ctx = new MockServletContext(tempFolder.getRoot().getPath(),
+				tempFolder.newFolder("temp").getPath());
+		handler = new ServletContextResourceBundleHandler(ctx, UTF8, new GeneratorRegistry(), JawrConstant.JS_TYPE);
+		JawrConfig config = new JawrConfig(JawrConstant.JS_TYPE, new Properties());
+		handler.setBundleContentEncoders(Collections.<BundleContentEncoder> singletonList(new DeflateContentEncoder()),
+				config);
+	}
+
+	@Test
+	public void testStoreEncodedBundle() throws Exception {
+
+		handler.storeBundle("/js/bundle.js", new StringBuffer("var a = 'é';"));
+
+		assertTrue(handler.getContentEncodings().contains("deflate"));
+		assertEquals("var a = 'é';", readDeflate("/js/bundle.js"));
+	}
+
+	@Test
+	public void testStoreEncodedBundleWithMemoryMapping() throws Exception {
+
+		handler.setUseMemoryMappedBundles(true);
+		handler.storeBundle("/js/bundle.js", new StringBuffer("var a = 1;"));
+		assertEquals("var a = 1;", readDeflate("/js/bundle.js"));
+
+		handler.storeBundle("/js/bundle.js", new StringBuffer("var b = 2;"));
+		assertEquals("var b = 2;", readDeflate("/js/bundle.js"));
+	}
+
+	@Test
+	public void testStoreEncodedBundlesAfterTextRewrite() throws Exception {
+
+		handler.storeBundle("/js/bundle.js", new StringBuffer("var a = 1;"));
+
+		// The global postprocessors rewrite the stored text version
+		File textFile = new File(handler.getBundleTextDirPath(), "js/bundle.js");
+		Writer wr = new OutputStreamWriter(new FileOutputStream(textFile), UTF8);
+		wr.write("var a=1");
+		wr.close();
+
+		handler.storeEncodedBundles("/js/bundle.js");
+		assertEquals("var a=1", readDeflate("/js/bundle.js"));
+	}
+
+	@Test
+	public void testUnknownEncoding() throws Exception {
+
+		handler.storeBundle("/js/bundle.js", new StringBuffer("var a = 1;"));
+		try {
+			handler.getResourceBundleChannel("/js/bundle.js", "br");
+			fail("A ResourceNotFoundException should have been thrown");
+		} catch (ResourceNotFoundException e) {
+			// expected
+		}
+	}
+
+	private String readDeflate(String bundleName) throws Exception {
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		IOUtils.copy(handler.getResourceBundleChannel(bundleName, "deflate"), Channels.newChannel(bos));
+		InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(bos.toByteArray()));
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		IOUtils.copy(in, result);
+		return new String(result.toByteArray(), UTF8);
+	}
+
+	private static class DeflateContentEncoder implements BundleContentEncoder {
+
+		@Override
+		public String getContentEncoding() {
+			return "deflate";
+		}
+
+		@Override
+		public byte[] encode(JawrConfig config, byte[] content) throws IOException {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			DeflaterOutputStream out = new DeflaterOutputStream(bos);
+			out.write(content);
+			out.close();
+			return bos.toByteArray();
+		}
+	}
+}
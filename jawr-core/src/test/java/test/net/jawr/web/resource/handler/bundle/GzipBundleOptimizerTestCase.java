@@ -0,0 +1,222 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package test.net.jawr.web.resource.handler.bundle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.jawr.web.JawrConstant;
+import net.jawr.web.config.JawrConfig;
+import net.jawr.web.resource.bundle.IOUtils;
+import net.jawr.web.resource.bundle.encoding.BundleContentEncoder;
+import net.jawr.web.resource.bundle.encoding.ExhaustiveGzipBundleContentEncoder;
+import net.jawr.web.resource.bundle.generator.GeneratorRegistry;
+import net.jawr.web.resource.handler.bundle.GzipBundleOptimizer;
+import net.jawr.web.resource.handler.bundle.ServletContextResourceBundleHandler;
+import test.net.jawr.web.servlet.mock.MockServletContext;
+
+/**
+ * Test case for the optimization of the gzipped bundles
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class GzipBundleOptimizerTestCase {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private ServletContextResourceBundleHandler handler;
+
+	private JawrConfig config;
+
+	@Before
+	public void setUp() throws Exception {
+
+		MockServletContext ctx = new MockServletContext(tempFolder.getRoot().getPath(),
+				tempFolder.newFolder("temp").getPath());
+		handler = new ServletContextResourceBundleHandler(ctx, UTF8, new GeneratorRegistry(), JawrConstant.JS_TYPE);
+		config = new JawrConfig(JawrConstant.JS_TYPE, new Properties());
+	}
+
+	@Test
+	public void testOptimizeGzipBundle() throws Exception {
+
+		handler.setGzipCompressionLevel(1);
+		GzipBundleOptimizer optimizer = new GzipBundleOptimizer(new ExhaustiveGzipBundleContentEncoder(), config,
+				false);
+		handler.setGzipBundleOptimizer(optimizer);
+
+		String content = createContent();
+		handler.storeBundle("/js/bundle.js", new StringBuffer(content));
+
+		assertEquals(content, readGzip("/js/bundle.js"));
+		assertEquals(0, optimizer.getPendingBundleCount());
+		assertEquals(1, optimizer.getOptimizedBundleCount());
+		assertTrue(optimizer.getSavedBytes() > 0);
+	}
+
+	@Test
+	public void testChecksumOfOptimizedGzipBundle() throws Exception {
+
+		handler.setGzipCompressionLevel(1);
+		String content = createContent();
+		handler.storeBundle("/js/bundle.js", new StringBuffer(content));
+		long fastChecksum = handler.getResourceBundleChecksum("/js/bundle.js", "gzip");
+		assertEquals(getChecksum("/js/bundle.js"), fastChecksum);
+
+		handler.setGzipBundleOptimizer(new GzipBundleOptimizer(new ExhaustiveGzipBundleContentEncoder(), config,
+				false));
+		handler.storeBundle("/js/bundle.js", new StringBuffer(content));
+		long optimizedChecksum = handler.getResourceBundleChecksum("/js/bundle.js", "gzip");
+		assertEquals(getChecksum("/js/bundle.js"), optimizedChecksum);
+		assertTrue(fastChecksum != optimizedChecksum);
+	}
+
+	@Test
+	public void testSkipLargerGzipBundle() throws Exception {
+
+		GzipBundleOptimizer optimizer = new GzipBundleOptimizer(new PaddedGzipContentEncoder(), config, false);
+		handler.setGzipBundleOptimizer(optimizer);
+
+		String content = createContent();
+		handler.storeBundle("/js/bundle.js", new StringBuffer(content));
+
+		assertEquals(content, readGzip("/js/bundle.js"));
+		assertEquals(0, optimizer.getOptimizedBundleCount());
+		assertEquals(1, optimizer.getSkippedBundleCount());
+	}
+
+	@Test
+	public void testOptimizeGzipBundleWithMemoryMapping() throws Exception {
+
+		handler.setUseMemoryMappedBundles(true);
+		handler.setGzipBundleOptimizer(new GzipBundleOptimizer(new ExhaustiveGzipBundleContentEncoder(), config,
+				false));
+
+		handler.storeBundle("/js/bundle.js", new StringBuffer("var a = 1;"));
+		assertEquals("var a = 1;", readGzip("/js/bundle.js"));
+
+		handler.storeBundle("/js/bundle.js", new StringBuffer("var b = 2;"));
+		assertEquals("var b = 2;", readGzip("/js/bundle.js"));
+	}
+
+	@Test
+	public void testPendingOptimizationCancelledAfterTextRewrite() throws Exception {
+
+		final CountDownLatch latch = new CountDownLatch(1);
+		BundleContentEncoder blockingEncoder = new ExhaustiveGzipBundleContentEncoder() {
+
+			@Override
+			public byte[] encode(JawrConfig config, byte[] content) throws IOException {
+				try {
+					latch.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				return super.encode(config, content);
+			}
+		};
+		handler.setGzipCompressionLevel(1);
+		GzipBundleOptimizer optimizer = new GzipBundleOptimizer(blockingEncoder, config, true);
+		handler.setGzipBundleOptimizer(optimizer);
+		try {
+			handler.storeBundle("/js/bundle.js", new StringBuffer(createContent()));
+
+			// The global postprocessors rewrite the stored text version
+			String postProcessedContent = createContent().replace(" ", "");
+			File textFile = new File(handler.getBundleTextDirPath(), "js/bundle.js");
+			Writer wr = new OutputStreamWriter(new FileOutputStream(textFile), UTF8);
+			wr.write(postProcessedContent);
+			wr.close();
+			handler.storeEncodedBundles("/js/bundle.js");
+
+			latch.countDown();
+			for (int i = 0; i < 100 && optimizer.getPendingBundleCount() > 0; i++) {
+				Thread.sleep(50);
+			}
+			assertEquals(0, optimizer.getPendingBundleCount());
+			assertEquals(1, optimizer.getOptimizedBundleCount());
+			assertEquals(1, optimizer.getSkippedBundleCount());
+			assertEquals(postProcessedContent, readGzip("/js/bundle.js"));
+		} finally {
+			optimizer.shutdown();
+		}
+	}
+
+	private String createContent() {
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 500; i++) {
+			content.append("function f").append(i).append("(a, b) { return a * ").append(i % 7)
+					.append(" + b; }\n");
+		}
+		return content.toString();
+	}
+
+	private long getChecksum(String bundleName) throws Exception {
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		IOUtils.copy(handler.getResourceBundleChannel(bundleName, true), Channels.newChannel(bos));
+		CRC32 crc = new CRC32();
+		crc.update(bos.toByteArray());
+		return crc.getValue();
+	}
+
+	private String readGzip(String bundleName) throws Exception {
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		IOUtils.copy(handler.getResourceBundleChannel(bundleName, true), Channels.newChannel(bos));
+		GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bos.toByteArray()));
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		IOUtils.copy(in, result);
+		return new String(result.toByteArray(), UTF8);
+	}
+
+	/**
+	 * Gzip encoder which produces a larger output than the default gzip
+	 * compression
+	 */
+	private static class PaddedGzipContentEncoder implements BundleContentEncoder {
+
+		@Override
+		public String getContentEncoding() {
+			return "gzip";
+		}
+
+		@Override
+		public byte[] encode(JawrConfig config, byte[] content) throws IOException {
+			return new byte[content.length * 2];
+		}
+	}
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package test.net.jawr.web.resource.handler.bundle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.jawr.web.JawrConstant;
+import net.jawr.web.exception.ResourceNotFoundException;
+import net.jawr.web.resource.bundle.IOUtils;
+import net.jawr.web.resource.bundle.generator.GeneratorRegistry;
+import net.jawr.web.resource.handler.bundle.ServletContextResourceBundleHandler;
+import net.jawr.web.util.ByteBufferChannel;
+import test.net.jawr.web.servlet.mock.MockServletContext;
+
+/**
+ * Test case for the serving of the bundles from memory mapped files
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class MemoryMappedBundleHandlerTestCase {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private ServletContextResourceBundleHandler handler;
+
+	@Before
+	public void setUp() throws Exception {
+
+		MockServletContext ctx = new MockServletContext(tempFolder.getRoot().getPath(),
+				tempFolder.newFolder("temp").getPath());
+		handler = new ServletContextResourceBundleHandler(ctx, UTF8, new GeneratorRegistry(), JawrConstant.JS_TYPE);
+		handler.setUseMemoryMappedBundles(true);
+	}
+
+	@Test
+	public void testReadMappedBundle() throws Exception {
+
+		handler.storeBundle("/js/bundle.js", new StringBuffer("var a = 'é';"));
+
+		assertEquals("var a = 'é';", readText("/js/bundle.js"));
+		assertEquals("var a = 'é';", readGzip("/js/bundle.js"));
+
+		ReadableByteChannel channel = handler.getResourceBundleChannel("/js/bundle.js");
+		assertTrue(channel instanceof ByteBufferChannel);
+		channel.close();
+	}
+
+	@Test
+	public void testStoreReplacesMappedBundle() throws Exception {
+
+		handler.storeBundle("/js/bundle.js", new StringBuffer("var a = 1;"));
+
+		// The previous mapping must stay readable after the bundle is stored
+		// again
+		ReadableByteChannel previous = handler.getResourceBundleChannel("/js/bundle.js", false);
+		handler.storeBundle("/js/bundle.js", new StringBuffer("var b = 'a longer content';"));
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		IOUtils.copy(previous, Channels.newChannel(bos));
+		assertEquals("var a = 1;", new String(bos.toByteArray(), UTF8));
+
+		assertEquals("var b = 'a longer content';", readText("/js/bundle.js"));
+		assertEquals("var b = 'a longer content';", readGzip("/js/bundle.js"));
+	}
+
+	@Test
+	public void testMappedCopyReleasedWhenBundleStoredAgain() throws Exception {
+
+		handler.storeBundle("/js/bundle.js", new StringBuffer("var a = 1;"));
+		assertEquals("var a = 1;", readText("/js/bundle.js"));
+		List<File> mappedFiles = findFiles(tempFolder.getRoot(), ".mapped");
+		assertEquals(1, mappedFiles.size());
+
+		handler.storeBundle("/js/bundle.js", new StringBuffer("var b = 2;"));
+		assertFalse(mappedFiles.get(0).exists());
+		assertEquals("var b = 2;", readText("/js/bundle.js"));
+		assertEquals(1, findFiles(tempFolder.getRoot(), ".mapped").size());
+
+		handler.setUseMemoryMappedBundles(false);
+		assertTrue(findFiles(tempFolder.getRoot(), ".mapped").isEmpty());
+	}
+
+	@Test
+	public void testBundleReadFromFileWhenMappingFails() throws Exception {
+
+		handler.storeBundle("/js/bundle.js", new StringBuffer("var a = 1;"));
+		File textFile = null;
+		for (File file : findFiles(tempFolder.getRoot(), "bundle.js")) {
+			if (file.getParentFile().getParentFile().getName().equals("text")) {
+				textFile = file;
+			}
+		}
+
+		// The copy to map can't be created over a non empty directory
+		File mappedFile = new File(textFile.getPath() + ".1.mapped");
+		assertTrue(new File(mappedFile, "file").mkdirs());
+
+		ReadableByteChannel channel = handler.getResourceBundleChannel("/js/bundle.js", false);
+		assertFalse(channel instanceof ByteBufferChannel);
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		IOUtils.copy(channel, Channels.newChannel(bos));
+		assertEquals("var a = 1;", new String(bos.toByteArray(), UTF8));
+	}
+
+	@Test
+	public void testMissingBundle() throws Exception {
+
+		try {
+			handler.getResourceBundleChannel("/js/unknown.js");
+			fail("A ResourceNotFoundException should have been thrown");
+		} catch (ResourceNotFoundException e) {
+			// expected
+		}
+	}
+
+	private List<File> findFiles(File dir, String suffix) {
+
+		List<File> result = new ArrayList<File>();
+		for (File file : dir.listFiles()) {
+			if (file.isDirectory()) {
+				result.addAll(findFiles(file, suffix));
+			} else if (file.getName().endsWith(suffix)) {
+				result.add(file);
+			}
+		}
+		return result;
+	}
+
+	private String readText(String bundleName) throws Exception {
+
+		Reader rd = handler.getResourceBundleReader(bundleName);
+		StringWriter writer = new StringWriter();
+		IOUtils.copy(rd, writer, true);
+		return writer.toString();
+	}
+
+	private String readGzip(String bundleName) throws Exception {
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		IOUtils.copy(handler.getResourceBundleChannel(bundleName), Channels.newChannel(bos));
+		GZIPInputStream gzIn = new GZIPInputStream(new ByteArrayInputStream(bos.toByteArray()));
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		IOUtils.copy(gzIn, result);
+		return new String(result.toByteArray(), UTF8);
+	}
+}
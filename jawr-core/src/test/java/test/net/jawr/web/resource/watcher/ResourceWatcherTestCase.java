@@ -0,0 +1,153 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package test.net.jawr.web.resource.watcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.jawr.web.resource.watcher.ResourceChangeListener;
+import net.jawr.web.resource.watcher.ResourceWatcher;
+
+/**
+ * Test case for the resource watcher
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class ResourceWatcherTestCase {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private final BlockingQueue<Set<File>> notifications = new LinkedBlockingQueue<Set<File>>();
+
+	private ResourceWatcher watcher;
+
+	@Before
+	public void setUp() throws IOException {
+
+		watcher = new ResourceWatcher("test-watcher", new ResourceChangeListener() {
+
+			public void resourcesChanged(Set<File> changedFiles) {
+				notifications.add(changedFiles);
+			}
+		}, 300);
+	}
+
+	@After
+	public void tearDown() {
+		watcher.stopWatching();
+	}
+
+	@Test
+	public void testChangesAreDebounced() throws Exception {
+
+		File root = tempFolder.getRoot();
+		watcher.registerDirectory(root, true);
+		watcher.start();
+
+		File first = writeFile(new File(root, "a.js"), "var a;");
+		File second = writeFile(new File(root, "b.js"), "var b;");
+
+		Set<File> changedFiles = notifications.poll(10, TimeUnit.SECONDS);
+		assertNotNull(changedFiles);
+		assertTrue(changedFiles.contains(first.getAbsoluteFile()));
+		assertTrue(changedFiles.contains(second.getAbsoluteFile()));
+		assertTrue(notifications.isEmpty());
+	}
+
+	@Test
+	public void testNewSubDirectoriesAreWatched() throws Exception {
+
+		File root = tempFolder.getRoot();
+		watcher.registerDirectory(root, true);
+		watcher.start();
+
+		File subDir = new File(root, "js");
+		assertTrue(subDir.mkdir());
+		assertNotNull(notifications.poll(10, TimeUnit.SECONDS));
+		assertEquals(2, watcher.getWatchedDirectoryCount());
+
+		File file = writeFile(new File(subDir, "c.js"), "var c;");
+		Set<File> changedFiles = notifications.poll(10, TimeUnit.SECONDS);
+		assertNotNull(changedFiles);
+		assertTrue(changedFiles.contains(file.getAbsoluteFile()));
+	}
+
+	@Test
+	public void testExcludedDirectoriesAreIgnored() throws Exception {
+
+		File root = tempFolder.getRoot();
+		File excludedDir = tempFolder.newFolder("work");
+		watcher.excludeDirectory(excludedDir);
+		watcher.registerDirectory(root, true);
+		watcher.start();
+
+		assertEquals(1, watcher.getWatchedDirectoryCount());
+		writeFile(new File(excludedDir, "bundle.js"), "var bundle;");
+		File file = writeFile(new File(root, "d.js"), "var d;");
+
+		Set<File> changedFiles = notifications.poll(10, TimeUnit.SECONDS);
+		assertNotNull(changedFiles);
+		assertEquals(1, changedFiles.size());
+		assertTrue(changedFiles.contains(file.getAbsoluteFile()));
+		assertFalse(changedFiles.contains(excludedDir.getAbsoluteFile()));
+	}
+
+	@Test
+	public void testUnregisteredDirectoriesAreIgnored() throws Exception {
+
+		File root = tempFolder.getRoot();
+		File unregisteredDir = tempFolder.newFolder("css");
+		watcher.registerDirectory(unregisteredDir, false);
+		watcher.unregisterDirectories();
+		watcher.registerDirectory(root, false);
+		watcher.start();
+
+		assertEquals(1, watcher.getWatchedDirectoryCount());
+		writeFile(new File(unregisteredDir, "e.css"), "a {}");
+		File file = writeFile(new File(root, "f.js"), "var f;");
+
+		Set<File> changedFiles = notifications.poll(10, TimeUnit.SECONDS);
+		assertNotNull(changedFiles);
+		assertEquals(1, changedFiles.size());
+		assertTrue(changedFiles.contains(file.getAbsoluteFile()));
+	}
+
+	private File writeFile(File file, String content) throws IOException {
+
+		FileWriter writer = new FileWriter(file);
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+		return file;
+	}
+}
@@ -0,0 +1,323 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package test.net.jawr.web.servlet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+import net.jawr.web.JawrConstant;
+import net.jawr.web.resource.BinaryResourcesHandler;
+import net.jawr.web.resource.bundle.factory.util.PathNormalizer;
+import net.jawr.web.servlet.JawrBinaryResourceRequestHandler;
+import test.net.jawr.web.servlet.mock.MockServletContext;
+
+/**
+ * Test case for the conditional and range requests handled by the binary
+ * resource request handler
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class JawrBinaryResourceRequestHandlerTestCase {
+
+	private static final String CONTEXT_PATH = "/ctx";
+
+	private static final byte[] LOGO_CONTENT = "0123456789".getBytes();
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private TestBinaryResourceRequestHandler handler;
+
+	private String cacheUrl;
+
+	private String eTag;
+
+	@Before
+	public void setUp() throws Exception {
+
+		File webAppDir = tempFolder.newFolder("webapp");
+		File workDir = tempFolder.newFolder("work");
+		File imgDir = new File(webAppDir, "img");
+		imgDir.mkdirs();
+		FileOutputStream out = new FileOutputStream(new File(imgDir, "logo.png"));
+		try {
+			out.write(LOGO_CONTENT);
+		} finally {
+			out.close();
+		}
+
+		MockServletContext servletContext = new MockServletContext(webAppDir.getAbsolutePath(),
+				workDir.getAbsolutePath());
+		Map<String, Object> initParams = new HashMap<String, Object>();
+		initParams.put("type", JawrConstant.BINARY_TYPE);
+		initParams.put("handlerName", "binaryHandler");
+		Properties props = new Properties();
+		props.put("jawr.debug.on", "false");
+		props.put("jawr.binary.resources", "/img/");
+		handler = new TestBinaryResourceRequestHandler(servletContext, initParams, props);
+
+		BinaryResourcesHandler binaryRsHandler = (BinaryResourcesHandler) servletContext
+				.getAttribute(JawrConstant.BINARY_CONTEXT_ATTRIBUTE);
+		cacheUrl = binaryRsHandler.getCacheBustedUrl("/img/logo.png");
+		eTag = "\"" + PathNormalizer.extractBinaryResourceInfo(cacheUrl)[1] + "\"";
+	}
+
+	@Test
+	public void testETagDerivedFromContent() throws Exception {
+
+		ByteArrayServletOutputStream out = new ByteArrayServletOutputStream();
+		HttpServletResponse response = createResponse(out);
+		handler.processRequest(cacheUrl, createRequest(cacheUrl), response);
+		verify(response).setHeader("ETag", eTag);
+		assertArrayEquals(LOGO_CONTENT, out.toByteArray());
+
+		// The checksum of an outdated URL doesn't define the ETag
+		String outdatedHash = JawrConstant.CACHE_BUSTER_PREFIX + "1234";
+		String outdatedUrl = cacheUrl.replace(PathNormalizer.extractBinaryResourceInfo(cacheUrl)[1], outdatedHash);
+		out = new ByteArrayServletOutputStream();
+		response = createResponse(out);
+		handler.processRequest(outdatedUrl, createRequest(outdatedUrl), response);
+		verify(response).setHeader("ETag", eTag);
+		verify(response, never()).setHeader("ETag", "\"" + outdatedHash + "\"");
+		assertArrayEquals(LOGO_CONTENT, out.toByteArray());
+	}
+
+	@Test
+	public void testNotModifiedWithMatchingETag() throws Exception {
+
+		assertNotModified(eTag);
+		assertNotModified("W/" + eTag);
+		assertNotModified("*");
+		assertNotModified("\"other\", " + eTag);
+		assertNotModified("\"other\",W/" + eTag + " ,\"another\"");
+
+		assertModified("\"other\"", -1);
+		assertModified("\"other\", W/\"another\"", -1);
+	}
+
+	@Test
+	public void testIfModifiedSinceTruncatedToSeconds() throws Exception {
+
+		HttpServletResponse response = createResponse(new ByteArrayServletOutputStream());
+		handler.processRequest(cacheUrl, createRequest(cacheUrl), response);
+		ArgumentCaptor<Long> lastModified = ArgumentCaptor.forClass(Long.class);
+		verify(response).setDateHeader(eq("Last-Modified"), lastModified.capture());
+
+		// The HTTP dates have a precision of one second
+		assertEquals(0, lastModified.getValue().longValue() % 1000);
+
+		HttpServletRequest request = createRequest(cacheUrl);
+		when(request.getDateHeader("If-Modified-Since")).thenReturn(lastModified.getValue());
+		response = createResponse(new ByteArrayServletOutputStream());
+		handler.processRequest(cacheUrl, request, response);
+		verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+
+		assertModified(null, lastModified.getValue() - 1000);
+
+		// The If-Modified-Since header is ignored if an If-None-Match header
+		// is defined
+		assertModified("\"other\"", lastModified.getValue());
+	}
+
+	@Test
+	public void testRangeServedWithPartialContent() throws Exception {
+
+		HttpServletRequest request = createRequest(cacheUrl);
+		when(request.getHeader("Range")).thenReturn("bytes=2-5");
+		ByteArrayServletOutputStream out = new ByteArrayServletOutputStream();
+		HttpServletResponse response = createResponse(out);
+		handler.processRequest(cacheUrl, request, response);
+
+		verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+		verify(response).setHeader("Content-Range", "bytes 2-5/10");
+		verify(response).setContentLength(4);
+		assertArrayEquals("2345".getBytes(), out.toByteArray());
+	}
+
+	@Test
+	public void testUnsatisfiableRange() throws Exception {
+
+		HttpServletRequest request = createRequest(cacheUrl);
+		when(request.getHeader("Range")).thenReturn("bytes=20-");
+		ByteArrayServletOutputStream out = new ByteArrayServletOutputStream();
+		HttpServletResponse response = createResponse(out);
+		handler.processRequest(cacheUrl, request, response);
+
+		verify(response).setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+		verify(response).setHeader("Content-Range", "bytes */10");
+		verify(response).setContentLength(0);
+		assertEquals(0, out.toByteArray().length);
+	}
+
+	@Test
+	public void testRangeWithIfRange() throws Exception {
+
+		HttpServletRequest request = createRequest(cacheUrl);
+		when(request.getHeader("Range")).thenReturn("bytes=2-5");
+		when(request.getHeader("If-Range")).thenReturn(eTag);
+		ByteArrayServletOutputStream out = new ByteArrayServletOutputStream();
+		HttpServletResponse response = createResponse(out);
+		handler.processRequest(cacheUrl, request, response);
+		verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+		assertArrayEquals("2345".getBytes(), out.toByteArray());
+
+		// The full content is served if the If-Range header doesn't match
+		assertFullContentServed("bytes=2-5", "\"other\"");
+		assertFullContentServed("bytes=2-5", "W/" + eTag);
+	}
+
+	@Test
+	public void testMultipleRangesServedWithFullContent() throws Exception {
+
+		assertFullContentServed("bytes=0-1,4-5", null);
+		assertFullContentServed("bytes=5-2", null);
+		assertFullContentServed("items=0-1", null);
+	}
+
+	@Test
+	public void testContentLengthLargerThanInt() throws Exception {
+
+		HttpServletResponse response = createResponse(new ByteArrayServletOutputStream());
+		handler.setContentLength(response, 10L);
+		verify(response).setContentLength(10);
+
+		long length = Integer.MAX_VALUE + 10L;
+		response = createResponse(new ByteArrayServletOutputStream());
+		handler.setContentLength(response, length);
+		verify(response).setHeader("Content-Length", Long.toString(length));
+		verify(response, never()).setContentLength(anyInt());
+	}
+
+	private void assertFullContentServed(String range, String ifRange) throws Exception {
+
+		HttpServletRequest request = createRequest(cacheUrl);
+		when(request.getHeader("Range")).thenReturn(range);
+		when(request.getHeader("If-Range")).thenReturn(ifRange);
+		ByteArrayServletOutputStream out = new ByteArrayServletOutputStream();
+		HttpServletResponse response = createResponse(out);
+		handler.processRequest(cacheUrl, request, response);
+
+		verify(response, never()).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+		verify(response, never()).setHeader(eq("Content-Range"), anyString());
+		verify(response).setContentLength(LOGO_CONTENT.length);
+		assertArrayEquals(LOGO_CONTENT, out.toByteArray());
+	}
+
+	private void assertNotModified(String ifNoneMatch) throws Exception {
+
+		HttpServletRequest request = createRequest(cacheUrl);
+		when(request.getHeader("If-None-Match")).thenReturn(ifNoneMatch);
+		HttpServletResponse response = createResponse(new ByteArrayServletOutputStream());
+		handler.processRequest(cacheUrl, request, response);
+		verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+		verify(response).setHeader("ETag", eTag);
+		verify(response, never()).getOutputStream();
+	}
+
+	private void assertModified(String ifNoneMatch, long ifModifiedSince) throws Exception {
+
+		HttpServletRequest request = createRequest(cacheUrl);
+		when(request.getHeader("If-None-Match")).thenReturn(ifNoneMatch);
+		when(request.getDateHeader("If-Modified-Since")).thenReturn(ifModifiedSince);
+		ByteArrayServletOutputStream out = new ByteArrayServletOutputStream();
+		HttpServletResponse response = createResponse(out);
+		handler.processRequest(cacheUrl, request, response);
+		verify(response, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+		verify(response, never()).setHeader(eq("Content-Range"), anyString());
+		assertArrayEquals(LOGO_CONTENT, out.toByteArray());
+	}
+
+	private HttpServletRequest createRequest(String requestedPath) {
+
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		when(request.getContextPath()).thenReturn(CONTEXT_PATH);
+		when(request.getRequestURI()).thenReturn(CONTEXT_PATH + requestedPath);
+		when(request.getRequestURL()).thenReturn(new StringBuffer("http://localhost" + CONTEXT_PATH + requestedPath));
+		when(request.getDateHeader(anyString())).thenReturn(-1L);
+		return request;
+	}
+
+	private HttpServletResponse createResponse(ServletOutputStream out) {
+
+		HttpServletResponse response = mock(HttpServletResponse.class);
+		try {
+			when(response.getOutputStream()).thenReturn(out);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return response;
+	}
+
+	/**
+	 * Request handler which gives access to the Content-Length setter
+	 */
+	private static class TestBinaryResourceRequestHandler extends JawrBinaryResourceRequestHandler {
+
+		private static final long serialVersionUID = 1L;
+
+		public TestBinaryResourceRequestHandler(ServletContext context, Map<String, Object> initParams,
+				Properties configProps) throws ServletException {
+			super(context, initParams, configProps);
+		}
+
+		@Override
+		public void setContentLength(HttpServletResponse response, long length) {
+			super.setContentLength(response, length);
+		}
+	}
+
+	/**
+	 * Servlet output stream which keeps the written bytes
+	 */
+	private static class ByteArrayServletOutputStream extends ServletOutputStream {
+
+		private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+		}
+
+		public byte[] toByteArray() {
+			return out.toByteArray();
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package test.net.jawr.web.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Properties;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Test;
+
+import net.jawr.web.JawrConstant;
+import net.jawr.web.config.JawrConfig;
+import net.jawr.web.servlet.RendererRequestUtils;
+
+/**
+ * Test case for the content negotiation of the renderer request utils
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class RendererRequestUtilsTestCase {
+
+	@Test
+	public void testContentEncodingAccepted() {
+
+		HttpServletRequest request = createRequest("gzip, deflate, br");
+		assertTrue(RendererRequestUtils.isContentEncodingAccepted(request, "gzip"));
+		assertTrue(RendererRequestUtils.isContentEncodingAccepted(request, "br"));
+		assertFalse(RendererRequestUtils.isContentEncodingAccepted(request, "zstd"));
+
+		request = createRequest("gzip;q=1.0, br; q=0, *;q=0.5");
+		assertTrue(RendererRequestUtils.isContentEncodingAccepted(request, "gzip"));
+		assertFalse(RendererRequestUtils.isContentEncodingAccepted(request, "br"));
+		assertTrue(RendererRequestUtils.isContentEncodingAccepted(request, "zstd"));
+
+		request = createRequest("identity");
+		assertFalse(RendererRequestUtils.isContentEncodingAccepted(request, "gzip"));
+
+		request = createRequest(null);
+		assertFalse(RendererRequestUtils.isContentEncodingAccepted(request, "gzip"));
+	}
+
+	@Test
+	public void testPreferredContentEncoding() {
+
+		Properties props = new Properties();
+		props.put(JawrConfig.JAWR_BUNDLE_CONTENT_ENCODERS, "zstd, br");
+		JawrConfig config = new JawrConfig(JawrConstant.JS_TYPE, props);
+
+		assertEquals("zstd", RendererRequestUtils.getPreferredContentEncoding(createRequest("gzip, br, zstd"), config));
+		assertEquals("br", RendererRequestUtils.getPreferredContentEncoding(createRequest("gzip, br"), config));
+		assertEquals("gzip", RendererRequestUtils.getPreferredContentEncoding(createRequest("gzip, deflate"), config));
+		assertNull(RendererRequestUtils.getPreferredContentEncoding(createRequest("gzip;q=0, br"), config));
+	}
+
+	private HttpServletRequest createRequest(String acceptEncoding) {
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		when(request.getHeader("Accept-Encoding")).thenReturn(acceptEncoding);
+		return request;
+	}
+}
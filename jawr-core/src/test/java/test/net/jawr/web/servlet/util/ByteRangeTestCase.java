@@ -0,0 +1,82 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package test.net.jawr.web.servlet.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import net.jawr.web.servlet.util.ByteRange;
+
+/**
+ * Test case for the parsing of the Range header
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class ByteRangeTestCase {
+
+	@Test
+	public void testClosedRange() {
+		ByteRange range = ByteRange.parse("bytes=10-19", 100);
+		assertEquals(10, range.getFirst());
+		assertEquals(19, range.getLast());
+		assertEquals(10, range.getLength());
+		assertEquals("bytes 10-19/100", range.getContentRange(100));
+	}
+
+	@Test
+	public void testOpenRange() {
+		ByteRange range = ByteRange.parse("bytes=90-", 100);
+		assertEquals(90, range.getFirst());
+		assertEquals(99, range.getLast());
+	}
+
+	@Test
+	public void testRangeTruncatedToContentLength() {
+		ByteRange range = ByteRange.parse("bytes=50-500", 100);
+		assertEquals(50, range.getFirst());
+		assertEquals(99, range.getLast());
+	}
+
+	@Test
+	public void testSuffixRange() {
+		ByteRange range = ByteRange.parse("bytes=-30", 100);
+		assertEquals(70, range.getFirst());
+		assertEquals(99, range.getLast());
+
+		range = ByteRange.parse("bytes=-300", 100);
+		assertEquals(0, range.getFirst());
+		assertEquals(99, range.getLast());
+	}
+
+	@Test
+	public void testUnsatisfiableRange() {
+		assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=100-", 100));
+		assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=-0", 100));
+		assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=-10", 0));
+		assertEquals("bytes */100", ByteRange.UNSATISFIABLE.getContentRange(100));
+	}
+
+	@Test
+	public void testIgnoredRange() {
+		assertNull(ByteRange.parse(null, 100));
+		assertNull(ByteRange.parse("bytes=-", 100));
+		assertNull(ByteRange.parse("bytes=20-10", 100));
+		assertNull(ByteRange.parse("bytes=0-10,20-30", 100));
+		assertNull(ByteRange.parse("items=0-10", 100));
+		assertNull(ByteRange.parse("bytes=a-b", 100));
+	}
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package test.net.jawr.web.util.js;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import net.jawr.web.exception.BundlingProcessException;
+import net.jawr.web.util.js.JavascriptEngine;
+import net.jawr.web.util.js.JavascriptEngineFactory;
+import net.jawr.web.util.js.JavascriptEnginePool;
+
+/**
+ * Test case for the Javascript engine pool
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class JavascriptEnginePoolTestCase {
+
+	private static final JavascriptEngineFactory FACTORY = new JavascriptEngineFactory() {
+
+		@Override
+		public JavascriptEngine createEngine() {
+			JavascriptEngine engine = new JavascriptEngine();
+			engine.evaluate("init.js", "function square(x){ return x*x; }");
+			return engine;
+		}
+	};
+
+	@Test
+	public void testWarmUpAndBorrow() throws Exception {
+
+		JavascriptEnginePool pool = new JavascriptEnginePool("test", 2, FACTORY);
+		pool.warmUp(1);
+		assertEquals(1, pool.getCreatedCount());
+		assertEquals(1, pool.getIdleCount());
+
+		JavascriptEngine first = pool.borrowEngine();
+		JavascriptEngine second = pool.borrowEngine();
+		assertNotSame(first, second);
+		assertEquals(2, pool.getCreatedCount());
+		assertEquals(9, ((Number) first.invokeFunction("square", 3)).intValue());
+
+		pool.returnEngine(first);
+		assertSame(first, pool.borrowEngine());
+	}
+
+	@Test
+	public void testBorrowWaitsForReturnedEngine() throws Exception {
+
+		final JavascriptEnginePool pool = new JavascriptEnginePool("test", 1, FACTORY);
+		JavascriptEngine engine = pool.borrowEngine();
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<JavascriptEngine> future = executor.submit(new Callable<JavascriptEngine>() {
+
+				@Override
+				public JavascriptEngine call() throws Exception {
+					return pool.borrowEngine();
+				}
+			});
+
+			try {
+				future.get(200, TimeUnit.MILLISECONDS);
+				throw new AssertionError("The engine should not be available");
+			} catch (TimeoutException e) {
+				// expected
+			}
+
+			pool.returnEngine(engine);
+			assertSame(engine, future.get(5, TimeUnit.SECONDS));
+			assertEquals(1, pool.getCreatedCount());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testFailedCreationReleasesReservation() {
+
+		JavascriptEnginePool pool = new JavascriptEnginePool("test", 1, new JavascriptEngineFactory() {
+
+			@Override
+			public JavascriptEngine createEngine() {
+				throw new BundlingProcessException("Unable to load script");
+			}
+		});
+
+		try {
+			pool.borrowEngine();
+			throw new AssertionError("The creation should fail");
+		} catch (BundlingProcessException e) {
+			// expected
+		}
+		assertEquals(0, pool.getCreatedCount());
+	}
+}
@@ -24,6 +24,7 @@ import org.apache.log4j.Logger;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.handler.ContextHandlerCollection;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
 import org.eclipse.jetty.webapp.WebAppClassLoader;
 import org.eclipse.jetty.webapp.WebAppContext;
 
@@ -164,6 +165,36 @@ public class JawrIntegrationServer {
 		return jettyWebAppContext.getContextPath();
 	}
 
+	/**
+	 * Wraps the handler of the server. This must be done before the server
+	 * is started.
+	 * 
+	 * @param wrapper
+	 *            the handler wrapper
+	 */
+	public void wrapHandler(HandlerWrapper wrapper) {
+
+		if (!server.isStopped()) {
+			throw new IllegalStateException(
+					"The handler can't be wrapped once the server is started");
+		}
+		wrapper.setHandler(server.getHandler());
+		server.setHandler(wrapper);
+	}
+
+	/**
+	 * Stops the server
+	 * 
+	 * @throws Exception
+	 *             if an exception occurs
+	 */
+	public void stopServer() throws Exception {
+
+		webAppConfigInitialized = false;
+		LOGGER.info("Stop jetty server....");
+		server.stop();
+	}
+
 	/**
 	 * Returns the webapp root dir
 	 * 
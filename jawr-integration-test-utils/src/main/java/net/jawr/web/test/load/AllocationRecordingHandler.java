@@ -0,0 +1,139 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.test.load;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.log4j.Logger;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+
+/**
+ * This handler measures the bytes allocated by the server thread to handle
+ * each request of the load test. The endpoint of a request is defined by the
+ * {@link #ENDPOINT_HEADER} header sent by the load test client. The
+ * measurement relies on the HotSpot thread MX bean, and is disabled on the
+ * JVMs which don't support it.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class AllocationRecordingHandler extends HandlerWrapper {
+
+	/** The logger */
+	private static Logger LOGGER = Logger
+			.getLogger(AllocationRecordingHandler.class);
+
+	/** The header holding the endpoint name */
+	public static final String ENDPOINT_HEADER = "X-Jawr-Load-Endpoint";
+
+	/** The thread MX bean, or null if the allocation can't be measured */
+	private final com.sun.management.ThreadMXBean threadMXBean;
+
+	/** The statistics, which are recorded, indexed by endpoint name */
+	private final Map<String, EndpointStatistics> statistics = new ConcurrentHashMap<String, EndpointStatistics>();
+
+	/**
+	 * Constructor
+	 */
+	public AllocationRecordingHandler() {
+
+		com.sun.management.ThreadMXBean mxBean = null;
+		try {
+			java.lang.management.ThreadMXBean bean = ManagementFactory
+					.getThreadMXBean();
+			if (bean instanceof com.sun.management.ThreadMXBean
+					&& ((com.sun.management.ThreadMXBean) bean)
+							.isThreadAllocatedMemorySupported()) {
+				mxBean = (com.sun.management.ThreadMXBean) bean;
+				mxBean.setThreadAllocatedMemoryEnabled(true);
+			}
+		} catch (LinkageError e) {
+			// The HotSpot management API is not available
+		}
+		if (mxBean == null) {
+			LOGGER.warn("The allocation can't be measured on this JVM");
+		}
+		this.threadMXBean = mxBean;
+	}
+
+	/**
+	 * Returns true if the allocation can be measured
+	 *
+	 * @return true if the allocation can be measured
+	 */
+	public boolean isAllocationMeasured() {
+		return threadMXBean != null;
+	}
+
+	/**
+	 * Starts the recording of the allocation in the statistics
+	 *
+	 * @param endpointStatistics
+	 *            the statistics, indexed by endpoint name
+	 */
+	public void startRecording(Map<String, EndpointStatistics> endpointStatistics) {
+
+		statistics.putAll(endpointStatistics);
+		if (threadMXBean == null) {
+			for (EndpointStatistics stats : endpointStatistics.values()) {
+				stats.setAllocationUnavailable();
+			}
+		}
+	}
+
+	/**
+	 * Stops the recording of the allocation
+	 */
+	public void stopRecording() {
+		statistics.clear();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.eclipse.jetty.server.handler.HandlerWrapper#handle(java.lang.String,
+	 * org.eclipse.jetty.server.Request, javax.servlet.http.HttpServletRequest,
+	 * javax.servlet.http.HttpServletResponse)
+	 */
+	@Override
+	public void handle(String target, Request baseRequest,
+			HttpServletRequest request, HttpServletResponse response)
+			throws IOException, ServletException {
+
+		String endpoint = request.getHeader(ENDPOINT_HEADER);
+		EndpointStatistics stats = endpoint == null || threadMXBean == null ? null
+				: statistics.get(endpoint);
+		if (stats == null) {
+			super.handle(target, baseRequest, request, response);
+			return;
+		}
+
+		long threadId = Thread.currentThread().getId();
+		long start = threadMXBean.getThreadAllocatedBytes(threadId);
+		try {
+			super.handle(target, baseRequest, request, response);
+		} finally {
+			stats.addAllocatedBytes(threadMXBean
+					.getThreadAllocatedBytes(threadId) - start);
+		}
+	}
+}
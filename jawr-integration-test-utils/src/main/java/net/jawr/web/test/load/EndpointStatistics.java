@@ -0,0 +1,163 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.test.load;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class holds the statistics of an endpoint during a load test. The
+ * latencies are kept, so the percentiles are exact.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class EndpointStatistics {
+
+	/** The endpoint name */
+	private final String name;
+
+	/** The latencies of the successful requests in nanoseconds */
+	private long[] latencies = new long[1024];
+
+	/** The number of successful requests */
+	private int count;
+
+	/** The number of failed requests */
+	private int errorCount;
+
+	/** The number of bytes received */
+	private long receivedBytes;
+
+	/**
+	 * The number of bytes allocated by the server to handle the requests, or
+	 * -1 if the allocation can't be measured
+	 */
+	private final AtomicLong allocatedBytes = new AtomicLong();
+
+	/**
+	 * Constructor
+	 *
+	 * @param name
+	 *            the endpoint name
+	 */
+	public EndpointStatistics(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns the endpoint name
+	 *
+	 * @return the endpoint name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Records a successful request
+	 *
+	 * @param latency
+	 *            the latency in nanoseconds
+	 * @param bytes
+	 *            the number of bytes received
+	 */
+	public synchronized void record(long latency, long bytes) {
+
+		if (count == latencies.length) {
+			latencies = Arrays.copyOf(latencies, count * 2);
+		}
+		latencies[count++] = latency;
+		receivedBytes += bytes;
+	}
+
+	/**
+	 * Records a failed request
+	 */
+	public synchronized void recordError() {
+		errorCount++;
+	}
+
+	/**
+	 * Adds bytes allocated by the server to handle a request
+	 *
+	 * @param bytes
+	 *            the number of bytes
+	 */
+	public void addAllocatedBytes(long bytes) {
+		allocatedBytes.addAndGet(bytes);
+	}
+
+	/**
+	 * Marks the allocation as unavailable
+	 */
+	public void setAllocationUnavailable() {
+		allocatedBytes.set(-1);
+	}
+
+	/**
+	 * Returns the number of successful requests
+	 *
+	 * @return the number of successful requests
+	 */
+	public synchronized int getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the number of failed requests
+	 *
+	 * @return the number of failed requests
+	 */
+	public synchronized int getErrorCount() {
+		return errorCount;
+	}
+
+	/**
+	 * Returns the number of bytes received
+	 *
+	 * @return the number of bytes received
+	 */
+	public synchronized long getReceivedBytes() {
+		return receivedBytes;
+	}
+
+	/**
+	 * Returns the number of bytes allocated by the server
+	 *
+	 * @return the number of bytes allocated, or -1 if the allocation can't be
+	 *         measured
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes.get();
+	}
+
+	/**
+	 * Returns a percentile of the latencies
+	 *
+	 * @param percentile
+	 *            the percentile, between 0 and 100
+	 * @return the latency in nanoseconds, or 0 if there is no successful
+	 *         request
+	 */
+	public synchronized long getLatencyPercentile(double percentile) {
+
+		if (count == 0) {
+			return 0;
+		}
+		long[] sorted = Arrays.copyOf(latencies, count);
+		Arrays.sort(sorted);
+		int idx = (int) Math.ceil(percentile / 100 * count) - 1;
+		return sorted[Math.max(0, Math.min(idx, count - 1))];
+	}
+}
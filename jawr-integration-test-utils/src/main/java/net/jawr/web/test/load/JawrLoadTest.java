@@ -0,0 +1,499 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.test.load;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.jawr.web.test.JawrIntegrationServer;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * This class replays a mix of requests at a fixed concurrency against the
+ * web application started by the {@link JawrIntegrationServer}, and reports
+ * for each endpoint the latency percentiles, the throughput and the
+ * allocation rate of the server.
+ *
+ * The load test is started from the test classpath of the integration tests,
+ * once the web application has been packaged :
+ *
+ * <pre>
+ * java net.jawr.web.test.load.JawrLoadTest [configuration file or resource]
+ * </pre>
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class JawrLoadTest {
+
+	/** The logger */
+	private static Logger LOGGER = Logger.getLogger(JawrLoadTest.class);
+
+	/** The default configuration resource */
+	public static final String DEFAULT_CONFIG = "net/jawr/web/load/jawr-load-test.properties";
+
+	/** The user agent of the load test client */
+	private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 6.1; rv:45.0) Gecko/20100101 Firefox/45.0";
+
+	/** The pattern of the URLs referenced by a page */
+	private static final Pattern URL_ATTRIBUTE_PATTERN = Pattern
+			.compile("(?:src|href)\\s*=\\s*[\"']([^\"']+)[\"']");
+
+	/** The number of nanoseconds in a millisecond */
+	private static final double NANOS_PER_MILLI = 1000000d;
+
+	/** The load test configuration */
+	private final LoadTestConfig config;
+
+	/** The integration server */
+	private final JawrIntegrationServer server;
+
+	/** The handler measuring the allocation of the server */
+	private final AllocationRecordingHandler allocationHandler = new AllocationRecordingHandler();
+
+	/** The flag indicating if the allocation handler is installed */
+	private boolean allocationHandlerInstalled;
+
+	/** The statistics, indexed by endpoint name */
+	private final Map<String, EndpointStatistics> statistics = new LinkedHashMap<String, EndpointStatistics>();
+
+	/** The measurement duration in nanoseconds */
+	private long measuredDuration;
+
+	/** The flag indicating if the requests are recorded */
+	private volatile boolean recording;
+
+	/** The flag indicating if the clients must stop */
+	private volatile boolean stopped;
+
+	/**
+	 * Constructor
+	 *
+	 * @param config
+	 *            the load test configuration
+	 */
+	public JawrLoadTest(LoadTestConfig config) {
+		this.config = config;
+		this.server = JawrIntegrationServer.getInstance();
+	}
+
+	/**
+	 * Runs the load test
+	 *
+	 * @param args
+	 *            the arguments. The first one is the configuration file or
+	 *            resource.
+	 * @throws Exception
+	 *             if an exception occurs
+	 */
+	public static void main(String[] args) throws Exception {
+
+		LoadTestConfig config = LoadTestConfig.load(args.length > 0 ? args[0]
+				: DEFAULT_CONFIG);
+
+		// Keeps a persistent connection per client
+		System.setProperty("http.maxConnections",
+				String.valueOf(config.getConcurrency()));
+
+		JawrLoadTest loadTest = new JawrLoadTest(config);
+		loadTest.start();
+		try {
+			loadTest.run();
+			System.out.println(loadTest.getReport());
+		} finally {
+			loadTest.stop();
+		}
+	}
+
+	/**
+	 * Starts the web application
+	 *
+	 * @throws Exception
+	 *             if an exception occurs
+	 */
+	public void start() throws Exception {
+
+		installConfigFile(config.getJawrConfig(), "WEB-INF/classes/jawr.properties");
+		installConfigFile(config.getWebXml(), "WEB-INF/web.xml");
+		try {
+			server.wrapHandler(allocationHandler);
+			allocationHandlerInstalled = true;
+		} catch (IllegalStateException e) {
+			LOGGER.warn("The server is already started, the allocation won't be measured");
+		}
+		server.startWebApplication();
+	}
+
+	/**
+	 * Stops the server
+	 *
+	 * @throws Exception
+	 *             if an exception occurs
+	 */
+	public void stop() throws Exception {
+		server.stopServer();
+	}
+
+	/**
+	 * Copies a configuration file in the web application
+	 *
+	 * @param resource
+	 *            the classpath resource or null
+	 * @param webAppPath
+	 *            the path in the web application
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	private void installConfigFile(String resource, String webAppPath)
+			throws IOException {
+
+		if (resource == null) {
+			return;
+		}
+		InputStream in = getClass().getClassLoader().getResourceAsStream(
+				resource);
+		if (in == null) {
+			throw new IOException("Unable to find the resource : " + resource);
+		}
+		OutputStream out = null;
+		try {
+			out = new FileOutputStream(new File(server.getWebAppRootDir(),
+					webAppPath));
+			IOUtils.copy(in, out);
+		} finally {
+			IOUtils.closeQuietly(in);
+			IOUtils.closeQuietly(out);
+		}
+	}
+
+	/**
+	 * Runs the load test. The web application must be started.
+	 *
+	 * @return the statistics, indexed by endpoint name
+	 * @throws Exception
+	 *             if an exception occurs
+	 */
+	public Map<String, EndpointStatistics> run() throws Exception {
+
+		final List<LoadTestEndpoint> endpoints = config.getEndpoints();
+		if (endpoints.isEmpty()) {
+			throw new IllegalStateException("No endpoint is defined");
+		}
+
+		final List<ResolvedEndpoint> resolvedEndpoints = new ArrayList<ResolvedEndpoint>();
+		final int[] cumulatedWeights = new int[endpoints.size()];
+		int totalWeight = 0;
+		statistics.clear();
+		for (LoadTestEndpoint endpoint : endpoints) {
+			resolvedEndpoints.add(resolve(endpoint));
+			totalWeight += endpoint.getWeight();
+			cumulatedWeights[resolvedEndpoints.size() - 1] = totalWeight;
+			statistics.put(endpoint.getName(),
+					new EndpointStatistics(endpoint.getName()));
+		}
+
+		stopped = false;
+		recording = false;
+		ExecutorService executor = Executors.newFixedThreadPool(config
+				.getConcurrency());
+		for (int i = 0; i < config.getConcurrency(); i++) {
+			final Random random = new Random(config.getSeed() + i);
+			final int weightRange = totalWeight;
+			executor.execute(new Runnable() {
+
+				public void run() {
+
+					while (!stopped) {
+						int value = random.nextInt(weightRange);
+						int idx = 0;
+						while (cumulatedWeights[idx] <= value) {
+							idx++;
+						}
+						execute(resolvedEndpoints.get(idx));
+					}
+				}
+			});
+		}
+
+		LOGGER.info("Warming up for " + config.getWarmupSeconds() + "s");
+		Thread.sleep(TimeUnit.SECONDS.toMillis(config.getWarmupSeconds()));
+
+		LOGGER.info("Measuring for " + config.getDurationSeconds() + "s");
+		if (allocationHandlerInstalled) {
+			allocationHandler.startRecording(statistics);
+		} else {
+			for (EndpointStatistics stats : statistics.values()) {
+				stats.setAllocationUnavailable();
+			}
+		}
+		long start = System.nanoTime();
+		recording = true;
+		Thread.sleep(TimeUnit.SECONDS.toMillis(config.getDurationSeconds()));
+		recording = false;
+		measuredDuration = System.nanoTime() - start;
+		allocationHandler.stopRecording();
+
+		stopped = true;
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+		return Collections.unmodifiableMap(statistics);
+	}
+
+	/**
+	 * Resolves the URL and the validators of an endpoint
+	 *
+	 * @param endpoint
+	 *            the endpoint
+	 * @return the resolved endpoint
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	private ResolvedEndpoint resolve(LoadTestEndpoint endpoint)
+			throws IOException {
+
+		String appUrl = server.getServerUrlPrefix() + server.getContextPath();
+		URL url = new URL(appUrl + endpoint.getPath());
+		if (endpoint.getPage() != null) {
+			url = discoverUrl(new URL(appUrl + endpoint.getPage()), endpoint);
+		}
+
+		ResolvedEndpoint resolved = new ResolvedEndpoint(endpoint, url);
+		if (endpoint.getType() == LoadTestEndpoint.RequestType.CONDITIONAL) {
+			HttpURLConnection connection = openConnection(url, endpoint);
+			readContent(connection);
+			resolved.eTag = connection.getHeaderField("ETag");
+			resolved.lastModified = connection.getHeaderField("Last-Modified");
+			if (resolved.eTag == null && resolved.lastModified == null) {
+				LOGGER.warn("The endpoint '" + endpoint.getName()
+						+ "' doesn't return any validator : " + url);
+			}
+		}
+		LOGGER.info("Endpoint '" + endpoint.getName() + "' : " + url);
+		return resolved;
+	}
+
+	/**
+	 * Discovers the URL of an endpoint in a page
+	 *
+	 * @param pageUrl
+	 *            the page URL
+	 * @param endpoint
+	 *            the endpoint
+	 * @return the URL of the endpoint
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	private URL discoverUrl(URL pageUrl, LoadTestEndpoint endpoint)
+			throws IOException {
+
+		HttpURLConnection connection = openConnection(pageUrl, endpoint);
+		connection.setRequestProperty("Accept-Encoding",
+				endpoint.isGzipAccepted() ? "gzip" : "identity");
+		String page = new String(readContent(connection), "UTF-8");
+		Matcher matcher = URL_ATTRIBUTE_PATTERN.matcher(page);
+		while (matcher.find()) {
+			String url = matcher.group(1);
+			String path = url.replaceFirst("[?#].*$", "");
+			if (path.endsWith(endpoint.getPath())) {
+				return new URL(pageUrl, url);
+			}
+		}
+		throw new IOException("No URL ending with '" + endpoint.getPath()
+				+ "' has been found in the page " + pageUrl);
+	}
+
+	/**
+	 * Executes a request
+	 *
+	 * @param resolved
+	 *            the resolved endpoint
+	 */
+	private void execute(ResolvedEndpoint resolved) {
+
+		boolean recorded = recording;
+		LoadTestEndpoint endpoint = resolved.endpoint;
+		long start = System.nanoTime();
+		try {
+			HttpURLConnection connection = openConnection(resolved.url,
+					endpoint);
+			if (endpoint.getType() == LoadTestEndpoint.RequestType.CONDITIONAL) {
+				if (resolved.eTag != null) {
+					connection.setRequestProperty("If-None-Match",
+							resolved.eTag);
+				}
+				if (resolved.lastModified != null) {
+					connection.setRequestProperty("If-Modified-Since",
+							resolved.lastModified);
+				}
+			}
+			int expectedStatus = endpoint.getType() == LoadTestEndpoint.RequestType.CONDITIONAL ? HttpURLConnection.HTTP_NOT_MODIFIED
+					: HttpURLConnection.HTTP_OK;
+			int status = connection.getResponseCode();
+			long length = readContent(connection).length;
+			long latency = System.nanoTime() - start;
+			if (recorded) {
+				EndpointStatistics stats = statistics.get(endpoint.getName());
+				if (status == expectedStatus) {
+					stats.record(latency, length);
+				} else {
+					stats.recordError();
+				}
+			}
+		} catch (IOException e) {
+			if (recorded) {
+				statistics.get(endpoint.getName()).recordError();
+			}
+			LOGGER.debug("The request of '" + endpoint.getName()
+					+ "' failed", e);
+		}
+	}
+
+	/**
+	 * Opens a connection
+	 *
+	 * @param url
+	 *            the URL
+	 * @param endpoint
+	 *            the endpoint
+	 * @return the connection
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	private HttpURLConnection openConnection(URL url, LoadTestEndpoint endpoint)
+			throws IOException {
+
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setInstanceFollowRedirects(false);
+		connection.setUseCaches(false);
+		connection.setRequestProperty("User-Agent", USER_AGENT);
+		connection.setRequestProperty("Accept-Language", "en-us");
+		connection.setRequestProperty(
+				AllocationRecordingHandler.ENDPOINT_HEADER, endpoint.getName());
+		if (endpoint.isGzipAccepted()) {
+			connection.setRequestProperty("Accept-Encoding", "gzip");
+		}
+		return connection;
+	}
+
+	/**
+	 * Reads the whole content of a response, so the connection can be reused
+	 *
+	 * @param connection
+	 *            the connection
+	 * @return the content
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	private byte[] readContent(HttpURLConnection connection) throws IOException {
+
+		InputStream in = connection.getResponseCode() >= HttpURLConnection.HTTP_BAD_REQUEST ? connection
+				.getErrorStream() : connection.getInputStream();
+		if (in == null) {
+			return new byte[0];
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			IOUtils.copy(in, out);
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Returns the report of the last run
+	 *
+	 * @return the report
+	 */
+	public String getReport() {
+
+		double seconds = measuredDuration / (NANOS_PER_MILLI * 1000);
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("Concurrency: %d, duration: %.1fs%n",
+				config.getConcurrency(), seconds));
+		report.append(String.format("%-20s %10s %8s %12s %10s %10s %14s %14s%n",
+				"Endpoint", "Requests", "Errors", "Req/s", "p50 (ms)",
+				"p99 (ms)", "Alloc/req (KB)", "Alloc (MB/s)"));
+		for (EndpointStatistics stats : statistics.values()) {
+			String allocPerRequest = "n/a";
+			String allocRate = "n/a";
+			long allocated = stats.getAllocatedBytes();
+			int requests = stats.getCount() + stats.getErrorCount();
+			if (allocated >= 0 && requests > 0) {
+				allocPerRequest = String.format("%.1f", allocated / 1024d
+						/ requests);
+				allocRate = String.format("%.1f", allocated / (1024d * 1024d)
+						/ seconds);
+			}
+			report.append(String.format(
+					"%-20s %10d %8d %12.1f %10.2f %10.2f %14s %14s%n",
+					stats.getName(), stats.getCount(), stats.getErrorCount(),
+					stats.getCount() / seconds,
+					stats.getLatencyPercentile(50) / NANOS_PER_MILLI,
+					stats.getLatencyPercentile(99) / NANOS_PER_MILLI,
+					allocPerRequest, allocRate));
+		}
+		return report.toString();
+	}
+
+	/**
+	 * This class defines an endpoint, whose URL and validators have been
+	 * resolved.
+	 */
+	private static class ResolvedEndpoint {
+
+		/** The endpoint */
+		private final LoadTestEndpoint endpoint;
+
+		/** The URL */
+		private final URL url;
+
+		/** The entity tag of the resource */
+		private String eTag;
+
+		/** The last modification date of the resource */
+		private String lastModified;
+
+		/**
+		 * Constructor
+		 *
+		 * @param endpoint
+		 *            the endpoint
+		 * @param url
+		 *            the URL
+		 */
+		private ResolvedEndpoint(LoadTestEndpoint endpoint, URL url) {
+			this.endpoint = endpoint;
+			this.url = url;
+		}
+	}
+}
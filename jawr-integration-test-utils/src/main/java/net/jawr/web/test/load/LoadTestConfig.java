@@ -0,0 +1,307 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.test.load;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * This class defines the configuration of a load test. It is read from a
+ * properties file like this one :
+ *
+ * <pre>
+ * load.concurrency=8
+ * load.warmup.seconds=10
+ * load.duration.seconds=60
+ * load.endpoints=home,msgJs
+ * load.endpoint.home.type=page
+ * load.endpoint.home.path=/index.jsp
+ * load.endpoint.home.weight=2
+ * load.endpoint.msgJs.type=gzip_bundle
+ * load.endpoint.msgJs.path=/js/bundle/msg.js
+ * load.endpoint.msgJs.page=/index.jsp
+ * </pre>
+ *
+ * The Jawr configuration and the web.xml of the web application can be
+ * replaced before the start of the server, with the
+ * <code>load.jawr.config</code> and <code>load.web.xml</code> properties,
+ * which define classpath resources.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class LoadTestConfig {
+
+	/** The property name of the number of concurrent clients */
+	public static final String CONCURRENCY_PROPERTY = "load.concurrency";
+
+	/** The property name of the warmup duration in seconds */
+	public static final String WARMUP_PROPERTY = "load.warmup.seconds";
+
+	/** The property name of the measurement duration in seconds */
+	public static final String DURATION_PROPERTY = "load.duration.seconds";
+
+	/** The property name of the seed of the request mix */
+	public static final String SEED_PROPERTY = "load.seed";
+
+	/** The property name of the Jawr configuration resource */
+	public static final String JAWR_CONFIG_PROPERTY = "load.jawr.config";
+
+	/** The property name of the web.xml resource */
+	public static final String WEB_XML_PROPERTY = "load.web.xml";
+
+	/** The property name of the endpoint names */
+	public static final String ENDPOINTS_PROPERTY = "load.endpoints";
+
+	/** The prefix of the endpoint properties */
+	public static final String ENDPOINT_PROPERTY_PREFIX = "load.endpoint.";
+
+	/** The number of concurrent clients */
+	private int concurrency = 8;
+
+	/** The warmup duration in seconds */
+	private int warmupSeconds = 10;
+
+	/** The measurement duration in seconds */
+	private int durationSeconds = 60;
+
+	/** The seed of the request mix */
+	private long seed = 20160101L;
+
+	/** The Jawr configuration resource */
+	private String jawrConfig;
+
+	/** The web.xml resource */
+	private String webXml;
+
+	/** The endpoints */
+	private final List<LoadTestEndpoint> endpoints = new ArrayList<LoadTestEndpoint>();
+
+	/**
+	 * Loads the configuration from a file or a classpath resource
+	 *
+	 * @param location
+	 *            the file path or the classpath resource
+	 * @return the configuration
+	 * @throws IOException
+	 *             if an IOException occurs
+	 */
+	public static LoadTestConfig load(String location) throws IOException {
+
+		InputStream in = null;
+		try {
+			File file = new File(location);
+			if (file.isFile()) {
+				in = new FileInputStream(file);
+			} else {
+				in = LoadTestConfig.class.getClassLoader().getResourceAsStream(
+						location);
+			}
+			if (in == null) {
+				throw new IOException("Unable to find the load test configuration : "
+						+ location);
+			}
+			Properties props = new Properties();
+			props.load(in);
+			return load(props);
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	/**
+	 * Loads the configuration from properties
+	 *
+	 * @param props
+	 *            the properties
+	 * @return the configuration
+	 */
+	public static LoadTestConfig load(Properties props) {
+
+		LoadTestConfig config = new LoadTestConfig();
+		config.concurrency = Integer.parseInt(props.getProperty(
+				CONCURRENCY_PROPERTY, String.valueOf(config.concurrency)));
+		config.warmupSeconds = Integer.parseInt(props.getProperty(
+				WARMUP_PROPERTY, String.valueOf(config.warmupSeconds)));
+		config.durationSeconds = Integer.parseInt(props.getProperty(
+				DURATION_PROPERTY, String.valueOf(config.durationSeconds)));
+		config.seed = Long.parseLong(props.getProperty(SEED_PROPERTY,
+				String.valueOf(config.seed)));
+		config.jawrConfig = props.getProperty(JAWR_CONFIG_PROPERTY);
+		config.webXml = props.getProperty(WEB_XML_PROPERTY);
+
+		String endpointNames = props.getProperty(ENDPOINTS_PROPERTY, "");
+		for (String name : endpointNames.split(",")) {
+			name = name.trim();
+			if (name.length() == 0) {
+				continue;
+			}
+			String prefix = ENDPOINT_PROPERTY_PREFIX + name + ".";
+			String path = props.getProperty(prefix + "path");
+			if (path == null) {
+				throw new IllegalArgumentException("The path of the endpoint '"
+						+ name + "' is not defined");
+			}
+			LoadTestEndpoint.RequestType type = LoadTestEndpoint.RequestType
+					.valueOf(props.getProperty(prefix + "type", "page")
+							.toUpperCase(Locale.ENGLISH));
+			int weight = Integer.parseInt(props.getProperty(prefix + "weight",
+					"1"));
+			config.addEndpoint(new LoadTestEndpoint(name, type, path, props
+					.getProperty(prefix + "page"), weight));
+		}
+		return config;
+	}
+
+	/**
+	 * Returns the number of concurrent clients
+	 *
+	 * @return the number of concurrent clients
+	 */
+	public int getConcurrency() {
+		return concurrency;
+	}
+
+	/**
+	 * Sets the number of concurrent clients
+	 *
+	 * @param concurrency
+	 *            the number to set
+	 */
+	public void setConcurrency(int concurrency) {
+		this.concurrency = concurrency;
+	}
+
+	/**
+	 * Returns the warmup duration in seconds
+	 *
+	 * @return the warmup duration
+	 */
+	public int getWarmupSeconds() {
+		return warmupSeconds;
+	}
+
+	/**
+	 * Sets the warmup duration in seconds
+	 *
+	 * @param warmupSeconds
+	 *            the duration to set
+	 */
+	public void setWarmupSeconds(int warmupSeconds) {
+		this.warmupSeconds = warmupSeconds;
+	}
+
+	/**
+	 * Returns the measurement duration in seconds
+	 *
+	 * @return the measurement duration
+	 */
+	public int getDurationSeconds() {
+		return durationSeconds;
+	}
+
+	/**
+	 * Sets the measurement duration in seconds
+	 *
+	 * @param durationSeconds
+	 *            the duration to set
+	 */
+	public void setDurationSeconds(int durationSeconds) {
+		this.durationSeconds = durationSeconds;
+	}
+
+	/**
+	 * Returns the seed of the request mix
+	 *
+	 * @return the seed
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Sets the seed of the request mix
+	 *
+	 * @param seed
+	 *            the seed to set
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Returns the Jawr configuration resource
+	 *
+	 * @return the Jawr configuration resource or null
+	 */
+	public String getJawrConfig() {
+		return jawrConfig;
+	}
+
+	/**
+	 * Sets the Jawr configuration resource
+	 *
+	 * @param jawrConfig
+	 *            the resource to set
+	 */
+	public void setJawrConfig(String jawrConfig) {
+		this.jawrConfig = jawrConfig;
+	}
+
+	/**
+	 * Returns the web.xml resource
+	 *
+	 * @return the web.xml resource or null
+	 */
+	public String getWebXml() {
+		return webXml;
+	}
+
+	/**
+	 * Sets the web.xml resource
+	 *
+	 * @param webXml
+	 *            the resource to set
+	 */
+	public void setWebXml(String webXml) {
+		this.webXml = webXml;
+	}
+
+	/**
+	 * Adds an endpoint
+	 *
+	 * @param endpoint
+	 *            the endpoint to add
+	 */
+	public void addEndpoint(LoadTestEndpoint endpoint) {
+		endpoints.add(endpoint);
+	}
+
+	/**
+	 * Returns the endpoints
+	 *
+	 * @return the endpoints
+	 */
+	public List<LoadTestEndpoint> getEndpoints() {
+		return Collections.unmodifiableList(endpoints);
+	}
+}
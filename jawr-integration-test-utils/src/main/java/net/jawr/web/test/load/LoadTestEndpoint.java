@@ -0,0 +1,145 @@
+/**
+ * Copyright 2016 Ibrahim Chaehoi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package net.jawr.web.test.load;
+
+/**
+ * This class defines an endpoint requested by the load test.
+ *
+ * The bundles and the binary resources have a path, which changes with their
+ * content. So their path can be discovered from a page : the URL requested is
+ * the first URL referenced by the page, which ends with the endpoint path.
+ *
+ * @author Ibrahim Chaehoi
+ */
+public class LoadTestEndpoint {
+
+	/**
+	 * The types of request
+	 */
+	public enum RequestType {
+
+		/** The rendering of a page */
+		PAGE,
+
+		/** The fetch of a bundle */
+		BUNDLE,
+
+		/** The fetch of a gzipped bundle */
+		GZIP_BUNDLE,
+
+		/** The fetch of a binary resource */
+		BINARY,
+
+		/**
+		 * The conditional fetch of a resource, which sends the validators of
+		 * a previous response
+		 */
+		CONDITIONAL
+	}
+
+	/** The endpoint name */
+	private final String name;
+
+	/** The request type */
+	private final RequestType type;
+
+	/** The path, relative to the context path */
+	private final String path;
+
+	/**
+	 * The page where the URL of the endpoint is discovered, or null if the
+	 * path is requested directly
+	 */
+	private final String page;
+
+	/** The weight of the endpoint in the request mix */
+	private final int weight;
+
+	/**
+	 * Constructor
+	 *
+	 * @param name
+	 *            the endpoint name
+	 * @param type
+	 *            the request type
+	 * @param path
+	 *            the path, relative to the context path
+	 * @param page
+	 *            the page where the URL of the endpoint is discovered, or null
+	 * @param weight
+	 *            the weight of the endpoint in the request mix
+	 */
+	public LoadTestEndpoint(String name, RequestType type, String path,
+			String page, int weight) {
+		this.name = name;
+		this.type = type;
+		this.path = path;
+		this.page = page;
+		this.weight = weight;
+	}
+
+	/**
+	 * Returns the endpoint name
+	 *
+	 * @return the endpoint name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the request type
+	 *
+	 * @return the request type
+	 */
+	public RequestType getType() {
+		return type;
+	}
+
+	/**
+	 * Returns the path, relative to the context path
+	 *
+	 * @return the path
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * Returns the page where the URL of the endpoint is discovered
+	 *
+	 * @return the page or null
+	 */
+	public String getPage() {
+		return page;
+	}
+
+	/**
+	 * Returns the weight of the endpoint in the request mix
+	 *
+	 * @return the weight
+	 */
+	public int getWeight() {
+		return weight;
+	}
+
+	/**
+	 * Returns true if the request accepts the gzip encoding
+	 *
+	 * @return true if the request accepts the gzip encoding
+	 */
+	public boolean isGzipAccepted() {
+		return type == RequestType.GZIP_BUNDLE;
+	}
+}